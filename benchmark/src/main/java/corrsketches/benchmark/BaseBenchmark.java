@@ -13,8 +13,6 @@ import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public abstract class BaseBenchmark<T> implements Benchmark {
@@ -75,11 +73,7 @@ public abstract class BaseBenchmark<T> implements Benchmark {
     // by this task
     System.out.println("\n> Total number of column combinations: " + combinations.size());
     if (totalTasks > 1) {
-      combinations =
-          IntStream.range(0, combinations.size())
-              .filter(i -> i % totalTasks == taskId)
-              .mapToObj(combinations::get)
-              .collect(Collectors.toList());
+      combinations = taskRange(combinations, totalTasks, taskId);
       System.out.println("Column combinations for this task: " + combinations.size());
     }
 
@@ -106,6 +100,19 @@ public abstract class BaseBenchmark<T> implements Benchmark {
     resultsFile.close();
   }
 
+  /**
+   * Returns the contiguous range of the given combinations that should be computed by the task with
+   * the given id, so that each task keeps the order of the combinations (e.g., the block
+   * nested-loop order created by {@link corrsketches.benchmark.datasource.DBSource}) and the column
+   * pairs used by consecutive combinations remain in its cache. The sizes of the ranges of any two
+   * tasks differ by at most one.
+   */
+  static <C> List<C> taskRange(List<C> combinations, int totalTasks, int taskId) {
+    final int start = (int) ((long) combinations.size() * taskId / totalTasks);
+    final int end = (int) ((long) combinations.size() * (taskId + 1) / totalTasks);
+    return combinations.subList(start, end);
+  }
+
   static void reportProgress(AtomicInteger processed, int total) {
     int current = processed.incrementAndGet();
     if (current % 1000 == 0) {
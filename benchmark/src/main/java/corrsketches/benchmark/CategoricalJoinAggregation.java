@@ -5,9 +5,9 @@ import corrsketches.ColumnType;
 import corrsketches.aggregations.AggregateFunction;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class CategoricalJoinAggregation {
 
@@ -15,7 +15,8 @@ public class CategoricalJoinAggregation {
       ColumnPair columnA, ColumnPair columnB, List<AggregateFunction> functions) {
 
     // create index for primary key in column B
-    Map<String, DoubleArrayList> indexB = JoinAggregation.createKeyIndex(columnB);
+    Int2ObjectMap<DoubleArrayList> indexB = JoinAggregation.createKeyHashIndex(columnB);
+    final int[] keysA = columnA.keyHashes();
 
     List<Aggregation> results = new ArrayList<>(functions.size());
 
@@ -24,19 +25,18 @@ public class CategoricalJoinAggregation {
 
       var joinStats = new JoinStats();
 
-      // Join keys for column A
-      List<String> joinKeysA = new ArrayList<>();
+      // Join keys for column A (only available if column A was not read with hashed keys)
+      List<String> joinKeysA = columnA.keyValues == null ? null : new ArrayList<>();
 
       // numeric values for column A
-      DoubleList joinValuesA = new DoubleArrayList(columnA.keyValues.size());
+      DoubleList joinValuesA = new DoubleArrayList(keysA.length);
 
       // numeric values for each aggregation of column B
       DoubleList joinValuesB = new DoubleArrayList();
       // compute aggregation vectors of joined values for each join key
-      for (int i = 0; i < columnA.keyValues.size(); i++) {
-        String keyA = columnA.keyValues.get(i);
+      for (int i = 0; i < keysA.length; i++) {
         final double valueA = columnA.columnValues[i];
-        final DoubleArrayList rowsB = indexB.get(keyA);
+        final DoubleArrayList rowsB = indexB.get(keysA[i]);
         if (rowsB == null || rowsB.isEmpty()) {
           joinStats.join_1to0++;
         } else {
@@ -47,7 +47,9 @@ public class CategoricalJoinAggregation {
             // 1:n mapping
             joinStats.join_1toN++;
           }
-          joinKeysA.add(keyA);
+          if (joinKeysA != null) {
+            joinKeysA.add(columnA.keyValues.get(i));
+          }
           joinValuesA.add(valueA);
           // We need to aggregate even for 1:1 mappings, because some
           // aggregate functions may transform the original value (e.g., COUNT)
@@ -57,7 +59,7 @@ public class CategoricalJoinAggregation {
 
       // In a LEFT join, the type of aggregated column B may be different from the type of the input
       // column B. (As opposed to column A, which is not aggregated, and thus keeps the same type.)
-      ColumnType joinValuesBType = fn.get().getOutputType(columnB.columnValueType);
+      ColumnType joinValuesBType = fn.getOutputType(columnB.columnValueType);
       results.add(
           new Aggregation(
               joinKeysA,
@@ -79,6 +81,7 @@ public class CategoricalJoinAggregation {
 
   public static class Aggregation {
 
+    /** The join keys of column A, or null if column A has only the hashes of the keys. */
     public final List<String> keys;
     public final Column a;
     public final Column b;
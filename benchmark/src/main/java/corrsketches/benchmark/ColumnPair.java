@@ -1,6 +1,8 @@
 package corrsketches.benchmark;
 
 import corrsketches.ColumnType;
+import corrsketches.util.Hashes;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -13,6 +15,16 @@ public class ColumnPair {
   public ColumnType columnValueType;
   public double[] columnValues;
 
+  /**
+   * The murmur3 hashes of the keys, aligned with {@link #columnValues}. It is not serialized, and
+   * may be the only representation of the keys for column pairs created by {@link
+   * Tables#readHashedColumnPairs(String, int, java.util.Set)}, in which case {@link #keyValues} is
+   * null.
+   */
+  public transient int[] keyHashes;
+
+  private transient int[] distinctKeyHashes;
+
   public ColumnPair() {}
 
   public ColumnPair(
@@ -30,6 +42,89 @@ public class ColumnPair {
     this.columnValues = columnValues;
   }
 
+  public ColumnPair(
+      String datasetId,
+      String keyName,
+      int[] keyHashes,
+      String columnName,
+      ColumnType valueType,
+      double[] columnValues) {
+    this.datasetId = datasetId;
+    this.keyName = keyName;
+    this.keyHashes = keyHashes;
+    this.columnName = columnName;
+    this.columnValueType = valueType;
+    this.columnValues = columnValues;
+  }
+
+  /**
+   * Returns the hashes of the keys. If they were not computed during ingestion, they are computed
+   * from {@link #keyValues} once and reused by later calls.
+   */
+  public int[] keyHashes() {
+    if (keyHashes == null) {
+      final int[] hashes = new int[keyValues.size()];
+      for (int i = 0; i < hashes.length; i++) {
+        hashes[i] = Hashes.murmur3_32(keyValues.get(i));
+      }
+      keyHashes = hashes;
+    }
+    return keyHashes;
+  }
+
+  /**
+   * Returns this column pair if its rows are sorted by key hash, or a copy of it with the rows
+   * sorted by key hash otherwise. The sort is stable, so the rows of each key keep their original
+   * order. Column pairs read from the column store are already sorted, so that joins between them
+   * can be computed as merge joins.
+   */
+  public ColumnPair sortedByKey() {
+    final int[] keys = keyHashes();
+    if (isSorted(keys)) {
+      return this;
+    }
+    // sorts the keys together with their row numbers, which breaks ties by the original order
+    final long[] rows = new long[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      rows[i] = ((long) keys[i] << 32) | i;
+    }
+    Arrays.sort(rows);
+    final int[] sortedKeys = new int[keys.length];
+    final double[] sortedValues = new double[keys.length];
+    for (int i = 0; i < rows.length; i++) {
+      final int row = (int) rows[i];
+      sortedKeys[i] = keys[row];
+      sortedValues[i] = columnValues[row];
+    }
+    return new ColumnPair(
+        datasetId, keyName, sortedKeys, columnName, columnValueType, sortedValues);
+  }
+
+  /** Returns the distinct hashes of the keys in ascending order. */
+  public int[] distinctKeyHashes() {
+    if (distinctKeyHashes == null) {
+      final int[] keys = sortedByKey().keyHashes();
+      int n = 0;
+      final int[] distinct = new int[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        if (i == 0 || keys[i] != keys[i - 1]) {
+          distinct[n++] = keys[i];
+        }
+      }
+      distinctKeyHashes = Arrays.copyOf(distinct, n);
+    }
+    return distinctKeyHashes;
+  }
+
+  private static boolean isSorted(int[] keys) {
+    for (int i = 1; i < keys.length; i++) {
+      if (keys[i - 1] > keys[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public String toString() {
     return "ColumnPair{"
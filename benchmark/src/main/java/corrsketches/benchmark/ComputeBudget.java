@@ -1,8 +1,11 @@
 package corrsketches.benchmark;
 
 import corrsketches.benchmark.CreateColumnStore.ColumnStoreMetadata;
+import corrsketches.benchmark.CreateColumnStore.KVColumnStore;
 import corrsketches.benchmark.utils.CliTool;
-import edu.nyu.engineering.vida.kvdb4j.api.StringObjectKVDB;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
@@ -28,21 +31,20 @@ public class ComputeBudget extends CliTool implements Serializable {
   public void execute() throws Exception {
 
     ColumnStoreMetadata storeMetadata = CreateColumnStore.readMetadata(inputPath);
-    StringObjectKVDB<ColumnPair> columnStore =
-        CreateColumnStore.KVColumnStore.create(inputPath, DBType.ROCKSDB, true);
+    KVColumnStore columnStore = KVColumnStore.create(inputPath, DBType.ROCKSDB, true);
 
     Set<Set<String>> columnSets = storeMetadata.columnSets;
     System.out.println(
         "> Found  " + columnSets.size() + " column pair sets in DB stored at " + inputPath);
 
     Set<String> keyColumns = new HashSet<>();
-    Set<String> uniqueElements = new HashSet<>();
+    IntSet uniqueElements = new IntOpenHashSet();
 
     for (Set<String> datasetColumnPairIds : columnSets) {
       for (String columnPairId : datasetColumnPairIds) {
         ColumnPair x = columnStore.get(columnPairId);
         keyColumns.add(x.datasetId + "/" + x.keyName);
-        uniqueElements.addAll(x.keyValues);
+        uniqueElements.addAll(IntArrayList.wrap(x.distinctKeyHashes()));
       }
     }
 
@@ -71,6 +71,20 @@ public class ComputePairwiseJoinCorrelations extends CliTool implements Serializ
       description = "Number of CPU core to use. Default is to use all cores available.")
   int cpuCores = -1;
 
+  @Option(
+      names = "--cache-size",
+      description =
+          "Maximum size (in MB) of the cache of columns read from the column store. "
+              + "Default is to use 1/4 of the maximum heap size.")
+  long cacheSizeMB = -1;
+
+  @Option(
+      names = "--column-block-size",
+      description =
+          "Number of columns of the blocks used to order the column combinations. Each thread "
+              + "needs about two blocks of columns in the cache to avoid loading columns again.")
+  int columnBlockSize = DBSource.DEFAULT_BLOCK_SIZE;
+
   @Option(
       names = "--right-aggregations",
       description = "Aggregation functions for the RIGHT table separated by comma (,), or \"all\"")
@@ -105,9 +119,12 @@ public class ComputePairwiseJoinCorrelations extends CliTool implements Serializ
 
     // Set up data source
     System.out.println("\n> Computing column statistics for all column combinations...");
-    DBSource dbsource = new DBSource(inputPath);
+    DBSource dbsource =
+        cacheSizeMB > 0
+            ? new DBSource(inputPath, cacheSizeMB * 1024 * 1024)
+            : new DBSource(inputPath);
     List<DBColumnCombination> combinations =
-        dbsource.createColumnCombinations(intraDatasetCombinations, maxSamples);
+        dbsource.createColumnCombinations(intraDatasetCombinations, maxSamples, columnBlockSize);
 
     // Initialize the output filename
     String datasetName = Paths.get(inputPath).getFileName().toString();
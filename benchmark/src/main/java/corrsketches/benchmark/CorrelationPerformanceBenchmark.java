@@ -15,7 +15,6 @@ import corrsketches.correlation.RinCorrelation;
 import corrsketches.correlation.SpearmanCorrelation;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 public class CorrelationPerformanceBenchmark implements Benchmark {
@@ -132,10 +131,10 @@ public class CorrelationPerformanceBenchmark implements Benchmark {
 
     PerfResult result = new PerfResult();
 
-    HashSet<String> xKeys = new HashSet<>(x.keyValues);
-    HashSet<String> yKeys = new HashSet<>(y.keyValues);
-    result.cardx_actual = xKeys.size();
-    result.cardy_actual = yKeys.size();
+    final int[] xKeys = x.distinctKeyHashes();
+    final int[] yKeys = y.distinctKeyHashes();
+    result.cardx_actual = xKeys.length;
+    result.cardy_actual = yKeys.length;
     result.interxy_actual = Sets.intersectionSize(xKeys, yKeys);
 
     // No need compute any statistics when there is no intersection
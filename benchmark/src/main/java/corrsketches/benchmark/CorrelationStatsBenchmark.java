@@ -10,9 +10,10 @@ import corrsketches.benchmark.pairwise.ColumnCombination;
 import corrsketches.benchmark.pairwise.TablePair;
 import corrsketches.benchmark.params.SketchParams;
 import corrsketches.benchmark.utils.Sets;
-import corrsketches.correlation.BootstrapedPearson;
 import corrsketches.correlation.BootstrapedPearson.BootstrapEstimate;
+import corrsketches.correlation.CorrelationType;
 import corrsketches.correlation.Estimate;
+import corrsketches.correlation.EstimatorSuite;
 import corrsketches.correlation.PearsonCorrelation;
 import corrsketches.correlation.QnCorrelation;
 import corrsketches.correlation.RinCorrelation;
@@ -23,12 +24,19 @@ import corrsketches.statistics.Stats.Extent;
 import corrsketches.statistics.Variance;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 public class CorrelationStatsBenchmark implements Benchmark {
 
   public static final int minimumIntersection = 3; // minimum sample size for correlation is 2
+  private static final EstimatorSuite SKETCH_ESTIMATORS =
+      EstimatorSuite.of(
+          CorrelationType.PEARSONS,
+          CorrelationType.ROBUST_QN,
+          CorrelationType.SPEARMANS,
+          CorrelationType.RIN,
+          CorrelationType.PM1_BOOTSTRAP);
+
   private final List<SketchParams> sketchParams;
   private final List<AggregateFunction> rightAggregations;
 
@@ -76,10 +84,10 @@ public class CorrelationStatsBenchmark implements Benchmark {
 
     MetricsResult result = new MetricsResult();
 
-    HashSet<String> xKeys = new HashSet<>(x.keyValues);
-    HashSet<String> yKeys = new HashSet<>(y.keyValues);
-    result.cardx_actual = xKeys.size();
-    result.cardy_actual = yKeys.size();
+    final int[] xKeys = x.distinctKeyHashes();
+    final int[] yKeys = y.distinctKeyHashes();
+    result.cardx_actual = xKeys.length;
+    result.cardy_actual = yKeys.length;
     result.interxy_actual = Sets.intersectionSize(xKeys, yKeys);
 
     // No need compute any statistics when there is no intersection
@@ -119,7 +127,7 @@ public class CorrelationStatsBenchmark implements Benchmark {
     return CorrelationSketch.builder()
         .aggregateFunction(function)
         .sketchType(sketchParams.type, sketchParams.budget)
-        .build(cp.keyValues, cp.columnValues, cp.columnValueType);
+        .build(cp.keyHashes(), cp.columnValues, cp.columnValueType);
   }
 
   public static MetricsResult computeSketchStatistics(
@@ -163,7 +171,8 @@ public class CorrelationStatsBenchmark implements Benchmark {
     result.corr_est_sample_size = join.keys.length;
 
     // correlation estimates
-    Estimate estimate = PearsonCorrelation.estimate(join.left.values, join.right.values);
+    final EstimatorSuite.Results estimates = SKETCH_ESTIMATORS.compute(join);
+    Estimate estimate = estimates.get(CorrelationType.PEARSONS);
     result.corr_rp_est = estimate.value;
     result.corr_rp_delta = result.corr_rp_actual - result.corr_rp_est;
 
@@ -180,19 +189,19 @@ public class CorrelationStatsBenchmark implements Benchmark {
     //          PearsonCorrelation.isSignificant(result.corr_rp_est, sampleSize, alpha);
     //    }
 
-    Estimate qncorr = QnCorrelation.estimate(join.left.values, join.right.values);
+    Estimate qncorr = estimates.get(CorrelationType.ROBUST_QN);
     result.corr_rqn_est = qncorr.value;
     result.corr_rqn_delta = result.corr_rqn_actual - result.corr_rqn_est;
 
-    Estimate corrSpearman = SpearmanCorrelation.estimate(join.left.values, join.right.values);
+    Estimate corrSpearman = estimates.get(CorrelationType.SPEARMANS);
     result.corr_rs_est = corrSpearman.value;
     result.corr_rs_delta = result.corr_rs_actual - result.corr_rs_est;
 
-    Estimate corrRin = RinCorrelation.estimate(join.left.values, join.right.values);
+    Estimate corrRin = estimates.get(CorrelationType.RIN);
     result.corr_rin_est = corrRin.value;
     result.corr_rin_delta = result.corr_rin_actual - result.corr_rin_est;
 
-    BootstrapEstimate corrPm1 = BootstrapedPearson.estimate(join.left.values, join.right.values);
+    BootstrapEstimate corrPm1 = estimates.pm1();
     result.corr_pm1_mean = corrPm1.corrBsMean;
     result.corr_pm1_mean_delta = result.corr_rp_actual - result.corr_pm1_mean;
 
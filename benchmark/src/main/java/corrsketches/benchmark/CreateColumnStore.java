@@ -4,25 +4,41 @@ import com.google.common.base.Preconditions;
 import corrsketches.ColumnType;
 import corrsketches.SketchType;
 import corrsketches.benchmark.index.SketchIndex;
+import corrsketches.benchmark.io.HashedColumnCodec;
+import corrsketches.benchmark.io.HashedColumnCodec.KeyDictionary;
+import corrsketches.benchmark.io.MappedCsvBatchReader;
+import corrsketches.benchmark.io.StreamingColumnPairReader;
 import corrsketches.benchmark.utils.CliTool;
 import edu.nyu.engineering.vida.kvdb4j.KryoIO;
+import edu.nyu.engineering.vida.kvdb4j.api.KV;
 import edu.nyu.engineering.vida.kvdb4j.api.KVDB;
+import edu.nyu.engineering.vida.kvdb4j.api.KVIterator;
 import edu.nyu.engineering.vida.kvdb4j.api.StringObjectKVDB;
 import edu.nyu.engineering.vida.kvdb4j.leveldb.LevelDBBackend;
 import edu.nyu.engineering.vida.kvdb4j.rocksdb.RocksDBBackend;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -37,6 +53,15 @@ public class CreateColumnStore extends CliTool implements Serializable {
   public static final String COLUMNS_KEY = "columns";
   public static final String DBTYPE_KEY = "dbtype";
 
+  /** The file that lists the tables already written to the store, used to resume ingestion. */
+  static final String PROGRESS_FILE = "ingested-tables.txt";
+
+  /**
+   * The default number of tables read concurrently. CSV tables are scanned in parallel by each
+   * reader (see {@link MappedCsvBatchReader}), so a few readers are enough to use all cores.
+   */
+  static final int DEFAULT_READERS = 2;
+
   @Option(names = "--input-path", required = true, description = "Folder containing CSV files")
   String inputPath;
 
@@ -66,6 +91,18 @@ public class CreateColumnStore extends CliTool implements Serializable {
               + "(you can repeat the argument for multiple data types)")
   ColumnType[] columnTypes = new ColumnType[] {ColumnType.NUMERICAL, ColumnType.CATEGORICAL};
 
+  @Option(
+      names = "--key-dictionary",
+      description = "If the strings of the keys should be stored in a separate key dictionary")
+  boolean storeKeyDictionaries = false;
+
+  @Option(
+      names = "--readers",
+      description =
+          "Number of tables read concurrently. Each reader keeps the columns of a whole table in "
+              + "memory, so the default is a small fixed number of readers.")
+  int readers = DEFAULT_READERS;
+
   public static void main(String[] args) {
     CliTool.run(args, new CreateColumnStore());
   }
@@ -77,69 +114,203 @@ public class CreateColumnStore extends CliTool implements Serializable {
     ColumnStore store = createColumnStore(db, dbType);
     System.out.println("Created DB at " + db);
 
+    final Map<String, Set<String>> tableColumns = writeColumns(store);
+    final Set<Set<String>> allColumns = writeMetadata(tableColumns);
+
+    if (generateQueryFile) {
+      FileWriter queryFile = new FileWriter(Paths.get(outputPath, "query-samples.txt").toFile());
+      Pattern rgx = Pattern.compile("synthetic-bivariate_qid=[0-9]+[.]csv");
+      for (Entry<String, Set<String>> table : tableColumns.entrySet()) {
+        // the dataset id of the column pairs is the file name of the table
+        String datasetId = Paths.get(table.getKey()).getFileName().toString();
+        System.out.println(
+            "datasetID: " + datasetId + " matches: " + rgx.matcher(datasetId).matches());
+        if (rgx.matcher(datasetId).matches()) {
+          for (String id : table.getValue()) {
+            queryFile.write(id);
+            queryFile.write("\n");
+          }
+        }
+      }
+      queryFile.close();
+    }
+
+    System.out.println(getClass().getSimpleName() + " finished successfully.");
+
+    System.out.println("Checking if can read written files...");
+    ColumnStoreMetadata metadata = readMetadata(outputPath);
+    Preconditions.checkArgument(metadata.columnSets.size() == allColumns.size());
+    Preconditions.checkArgument(metadata.dbType == dbType);
+    System.out.println("Check successful.");
+  }
+
+  /**
+   * Writes the column pairs of the tables found in the input path to the given store, and closes
+   * it. The tables listed in the progress file by a previous (interrupted) execution are not read
+   * again. Returns the ids of the columns of all tables, including the skipped ones.
+   */
+  Map<String, Set<String>> writeColumns(ColumnStore store) throws Exception {
     List<String> allCSVs = Tables.findAllTables(inputPath);
     System.out.println("> Found  " + allCSVs.size() + " CSV files at " + inputPath);
 
-    FileWriter metadataFile = new FileWriter(getMetadataFilePath(outputPath).toFile());
-    metadataFile.write(String.format("%s:%s\n", DBTYPE_KEY, dbType));
-
-    FileWriter queryFile = null;
-    Pattern rgx = null;
-    if (generateQueryFile) {
-      queryFile = new FileWriter(Paths.get(outputPath, "query-samples.txt").toFile());
-      rgx = Pattern.compile("synthetic-bivariate_qid=[0-9]+[.]csv");
+    // Tables ingested by a previous (interrupted) execution are not read again
+    final Path progressFile = Paths.get(outputPath, PROGRESS_FILE);
+    final Map<String, Set<String>> tableColumns = readProgress(progressFile);
+    final List<String> pendingCSVs = new ArrayList<>();
+    for (String csv : allCSVs) {
+      if (!tableColumns.containsKey(csv)) {
+        pendingCSVs.add(csv);
+      }
+    }
+    if (!tableColumns.isEmpty()) {
+      System.out.printf(
+          "> Skipping %d tables ingested previously (listed in %s)\n",
+          allCSVs.size() - pendingCSVs.size(), progressFile);
     }
 
     System.out.println("\n> Writing columns to key-value DB...");
+    try (Writer progress = Files.newBufferedWriter(progressFile, StandardCharsets.UTF_8)) {
+      // rewrites the tables read from the file, which discards a partially written last line
+      for (Entry<String, Set<String>> table : tableColumns.entrySet()) {
+        writeProgress(progress, table.getKey(), table.getValue());
+      }
+      ingestTables(store, pendingCSVs, tableColumns, progress);
+    } finally {
+      store.close();
+    }
+    return tableColumns;
+  }
 
+  /**
+   * Writes the metadata file with the column ids of all given tables, replacing the file written
+   * by a previous execution. Returns the sets of column ids written.
+   */
+  Set<Set<String>> writeMetadata(Map<String, Set<String>> tableColumns) throws IOException {
     Set<Set<String>> allColumns = new HashSet<>();
-    for (String csv : allCSVs) {
-      Iterator<ColumnPair> columnPairs = Tables.readColumnPairs(csv, minRows, Set.of(columnTypes));
-      if (!columnPairs.hasNext()) {
-        continue;
-      }
-      Set<String> columnIds = new HashSet<>();
-      while (columnPairs.hasNext()) {
-        ColumnPair cp = columnPairs.next();
-        String id = cp.id();
-        store.store(id, cp);
-        columnIds.add(id);
-
-        if (queryFile != null) {
-          System.out.println(
-              "datasetID: " + cp.datasetId + " matches: " + rgx.matcher(cp.datasetId).matches());
-          if (rgx.matcher(cp.datasetId).matches()) {
-            queryFile.write(cp.id());
-            queryFile.write("\n");
-          }
-        }
+    for (Set<String> columnIds : tableColumns.values()) {
+      if (!columnIds.isEmpty()) {
+        allColumns.add(columnIds);
       }
+    }
+
+    FileWriter metadataFile = new FileWriter(getMetadataFilePath(outputPath).toFile());
+    metadataFile.write(String.format("%s:%s\n", DBTYPE_KEY, dbType));
+    for (Set<String> columnIds : allColumns) {
       metadataFile.write(COLUMNS_KEY + ":");
       metadataFile.write(String.join(" ", columnIds));
       metadataFile.write("\n");
-      allColumns.add(columnIds);
     }
-
     metadataFile.close();
-    store.close();
-    if (queryFile != null) {
-      queryFile.close();
+    return allColumns;
+  }
+
+  /**
+   * Reads the given tables using multiple reader threads, while the current thread writes the
+   * column pairs of each table to the store as a batch. The column ids of each table written are
+   * added to {@code tableColumns} and appended to the progress file, so that the tables that have
+   * been fully written are skipped if the tool is restarted.
+   */
+  private void ingestTables(
+      ColumnStore store,
+      List<String> tables,
+      Map<String, Set<String>> tableColumns,
+      Writer progress)
+      throws Exception {
+    final int numReaders = Math.max(1, readers);
+    System.out.printf("Reading %d tables using %d readers\n", tables.size(), numReaders);
+
+    // The queue is bounded so that readers wait for the writer when it falls behind, which limits
+    // the number of tables held in memory.
+    final BlockingQueue<TableBatch> batches = new ArrayBlockingQueue<>(numReaders);
+    final ExecutorService executor = Executors.newFixedThreadPool(numReaders);
+    try {
+      for (String csv : tables) {
+        executor.submit(
+            () -> {
+              TableBatch batch;
+              try {
+                batch = readTable(store, csv);
+              } catch (Throwable e) {
+                batch = new TableBatch(csv, e);
+              }
+              try {
+                batches.put(batch);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+      }
+      for (int i = 0; i < tables.size(); i++) {
+        final TableBatch batch = batches.take();
+        if (batch.error != null) {
+          throw new RuntimeException("Failed to ingest table: " + batch.path, batch.error);
+        }
+        for (Runnable write : batch.writes) {
+          write.run();
+        }
+        tableColumns.put(batch.path, batch.columnIds);
+        writeProgress(progress, batch.path, batch.columnIds);
+        if ((i + 1) % 100 == 0 || i + 1 == tables.size()) {
+          System.out.printf("Written tables: %d/%d\n", i + 1, tables.size());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
     }
+  }
 
-    System.out.println(getClass().getSimpleName() + " finished successfully.");
+  /** Reads all column pairs of the given table and prepares them to be written to the store. */
+  private TableBatch readTable(ColumnStore store, String csv) {
+    final Set<ColumnType> types = Set.of(columnTypes);
+    // the strings of the keys are only read when they are needed to create the key dictionaries
+    final Iterator<ColumnPair> columnPairs =
+        storeKeyDictionaries
+            ? StreamingColumnPairReader.readColumnPairs(csv, minRows, types)
+            : StreamingColumnPairReader.readHashedColumnPairs(csv, minRows, types);
+    final Set<String> columnIds = new HashSet<>();
+    final List<Runnable> writes = new ArrayList<>();
+    while (columnPairs.hasNext()) {
+      ColumnPair cp = columnPairs.next();
+      String id = cp.id();
+      writes.add(store.prepareWrite(id, cp));
+      columnIds.add(id);
+    }
+    return new TableBatch(csv, columnIds, writes);
+  }
 
-    System.out.println("Checking if can read written files...");
-    ColumnStoreMetadata metadata = readMetadata(outputPath);
-    Preconditions.checkArgument(metadata.columnSets.size() == allColumns.size());
-    Preconditions.checkArgument(metadata.dbType == dbType);
-    System.out.println("Check successful.");
+  static void writeProgress(Writer progress, String table, Set<String> columnIds)
+      throws IOException {
+    progress.write(table + "\t" + String.join(" ", columnIds) + "\n");
+    progress.flush();
+  }
+
+  /**
+   * Reads the ids of the columns of the tables written by previous executions from the given
+   * progress file. Each line has the path of a table and the ids of its columns separated by a tab.
+   */
+  static Map<String, Set<String>> readProgress(Path progressFile) throws IOException {
+    final Map<String, Set<String>> tableColumns = new LinkedHashMap<>();
+    if (!Files.exists(progressFile)) {
+      return tableColumns;
+    }
+    for (String line : Files.readAllLines(progressFile, StandardCharsets.UTF_8)) {
+      final int separator = line.lastIndexOf('\t');
+      if (separator < 0) {
+        continue; // a line partially written when the previous execution was interrupted
+      }
+      final String columns = line.substring(separator + 1);
+      tableColumns.put(
+          line.substring(0, separator),
+          columns.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(columns.split(" "))));
+    }
+    return tableColumns;
   }
 
   private ColumnStore createColumnStore(Path db, DBType dbType) {
     if (dbType == DBType.LUCENE) {
       return new IndexColumnStore(db);
     } else {
-      return new KVColumnStore(this.dbType, db);
+      return new KVColumnStore(this.dbType, db, storeKeyDictionaries);
     }
   }
 
@@ -245,6 +416,15 @@ public class CreateColumnStore extends CliTool implements Serializable {
 
     void store(String id, ColumnPair cp);
 
+    /**
+     * Prepares the given column pair to be stored, and returns the action that stores it. This
+     * method may be called concurrently by multiple threads, so implementations can do expensive
+     * work (e.g., serialization) here, while the returned actions are run by a single thread.
+     */
+    default Runnable prepareWrite(String id, ColumnPair cp) {
+      return () -> store(id, cp);
+    }
+
     void close() throws IOException;
   }
 
@@ -275,15 +455,42 @@ public class CreateColumnStore extends CliTool implements Serializable {
     }
   }
 
+  /**
+   * Stores column pairs in a key-value database using the {@link HashedColumnCodec} format, i.e.,
+   * with the keys stored as sorted hashes. The strings of the keys can be optionally stored in a
+   * separate database, which is only read when the dictionary of a column is requested.
+   */
   public static class KVColumnStore implements ColumnStore {
 
-    final StringObjectKVDB<ColumnPair> db;
+    static final String KEY_DICTIONARY_DIR = "key-dictionary";
+
+    final StringObjectKVDB<byte[]> db;
+    final StringObjectKVDB<byte[]> keyDictionaries;
+
+    public KVColumnStore(DBType dbType, Path db, boolean storeKeyDictionaries) {
+      this(
+          createDB(db.toString(), dbType, false),
+          storeKeyDictionaries
+              ? createDB(db.resolve(KEY_DICTIONARY_DIR).toString(), dbType, false)
+              : null);
+    }
+
+    private KVColumnStore(StringObjectKVDB<byte[]> db, StringObjectKVDB<byte[]> keyDictionaries) {
+      this.db = db;
+      this.keyDictionaries = keyDictionaries;
+    }
 
-    public KVColumnStore(DBType dbType, Path db) {
-      this.db = create(db.toString(), dbType, false);
+    /** Opens the column store at the given path, including its key dictionaries if they exist. */
+    public static KVColumnStore create(String inputPath, DBType dbType, boolean readonly) {
+      final Path dictionaryPath = Paths.get(inputPath, KEY_DICTIONARY_DIR);
+      return new KVColumnStore(
+          createDB(inputPath, dbType, readonly),
+          Files.exists(dictionaryPath)
+              ? createDB(dictionaryPath.toString(), dbType, readonly)
+              : null);
     }
 
-    public static StringObjectKVDB<ColumnPair> create(
+    private static StringObjectKVDB<byte[]> createDB(
         String inputPath, DBType dbType, boolean readonly) {
       final KVDB kvdb;
       if (dbType == DBType.ROCKSDB) {
@@ -293,17 +500,111 @@ public class CreateColumnStore extends CliTool implements Serializable {
       } else {
         throw new IllegalArgumentException("Unsupported database type: " + dbType);
       }
-      return new StringObjectKVDB<>(kvdb, new KryoIO<>(ColumnPair.class));
+      return new StringObjectKVDB<>(kvdb, new KryoIO<>(byte[].class));
     }
 
     @Override
     public void store(String id, ColumnPair cp) {
-      db.put(id, cp);
+      prepareWrite(id, cp).run();
+    }
+
+    /** Encodes the column pair, so that only the encoded bytes are kept until they are written. */
+    @Override
+    public Runnable prepareWrite(String id, ColumnPair cp) {
+      final byte[] column = HashedColumnCodec.encode(cp);
+      final byte[] dictionary =
+          keyDictionaries != null && cp.keyValues != null
+              ? HashedColumnCodec.encodeKeyDictionary(cp)
+              : null;
+      return () -> {
+        db.put(id, column);
+        if (dictionary != null) {
+          keyDictionaries.put(id, dictionary);
+        }
+      };
+    }
+
+    /**
+     * Returns the column pair with the given id, or null if it doesn't exist. The column pair has
+     * only the hashes of the keys, and its rows are sorted by key hash.
+     */
+    public ColumnPair get(String id) {
+      final byte[] bytes = db.get(id);
+      return bytes == null ? null : HashedColumnCodec.decode(bytes);
+    }
+
+    /**
+     * Returns the dictionary of the key strings of the column pair with the given id, or null if
+     * the store has no key dictionaries.
+     */
+    public KeyDictionary getKeyDictionary(String id) {
+      if (keyDictionaries == null) {
+        return null;
+      }
+      final byte[] bytes = keyDictionaries.get(id);
+      return bytes == null ? null : HashedColumnCodec.decodeKeyDictionary(bytes);
+    }
+
+    /** Iterates over the ids and the column pairs of all columns in the store. */
+    public ColumnIterator iterator() {
+      return new ColumnIterator(db.iterator());
     }
 
     @Override
     public void close() {
       db.close();
+      if (keyDictionaries != null) {
+        keyDictionaries.close();
+      }
+    }
+  }
+
+  /** Iterates over the column pairs of a {@link KVColumnStore}, decoding them lazily. */
+  public static class ColumnIterator implements Iterator<Entry<String, ColumnPair>>, AutoCloseable {
+
+    private final KVIterator<String, byte[]> it;
+
+    ColumnIterator(KVIterator<String, byte[]> it) {
+      this.it = it;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return it.hasNext();
+    }
+
+    @Override
+    public Entry<String, ColumnPair> next() {
+      final KV<String, byte[]> kv = it.next();
+      return new SimpleImmutableEntry<>(kv.getKey(), HashedColumnCodec.decode(kv.getValue()));
+    }
+
+    @Override
+    public void close() throws Exception {
+      it.close();
+    }
+  }
+
+  /** The column pairs of a table that are written to the store together. */
+  private static class TableBatch {
+
+    final String path;
+    final Set<String> columnIds;
+    final List<Runnable> writes;
+    final Throwable error;
+
+    TableBatch(String path, Set<String> columnIds, List<Runnable> writes) {
+      this.path = path;
+      this.columnIds = columnIds;
+      this.writes = writes;
+      this.error = null;
+    }
+
+    TableBatch(String path, Throwable error) {
+      this.path = path;
+      this.columnIds = null;
+      this.writes = null;
+      this.error = error;
     }
   }
 
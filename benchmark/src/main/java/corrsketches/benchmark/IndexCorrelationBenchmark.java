@@ -9,7 +9,9 @@ import corrsketches.SketchType.GKMVOptions;
 import corrsketches.SketchType.KMVOptions;
 import corrsketches.SketchType.SketchOptions;
 import corrsketches.aggregations.AggregateFunction;
+import corrsketches.benchmark.CreateColumnStore.ColumnIterator;
 import corrsketches.benchmark.CreateColumnStore.ColumnStoreMetadata;
+import corrsketches.benchmark.CreateColumnStore.KVColumnStore;
 import corrsketches.benchmark.CreateColumnStore.QueryStats;
 import corrsketches.benchmark.JoinAggregation.NumericJoinAggregation;
 import corrsketches.benchmark.index.*;
@@ -17,9 +19,6 @@ import corrsketches.benchmark.utils.EvalMetrics;
 import corrsketches.benchmark.utils.Sets;
 import corrsketches.correlation.PearsonCorrelation;
 import corrsketches.statistics.Stats;
-import edu.nyu.engineering.vida.kvdb4j.api.KV;
-import edu.nyu.engineering.vida.kvdb4j.api.KVIterator;
-import edu.nyu.engineering.vida.kvdb4j.api.StringObjectKVDB;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -88,8 +87,8 @@ public class IndexCorrelationBenchmark {
   public void buildIndex() throws Exception {
     ColumnStoreMetadata storeMetadata = CreateColumnStore.readMetadata(inputPath);
     final boolean readonly = true;
-    final StringObjectKVDB<ColumnPair> columnStore =
-        CreateColumnStore.KVColumnStore.create(inputPath, storeMetadata.dbType, readonly);
+    final KVColumnStore columnStore =
+        KVColumnStore.create(inputPath, storeMetadata.dbType, readonly);
 
     final QueryStats querySample = readOrCreateQueryStats(storeMetadata);
 
@@ -137,7 +136,7 @@ public class IndexCorrelationBenchmark {
   }
 
   public void buildIndex(
-      StringObjectKVDB<ColumnPair> columnStore,
+      KVColumnStore columnStore,
       String indexName,
       SketchIndex index,
       QueryStats querySample)
@@ -146,12 +145,12 @@ public class IndexCorrelationBenchmark {
     System.out.println("Indexing all columns...");
 
     Set<String> queryColumns = querySample.queries;
-    KVIterator<String, ColumnPair> it = columnStore.iterator();
+    ColumnIterator it = columnStore.iterator();
     int i = 0;
     printProgress(querySample, indexName, i);
     while (it.hasNext()) {
 
-      KV<String, ColumnPair> kv = it.next();
+      Map.Entry<String, ColumnPair> kv = it.next();
       String key = kv.getKey();
       ColumnPair columnPair = kv.getValue();
 
@@ -180,8 +179,7 @@ public class IndexCorrelationBenchmark {
   public void runQueriesBenchmark() throws Exception {
 
     final ColumnStoreMetadata storeMetadata = CreateColumnStore.readMetadata(inputPath);
-    final StringObjectKVDB<ColumnPair> columnStore =
-        CreateColumnStore.KVColumnStore.create(inputPath, storeMetadata.dbType, true);
+    final KVColumnStore columnStore = KVColumnStore.create(inputPath, storeMetadata.dbType, true);
 
     QueryStats querySample = readQuerySample(outputPath);
     runQueries(columnStore, querySample, BenchmarkParams.parse(this.params));
@@ -190,7 +188,7 @@ public class IndexCorrelationBenchmark {
 
   /** Execute queries against the index */
   private void runQueries(
-      StringObjectKVDB<ColumnPair> columnStore,
+      KVColumnStore columnStore,
       QueryStats querySample,
       List<BenchmarkParams> params)
       throws Exception {
@@ -220,7 +218,7 @@ public class IndexCorrelationBenchmark {
     for (String qid : queryIds) {
 
       ColumnPair queryColumnPair = columnStore.get(qid);
-      final int queryCard = queryColumnPair.keyValues.size();
+      final int queryCard = queryColumnPair.keyHashes().length;
 
       var allHitLists = new ArrayList<List<Hit>>();
       for (int paramIdx = 0; paramIdx < params.size(); paramIdx++) {
@@ -363,8 +361,7 @@ public class IndexCorrelationBenchmark {
   @Command(name = "timeQueries")
   public void timeQueriesBenchmark() throws Exception {
     ColumnStoreMetadata storeMetadata = CreateColumnStore.readMetadata(inputPath);
-    StringObjectKVDB<ColumnPair> columnStore =
-        CreateColumnStore.KVColumnStore.create(inputPath, storeMetadata.dbType, true);
+    KVColumnStore columnStore = KVColumnStore.create(inputPath, storeMetadata.dbType, true);
 
     QueryStats querySample = readQuerySample(outputPath);
     timeQueries(columnStore, querySample, BenchmarkParams.parse(this.params));
@@ -372,7 +369,7 @@ public class IndexCorrelationBenchmark {
   }
 
   private void timeQueries(
-      StringObjectKVDB<ColumnPair> columnStore,
+      KVColumnStore columnStore,
       QueryStats querySample,
       List<BenchmarkParams> params)
       throws Exception {
@@ -392,7 +389,7 @@ public class IndexCorrelationBenchmark {
     for (String qid : queryIds) {
 
       ColumnPair queryColumnPair = columnStore.get(qid);
-      final int queryCard = queryColumnPair.keyValues.size();
+      final int queryCard = queryColumnPair.keyHashes().length;
 
       for (int paramIdx = 0; paramIdx < params.size(); paramIdx++) {
         var index = indexes.get(paramIdx);
@@ -424,7 +421,7 @@ public class IndexCorrelationBenchmark {
   }
 
   private List<GroundTruth> computeGroundTruth(
-      StringObjectKVDB<ColumnPair> columnStore,
+      KVColumnStore columnStore,
       ColumnPair queryColumnPair,
       List<List<Hit>> allHitLists)
       throws ExecutionException, InterruptedException {
@@ -446,13 +443,13 @@ public class IndexCorrelationBenchmark {
                     (String hitId) -> {
                       ColumnPair hitColumnPair = getColumnPair(cache, columnStore, hitId);
 
-                      HashSet<String> xKeys = new HashSet<>(queryColumnPair.keyValues);
-                      HashSet<String> yKeys = new HashSet<>(hitColumnPair.keyValues);
+                      final int[] xKeys = queryColumnPair.distinctKeyHashes();
+                      final int[] yKeys = hitColumnPair.distinctKeyHashes();
 
                       var gt = new GroundTruth();
                       gt.hitId = hitId;
-                      gt.card_q_actual = xKeys.size();
-                      gt.card_c_actual = yKeys.size();
+                      gt.card_q_actual = xKeys.length;
+                      gt.card_c_actual = yKeys.length;
                       gt.overlap_qc_actual = Sets.intersectionSize(xKeys, yKeys);
                       gt.corr_actual =
                           computeCorrelation(
@@ -476,7 +473,7 @@ public class IndexCorrelationBenchmark {
     } else {
       System.out.printf(
           "WARN: no correlation computed for query.id=[%s] hit.id=[%s] join size=[%d]\n",
-          queryColumnPair.id(), hitId, queryColumnPair.keyValues.size());
+          queryColumnPair.id(), hitId, queryColumnPair.keyHashes().length);
       correlation = 0;
     }
     return correlation;
@@ -586,7 +583,7 @@ public class IndexCorrelationBenchmark {
   }
 
   private ColumnPair getColumnPair(
-      Cache<String, ColumnPair> cache, StringObjectKVDB<ColumnPair> db, String key) {
+      Cache<String, ColumnPair> cache, KVColumnStore db, String key) {
     ColumnPair cp = cache.getIfPresent(key);
     if (cp == null) {
       cp = db.get(key);
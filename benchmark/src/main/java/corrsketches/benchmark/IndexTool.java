@@ -9,9 +9,14 @@ import corrsketches.SketchType.KMVOptions;
 import corrsketches.SketchType.SketchOptions;
 import corrsketches.aggregations.AggregateFunction;
 import corrsketches.benchmark.index.Hit;
+import corrsketches.benchmark.index.MultiColumnSketchIndex;
 import corrsketches.benchmark.index.QCRSketchIndex;
 import corrsketches.benchmark.index.SketchIndex;
 import corrsketches.benchmark.index.SortBy;
+import corrsketches.benchmark.io.StreamingColumnPairReader;
+import corrsketches.benchmark.io.StreamingColumnPairReader.KeyColumns;
+import corrsketches.benchmark.io.StreamingSketchBuilder;
+import corrsketches.benchmark.io.StreamingSketchBuilder.ColumnPairSketch;
 import corrsketches.correlation.CorrelationType;
 import java.io.*;
 import java.nio.file.Files;
@@ -86,6 +91,14 @@ public class IndexTool {
       description = "The correlation estimator to be used")
   CorrelationType estimator = CorrelationType.PEARSONS;
 
+  @Option(
+      names = "--multi-column",
+      required = false,
+      description =
+          "Index one multi-column sketch per key column of each table, instead of one sketch per"
+              + " column pair (requires the STD index type)")
+  boolean multiColumn = false;
+
   public static void main(String[] args) {
     System.exit(new CommandLine(new IndexTool()).execute(args));
   }
@@ -94,6 +107,14 @@ public class IndexTool {
   public void buildIndex() throws Exception {
     var allTables = Tables.findAllTablesRelative(inputPath);
     var indexPath = Paths.get(outputPath, "index").toString();
+    if (multiColumn) {
+      final BenchmarkParams benchmarkParams = BenchmarkParams.parseValue(this.params);
+      var index = openMultiColumnIndex(indexPath, benchmarkParams, false);
+      buildMultiColumnIndex(inputPath, allTables, minRows, columnTypes, index);
+      index.close();
+      System.out.println("Done.");
+      return;
+    }
     var index = createIndex(this.params, indexPath);
     buildIndex(inputPath, allTables, minRows, columnTypes, index);
     index.close();
@@ -123,24 +144,61 @@ public class IndexTool {
       final double percent = i / (double) allTables.size() * 100;
       System.out.printf("table: %s\n", tablePath);
       String filepath = Paths.get(basePath, tablePath).toString();
-      Iterator<ColumnPair> columnPairs =
-          Tables.readColumnPairs(filepath, minRows, Set.of(columnTypes));
-      if (!columnPairs.hasNext()) {
+      // the sketches are built while the table is streamed, so it is never fully loaded in memory
+      List<ColumnPairSketch> sketches;
+      try {
+        sketches =
+            new StreamingSketchBuilder(index.sketchBuilder())
+                .build(filepath, minRows, Set.of(columnTypes));
+      } catch (Exception e) {
+        System.out.println("\nFailed to read dataset from file: " + filepath);
+        e.printStackTrace(System.out);
+        continue;
+      }
+      if (sketches.isEmpty()) {
         continue;
       }
-      while (columnPairs.hasNext()) {
+      for (ColumnPairSketch cps : sketches) {
         System.out.printf(
             "[%.2f%%] table %d out of %d. column pair: %d\n",
             percent, i, allTables.size(), columPairCount);
-        ColumnPair cp = columnPairs.next();
-        String id = String.format("%s/%s:%s", cp.datasetId, cp.keyName, cp.columnName);
-        index.index(id, cp);
+        String id = String.format("%s/%s:%s", cps.datasetId, cps.keyName, cps.columnName);
+        index.index(id, cps.sketch);
         columPairCount++;
       }
       i++;
     }
   }
 
+  private static void buildMultiColumnIndex(
+      String basePath,
+      List<String> allTables,
+      int minRows,
+      ColumnType[] columnTypes,
+      MultiColumnSketchIndex index)
+      throws IOException {
+    System.out.println("Indexing all key columns...");
+    int i = 1;
+    int keyColumnCount = 0;
+    System.out.printf("Total tables: %d\n", allTables.size());
+    for (var tablePath : allTables) {
+      final double percent = i / (double) allTables.size() * 100;
+      System.out.printf("table: %s\n", tablePath);
+      String filepath = Paths.get(basePath, tablePath).toString();
+      List<KeyColumns> keyColumns =
+          StreamingColumnPairReader.readKeyColumns(filepath, minRows, Set.of(columnTypes));
+      for (KeyColumns kc : keyColumns) {
+        System.out.printf(
+            "[%.2f%%] table %d out of %d. key column: %d\n",
+            percent, i, allTables.size(), keyColumnCount);
+        String id = String.format("%s/%s", kc.datasetId, kc.keyName);
+        index.index(id, kc.columnNames, kc.keyHashes, kc.columns);
+        keyColumnCount++;
+      }
+      i++;
+    }
+  }
+
   @Command(name = "queryIndex")
   public void queryIndex() throws Exception {
     if (queryPair == null || queryPair.isEmpty()) {
@@ -149,15 +207,21 @@ public class IndexTool {
     }
     var indexPath = Paths.get(inputPath, "index").toString();
     final BenchmarkParams benchmarkParams = BenchmarkParams.parseValue(this.params);
-    var index = openSketchIndex(indexPath, benchmarkParams, true);
 
-    var table = Tables.readTable(queryFilePath);
     String key = queryPair.split(":")[0];
     String value = queryPair.split(":")[1];
-    var queryCP =
-        Tables.createColumnPair(queryFilePath, table.categoricalColumn(key), table.column(value));
+    var queryCP = Tables.readColumnPair(queryFilePath, key, value);
 
-    List<Hit> hits = index.search(queryCP, topK);
+    final List<Hit> hits;
+    if (multiColumn) {
+      var index = openMultiColumnIndex(indexPath, benchmarkParams, true);
+      hits = index.search(queryCP, topK);
+      index.close();
+    } else {
+      var index = openSketchIndex(indexPath, benchmarkParams, true);
+      hits = index.search(queryCP, topK);
+      index.close();
+    }
 
     if (outputPath != null && !outputPath.isEmpty()) {
       Path path = Paths.get(outputPath, "query-" + queryPair + "-" + estimator + ".csv");
@@ -169,7 +233,6 @@ public class IndexTool {
       writeToStream(hits, System.out);
     }
 
-    index.close();
     System.out.println("Done.");
   }
 
@@ -216,6 +279,40 @@ public class IndexTool {
     }
   }
 
+  private MultiColumnSketchIndex openMultiColumnIndex(
+      String outputPath, BenchmarkParams params, boolean readonly) throws IOException {
+    if (params.indexType != IndexType.STD) {
+      throw new IllegalArgumentException(
+          "Multi-column indexes only support the STD index type, but got: " + params.indexType);
+    }
+    final double budget;
+    switch (params.sketchOptions.type) {
+      case KMV:
+        budget = ((KMVOptions) params.sketchOptions).k;
+        break;
+      case GKMV:
+        budget = ((GKMVOptions) params.sketchOptions).t;
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported sketch type: " + params.sketchOptions.type);
+    }
+    // multi-column indexes use a different document layout, so they are stored separately
+    String indexPath =
+        Paths.get(outputPath, "indexes", "MULTI:" + params.sketchOptions.name()).toString();
+    try {
+      return new MultiColumnSketchIndex(
+          indexPath,
+          params.sketchOptions.type,
+          budget,
+          aggregate,
+          estimator,
+          params.sortBy,
+          readonly);
+    } finally {
+      System.out.printf("Opened multi-column index at: %s\n", indexPath);
+    }
+  }
+
   private static String indexPath(
       String outputPath, IndexType indexType, SketchOptions sketchOptions) {
     return Paths.get(outputPath, "indexes", indexType.toString() + ":" + sketchOptions.name())
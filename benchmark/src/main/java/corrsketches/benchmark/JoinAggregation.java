@@ -2,47 +2,54 @@ package corrsketches.benchmark;
 
 import corrsketches.aggregations.AggregateFunction;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
-import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 public class JoinAggregation {
 
+  /**
+   * Aggregates the rows of each key of the given column pair using each of the functions. The
+   * rows are grouped by key hash, so the resulting column pairs only have the hashes of the keys,
+   * sorted in increasing order.
+   */
   public static List<ColumnPair> aggregateColumnPair(
       ColumnPair cp, List<AggregateFunction> functions) {
 
-    final Map<String, DoubleArrayList> index = createKeyIndex(cp);
+    final ColumnPair sorted = cp.sortedByKey();
+    final int[] keys = sorted.keyHashes();
 
-    int i;
-    double[][] aggregatedValues = new double[functions.size()][];
-    for (i = 0; i < functions.size(); i++) {
-      aggregatedValues[i] = new double[index.size()];
+    final IntArrayList aggregatedKeys = new IntArrayList();
+    final DoubleArrayList[] aggregatedValues = new DoubleArrayList[functions.size()];
+    for (int fnIdx = 0; fnIdx < functions.size(); fnIdx++) {
+      aggregatedValues[fnIdx] = new DoubleArrayList();
     }
 
-    i = 0;
-    String[] aggregatedKeys = new String[index.size()];
-    for (Entry<String, DoubleArrayList> entry : index.entrySet()) {
-      aggregatedKeys[i] = entry.getKey();
-      for (int f = 0, functionsSize = functions.size(); f < functionsSize; f++) {
-        final AggregateFunction fn = functions.get(f);
-        aggregatedValues[f][i] = fn.aggregate(entry.getValue());
+    final DoubleArrayList rows = new DoubleArrayList();
+    for (int i = 0; i < keys.length; ) {
+      final int end = endOfKey(keys, i);
+      rows.clear();
+      rows.addElements(0, sorted.columnValues, i, end - i);
+      aggregatedKeys.add(keys[i]);
+      for (int fnIdx = 0; fnIdx < functions.size(); fnIdx++) {
+        aggregatedValues[fnIdx].add(functions.get(fnIdx).aggregate(rows));
       }
-      i++;
+      i = end;
     }
-    List<ColumnPair> results = new ArrayList<>();
-    for (i = 0; i < functions.size(); i++) {
+
+    final int[] keyHashes = aggregatedKeys.toIntArray();
+    List<ColumnPair> results = new ArrayList<>(functions.size());
+    for (int fnIdx = 0; fnIdx < functions.size(); fnIdx++) {
       results.add(
           new ColumnPair(
               cp.datasetId,
               cp.keyName,
-              Arrays.asList(aggregatedKeys),
+              keyHashes,
               cp.columnName,
-              functions.get(i).get().getOutputType(cp.columnValueType),
-              aggregatedValues[i]));
+              functions.get(fnIdx).getOutputType(cp.columnValueType),
+              aggregatedValues[fnIdx].toDoubleArray()));
     }
     return results;
   }
@@ -51,51 +58,79 @@ public class JoinAggregation {
       ColumnPair columnA, ColumnPair columnB, List<AggregateFunction> functions) {
 
     // TODO: Aggregate left-side of the table?
-    // FIXME: aggregate using given functions
-
-    // create index for primary key in column B
-    Map<String, DoubleArrayList> indexB = createKeyIndex(columnB);
-
-    List<ColumnPair> aggregationsColumnA = aggregateColumnPair(columnA, functions);
-
-    List<NumericJoinAggregation> results = new ArrayList<>(functions.size());
 
+    // The join is computed over the key hashes as a merge join of the columns sorted by key (which
+    // they already are when read from the column store). The rows of each key are aggregated
+    // using each function on both sides of the join.
+    final ColumnPair sortedA = columnA.sortedByKey();
+    final ColumnPair sortedB = columnB.sortedByKey();
+    final int[] keysA = sortedA.keyHashes();
+    final int[] keysB = sortedB.keyHashes();
+
+    // numeric values for columns A and B for each aggregate function
+    final DoubleArrayList[] joinValuesA = new DoubleArrayList[functions.size()];
+    final DoubleArrayList[] joinValuesB = new DoubleArrayList[functions.size()];
     for (int fnIdx = 0; fnIdx < functions.size(); fnIdx++) {
-      final AggregateFunction fn = functions.get(fnIdx);
-
-      ColumnPair aggregatedColumnA = aggregationsColumnA.get(fnIdx);
-
-      // numeric values for column A
-      DoubleList joinValuesA = new DoubleArrayList(aggregatedColumnA.keyValues.size());
-
-      // numeric values for each aggregation of column B
-      DoubleList joinValuesB = new DoubleArrayList();
+      joinValuesA[fnIdx] = new DoubleArrayList();
+      joinValuesB[fnIdx] = new DoubleArrayList();
+    }
 
-      // compute aggregation vectors of joined values for each join key
-      for (int i = 0; i < aggregatedColumnA.keyValues.size(); i++) {
-        String keyA = aggregatedColumnA.keyValues.get(i);
-        final double valueA = aggregatedColumnA.columnValues[i];
-        final DoubleArrayList rowsB = indexB.get(keyA);
-        if (rowsB != null && !rowsB.isEmpty()) {
-          // 1:n mapping, we aggregate joined values to a single value.
-          joinValuesA.add(valueA);
-          joinValuesB.add(fn.aggregate(rowsB));
+    final DoubleArrayList rowsA = new DoubleArrayList();
+    final DoubleArrayList rowsB = new DoubleArrayList();
+    int i = 0;
+    int j = 0;
+    while (i < keysA.length && j < keysB.length) {
+      final int endA = endOfKey(keysA, i);
+      final int endB = endOfKey(keysB, j);
+      if (keysA[i] < keysB[j]) {
+        i = endA;
+      } else if (keysA[i] > keysB[j]) {
+        j = endB;
+      } else {
+        // n:m mapping, we aggregate joined values on each side to a single value.
+        rowsA.clear();
+        rowsA.addElements(0, sortedA.columnValues, i, endA - i);
+        rowsB.clear();
+        rowsB.addElements(0, sortedB.columnValues, j, endB - j);
+        for (int fnIdx = 0; fnIdx < functions.size(); fnIdx++) {
+          final AggregateFunction fn = functions.get(fnIdx);
+          joinValuesA[fnIdx].add(fn.aggregate(rowsA));
+          joinValuesB[fnIdx].add(fn.aggregate(rowsB));
         }
+        i = endA;
+        j = endB;
       }
-      results.add(
-          new NumericJoinAggregation(joinValuesA.toDoubleArray(), joinValuesB.toDoubleArray(), fn));
     }
 
+    List<NumericJoinAggregation> results = new ArrayList<>(functions.size());
+    for (int fnIdx = 0; fnIdx < functions.size(); fnIdx++) {
+      results.add(
+          new NumericJoinAggregation(
+              joinValuesA[fnIdx].toDoubleArray(),
+              joinValuesB[fnIdx].toDoubleArray(),
+              functions.get(fnIdx)));
+    }
     return results;
   }
 
-  protected static Map<String, DoubleArrayList> createKeyIndex(ColumnPair column) {
-    Map<String, DoubleArrayList> index = new HashMap<>();
-    for (int i = 0; i < column.keyValues.size(); i++) {
-      DoubleArrayList doubles = index.get(column.keyValues.get(i));
+  /** Returns the end (exclusive) of the run of rows with the same key that starts at start. */
+  private static int endOfKey(int[] sortedKeys, int start) {
+    int end = start + 1;
+    while (end < sortedKeys.length && sortedKeys[end] == sortedKeys[start]) {
+      end++;
+    }
+    return end;
+  }
+
+  /** Creates an index from the hash of each key to the values of its rows. */
+  protected static Int2ObjectMap<DoubleArrayList> createKeyHashIndex(ColumnPair column) {
+    final int[] keys = column.keyHashes();
+    final Int2ObjectMap<DoubleArrayList> index = new Int2ObjectOpenHashMap<>();
+    for (int i = 0; i < keys.length; i++) {
+      DoubleArrayList doubles = index.get(keys[i]);
       if (doubles == null) {
         doubles = new DoubleArrayList();
-        index.put(column.keyValues.get(i), doubles);
+        index.put(keys[i], doubles);
       }
       doubles.add(column.columnValues[i]);
     }
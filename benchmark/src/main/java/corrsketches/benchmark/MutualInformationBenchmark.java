@@ -18,7 +18,6 @@ import corrsketches.benchmark.utils.Sets;
 import corrsketches.correlation.*;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -86,10 +85,10 @@ public class MutualInformationBenchmark extends BaseBenchmark<Result> {
       List<AggregateFunction> rightAggregations,
       Result result) {
 
-    HashSet<String> xKeys = new HashSet<>(x.keyValues);
-    HashSet<String> yKeys = new HashSet<>(y.keyValues);
-    result.cardx_actual = xKeys.size();
-    result.cardy_actual = yKeys.size();
+    final int[] xKeys = x.distinctKeyHashes();
+    final int[] yKeys = y.distinctKeyHashes();
+    result.cardx_actual = xKeys.length;
+    result.cardy_actual = yKeys.length;
     result.interxy_actual = Sets.intersectionSize(xKeys, yKeys);
     result.unionxy_actual = Sets.unionSize(xKeys, yKeys);
 
@@ -101,11 +100,11 @@ public class MutualInformationBenchmark extends BaseBenchmark<Result> {
     // correlation ground-truth after join-aggregations
     List<AggregateFunction> rightAggs =
         rightAggregations.stream()
-            .filter(agg -> agg.get().acceptsInputColumnType(x.columnValueType))
+            .filter(agg -> agg.acceptsInputColumnType(x.columnValueType))
             .collect(Collectors.toList());
 
     return leftAggregations.stream()
-        .filter(leftAgg -> leftAgg.get().acceptsInputColumnType(y.columnValueType))
+        .filter(leftAgg -> leftAgg.acceptsInputColumnType(y.columnValueType))
         .flatMap(
             leftAgg -> computeMutualInfoAfterFullJoin(y, x, leftAgg, rightAggs, result).stream())
         .collect(Collectors.toList());
@@ -116,7 +115,7 @@ public class MutualInformationBenchmark extends BaseBenchmark<Result> {
     return CorrelationSketch.builder()
         .aggregateFunction(function)
         .sketchType(sketchParams.type, sketchParams.budget)
-        .build(cp.keyValues, cp.columnValues, cp.columnValueType);
+        .build(cp.keyHashes(), cp.columnValues, cp.columnValueType);
   }
 
   public static Result computeSketchStatistics(
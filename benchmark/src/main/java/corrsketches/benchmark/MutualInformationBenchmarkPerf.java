@@ -21,6 +21,7 @@ import corrsketches.benchmark.utils.Sets;
 import corrsketches.correlation.*;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -89,8 +90,8 @@ public class MutualInformationBenchmarkPerf
       List<AggregateFunction> rightAggregations,
       Result result) {
 
-    HashSet<String> xKeys = new HashSet<>(x.keyValues);
-    HashSet<String> yKeys = new HashSet<>(y.keyValues);
+    final int[] xKeys = x.distinctKeyHashes();
+    final int[] yKeys = y.distinctKeyHashes();
     result.interxy_actual = Sets.intersectionSize(xKeys, yKeys);
 
     // No need compute any statistics when there is no intersection
@@ -101,11 +102,11 @@ public class MutualInformationBenchmarkPerf
     // correlation ground-truth after join-aggregations
     List<AggregateFunction> rightAggs =
         rightAggregations.stream()
-            .filter(agg -> agg.get().acceptsInputColumnType(x.columnValueType))
+            .filter(agg -> agg.acceptsInputColumnType(x.columnValueType))
             .collect(Collectors.toList());
 
     return leftAggregations.stream()
-        .filter(leftAgg -> leftAgg.get().acceptsInputColumnType(y.columnValueType))
+        .filter(leftAgg -> leftAgg.acceptsInputColumnType(y.columnValueType))
         .flatMap(leftAgg -> timeMutualInfoAfterFullJoin(y, x, leftAgg, rightAggs, result).stream())
         .collect(Collectors.toList());
   }
@@ -115,7 +116,7 @@ public class MutualInformationBenchmarkPerf
     return CorrelationSketch.builder()
         .aggregateFunction(function)
         .sketchType(sketchParams.type, sketchParams.budget)
-        .build(cp.keyValues, cp.columnValues, cp.columnValueType);
+        .build(cp.keyHashes(), cp.columnValues, cp.columnValueType);
   }
 
   public static Result computeSketchStatistics(
@@ -197,7 +198,8 @@ public class MutualInformationBenchmarkPerf
       ColumnPair columnA, ColumnPair columnB, List<AggregateFunction> functions) {
 
     // create index for primary key in column B
-    Map<String, DoubleArrayList> indexB = JoinAggregation.createKeyIndex(columnB);
+    Int2ObjectMap<DoubleArrayList> indexB = JoinAggregation.createKeyHashIndex(columnB);
+    final int[] keysA = columnA.keyHashes();
 
     List<Aggregation> results = new ArrayList<>(functions.size());
     long time0;
@@ -208,19 +210,18 @@ public class MutualInformationBenchmarkPerf
       var joinStats = new JoinStats();
       time0 = System.nanoTime();
 
-      // Join keys for column A
-      List<String> joinKeysA = new ArrayList<>();
+      // Join keys for column A (only available if column A was not read with hashed keys)
+      List<String> joinKeysA = columnA.keyValues == null ? null : new ArrayList<>();
 
       // numeric values for column A
-      DoubleList joinValuesA = new DoubleArrayList(columnA.keyValues.size());
+      DoubleList joinValuesA = new DoubleArrayList(keysA.length);
 
       // numeric values for each aggregation of column B
       DoubleList joinValuesB = new DoubleArrayList();
       // compute aggregation vectors of joined values for each join key
-      for (int i = 0; i < columnA.keyValues.size(); i++) {
-        String keyA = columnA.keyValues.get(i);
+      for (int i = 0; i < keysA.length; i++) {
         final double valueA = columnA.columnValues[i];
-        final DoubleArrayList rowsB = indexB.get(keyA);
+        final DoubleArrayList rowsB = indexB.get(keysA[i]);
         if (rowsB == null || rowsB.isEmpty()) {
           joinStats.join_1to0++;
         } else {
@@ -231,7 +232,9 @@ public class MutualInformationBenchmarkPerf
             // 1:n mapping
             joinStats.join_1toN++;
           }
-          joinKeysA.add(keyA);
+          if (joinKeysA != null) {
+            joinKeysA.add(columnA.keyValues.get(i));
+          }
           joinValuesA.add(valueA);
           // We need to aggregate even for 1:1 mappings, because some
           // aggregate functions may transform the original value (e.g., COUNT)
@@ -242,7 +245,7 @@ public class MutualInformationBenchmarkPerf
       joinStats.join_time = System.nanoTime() - time0;
       // In a LEFT join, the type of aggregated column B may be different from the type of the input
       // column B. (As opposed to column A, which is not aggregated, and thus keeps the same type.)
-      ColumnType joinValuesBType = fn.get().getOutputType(columnB.columnValueType);
+      ColumnType joinValuesBType = fn.getOutputType(columnB.columnValueType);
       results.add(
           new Aggregation(
               joinKeysA,
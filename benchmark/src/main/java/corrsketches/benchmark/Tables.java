@@ -1,22 +1,34 @@
 package corrsketches.benchmark;
 
 import corrsketches.ColumnType;
+import corrsketches.benchmark.io.ColumnBatch;
+import corrsketches.benchmark.io.TableBatchReader;
+import corrsketches.benchmark.io.TableBatchReader.ColumnSchema;
 import corrsketches.util.Hashes;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import net.tlabs.tablesaw.parquet.TablesawParquetReadOptions;
 import net.tlabs.tablesaw.parquet.TablesawParquetReader;
 import tech.tablesaw.api.CategoricalColumn;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.LongColumn;
 import tech.tablesaw.api.NumericColumn;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
@@ -49,11 +61,27 @@ public class Tables {
 
   public static Iterator<ColumnPair> readColumnPairs(
       String datasetFilePath, int minRows, Set<ColumnType> columnTypes) {
+    return readColumnPairs(datasetFilePath, minRows, columnTypes, false);
+  }
+
+  /**
+   * Reads the column pairs of the given table with hashed keys only, i.e., the returned column
+   * pairs have {@link ColumnPair#keyHashes} instead of {@link ColumnPair#keyValues}. The hashes of
+   * each key column are computed once and reused by all column pairs that share the key column.
+   * This is the preferred way to read tables whose column pairs are only used to build sketches.
+   */
+  public static Iterator<ColumnPair> readHashedColumnPairs(
+      String datasetFilePath, int minRows, Set<ColumnType> columnTypes) {
+    return readColumnPairs(datasetFilePath, minRows, columnTypes, true);
+  }
+
+  private static Iterator<ColumnPair> readColumnPairs(
+      String datasetFilePath, int minRows, Set<ColumnType> columnTypes, boolean hashedKeys) {
     try {
       Table table = readTable(datasetFilePath);
       String datasetName = Paths.get(datasetFilePath).getFileName().toString();
       System.out.println("Read table: " + datasetName);
-      return readColumnPairs(datasetFilePath, table, minRows, columnTypes);
+      return readColumnPairs(datasetFilePath, table, minRows, columnTypes, hashedKeys);
     } catch (Exception e) {
       System.out.println("\nFailed to read dataset from file: " + datasetFilePath);
       e.printStackTrace(System.out);
@@ -63,6 +91,15 @@ public class Tables {
 
   public static Iterator<ColumnPair> readColumnPairs(
       String datasetName, Table df, int minRows, Set<ColumnType> valueColumnTypes) {
+    return readColumnPairs(datasetName, df, minRows, valueColumnTypes, false);
+  }
+
+  private static Iterator<ColumnPair> readColumnPairs(
+      String datasetName,
+      Table df,
+      int minRows,
+      Set<ColumnType> valueColumnTypes,
+      boolean hashedKeys) {
     System.out.println("\nDataset: " + datasetName);
 
     System.out.printf("Row count: %d \n", df.rowCount());
@@ -91,68 +128,176 @@ public class Tables {
 
     // Create a "lazy" iterator that creates one ColumnPair at a time to avoid overloading memory
     // with many large column pairs.
-    return new ColumnPairIterator(datasetName, pairs);
+    return new ColumnPairIterator(datasetName, pairs, hashedKeys);
   }
 
   public static ColumnPair createColumnPair(
       String dataset, CategoricalColumn<?> key, Column<?> column) {
+    final ColumnValues values = readValues(column, null);
+    final List<String> keyValues = new ArrayList<>(values.size);
+    for (int i = 0; i < values.size; i++) {
+      keyValues.add(key.getString(values.rows[i]));
+    }
+    return new ColumnPair(
+        dataset, key.name(), keyValues, column.name(), values.type, values.values);
+  }
 
-    List<String> keyValues = new ArrayList<>();
-    DoubleArrayList columnValues = new DoubleArrayList();
-    ColumnType valueType;
+  /**
+   * Creates a column pair whose keys are given by the precomputed hashes of all rows of the key
+   * column (see {@link #hashStrings(CategoricalColumn)}). If the value column is a string column,
+   * the hashes of its values can also be given in {@code columnHashes} to avoid hashing them again.
+   */
+  public static ColumnPair createHashedColumnPair(
+      String dataset, String keyName, int[] keyHashes, Column<?> column, int[] columnHashes) {
+    final ColumnValues values = readValues(column, columnHashes);
+    final int[] hashes = new int[values.size];
+    for (int i = 0; i < values.size; i++) {
+      hashes[i] = keyHashes[values.rows[i]];
+    }
+    return new ColumnPair(dataset, keyName, hashes, column.name(), values.type, values.values);
+  }
+
+  /**
+   * Computes the murmur3 hashes of the string representation of all rows of the given column. The
+   * hash of each distinct string is computed only once.
+   */
+  public static int[] hashStrings(CategoricalColumn<?> column) {
+    final int[] hashes = new int[column.size()];
+    final Object2IntOpenHashMap<String> distinctHashes = new Object2IntOpenHashMap<>();
+    for (int i = 0; i < hashes.length; i++) {
+      final String value = column.getString(i);
+      int hash = distinctHashes.getOrDefault(value, 0);
+      if (hash == 0 && !distinctHashes.containsKey(value)) {
+        hash = Hashes.murmur3_32(value);
+        distinctHashes.put(value, hash);
+      }
+      hashes[i] = hash;
+    }
+    return hashes;
+  }
+
+  /**
+   * Reads the non-missing values of the given column directly from its primitive storage, without
+   * boxing. String values are replaced by their hashes (stored as doubles), which are taken from
+   * {@code stringHashes} when it is not null.
+   */
+  private static ColumnValues readValues(Column<?> column, int[] stringHashes) {
+    final int n = column.size();
+    final int[] rows = new int[n];
+    final double[] values = new double[n];
+    int size = 0;
+    ColumnType valueType = ColumnType.NUMERICAL;
     if (column.type() == tech.tablesaw.api.ColumnType.INTEGER) {
-      valueType = ColumnType.NUMERICAL;
-      Integer[] ints = (Integer[]) column.asObjectArray();
-      for (int i = 0; i < ints.length; i++) {
-        if (ints[i] != null) {
-          columnValues.add(ints[i]);
-          keyValues.add(key.getString(i));
+      IntColumn ints = (IntColumn) column;
+      for (int i = 0; i < n; i++) {
+        if (!ints.isMissing(i)) {
+          rows[size] = i;
+          values[size++] = ints.getInt(i);
         }
       }
     } else if (column.type() == tech.tablesaw.api.ColumnType.LONG) {
-      valueType = ColumnType.NUMERICAL;
-      Long[] longs = (Long[]) column.asObjectArray();
-      for (int i = 0; i < longs.length; i++) {
-        if (longs[i] != null) {
-          columnValues.add(longs[i]);
-          keyValues.add(key.getString(i));
+      LongColumn longs = (LongColumn) column;
+      for (int i = 0; i < n; i++) {
+        if (!longs.isMissing(i)) {
+          rows[size] = i;
+          values[size++] = longs.getLong(i);
         }
       }
     } else if (column.type() == tech.tablesaw.api.ColumnType.FLOAT) {
-      valueType = ColumnType.NUMERICAL;
-      Float[] floats = (Float[]) column.asObjectArray();
-      for (int i = 0; i < floats.length; i++) {
-        if (floats[i] != null) {
-          columnValues.add(floats[i]);
-          keyValues.add(key.getString(i));
+      FloatColumn floats = (FloatColumn) column;
+      for (int i = 0; i < n; i++) {
+        if (!floats.isMissing(i)) {
+          rows[size] = i;
+          values[size++] = floats.getFloat(i);
         }
       }
     } else if (column.type() == tech.tablesaw.api.ColumnType.DOUBLE) {
-      valueType = ColumnType.NUMERICAL;
-      Double[] doubles = (Double[]) column.asObjectArray();
-      for (int i = 0; i < doubles.length; i++) {
-        if (doubles[i] != null) {
-          columnValues.add(doubles[i].doubleValue());
-          keyValues.add(key.getString(i));
+      DoubleColumn doubles = (DoubleColumn) column;
+      for (int i = 0; i < n; i++) {
+        if (!doubles.isMissing(i)) {
+          rows[size] = i;
+          values[size++] = doubles.getDouble(i);
         }
       }
     } else if (column.type() == tech.tablesaw.api.ColumnType.STRING) {
       valueType = ColumnType.CATEGORICAL;
-      StringColumn values = column.asStringColumn();
-      for (int i = 0; i < values.size(); i++) {
-        if (!values.isMissing(i)) {
+      StringColumn strings = column.asStringColumn();
+      for (int i = 0; i < n; i++) {
+        if (!strings.isMissing(i)) {
           // we store the text hash (integer) as double variables
-          columnValues.add(Hashes.murmur3_32(values.get(i)));
-          keyValues.add(key.getString(i));
+          rows[size] = i;
+          values[size++] =
+              stringHashes != null ? stringHashes[i] : Hashes.murmur3_32(strings.get(i));
         }
       }
     } else {
       throw new IllegalArgumentException(
           String.format("Column of type %s can't be cast to double[]", column.type().toString()));
     }
+    return new ColumnValues(valueType, rows, Arrays.copyOf(values, size), size);
+  }
+
+  /** The non-missing values of a column and the rows where they are located. */
+  private static class ColumnValues {
 
+    final ColumnType type;
+    final int[] rows;
+    final double[] values;
+    final int size;
+
+    ColumnValues(ColumnType type, int[] rows, double[] values, int size) {
+      this.type = type;
+      this.rows = rows;
+      this.values = values;
+      this.size = size;
+    }
+  }
+
+  /**
+   * Reads a single column pair of the given table file with hashed keys. Only the key and value
+   * columns are read from the file, in batches of rows, so the table is not loaded in memory.
+   */
+  public static ColumnPair readColumnPair(String datasetFilePath, String keyName, String columnName)
+      throws IOException {
+    ColumnSchema key = null;
+    ColumnSchema value = null;
+    for (ColumnSchema column : TableBatchReader.readSchema(datasetFilePath)) {
+      if (column.name.equals(keyName)) {
+        key = column;
+      }
+      if (column.name.equals(columnName)) {
+        value = column;
+      }
+    }
+    if (key == null || key.type != ColumnType.CATEGORICAL) {
+      throw new IllegalArgumentException("Table does not contain key column: " + keyName);
+    }
+    if (value == null) {
+      throw new IllegalArgumentException("Table does not contain value column: " + columnName);
+    }
+
+    final IntArrayList keyHashes = new IntArrayList();
+    final DoubleArrayList values = new DoubleArrayList();
+    try (TableBatchReader reader =
+        TableBatchReader.open(datasetFilePath, Arrays.asList(key, value))) {
+      final ColumnBatch batch = reader.newBatch(TableBatchReader.DEFAULT_BATCH_SIZE);
+      while (reader.read(batch) > 0) {
+        for (int i = 0; i < batch.size; i++) {
+          final double v = batch.value(1, i);
+          if (!Double.isNaN(v)) {
+            keyHashes.add(batch.hashes[0][i]);
+            values.add(v);
+          }
+        }
+      }
+    }
     return new ColumnPair(
-        dataset, key.name(), keyValues, column.name(), valueType, columnValues.toDoubleArray());
+        datasetFilePath,
+        keyName,
+        keyHashes.toIntArray(),
+        columnName,
+        value.type,
+        values.toDoubleArray());
   }
 
   public static Table readTable(String datasetFilePath) throws IOException {
@@ -234,11 +379,19 @@ public class Tables {
 
     private final String datasetName;
     private final Iterator<ColumnEntry> it;
+    private final boolean hashedKeys;
+    /** The hashes of the string columns of the table, computed once per column. */
+    private final Map<Column<?>, int[]> columnHashes = new IdentityHashMap<>();
     private ColumnEntry nextPair;
 
     public ColumnPairIterator(String datasetName, List<ColumnEntry> pairs) {
+      this(datasetName, pairs, false);
+    }
+
+    public ColumnPairIterator(String datasetName, List<ColumnEntry> pairs, boolean hashedKeys) {
       this.datasetName = datasetName;
       this.it = pairs.iterator();
+      this.hashedKeys = hashedKeys;
       this.nextPair = this.it.next();
     }
 
@@ -251,7 +404,20 @@ public class Tables {
     public ColumnPair next() {
       ColumnEntry tmp = nextPair;
       this.nextPair = it.hasNext() ? it.next() : null;
-      return Tables.createColumnPair(datasetName, tmp.key, tmp.column);
+      if (!hashedKeys) {
+        return Tables.createColumnPair(datasetName, tmp.key, tmp.column);
+      }
+      final int[] keyHashes = hashes(tmp.key);
+      final int[] valueHashes =
+          tmp.column.type() == tech.tablesaw.api.ColumnType.STRING
+              ? hashes((CategoricalColumn<?>) tmp.column)
+              : null;
+      return Tables.createHashedColumnPair(
+          datasetName, tmp.key.name(), keyHashes, tmp.column, valueHashes);
+    }
+
+    private int[] hashes(CategoricalColumn<?> column) {
+      return columnHashes.computeIfAbsent(column, c -> Tables.hashStrings(column));
     }
   }
 }
@@ -2,31 +2,50 @@ package corrsketches.benchmark.datasource;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Sets;
+import com.google.common.cache.CacheStats;
 import corrsketches.benchmark.ColumnPair;
 import corrsketches.benchmark.CreateColumnStore;
 import corrsketches.benchmark.CreateColumnStore.ColumnStoreMetadata;
+import corrsketches.benchmark.CreateColumnStore.KVColumnStore;
 import corrsketches.benchmark.pairwise.ColumnCombination;
 import corrsketches.benchmark.pairwise.TablePair;
 import corrsketches.benchmark.utils.ReservoirSampler;
-import edu.nyu.engineering.vida.kvdb4j.api.StringObjectKVDB;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
 
 public class DBSource {
 
+  /** The default number of columns of each block used by the combination scheduler. */
+  public static final int DEFAULT_BLOCK_SIZE = 64;
+
   ColumnStoreMetadata storeMetadata;
-  StringObjectKVDB<ColumnPair> columnStore;
-  Cache<String, ColumnPair> cache = CacheBuilder.newBuilder().softValues().build();
+  KVColumnStore columnStore;
+  Cache<String, ColumnPair> cache;
 
   public DBSource(String inputPath) throws IOException {
+    this(inputPath, Runtime.getRuntime().maxMemory() / 4);
+  }
+
+  /**
+   * Opens the column store at the given path. The column pairs read from the store are kept in a
+   * cache that holds at most (approximately) {@code cacheSizeBytes} bytes, and that evicts the
+   * least recently used column pairs when it is full.
+   */
+  public DBSource(String inputPath, long cacheSizeBytes) throws IOException {
     final boolean readonly = true;
     storeMetadata = CreateColumnStore.readMetadata(inputPath);
-    columnStore = CreateColumnStore.KVColumnStore.create(inputPath, storeMetadata.dbType, readonly);
+    columnStore = KVColumnStore.create(inputPath, storeMetadata.dbType, readonly);
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(cacheSizeBytes)
+            .weigher((String id, ColumnPair cp) -> weigh(cp))
+            .recordStats()
+            .build();
     System.out.println(
         "> Found  "
             + storeMetadata.columnSets.size()
@@ -36,15 +55,24 @@ public class DBSource {
 
   public List<DBColumnCombination> createColumnCombinations(
       Boolean intraDatasetCombinations, int maxColumnsSamples) {
+    return createColumnCombinations(
+        intraDatasetCombinations, maxColumnsSamples, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Creates the column combinations in block nested-loop order (see {@link
+   * #blockNestedLoopPairs(List, int, BiFunction)}), so that the combinations that use each column
+   * are processed close to each other while the column is still in the cache.
+   */
+  public List<DBColumnCombination> createColumnCombinations(
+      Boolean intraDatasetCombinations, int maxColumnsSamples, int blockSize) {
 
     List<DBColumnCombination> result = new ArrayList<>();
 
     if (intraDatasetCombinations) {
       for (Set<String> c : storeMetadata.columnSets) {
-        Set<Set<String>> intraCombinations = Sets.combinations(c, 2);
-        for (Set<String> columnPair : intraCombinations) {
-          result.add(createColumnCombination(columnPair));
-        }
+        List<String> columns = new ArrayList<>(new TreeSet<>(c));
+        result.addAll(blockNestedLoopPairs(columns, blockSize, DBColumnCombination::new));
       }
     } else {
       // If there are more columns than maxColumnsSamples, create a sample of size maxColumnsSamples
@@ -54,34 +82,70 @@ public class DBSource {
           sampler.sample(s);
         }
       }
-      Set<String> columnsSet = new HashSet<>(sampler.getSamples());
-      Set<Set<String>> interCombinations = Sets.combinations(columnsSet, 2);
-      for (Set<String> columnPair : interCombinations) {
-        result.add(createColumnCombination(columnPair));
-      }
+      List<String> columns = new ArrayList<>(new TreeSet<>(sampler.getSamples()));
+      result.addAll(blockNestedLoopPairs(columns, blockSize, DBColumnCombination::new));
     }
 
     return result;
   }
 
-  private DBColumnCombination createColumnCombination(Set<String> columnPair) {
-    Iterator<String> it = columnPair.iterator();
-    String x = it.next();
-    String y = it.next();
-    return new DBColumnCombination(x, y);
+  /**
+   * Creates all pairs of distinct columns in block nested-loop order: the columns are split into
+   * blocks of {@code blockSize} columns, and all pairs between the columns of two blocks are
+   * created before moving on to the next pair of blocks. This way, each column is used by many
+   * consecutive pairs, and a cache that holds two blocks of columns needs to load each column only
+   * once per block pair, instead of (almost) once per pair when the pairs are in arbitrary order.
+   */
+  static <T> List<T> blockNestedLoopPairs(
+      List<String> columns, int blockSize, BiFunction<String, String, T> createPair) {
+    final int n = columns.size();
+    final List<T> pairs = new ArrayList<>((int) Math.min((long) n * (n - 1) / 2, 1 << 24));
+    for (int xBlock = 0; xBlock < n; xBlock += blockSize) {
+      final int xEnd = Math.min(xBlock + blockSize, n);
+      for (int yBlock = xBlock; yBlock < n; yBlock += blockSize) {
+        final int yEnd = Math.min(yBlock + blockSize, n);
+        for (int x = xBlock; x < xEnd; x++) {
+          for (int y = Math.max(yBlock, x + 1); y < yEnd; y++) {
+            pairs.add(createPair.apply(columns.get(x), columns.get(y)));
+          }
+        }
+      }
+    }
+    return pairs;
   }
 
-  private ColumnPair getColumnPair(
-      Cache<String, ColumnPair> cache, StringObjectKVDB<ColumnPair> db, String key) {
-    ColumnPair cp = cache.getIfPresent(key);
-    if (cp == null) {
-      cp = db.get(key);
-      cache.put(key, cp);
+  /**
+   * Estimates the number of bytes used by a column pair read from the store: the key hashes, the
+   * distinct key hashes computed by the benchmarks, and the values.
+   */
+  static int weigh(ColumnPair cp) {
+    final long bytes = 64 + 16L * cp.columnValues.length;
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  private ColumnPair getColumnPair(String key) {
+    try {
+      // concurrent requests for the same column wait for a single load
+      return cache.get(key, () -> columnStore.get(key));
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Failed to read column pair: " + key, e.getCause());
     }
-    return cp;
+  }
+
+  /** Returns the statistics of the column pair cache, e.g., its hit rate and evictions. */
+  public CacheStats cacheStats() {
+    return cache.stats();
   }
 
   public void close() {
+    final CacheStats stats = cache.stats();
+    System.out.printf(
+        "> Column cache: requests=%d hit-rate=%.3f loads=%d evictions=%d avg-load-time=%.3fms\n",
+        stats.requestCount(),
+        stats.hitRate(),
+        stats.loadCount(),
+        stats.evictionCount(),
+        stats.averageLoadPenalty() / 1e6);
     columnStore.close();
   }
 
@@ -97,8 +161,8 @@ public class DBSource {
 
     @Override
     public TablePair getTablePair() {
-      ColumnPair x = getColumnPair(cache, columnStore, xid);
-      ColumnPair y = getColumnPair(cache, columnStore, yid);
+      ColumnPair x = getColumnPair(xid);
+      ColumnPair y = getColumnPair(yid);
       return new TablePair(x, y);
     }
   }
@@ -0,0 +1,120 @@
+package corrsketches.benchmark.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+
+/**
+ * A thread-safe cache of sketches decoded from the stored fields of a {@link SketchIndex}, along
+ * with the ids of their documents, so that no stored fields need to be read on a cache hit.
+ * Sketches are identified by the core of the index segment that contains them and by their
+ * segment-local docID, which do not change while the segment is open. All entries of a segment are
+ * dropped when the segment is closed (e.g., after it is merged into another segment). The cache is
+ * bounded by the total number of bytes used by the cached sketches.
+ */
+public class DecodedSketchCache {
+
+  private static final int SKETCH_BASE_BYTES = 64;
+
+  private final Cache<SegmentDocKey, CachedSketch> cache;
+  private final Set<IndexReader.CacheKey> segments = ConcurrentHashMap.newKeySet();
+
+  public DecodedSketchCache(long maxBytes) {
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("The maximum cache size must be positive");
+    }
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((SegmentDocKey key, CachedSketch cached) -> sizeOf(cached))
+            .recordStats()
+            .build();
+  }
+
+  /** Returns the cached sketch of the given document, or null if it is not present. */
+  public CachedSketch get(LeafReaderContext leaf, int segmentDocId) {
+    final IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+    if (cacheHelper == null) {
+      return null;
+    }
+    return cache.getIfPresent(new SegmentDocKey(cacheHelper.getKey(), segmentDocId));
+  }
+
+  /** Stores the id and the decoded sketch of the given document. */
+  public void put(
+      LeafReaderContext leaf, int segmentDocId, String id, ImmutableCorrelationSketch sketch) {
+    final IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+    if (cacheHelper == null) {
+      return; // this segment can not be identified reliably, so its sketches are not cached
+    }
+    final IndexReader.CacheKey segment = cacheHelper.getKey();
+    if (segments.add(segment)) {
+      cacheHelper.addClosedListener(this::evictSegment);
+    }
+    cache.put(new SegmentDocKey(segment, segmentDocId), new CachedSketch(id, sketch));
+  }
+
+  private void evictSegment(IndexReader.CacheKey segment) {
+    segments.remove(segment);
+    cache.asMap().keySet().removeIf((SegmentDocKey key) -> key.segment == segment);
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns the hit, miss, and eviction counts of this cache. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private static int sizeOf(CachedSketch cached) {
+    final ImmutableCorrelationSketch sketch = cached.sketch;
+    return SKETCH_BASE_BYTES
+        + 2 * cached.id.length()
+        + 4 * sketch.getKeys().length
+        + 8 * sketch.getValues().length;
+  }
+
+  /** The id of a document and the sketch decoded from its stored fields. */
+  public static class CachedSketch {
+
+    public final String id;
+    public final ImmutableCorrelationSketch sketch;
+
+    CachedSketch(String id, ImmutableCorrelationSketch sketch) {
+      this.id = id;
+      this.sketch = sketch;
+    }
+  }
+
+  private static class SegmentDocKey {
+
+    final IndexReader.CacheKey segment;
+    final int docId;
+
+    SegmentDocKey(IndexReader.CacheKey segment, int docId) {
+      this.segment = segment;
+      this.docId = docId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      SegmentDocKey that = (SegmentDocKey) o;
+      return docId == that.docId && segment == that.segment;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(segment), docId);
+    }
+  }
+}
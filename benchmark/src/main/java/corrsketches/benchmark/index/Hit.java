@@ -33,6 +33,17 @@ public class Hit {
     this.index = index;
   }
 
+  /**
+   * Creates a copy of the given hit, including its re-ranking score and the values that have been
+   * computed lazily, so that changes to the copy are not seen by the original hit.
+   */
+  public Hit(Hit hit) {
+    this(hit.id, hit.query, hit.sketch, hit.score, hit.docId, hit.index);
+    this.correlation = hit.correlation;
+    this.rerankScore = hit.rerankScore;
+    this.joinability = hit.joinability;
+  }
+
   public double correlation() {
     if (this.correlation == null) {
       this.correlation = query.correlationTo(this.sketch());
@@ -0,0 +1,172 @@
+package corrsketches.benchmark.index;
+
+import corrsketches.Column;
+import corrsketches.ColumnType;
+import corrsketches.CorrelationSketch;
+import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
+import corrsketches.MultiColumnCorrelationSketch;
+import corrsketches.SketchType;
+import corrsketches.aggregations.AggregateFunction;
+import corrsketches.benchmark.ColumnPair;
+import corrsketches.correlation.CorrelationType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * An index that stores a {@link MultiColumnCorrelationSketch} per key column of a table as a
+ * single document. The sampled key hashes are indexed and stored only once per document, and the
+ * values of each value column are stored in separate blocks of the same document. Each matching
+ * document produces one hit per value column, whose id is the document id followed by ":" and the
+ * name of the value column.
+ */
+public class MultiColumnSketchIndex extends AbstractLuceneIndex {
+
+  protected static final String HASHES_FIELD_NAME = "h";
+  protected static final String VALUES_FIELD_NAME = "v";
+  protected static final String ID_FIELD_NAME = "i";
+  protected static final String VALUES_TYPE_FIELD_NAME = "t";
+  protected static final String COLUMNS_FIELD_NAME = "c";
+
+  protected final MultiColumnCorrelationSketch.Builder builder;
+  protected final CorrelationSketch.Builder queryBuilder;
+  protected final Hit.RerankStrategy reranker;
+
+  public MultiColumnSketchIndex() throws IOException {
+    this(
+        null,
+        SketchType.KMV,
+        256,
+        AggregateFunction.FIRST,
+        CorrelationType.PEARSONS,
+        SortBy.CSK,
+        false);
+  }
+
+  public MultiColumnSketchIndex(
+      String indexPath,
+      SketchType sketchType,
+      double budget,
+      AggregateFunction aggregateFunction,
+      CorrelationType estimator,
+      SortBy sortBy,
+      boolean readonly)
+      throws IOException {
+    super(indexPath, readonly);
+    this.builder =
+        MultiColumnCorrelationSketch.builder()
+            .sketchType(sketchType, budget)
+            .aggregateFunction(aggregateFunction)
+            .estimator(estimator);
+    this.queryBuilder =
+        CorrelationSketch.builder()
+            .sketchType(sketchType, budget)
+            .aggregateFunction(aggregateFunction)
+            .estimator(estimator);
+    this.reranker = sortBy.reranker;
+  }
+
+  /**
+   * Indexes the sketch of the given value columns, which share the given key column.
+   *
+   * @param id the id of the key column (e.g., dataset name and key column name)
+   * @param columnNames the names of the value columns
+   * @param keyHashes the hashes of the keys of all rows
+   * @param columns the value columns, with one value per row ({@link Double#NaN} if missing)
+   */
+  public void index(String id, List<String> columnNames, int[] keyHashes, List<Column> columns)
+      throws IOException {
+    if (columnNames.size() != columns.size()) {
+      throw new IllegalArgumentException("columnNames and columns must have equal size.");
+    }
+    final MultiColumnCorrelationSketch sketch = builder.build(keyHashes, columns);
+
+    Document doc = new Document();
+    doc.add(new StringField(ID_FIELD_NAME, id, Field.Store.YES));
+
+    // the keys are shared by all columns, so they are indexed only once
+    indexAndStoreIntArray(doc, HASHES_FIELD_NAME, sketch.getKeys());
+    for (int c = 0; c < sketch.numColumns(); c++) {
+      doc.add(new StoredField(COLUMNS_FIELD_NAME, columnNames.get(c)));
+      storeDoubleArray(doc, VALUES_FIELD_NAME, sketch.getValues(c));
+      storeInt(doc, VALUES_TYPE_FIELD_NAME, sketch.valuesType(c).intValue);
+    }
+
+    writer.updateDocument(new Term(ID_FIELD_NAME, id), doc);
+  }
+
+  /**
+   * Searches the top-k documents that share keys with the given query column and returns one hit
+   * for each value column of these documents.
+   */
+  public List<Hit> search(ColumnPair columnPair, int k) throws IOException {
+    CorrelationSketch querySketch =
+        queryBuilder.build(
+            columnPair.keyHashes(), columnPair.columnValues, columnPair.columnValueType);
+    querySketch.setCardinality(columnPair.keyHashes().length);
+    final ImmutableCorrelationSketch query = querySketch.toImmutable();
+
+    BooleanQuery.Builder bq = new BooleanQuery.Builder();
+    for (int key : query.getKeys()) {
+      bq.add(new TermQuery(new Term(HASHES_FIELD_NAME, intToBytesRef(key))), Occur.SHOULD);
+    }
+
+    List<Hit> hits = new ArrayList<>();
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      TopDocs topDocs = searcher.search(bq.build(), k);
+      for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+        Document doc = searcher.doc(scoreDoc.doc);
+        String id = doc.getValues(ID_FIELD_NAME)[0];
+        String[] columnNames = doc.getValues(COLUMNS_FIELD_NAME);
+        MultiColumnCorrelationSketch sketch = readSketchFromIndex(doc);
+        for (int c = 0; c < sketch.numColumns(); c++) {
+          final ImmutableCorrelationSketch columnSketch = sketch.toImmutable(c);
+          if (columnSketch.getKeys().length == 0) {
+            continue;
+          }
+          hits.add(
+              new Hit(
+                  id + ":" + columnNames[c],
+                  query,
+                  columnSketch,
+                  scoreDoc.score,
+                  scoreDoc.doc,
+                  null));
+        }
+      }
+    } finally {
+      searcherManager.release(searcher);
+    }
+    if (reranker != null) {
+      reranker.sort(hits);
+    }
+    return hits;
+  }
+
+  protected MultiColumnCorrelationSketch readSketchFromIndex(Document doc) {
+    int[] hashes = readIntArrayField(doc, HASHES_FIELD_NAME);
+    int[] types = bytesRefToIntArray(doc.getBinaryValues(VALUES_TYPE_FIELD_NAME));
+    BytesRef[] valueBlocks = doc.getBinaryValues(VALUES_FIELD_NAME);
+    double[][] columnValues = new double[types.length][];
+    ColumnType[] valuesTypes = new ColumnType[types.length];
+    for (int c = 0; c < types.length; c++) {
+      columnValues[c] = toDoubleArray(valueBlocks[c].bytes);
+      valuesTypes[c] = ColumnType.valueOf(types[c]);
+    }
+    return new MultiColumnCorrelationSketch(
+        hashes, columnValues, valuesTypes, queryBuilder.estimator());
+  }
+}
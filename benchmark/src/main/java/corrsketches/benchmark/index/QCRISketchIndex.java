@@ -3,24 +3,18 @@ package corrsketches.benchmark.index;
 import corrsketches.CorrelationSketch;
 import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
 import corrsketches.benchmark.ColumnPair;
-import corrsketches.statistics.Stats;
-import corrsketches.util.Hashes;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery.Builder;
-import org.apache.lucene.search.DisjunctionMaxQuery;
-import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.IndexSearcher;
 
 public class QCRISketchIndex extends SketchIndex {
 
-  private static final String QCR_HASHES_FIELD_NAME = "c";
-  private static final String QCR_OPPOSITE_HASHES_FIELD_NAME = "f";
+  private static final String QCR_TERMS_FIELD_NAME = "s";
+  private static final String QCR_OPPOSITE_TERMS_FIELD_NAME = "f";
 
   public QCRISketchIndex() throws IOException {
     super(null, new CorrelationSketch.Builder(), SortBy.KEY, false);
@@ -32,12 +26,10 @@ public class QCRISketchIndex extends SketchIndex {
     super(indexPath, builder, sort, readonly);
   }
 
-  public void index(String id, ColumnPair columnPair) throws IOException {
+  @Override
+  public void index(String id, CorrelationSketch correlationSketch) throws IOException {
 
-    final ImmutableCorrelationSketch sketch =
-        super.builder
-            .build(columnPair.keyValues, columnPair.columnValues, columnPair.columnValueType)
-            .toImmutable();
+    final ImmutableCorrelationSketch sketch = correlationSketch.toImmutable();
 
     final int[] keys = sketch.getKeys();
     final double[] values = sketch.getValues();
@@ -45,12 +37,11 @@ public class QCRISketchIndex extends SketchIndex {
     Document doc = new Document();
     doc.add(new StringField(ID_FIELD_NAME, id, Field.Store.YES));
 
-    int[] indexKeys = computeCorrelationIndexKeys(keys, values);
-    int[] negIndexKeys = computeCorrelationIndexKeys(keys, flip(values));
+    final byte[] signs = QCRTerms.signs(values);
 
     // store and index sketch data in the document
-    indexIntArray(doc, QCR_HASHES_FIELD_NAME, indexKeys);
-    indexIntArray(doc, QCR_OPPOSITE_HASHES_FIELD_NAME, negIndexKeys);
+    QCRTerms.index(doc, QCR_TERMS_FIELD_NAME, keys, signs, false);
+    QCRTerms.index(doc, QCR_OPPOSITE_TERMS_FIELD_NAME, keys, signs, true);
     indexAndStoreIntArray(doc, HASHES_FIELD_NAME, keys);
     storeDoubleArray(doc, VALUES_FIELD_NAME, values);
     storeInt(doc, VALUES_TYPE_FIELD_NAME, sketch.valuesType().intValue);
@@ -58,53 +49,22 @@ public class QCRISketchIndex extends SketchIndex {
     writer.updateDocument(new Term(ID_FIELD_NAME, id), doc);
   }
 
-  private static int[] computeCorrelationIndexKeys(int[] keys, double[] values) {
-    double meanx = Stats.mean(values);
-    double stdx = Stats.std(values);
-
-    int[] indexKeys = new int[keys.length];
-    for (int i = 0; i < keys.length; i++) {
-      final double q = (values[i] - meanx) / stdx;
-      int sign = 0;
-      if (q > 0.0) {
-        sign = 1;
-      } else if (q < 0.0) {
-        sign = -1;
-      }
-      indexKeys[i] = Hashes.MURMUR3.newHasher().putInt(keys[i]).putInt(sign).hash().asInt();
-    }
-    return indexKeys;
-  }
-
   public List<Hit> search(ColumnPair columnPair, int k) throws IOException {
 
     CorrelationSketch query =
-        builder.build(columnPair.keyValues, columnPair.columnValues, columnPair.columnValueType);
-    query.setCardinality(columnPair.keyValues.size());
+        builder.build(columnPair.keyHashes(), columnPair.columnValues, columnPair.columnValueType);
+    query.setCardinality(columnPair.keyHashes().length);
 
     final ImmutableCorrelationSketch sketch = query.toImmutable();
 
-    int[] indexKeys = computeCorrelationIndexKeys(sketch.getKeys(), sketch.getValues());
-
-    Builder bq1 = new Builder();
-    Builder bq2 = new Builder();
-    for (int i = 0; i < indexKeys.length; i++) {
-      final int key = indexKeys[i];
-      final Term term1 = new Term(QCR_HASHES_FIELD_NAME, intToBytesRef(key));
-      bq1.add(new TermQuery(term1), Occur.SHOULD);
-      final Term term2 = new Term(QCR_OPPOSITE_HASHES_FIELD_NAME, intToBytesRef(key));
-      bq2.add(new TermQuery(term2), Occur.SHOULD);
-    }
-    DisjunctionMaxQuery q = new DisjunctionMaxQuery(Arrays.asList(bq1.build(), bq2.build()), 0f);
-
-    return executeQuery(k, sketch, q);
-  }
-
-  private static double[] flip(double[] values) {
-    final double[] flipped = new double[values.length];
-    for (int i = 0; i < values.length; i++) {
-      flipped[i] = -1 * values[i];
-    }
-    return flipped;
+    final int[] keys = sketch.getKeys();
+    final byte[] signs = QCRTerms.signs(sketch.getValues());
+
+    return executeQuery(
+        k,
+        sketch,
+        (IndexSearcher searcher) ->
+            QCRScorer.search(
+                searcher, QCR_TERMS_FIELD_NAME, QCR_OPPOSITE_TERMS_FIELD_NAME, keys, signs, k));
   }
 }
@@ -0,0 +1,163 @@
+package corrsketches.benchmark.index;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMaps;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import java.io.IOException;
+import java.util.PriorityQueue;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * Scores documents indexed with {@link QCRTerms} using both the positive and the negative
+ * orientations of a query in a single pass over the postings of each query key. The score of a
+ * document is the maximum number of matches among both orientations, which is the same score
+ * computed by a {@link org.apache.lucene.search.DisjunctionMaxQuery} (with tie-breaker 0) of one
+ * {@link org.apache.lucene.search.BooleanQuery} per orientation under {@link
+ * org.apache.lucene.search.similarities.BooleanSimilarity}. Score ties are broken by docID, as
+ * Lucene does.
+ */
+final class QCRScorer {
+
+  /** Increments of the packed (positive count, negative count) scores of a document. */
+  private static final long POSITIVE_MATCH = 1L << 32;
+
+  private static final long NEGATIVE_MATCH = 1L;
+
+  private QCRScorer() {}
+
+  /**
+   * Searches the top-k documents for the given query keys and sign codes. If {@code oppositeField}
+   * is null, both orientations are matched against the terms of {@code field}: a term matches the
+   * positive orientation if its sign is equal to the sign of the query key, and the negative
+   * orientation if its sign is the opposite. Otherwise, the positive orientation is matched
+   * against {@code field} and the negative orientation against {@code oppositeField}, which holds
+   * the terms of the opposite signs of the documents (see {@link QCRTerms#index}).
+   */
+  static TopDocs search(
+      IndexSearcher searcher, String field, String oppositeField, int[] keys, byte[] signs, int k)
+      throws IOException {
+    // Keys are sorted as signed ints, but terms are sorted as unsigned bytes, so the seeks move
+    // forward in the term dictionary if we start from the first non-negative key and wrap around.
+    int first = 0;
+    while (first < keys.length && keys[first] < 0) {
+      first++;
+    }
+
+    final PriorityQueue<ScoreDoc> topDocs = new PriorityQueue<>(k + 1, QCRScorer::worseHit);
+    final Int2LongOpenHashMap scores = new Int2LongOpenHashMap();
+    final Scan scan = new Scan(keys, signs, first, scores);
+    long totalHits = 0;
+
+    for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+      final Bits liveDocs = leaf.reader().getLiveDocs();
+      scores.clear();
+      if (oppositeField == null) {
+        scan.accumulate(leaf.reader().terms(field), liveDocs, POSITIVE_MATCH, NEGATIVE_MATCH);
+      } else {
+        scan.accumulate(leaf.reader().terms(field), liveDocs, POSITIVE_MATCH, 0);
+        scan.accumulate(leaf.reader().terms(oppositeField), liveDocs, NEGATIVE_MATCH, 0);
+      }
+      totalHits += scores.size();
+      for (Int2LongMap.Entry entry : Int2LongMaps.fastIterable(scores)) {
+        final long packed = entry.getLongValue();
+        final float score = Math.max((int) (packed >>> 32), (int) packed);
+        offer(topDocs, new ScoreDoc(leaf.docBase + entry.getIntKey(), score), k);
+      }
+    }
+
+    final ScoreDoc[] scoreDocs = new ScoreDoc[topDocs.size()];
+    for (int i = scoreDocs.length - 1; i >= 0; i--) {
+      scoreDocs[i] = topDocs.poll();
+    }
+    return new TopDocs(new TotalHits(totalHits, TotalHits.Relation.EQUAL_TO), scoreDocs);
+  }
+
+  private static void offer(PriorityQueue<ScoreDoc> topDocs, ScoreDoc hit, int k) {
+    if (topDocs.size() < k) {
+      topDocs.add(hit);
+    } else if (!topDocs.isEmpty() && worseHit(topDocs.peek(), hit) < 0) {
+      topDocs.poll();
+      topDocs.add(hit);
+    }
+  }
+
+  /** Orders hits from the worst to the best, breaking score ties by docID as Lucene does. */
+  private static int worseHit(ScoreDoc a, ScoreDoc b) {
+    if (a.score != b.score) {
+      return Float.compare(a.score, b.score);
+    }
+    return Integer.compare(b.doc, a.doc);
+  }
+
+  /** Accumulates the packed match counts of the documents of a segment. */
+  private static class Scan {
+
+    final int[] keys;
+    final byte[] signs;
+    final int first;
+    final Int2LongOpenHashMap scores;
+    final BytesRef prefix = new BytesRef(new byte[QCRTerms.KEY_LENGTH]);
+    PostingsEnum postings = null;
+
+    Scan(int[] keys, byte[] signs, int first, Int2LongOpenHashMap scores) {
+      this.keys = keys;
+      this.signs = signs;
+      this.first = first;
+      this.scores = scores;
+    }
+
+    /**
+     * Adds {@code sameSign} to the score of the documents that have a term with the same sign as
+     * a query key, and {@code oppositeSign} to those that have a term with the opposite sign. The
+     * ZERO sign is its own opposite, so it gets both increments.
+     */
+    void accumulate(Terms terms, Bits liveDocs, long sameSign, long oppositeSign)
+        throws IOException {
+      if (terms == null) {
+        return;
+      }
+      final TermsEnum termsEnum = terms.iterator();
+      for (int n = 0; n < keys.length; n++) {
+        final int i = (first + n) % keys.length;
+        QCRTerms.setKeyPrefix(prefix, keys[i]);
+        if (termsEnum.seekCeil(prefix) == TermsEnum.SeekStatus.END) {
+          continue;
+        }
+        for (BytesRef term = termsEnum.term();
+            term != null && StringHelper.startsWith(term, prefix);
+            term = termsEnum.next()) {
+          final byte termSign = QCRTerms.sign(term);
+          long increment = 0;
+          if (termSign == signs[i]) {
+            increment += sameSign;
+          }
+          if (termSign == QCRTerms.flip(signs[i])) {
+            increment += oppositeSign;
+          }
+          if (increment == 0) {
+            continue;
+          }
+          postings = termsEnum.postings(postings, PostingsEnum.NONE);
+          for (int doc = postings.nextDoc();
+              doc != DocIdSetIterator.NO_MORE_DOCS;
+              doc = postings.nextDoc()) {
+            if (liveDocs == null || liveDocs.get(doc)) {
+              scores.addTo(doc, increment);
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package corrsketches.benchmark.index;
+
+import corrsketches.statistics.Stats;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Generates the terms indexed by the QCR sketch indexes. Each term is composed of the 4-byte
+ * (big-endian) key hash followed by one byte that encodes the sign of the standardized value
+ * associated with the key. Since all terms of the same key share the same prefix, they are
+ * adjacent in the term dictionary, and the terms for both signs can be found with a single seek.
+ */
+final class QCRTerms {
+
+  static final int KEY_LENGTH = 4;
+  static final int TERM_LENGTH = KEY_LENGTH + 1;
+
+  static final byte NEGATIVE = 0;
+  static final byte ZERO = 1;
+  static final byte POSITIVE = 2;
+
+  private QCRTerms() {}
+
+  /**
+   * Computes the sign codes of the standardized values, i.e., the signs of (x - mean(x)) / std(x).
+   * Values are not copied: the codes for flipped values (-x) are given by {@link #flip(byte)}.
+   */
+  static byte[] signs(double[] values) {
+    final double mean = Stats.mean(values);
+    final double std = Stats.std(values);
+    final byte[] signs = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      final double q = (values[i] - mean) / std;
+      if (q > 0.0) {
+        signs[i] = POSITIVE;
+      } else if (q < 0.0) {
+        signs[i] = NEGATIVE;
+      } else {
+        signs[i] = ZERO;
+      }
+    }
+    return signs;
+  }
+
+  /** Returns the code of the opposite sign. */
+  static byte flip(byte sign) {
+    return (byte) (POSITIVE - sign);
+  }
+
+  /**
+   * Adds one term per key to the given document. All terms share a single byte array. If {@code
+   * flip} is true, the opposite signs are indexed.
+   */
+  static void index(Document doc, String fieldName, int[] keys, byte[] signs, boolean flip) {
+    final byte[] bytes = new byte[TERM_LENGTH * keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      final int offset = i * TERM_LENGTH;
+      writeKey(bytes, offset, keys[i]);
+      bytes[offset + KEY_LENGTH] = flip ? flip(signs[i]) : signs[i];
+      doc.add(new StringField(fieldName, new BytesRef(bytes, offset, TERM_LENGTH), Field.Store.NO));
+    }
+  }
+
+  /** Creates the term for the given key and sign. */
+  static BytesRef term(int key, byte sign) {
+    final byte[] bytes = new byte[TERM_LENGTH];
+    writeKey(bytes, 0, key);
+    bytes[KEY_LENGTH] = sign;
+    return new BytesRef(bytes);
+  }
+
+  /** Overwrites the bytes of the given (reusable) prefix with the bytes of the given key. */
+  static void setKeyPrefix(BytesRef prefix, int key) {
+    writeKey(prefix.bytes, prefix.offset, key);
+    prefix.length = KEY_LENGTH;
+  }
+
+  /** Returns the sign code of a term that starts with the given key prefix. */
+  static byte sign(BytesRef term) {
+    return term.bytes[term.offset + KEY_LENGTH];
+  }
+
+  private static void writeKey(byte[] bytes, int offset, int key) {
+    bytes[offset] = (byte) (key >> 24);
+    bytes[offset + 1] = (byte) (key >> 16);
+    bytes[offset + 2] = (byte) (key >> 8);
+    bytes[offset + 3] = (byte) key;
+  }
+}
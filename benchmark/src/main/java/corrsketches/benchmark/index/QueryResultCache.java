@@ -0,0 +1,136 @@
+package corrsketches.benchmark.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of search results of a {@link SketchIndex}. Results are keyed by a fingerprint of the
+ * query sketch, so that repeated queries for the same column do not need to run the Lucene search
+ * and re-ranking again. The cache is bounded both by the number of entries and by the (estimated)
+ * number of bytes used by the cached hits, and must be invalidated whenever the index searcher is
+ * refreshed.
+ */
+public class QueryResultCache {
+
+  private static final int HIT_BASE_BYTES = 96;
+  private static final int ENTRY_BASE_BYTES = 128;
+
+  private final Cache<HashCode, List<Hit>> cache;
+  private final AtomicLong generation = new AtomicLong();
+
+  public QueryResultCache(int maxEntries, long maxBytes) {
+    if (maxEntries < 1 || maxBytes < 1) {
+      throw new IllegalArgumentException("The cache size limits must be positive");
+    }
+    // Every entry weighs at least (maxBytes / maxEntries), so the total weight limit also limits
+    // the number of entries to at most maxEntries.
+    final long minEntryWeight = Math.max(1, maxBytes / maxEntries);
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(
+                (HashCode key, List<Hit> hits) ->
+                    (int) Math.min(Integer.MAX_VALUE, Math.max(minEntryWeight, sizeOf(hits))))
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * Computes a fingerprint of a query, i.e., of the (key hash, value) pairs of the query sketch,
+   * the number of hits requested, and the parameters of the index that executes the query.
+   */
+  public static HashCode fingerprint(ImmutableCorrelationSketch query, int k, String indexParams) {
+    final Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putString(indexParams, StandardCharsets.UTF_8);
+    hasher.putInt(k);
+    hasher.putInt(query.valuesType().intValue);
+    final int[] keys = query.getKeys();
+    final double[] values = query.getValues();
+    hasher.putInt(keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      hasher.putInt(keys[i]);
+      hasher.putDouble(values[i]);
+    }
+    return hasher.hash();
+  }
+
+  /**
+   * Returns the current generation of the cache. It should be read before executing a query, and
+   * given to {@link #put(HashCode, long, List)} when storing the results.
+   */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Returns a copy of the cached result list for the given query, or null if not present. The hits
+   * are copied as well, since they are mutable (e.g., re-ranking changes their scores).
+   */
+  public List<Hit> get(HashCode fingerprint) {
+    List<Hit> hits = cache.getIfPresent(fingerprint);
+    return hits == null ? null : copyOf(hits);
+  }
+
+  /**
+   * Stores a copy of the results of a query. Results computed before the last call to {@link
+   * #invalidate()} (i.e., when {@code generation} is not current anymore) are ignored, since they
+   * may have been computed using a stale index searcher.
+   */
+  public void put(HashCode fingerprint, long generation, List<Hit> hits) {
+    if (generation != this.generation.get()) {
+      return;
+    }
+    final List<Hit> copy = copyOf(hits);
+    cache.put(fingerprint, copy);
+    // An invalidation may have happened between the check and the put, after the cache was
+    // cleared, in which case the (stale) entry is removed. Only this exact entry is removed, so
+    // that results stored by queries of the new generation are kept.
+    if (generation != this.generation.get()) {
+      cache.asMap().remove(fingerprint, copy);
+    }
+  }
+
+  private static List<Hit> copyOf(List<Hit> hits) {
+    final List<Hit> copy = new ArrayList<>(hits.size());
+    for (Hit hit : hits) {
+      copy.add(new Hit(hit));
+    }
+    return copy;
+  }
+
+  /** Removes all cached results. Must be called when the index searcher sees new changes. */
+  public void invalidate() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns the hit, miss, and eviction counts of this cache. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Estimates the number of bytes used by the given list of hits. */
+  private static long sizeOf(List<Hit> hits) {
+    long bytes = ENTRY_BASE_BYTES;
+    for (Hit hit : hits) {
+      bytes += HIT_BASE_BYTES + 2L * hit.id.length();
+      if (hit.sketch != null) {
+        bytes += 4L * hit.sketch.getKeys().length + 8L * hit.sketch.getValues().length;
+      }
+    }
+    return bytes;
+  }
+}
@@ -1,25 +1,37 @@
 package corrsketches.benchmark.index;
 
+import com.google.common.hash.HashCode;
 import corrsketches.ColumnType;
 import corrsketches.CorrelationSketch;
 import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
 import corrsketches.SketchType;
 import corrsketches.benchmark.ColumnPair;
+import corrsketches.benchmark.index.DecodedSketchCache.CachedSketch;
 import corrsketches.benchmark.index.Hit.RerankStrategy;
 import corrsketches.correlation.Correlation;
 import corrsketches.correlation.CorrelationType;
 import corrsketches.kmv.ValueHash;
+import corrsketches.util.Sorting;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 import org.apache.lucene.document.*;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BooleanQuery.Builder;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
@@ -30,11 +42,14 @@ public class SketchIndex extends AbstractLuceneIndex {
   protected static final String VALUES_FIELD_NAME = "v";
   protected static final String ID_FIELD_NAME = "i";
   protected static final String VALUES_TYPE_FIELD_NAME = "t";
+  private static final Set<String> ID_FIELD_SET = Collections.singleton(ID_FIELD_NAME);
 
   protected final CorrelationSketch.Builder builder;
   protected final RerankStrategy reranker;
   protected final boolean sort;
   protected Correlation estimator = CorrelationType.PEARSONS.get();
+  protected QueryResultCache resultCache;
+  protected DecodedSketchCache sketchCache;
 
   public SketchIndex() throws IOException {
     this(SketchType.KMV, 256);
@@ -67,11 +82,18 @@ public class SketchIndex extends AbstractLuceneIndex {
   }
 
   public void index(String id, ColumnPair columnPair) throws IOException {
+    index(
+        id,
+        builder.build(columnPair.keyHashes(), columnPair.columnValues, columnPair.columnValueType));
+  }
+
+  /**
+   * Indexes a sketch that has already been built, e.g., incrementally while reading a table. The
+   * sketch must have been created with the same parameters as {@link #sketchBuilder()}.
+   */
+  public void index(String id, CorrelationSketch correlationSketch) throws IOException {
 
-    final ImmutableCorrelationSketch sketch =
-        builder
-            .build(columnPair.keyValues, columnPair.columnValues, columnPair.columnValueType)
-            .toImmutable();
+    final ImmutableCorrelationSketch sketch = correlationSketch.toImmutable();
 
     final int[] keys = sketch.getKeys();
     final double[] values = sketch.getValues();
@@ -87,11 +109,16 @@ public class SketchIndex extends AbstractLuceneIndex {
     writer.updateDocument(new Term(ID_FIELD_NAME, id), doc);
   }
 
+  /** Returns the builder used to create the sketches stored in this index. */
+  public CorrelationSketch.Builder sketchBuilder() {
+    return builder;
+  }
+
   public List<Hit> search(ColumnPair columnPair, int k) throws IOException {
 
     CorrelationSketch querySketch =
-        builder.build(columnPair.keyValues, columnPair.columnValues, columnPair.columnValueType);
-    querySketch.setCardinality(columnPair.keyValues.size());
+        builder.build(columnPair.keyHashes(), columnPair.columnValues, columnPair.columnValueType);
+    querySketch.setCardinality(columnPair.keyHashes().length);
 
     Builder bq = new BooleanQuery.Builder();
     TreeSet<ValueHash> kMinValues = querySketch.getKMinValues();
@@ -103,21 +130,98 @@ public class SketchIndex extends AbstractLuceneIndex {
     return executeQuery(k, querySketch.toImmutable(), bq.build());
   }
 
+  /**
+   * Enables caching of search results, so that repeated queries return the cached hits instead of
+   * running the search and re-ranking again. Cached results are discarded whenever {@link
+   * #refresh()} makes new index changes visible to the searcher.
+   */
+  public void enableResultCache(int maxEntries, long maxBytes) {
+    this.resultCache = new QueryResultCache(maxEntries, maxBytes);
+    searcherManager.addListener(
+        new RefreshListener() {
+          @Override
+          public void beforeRefresh() {}
+
+          @Override
+          public void afterRefresh(boolean didRefresh) {
+            if (didRefresh) {
+              resultCache.invalidate();
+            }
+          }
+        });
+  }
+
+  /**
+   * Enables caching of the sketches decoded from the index, so that sketches of documents that are
+   * frequently returned by searches are not decoded again from the stored fields.
+   */
+  public void enableSketchCache(long maxBytes) {
+    this.sketchCache = new DecodedSketchCache(maxBytes);
+  }
+
+  /** Returns the decoded sketch cache, or null if it has not been enabled. */
+  public DecodedSketchCache sketchCache() {
+    return sketchCache;
+  }
+
+  /** Returns the search result cache, or null if it has not been enabled. */
+  public QueryResultCache resultCache() {
+    return resultCache;
+  }
+
   protected List<Hit> executeQuery(int k, ImmutableCorrelationSketch cs, Query query)
       throws IOException {
+    return executeQuery(k, cs, (IndexSearcher searcher) -> searcher.search(query, k));
+  }
+
+  protected List<Hit> executeQuery(int k, ImmutableCorrelationSketch cs, TopDocsSearch search)
+      throws IOException {
+    if (resultCache == null) {
+      return searchAndRerank(cs, search);
+    }
+    final HashCode fingerprint = QueryResultCache.fingerprint(cs, k, indexParams());
+    List<Hit> results = resultCache.get(fingerprint);
+    if (results == null) {
+      final long generation = resultCache.generation();
+      results = searchAndRerank(cs, search);
+      resultCache.put(fingerprint, generation, results);
+    }
+    return results;
+  }
+
+  /** Describes the parameters of this index that affect the results of a query. */
+  protected String indexParams() {
+    final String rerankerName = this.sort ? this.reranker.getClass().getSimpleName() : "KEY";
+    return getClass().getSimpleName() + ":" + rerankerName;
+  }
+
+  private List<Hit> searchAndRerank(ImmutableCorrelationSketch cs, TopDocsSearch search)
+      throws IOException {
     IndexSearcher searcher = searcherManager.acquire();
     try {
-      TopDocs hits = searcher.search(query, k);
-      List<Hit> results = new ArrayList<>();
-      for (int i = 0; i < hits.scoreDocs.length; i++) {
-        final ScoreDoc scoreDoc = hits.scoreDocs[i];
-        final Hit hit = createSearchHit(cs, searcher, scoreDoc, this.sort);
-        results.add(hit);
+      TopDocs hits = search.search(searcher);
+      final ScoreDoc[] scoreDocs = hits.scoreDocs;
+      // Stored fields are read in docID order (which is much faster than reading them in score
+      // order), but the hits are kept in the original score order.
+      final int[] order = sortByDocId(scoreDocs);
+      final int[] docIds = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        docIds[i] = scoreDocs[order[i]].doc;
       }
+      final Hit[] results = new Hit[scoreDocs.length];
+      visitDocuments(
+          searcher,
+          docIds,
+          false,
+          (int i, LeafReaderContext leaf, int segmentDocId) -> {
+            final int position = order[i];
+            results[position] = createSearchHit(cs, leaf, segmentDocId, scoreDocs[position]);
+          });
+      List<Hit> resultList = new ArrayList<>(Arrays.asList(results));
       if (this.sort) {
-        this.reranker.sort(results);
+        this.reranker.sort(resultList);
       }
-      return results;
+      return resultList;
     } finally {
       searcherManager.release(searcher);
     }
@@ -125,15 +229,29 @@ public class SketchIndex extends AbstractLuceneIndex {
 
   protected Hit createSearchHit(
       ImmutableCorrelationSketch query,
-      IndexSearcher searcher,
-      ScoreDoc scoreDoc,
-      boolean loadSketch)
+      LeafReaderContext leaf,
+      int segmentDocId,
+      ScoreDoc scoreDoc)
       throws IOException {
-    Document doc = searcher.doc(scoreDoc.doc);
+    if (sketchCache != null) {
+      final CachedSketch cached = sketchCache.get(leaf, segmentDocId);
+      if (cached != null) {
+        // both the id and the sketch are cached, so no stored fields need to be read
+        return new Hit(cached.id, query, cached.sketch, scoreDoc.score, scoreDoc.doc, this);
+      }
+    }
+    final LeafReader reader = leaf.reader();
+    ImmutableCorrelationSketch sketch = null;
+    Document doc;
+    if (this.sort) {
+      doc = reader.document(segmentDocId);
+      sketch = decodeSketch(leaf, segmentDocId, doc);
+    } else {
+      // the sketch is only loaded when needed, so only the id needs to be read
+      doc = reader.document(segmentDocId, ID_FIELD_SET);
+    }
     // retrieve id from index fields
     String id = doc.getValues(ID_FIELD_NAME)[0];
-    // read sketch from index fields
-    ImmutableCorrelationSketch sketch = loadSketch ? readSketchFromIndex(doc) : null;
     return new Hit(id, query, sketch, scoreDoc.score, scoreDoc.doc, this);
   }
 
@@ -145,13 +263,183 @@ public class SketchIndex extends AbstractLuceneIndex {
     return new ImmutableCorrelationSketch(hashes, values, valuesType, builder.estimator());
   }
 
+  /**
+   * Decodes the sketch stored in the given document, or returns the cached copy when the sketch
+   * cache is enabled and the document has been decoded before.
+   */
+  private ImmutableCorrelationSketch decodeSketch(
+      LeafReaderContext leaf, int segmentDocId, Document doc) {
+    final ImmutableCorrelationSketch sketch = readSketchFromIndex(doc);
+    if (sketchCache != null) {
+      sketchCache.put(leaf, segmentDocId, doc.getValues(ID_FIELD_NAME)[0], sketch);
+    }
+    return sketch;
+  }
+
+  private ImmutableCorrelationSketch loadSketch(LeafReaderContext leaf, int segmentDocId)
+      throws IOException {
+    if (sketchCache != null) {
+      final CachedSketch cached = sketchCache.get(leaf, segmentDocId);
+      if (cached != null) {
+        return cached.sketch;
+      }
+    }
+    return decodeSketch(leaf, segmentDocId, leaf.reader().document(segmentDocId));
+  }
+
   ImmutableCorrelationSketch loadSketch(int docId) throws IOException {
     IndexSearcher searcher = searcherManager.acquire();
     try {
-      Document doc = searcher.doc(docId);
-      return readSketchFromIndex(doc);
+      final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+      final LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+      return loadSketch(leaf, docId - leaf.docBase);
+    } finally {
+      searcherManager.release(searcher);
+    }
+  }
+
+  /**
+   * Loads the sketches of all the given hits that have not been loaded yet. This is equivalent to
+   * calling {@link Hit#sketch()} for every hit, but all documents are read in a single forward pass
+   * in docID order while holding a single searcher.
+   */
+  public void loadSketches(List<Hit> hits) throws IOException {
+    loadSketches(hits, false);
+  }
+
+  /**
+   * Same as {@link #loadSketches(List)}, but when {@code parallel} is true the documents from
+   * different index segments are read concurrently.
+   */
+  public void loadSketches(List<Hit> hits, boolean parallel) throws IOException {
+    final List<Hit> pending = new ArrayList<>(hits.size());
+    for (Hit hit : hits) {
+      if (hit.sketch == null) {
+        pending.add(hit);
+      }
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+    pending.sort(Comparator.comparingInt((Hit hit) -> hit.docId));
+    final int[] docIds = new int[pending.size()];
+    for (int i = 0; i < docIds.length; i++) {
+      docIds[i] = pending.get(i).docId;
+    }
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      visitDocuments(
+          searcher,
+          docIds,
+          parallel,
+          (int i, LeafReaderContext leaf, int segmentDocId) ->
+              pending.get(i).sketch = loadSketch(leaf, segmentDocId));
     } finally {
       searcherManager.release(searcher);
     }
   }
+
+  /**
+   * Visits the given docIDs, which must be sorted in ascending order, so that the stored documents
+   * can be read in a single forward pass. Each index segment is visited only once. If {@code
+   * parallel} is true, different segments are visited concurrently, so the given consumer must be
+   * thread-safe.
+   */
+  protected static void visitDocuments(
+      IndexSearcher searcher, int[] sortedDocIds, boolean parallel, SegmentDocConsumer consumer)
+      throws IOException {
+    final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    // split the docIDs into contiguous ranges that belong to the same segment
+    final List<SegmentRange> ranges = new ArrayList<>();
+    int start = 0;
+    while (start < sortedDocIds.length) {
+      final LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(sortedDocIds[start], leaves));
+      final int maxDoc = leaf.docBase + leaf.reader().maxDoc();
+      int end = start + 1;
+      while (end < sortedDocIds.length && sortedDocIds[end] < maxDoc) {
+        end++;
+      }
+      ranges.add(new SegmentRange(leaf, start, end));
+      start = end;
+    }
+
+    if (!parallel || ranges.size() < 2) {
+      for (SegmentRange range : ranges) {
+        range.read(sortedDocIds, consumer);
+      }
+      return;
+    }
+    try {
+      ranges.parallelStream()
+          .forEach(
+              (SegmentRange range) -> {
+                try {
+                  range.read(sortedDocIds, consumer);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Returns the positions of the given score docs sorted by ascending docID. */
+  private static int[] sortByDocId(ScoreDoc[] scoreDocs) {
+    final int[] order = new int[scoreDocs.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Sorting.sort(
+        new Sorting.Sortable() {
+          @Override
+          public int compare(int i, int j) {
+            return Integer.compare(scoreDocs[order[i]].doc, scoreDocs[order[j]].doc);
+          }
+
+          @Override
+          public void swap(int i, int j) {
+            Sorting.swap(order, i, j);
+          }
+        },
+        0,
+        order.length);
+    return order;
+  }
+
+  /** Finds the top hits of a query using the given searcher. */
+  @FunctionalInterface
+  protected interface TopDocsSearch {
+
+    TopDocs search(IndexSearcher searcher) throws IOException;
+  }
+
+  @FunctionalInterface
+  protected interface SegmentDocConsumer {
+
+    /**
+     * Receives the segment and the segment-local docID of the docID at position {@code i} of the
+     * array of docIDs being visited.
+     */
+    void accept(int i, LeafReaderContext leaf, int segmentDocId) throws IOException;
+  }
+
+  private static class SegmentRange {
+
+    final LeafReaderContext leaf;
+    final int start; // inclusive
+    final int end; // exclusive
+
+    SegmentRange(LeafReaderContext leaf, int start, int end) {
+      this.leaf = leaf;
+      this.start = start;
+      this.end = end;
+    }
+
+    void read(int[] sortedDocIds, SegmentDocConsumer consumer) throws IOException {
+      for (int i = start; i < end; i++) {
+        consumer.accept(i, leaf, sortedDocIds[i] - leaf.docBase);
+      }
+    }
+  }
 }
@@ -0,0 +1,74 @@
+package corrsketches.benchmark.io;
+
+import corrsketches.ColumnType;
+import corrsketches.benchmark.io.TableBatchReader.ColumnSchema;
+import java.util.List;
+
+/**
+ * A batch of rows of the columns read by a {@link TableBatchReader}. The values of string
+ * (categorical) columns are stored as the murmur3 hashes of the strings, and the values of numeric
+ * columns are stored as doubles. The arrays are allocated once and reused by all batches read into
+ * this object.
+ */
+public class ColumnBatch {
+
+  /**
+   * The hashes of the values of each string column, or null for numeric columns. Missing values
+   * are hashed as the empty string, which is how missing keys are hashed when reading tables with
+   * Tablesaw.
+   */
+  public final int[][] hashes;
+  /** Whether each value of each string column is missing, or null for numeric columns. */
+  public final boolean[][] missing;
+  /** The values of each numeric column, or null for string columns. Missing values are NaN. */
+  public final double[][] numbers;
+  /**
+   * The values of each string column, or null for numeric columns and for batches created without
+   * strings. Missing values are empty strings, the same as their hashes.
+   */
+  public final String[][] strings;
+  /** The number of rows in this batch. */
+  public int size;
+
+  private final int capacity;
+
+  public ColumnBatch(List<ColumnSchema> columns, int capacity) {
+    this(columns, capacity, false);
+  }
+
+  /** Creates a batch that also holds the values of the string columns if {@code strings} is set. */
+  public ColumnBatch(List<ColumnSchema> columns, int capacity, boolean strings) {
+    this.capacity = capacity;
+    this.hashes = new int[columns.size()][];
+    this.missing = new boolean[columns.size()][];
+    this.numbers = new double[columns.size()][];
+    this.strings = new String[columns.size()][];
+    for (int c = 0; c < columns.size(); c++) {
+      if (columns.get(c).type == ColumnType.CATEGORICAL) {
+        hashes[c] = new int[capacity];
+        missing[c] = new boolean[capacity];
+        if (strings) {
+          this.strings[c] = new String[capacity];
+        }
+      } else {
+        numbers[c] = new double[capacity];
+      }
+    }
+  }
+
+  /** The maximum number of rows in a batch. */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the value of the given column and row as it is used in sketches, i.e., the number for
+   * numeric columns and the hash of the string for categorical columns, or NaN if it is missing.
+   */
+  public double value(int column, int row) {
+    if (numbers[column] != null) {
+      return numbers[column][row];
+    }
+    return missing[column][row] ? Double.NaN : hashes[column][row];
+  }
+}
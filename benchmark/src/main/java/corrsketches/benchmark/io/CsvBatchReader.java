@@ -0,0 +1,229 @@
+package corrsketches.benchmark.io;
+
+import com.univocity.parsers.csv.CsvParser;
+import com.univocity.parsers.csv.CsvParserSettings;
+import corrsketches.ColumnType;
+import corrsketches.util.Hashes;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads the selected columns of a CSV file in batches of rows. The field selection is pushed down
+ * to the CSV parser, so the values of the other columns are skipped without being materialized.
+ *
+ * <p>The schema is inferred from the first {@link #SCHEMA_SAMPLE_SIZE} rows, following the type
+ * detection of Tablesaw (used by {@code Tables.readTable}): columns whose non-missing values in
+ * the sample are all date-times, times, dates or booleans have those types in Tablesaw, and are
+ * used neither as keys nor as values, so they are not included in the schema. Otherwise, a column
+ * is numeric if all its non-missing values in the sample are numbers, and it is a string
+ * (categorical) column otherwise. Values of numeric columns that can not be parsed as numbers are
+ * read as missing values. Empty values and "-" are missing values, the same as when tables are
+ * read using {@code Tables.readTable}.
+ */
+public class CsvBatchReader implements TableBatchReader {
+
+  static final int SCHEMA_SAMPLE_SIZE = 10_000;
+  private static final String MISSING_VALUE = "-";
+  private static final int MISSING_VALUE_HASH = Hashes.murmur3_32("");
+
+  private final List<ColumnSchema> columns;
+  private final CsvParser parser;
+  private final boolean readStrings;
+
+  public CsvBatchReader(String path, List<ColumnSchema> projection) {
+    this(path, projection, false);
+  }
+
+  public CsvBatchReader(String path, List<ColumnSchema> projection, boolean readStrings) {
+    this.columns = projection;
+    this.readStrings = readStrings;
+    final CsvParserSettings settings = createSettings();
+    settings.setHeaderExtractionEnabled(true);
+    final String[] fields = new String[projection.size()];
+    for (int c = 0; c < fields.length; c++) {
+      fields[c] = projection.get(c).name;
+    }
+    settings.selectFields(fields);
+    this.parser = new CsvParser(settings);
+    this.parser.beginParsing(new File(path), StandardCharsets.UTF_8);
+  }
+
+  public static List<ColumnSchema> readSchema(String path) {
+    final CsvParser parser = new CsvParser(createSettings());
+    parser.beginParsing(new File(path), StandardCharsets.UTF_8);
+    try {
+      final String[] header = parser.parseNext();
+      if (header == null) {
+        return new ArrayList<>();
+      }
+      final ValueTypes[] valueTypes = new ValueTypes[header.length];
+      for (int c = 0; c < header.length; c++) {
+        valueTypes[c] = new ValueTypes();
+      }
+      String[] row;
+      for (int n = 0; n < SCHEMA_SAMPLE_SIZE && (row = parser.parseNext()) != null; n++) {
+        for (int c = 0; c < Math.min(row.length, header.length); c++) {
+          final String value = row[c];
+          if (!isMissing(value)) {
+            valueTypes[c].update(value);
+          }
+        }
+      }
+      final List<ColumnSchema> schema = new ArrayList<>(header.length);
+      for (int c = 0; c < header.length; c++) {
+        final ValueTypes types = valueTypes[c];
+        if (header[c] == null || types.isTemporalOrBoolean()) {
+          continue;
+        }
+        final boolean numerical = types.hasValues && types.numbers;
+        schema.add(
+            new ColumnSchema(header[c], numerical ? ColumnType.NUMERICAL : ColumnType.CATEGORICAL));
+      }
+      return schema;
+    } finally {
+      parser.stopParsing();
+    }
+  }
+
+  @Override
+  public List<ColumnSchema> columns() {
+    return columns;
+  }
+
+  @Override
+  public boolean readsStrings() {
+    return readStrings;
+  }
+
+  @Override
+  public int read(ColumnBatch batch) {
+    int n = 0;
+    String[] row;
+    while (n < batch.capacity() && (row = parser.parseNext()) != null) {
+      for (int c = 0; c < columns.size(); c++) {
+        final String value = c < row.length ? row[c] : null;
+        if (batch.numbers[c] != null) {
+          batch.numbers[c][n] = isMissing(value) ? Double.NaN : parseDouble(value);
+        } else if (isMissing(value)) {
+          batch.missing[c][n] = true;
+          batch.hashes[c][n] = MISSING_VALUE_HASH;
+          if (readStrings) {
+            batch.strings[c][n] = "";
+          }
+        } else {
+          batch.missing[c][n] = false;
+          batch.hashes[c][n] = Hashes.murmur3_32(value);
+          if (readStrings) {
+            batch.strings[c][n] = value;
+          }
+        }
+      }
+      n++;
+    }
+    batch.size = n;
+    return n;
+  }
+
+  @Override
+  public void close() {
+    parser.stopParsing();
+  }
+
+  private static CsvParserSettings createSettings() {
+    final CsvParserSettings settings = new CsvParserSettings();
+    settings.setMaxCharsPerColumn(10_000);
+    settings.setMaxColumns(1_000_000);
+    settings.setLineSeparatorDetectionEnabled(true);
+    // lines starting with '#' are not comments, the same as when reading tables with Tablesaw
+    settings.getFormat().setComment('\0');
+    return settings;
+  }
+
+  /**
+   * Tracks the types that all values of a column seen so far can be parsed as, using (a subset of)
+   * the formats that Tablesaw detects by default.
+   */
+  private static class ValueTypes {
+
+    static final List<DateTimeFormatter> DATE_TIME_FORMATS =
+        formatters("yyyy-MM-dd'T'HH:mm[:ss][.SSS]", "yyyy-MM-dd HH:mm[:ss][.SSS]");
+    static final List<DateTimeFormatter> TIME_FORMATS = formatters("HH:mm[:ss][.SSS]", "h:mm a");
+    static final List<DateTimeFormatter> DATE_FORMATS =
+        formatters(
+            "yyyy-MM-dd",
+            "yyyy/MM/dd",
+            "M/d/yyyy",
+            "M/d/yy",
+            "MM-dd-yyyy",
+            "MM.dd.yyyy",
+            "dd/MMM/yyyy",
+            "dd-MMM-yyyy",
+            "MMM d, yyyy");
+    static final Set<String> BOOLEANS =
+        new HashSet<>(
+            Arrays.asList(
+                "T", "t", "Y", "y", "TRUE", "true", "True", "F", "f", "N", "n", "FALSE", "false",
+                "False"));
+
+    boolean hasValues = false;
+    boolean dateTimes = true;
+    boolean times = true;
+    boolean dates = true;
+    boolean booleans = true;
+    boolean numbers = true;
+
+    void update(String value) {
+      hasValues = true;
+      dateTimes = dateTimes && canParse(DATE_TIME_FORMATS, value);
+      times = times && canParse(TIME_FORMATS, value);
+      dates = dates && canParse(DATE_FORMATS, value);
+      booleans = booleans && BOOLEANS.contains(value);
+      numbers = numbers && !Double.isNaN(parseDouble(value));
+    }
+
+    boolean isTemporalOrBoolean() {
+      return hasValues && (dateTimes || times || dates || booleans);
+    }
+
+    private static boolean canParse(List<DateTimeFormatter> formats, String value) {
+      for (DateTimeFormatter format : formats) {
+        try {
+          format.parse(value);
+          return true;
+        } catch (DateTimeParseException e) {
+          // try the next format
+        }
+      }
+      return false;
+    }
+
+    private static List<DateTimeFormatter> formatters(String... patterns) {
+      final List<DateTimeFormatter> formatters = new ArrayList<>(patterns.length);
+      for (String pattern : patterns) {
+        formatters.add(DateTimeFormatter.ofPattern(pattern, Locale.ENGLISH));
+      }
+      return formatters;
+    }
+  }
+
+  private static boolean isMissing(String value) {
+    return value == null || value.isEmpty() || MISSING_VALUE.equals(value);
+  }
+
+  /** Parses the given value as a double, or returns NaN if it is not a number. */
+  private static double parseDouble(String value) {
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+}
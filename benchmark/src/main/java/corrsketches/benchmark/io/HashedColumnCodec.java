@@ -0,0 +1,321 @@
+package corrsketches.benchmark.io;
+
+import corrsketches.ColumnType;
+import corrsketches.benchmark.ColumnPair;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes column pairs in the binary format used by the column store. Only the hashes of the keys
+ * are stored, and the rows are sorted by key hash (keeping the original order of the rows of each
+ * key), so that exact joins between stored columns can be computed as merge joins.
+ *
+ * <p>The format of an encoded column pair is:
+ *
+ * <ul>
+ *   <li>the format version (1 byte);
+ *   <li>the dataset id, key name and column name (UTF-8 strings prefixed by their lengths);
+ *   <li>the type of the values (1 byte) and the number of rows (varint);
+ *   <li>the first key hash (4 bytes), followed by the differences between consecutive hashes
+ *       (unsigned varints), which are small since the hashes are sorted;
+ *   <li>the encoding of the values (1 byte), followed by the values. If all values are decimal
+ *       numbers with a few digits after the decimal point, they are stored as zigzag varints of the
+ *       values scaled by a power of ten, otherwise the 8 bytes of each double are stored.
+ * </ul>
+ *
+ * <p>The strings of the keys can be optionally stored in a separate {@link KeyDictionary}, so that
+ * they can be displayed without being decoded by the readers of the columns.
+ */
+public class HashedColumnCodec {
+
+  static final byte FORMAT_VERSION = 2;
+
+  static final byte RAW_VALUES = 0;
+  static final byte DECIMAL_VALUES = 1;
+
+  /** The maximum number of decimal digits of values stored as scaled integers. */
+  static final int MAX_DECIMAL_SCALE = 6;
+
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6};
+  /** The largest magnitude of integers that are exactly represented by doubles, i.e., 2^53. */
+  private static final double MAX_EXACT_INTEGER = 9007199254740992d;
+
+  public static byte[] encode(ColumnPair cp) {
+    final ColumnPair sorted = cp.sortedByKey();
+    final int[] keys = sorted.keyHashes();
+    final double[] values = sorted.columnValues;
+
+    final Output out = new Output(32 + 6 * keys.length);
+    out.writeByte(FORMAT_VERSION);
+    out.writeString(cp.datasetId);
+    out.writeString(cp.keyName);
+    out.writeString(cp.columnName);
+    out.writeByte(cp.columnValueType.intValue);
+    out.writeVarInt(keys.length);
+
+    for (int i = 0; i < keys.length; i++) {
+      if (i == 0) {
+        out.writeInt(keys[i]);
+      } else {
+        out.writeVarInt(keys[i] - keys[i - 1]);
+      }
+    }
+
+    final int scale = decimalScale(values);
+    if (scale < 0) {
+      out.writeByte(RAW_VALUES);
+      for (double value : values) {
+        out.writeLong(Double.doubleToRawLongBits(value));
+      }
+    } else {
+      out.writeByte(DECIMAL_VALUES);
+      out.writeByte(scale);
+      for (double value : values) {
+        final long scaled = (long) Math.rint(value * POWERS_OF_TEN[scale]);
+        out.writeVarLong((scaled << 1) ^ (scaled >> 63));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  public static ColumnPair decode(byte[] bytes) {
+    final ByteBuffer in = ByteBuffer.wrap(bytes);
+    checkVersion(in.get());
+    final String datasetId = readString(in);
+    final String keyName = readString(in);
+    final String columnName = readString(in);
+    final ColumnType valueType = ColumnType.valueOf(in.get());
+    final int size = readVarInt(in);
+
+    final int[] keys = new int[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = i == 0 ? in.getInt() : keys[i - 1] + readVarInt(in);
+    }
+
+    final double[] values = new double[size];
+    final byte encoding = in.get();
+    if (encoding == RAW_VALUES) {
+      for (int i = 0; i < size; i++) {
+        values[i] = Double.longBitsToDouble(in.getLong());
+      }
+    } else if (encoding == DECIMAL_VALUES) {
+      final double powerOfTen = POWERS_OF_TEN[in.get()];
+      for (int i = 0; i < size; i++) {
+        final long zigzag = readVarLong(in);
+        values[i] = ((zigzag >>> 1) ^ -(zigzag & 1)) / powerOfTen;
+      }
+    } else {
+      throw new IllegalStateException("Invalid encoding of column values: " + encoding);
+    }
+    return new ColumnPair(datasetId, keyName, keys, columnName, valueType, values);
+  }
+
+  /**
+   * Returns the smallest number of decimal digits that allows all values to be exactly recovered
+   * from the values scaled by a power of ten and rounded to integers, or -1 if there is no such
+   * number of digits that is at most {@link #MAX_DECIMAL_SCALE}.
+   */
+  static int decimalScale(double[] values) {
+    for (int scale = 0; scale <= MAX_DECIMAL_SCALE; scale++) {
+      if (isDecimalScale(values, scale)) {
+        return scale;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isDecimalScale(double[] values, int scale) {
+    final double powerOfTen = POWERS_OF_TEN[scale];
+    for (double value : values) {
+      final double scaled = Math.rint(value * powerOfTen);
+      if (!(Math.abs(scaled) < MAX_EXACT_INTEGER)) {
+        return false; // NaN, infinite or too large
+      }
+      // the value must be recovered exactly by the decoder (which, e.g., rejects negative zeros)
+      final long integer = (long) scaled;
+      if (Double.doubleToRawLongBits(integer / powerOfTen) != Double.doubleToRawLongBits(value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Encodes the dictionary that maps the hashes of the keys of the given column pair to the key
+   * strings. The column pair must have the key strings (i.e., {@link ColumnPair#keyValues}).
+   */
+  public static byte[] encodeKeyDictionary(ColumnPair cp) {
+    final int[] hashes = cp.keyHashes();
+    final long[] rows = new long[hashes.length];
+    for (int i = 0; i < hashes.length; i++) {
+      rows[i] = ((long) hashes[i] << 32) | i;
+    }
+    Arrays.sort(rows);
+
+    final Output out = new Output(16 * hashes.length);
+    out.writeByte(FORMAT_VERSION);
+    out.writeVarInt(cp.distinctKeyHashes().length);
+    for (int i = 0; i < rows.length; i++) {
+      final int hash = (int) (rows[i] >> 32);
+      if (i == 0 || hash != (int) (rows[i - 1] >> 32)) {
+        // the first string of each hash is used, which only matters for hash collisions
+        out.writeInt(hash);
+        out.writeString(cp.keyValues.get((int) rows[i]));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  public static KeyDictionary decodeKeyDictionary(byte[] bytes) {
+    final ByteBuffer in = ByteBuffer.wrap(bytes);
+    checkVersion(in.get());
+    final int size = readVarInt(in);
+    final int[] hashes = new int[size];
+    final String[] keys = new String[size];
+    for (int i = 0; i < size; i++) {
+      hashes[i] = in.getInt();
+      keys[i] = readString(in);
+    }
+    return new KeyDictionary(hashes, keys);
+  }
+
+  private static void checkVersion(byte version) {
+    if (version != FORMAT_VERSION) {
+      throw new IllegalStateException(
+          "Unsupported column format version: "
+              + version
+              + ". The column store needs to be created again.");
+    }
+  }
+
+  private static int readVarInt(ByteBuffer in) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  private static long readVarLong(ByteBuffer in) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  private static String readString(ByteBuffer in) {
+    final int length = readVarInt(in) - 1;
+    if (length < 0) {
+      return null;
+    }
+    final String value =
+        new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+
+  /** Maps the hashes of the keys of a column to the key strings. */
+  public static class KeyDictionary {
+
+    private final int[] hashes;
+    private final String[] keys;
+
+    KeyDictionary(int[] hashes, String[] keys) {
+      this.hashes = hashes;
+      this.keys = keys;
+    }
+
+    /** Returns the key string that has the given hash, or null if there is no such key. */
+    public String get(int hash) {
+      final int index = Arrays.binarySearch(hashes, hash);
+      return index < 0 ? null : keys[index];
+    }
+
+    public int size() {
+      return hashes.length;
+    }
+  }
+
+  /** A growable byte array that the values are written to. */
+  private static class Output {
+
+    private byte[] bytes;
+    private int size = 0;
+
+    Output(int initialCapacity) {
+      this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    private void ensureCapacity(int length) {
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + length));
+      }
+    }
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      bytes[size++] = (byte) value;
+    }
+
+    void writeInt(int value) {
+      ensureCapacity(4);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    /** Writes the value as an unsigned varint, i.e., 7 bits per byte. */
+    void writeVarInt(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    /** Writes the value as an unsigned varint, i.e., 7 bits per byte. */
+    void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    /** Writes the string as UTF-8 prefixed by its length plus one, where 0 means null. */
+    void writeString(String value) {
+      if (value == null) {
+        writeVarInt(0);
+        return;
+      }
+      final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(utf8.length + 1);
+      ensureCapacity(utf8.length);
+      System.arraycopy(utf8, 0, bytes, size, utf8.length);
+      size += utf8.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, size);
+    }
+  }
+}
@@ -0,0 +1,741 @@
+package corrsketches.benchmark.io;
+
+import corrsketches.util.Hashes;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the selected columns of a CSV file in batches of rows by scanning the bytes of the
+ * memory-mapped file directly. Unlike {@link CsvBatchReader}, no String objects are created for
+ * the cells: the values of string columns are hashed from their UTF-8 bytes (see {@link
+ * Hashes#murmur3_32(ByteBuffer, int, int)}) and the values of numeric columns are parsed from
+ * their bytes. Strings are only created for the values of string columns if the reader is opened
+ * to read them.
+ *
+ * <p>The file is split into chunks that end at record boundaries, and the chunks are scanned in
+ * parallel. The rows are still returned in the same order of the file, and the chunks that are
+ * being scanned or waiting to be read add up to at most (approximately) {@link
+ * #MAX_PENDING_BYTES} bytes of the file. The record boundaries are also found in parallel: each
+ * chunk is summarized by the quoting state at its end and by its first record boundary, for each
+ * possible quoting state at its start, and the summaries of consecutive chunks are then combined
+ * to find the actual boundaries (see {@link Split}).
+ *
+ * <p>The values are read with the same rules used by {@link CsvBatchReader}: fields are separated
+ * by commas and may be enclosed in double quotes (quotes inside quoted fields are escaped by
+ * another quote), whitespace around unquoted values is ignored, empty lines are skipped, and
+ * empty values and "-" are missing values.
+ */
+public class MappedCsvBatchReader implements TableBatchReader {
+
+  public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+  /** The maximum number of bytes of the chunks that are being scanned or waiting to be read. */
+  public static final long MAX_PENDING_BYTES = 4L * DEFAULT_CHUNK_SIZE;
+
+  private static final byte DELIMITER = ',';
+  private static final byte QUOTE = '"';
+  private static final int MISSING_VALUE_HASH = Hashes.murmur3_32("");
+  /** The number of rows of the batches produced by the scan of each chunk. */
+  private static final int CHUNK_BATCH_SIZE = 8 * 1024;
+  /** Powers of ten that are exactly representable as doubles. */
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private final List<ColumnSchema> columns;
+  private final FileChannel channel;
+  private final long fileSize;
+  private final int chunkSize;
+  private final Executor executor;
+  private final boolean readStrings;
+  private final int maxPendingChunks;
+  /** The index of the field of each record that holds the values of each projected column. */
+  private final int[] fieldOfColumn;
+  /** The projected column of each field of the records, or -1 if the field is not projected. */
+  private final int[] columnOfField;
+
+  private final ArrayDeque<CompletableFuture<List<ColumnBatch>>> pendingChunks =
+      new ArrayDeque<>();
+  /** The start of the next chunk to be scanned, which is the start of a record. */
+  private long nextChunkStart;
+  /** The start of the next part of the file to be split, where the quoting state is known. */
+  private long nextSplit;
+  /** The quoting state at the position {@link #nextSplit}. */
+  private int nextSplitState = Split.FIELD_START;
+  /** The number of bytes scanned by the splits, each byte of the file is scanned at most once. */
+  private final AtomicLong splitBytes = new AtomicLong();
+  private Iterator<ColumnBatch> chunkBatches = null;
+  private ColumnBatch current = null;
+  private int currentRow = 0;
+
+  public MappedCsvBatchReader(String path, List<ColumnSchema> projection) throws IOException {
+    this(path, projection, false);
+  }
+
+  public MappedCsvBatchReader(String path, List<ColumnSchema> projection, boolean readStrings)
+      throws IOException {
+    this(path, projection, readStrings, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+  }
+
+  public MappedCsvBatchReader(
+      String path, List<ColumnSchema> projection, int chunkSize, ForkJoinPool executor)
+      throws IOException {
+    this(path, projection, false, chunkSize, executor);
+  }
+
+  /**
+   * Creates a reader that splits the file in chunks of approximately {@code chunkSize} bytes and
+   * scans the chunks using the given executor.
+   */
+  public MappedCsvBatchReader(
+      String path,
+      List<ColumnSchema> projection,
+      boolean readStrings,
+      int chunkSize,
+      ForkJoinPool executor)
+      throws IOException {
+    this.columns = projection;
+    this.readStrings = readStrings;
+    this.chunkSize = chunkSize;
+    this.executor = executor;
+    this.maxPendingChunks =
+        (int) Math.max(1, Math.min(2 * executor.getParallelism(), MAX_PENDING_BYTES / chunkSize));
+    this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    try {
+      this.fileSize = channel.size();
+      // the header is the first record of the file
+      final long headerEnd = findRecordEnd(0, 0);
+      final List<String> header = readHeader(map(0, headerEnd));
+      this.fieldOfColumn = new int[projection.size()];
+      int numFields = 0;
+      for (int c = 0; c < projection.size(); c++) {
+        fieldOfColumn[c] = header.indexOf(projection.get(c).name);
+        if (fieldOfColumn[c] < 0) {
+          throw new IllegalArgumentException(
+              "Column not found in CSV header: " + projection.get(c).name);
+        }
+        numFields = Math.max(numFields, fieldOfColumn[c] + 1);
+      }
+      this.columnOfField = new int[numFields];
+      Arrays.fill(columnOfField, -1);
+      for (int c = 0; c < projection.size(); c++) {
+        columnOfField[fieldOfColumn[c]] = c;
+      }
+      this.nextChunkStart = headerEnd;
+      this.nextSplit = headerEnd;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public List<ColumnSchema> columns() {
+    return columns;
+  }
+
+  @Override
+  public boolean readsStrings() {
+    return readStrings;
+  }
+
+  @Override
+  public int read(ColumnBatch batch) throws IOException {
+    int n = 0;
+    while (n < batch.capacity()) {
+      if (current == null || currentRow == current.size) {
+        current = nextChunkBatch();
+        currentRow = 0;
+        if (current == null) {
+          break;
+        }
+        continue;
+      }
+      final int length = Math.min(batch.capacity() - n, current.size - currentRow);
+      for (int c = 0; c < columns.size(); c++) {
+        if (current.numbers[c] != null) {
+          System.arraycopy(current.numbers[c], currentRow, batch.numbers[c], n, length);
+        } else {
+          System.arraycopy(current.hashes[c], currentRow, batch.hashes[c], n, length);
+          System.arraycopy(current.missing[c], currentRow, batch.missing[c], n, length);
+          if (readStrings) {
+            System.arraycopy(current.strings[c], currentRow, batch.strings[c], n, length);
+          }
+        }
+      }
+      n += length;
+      currentRow += length;
+    }
+    batch.size = n;
+    return n;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (CompletableFuture<List<ColumnBatch>> chunk : pendingChunks) {
+      chunk.cancel(false);
+    }
+    pendingChunks.clear();
+    // the mapped buffers are released when they are garbage collected
+    channel.close();
+  }
+
+  /** Returns the next batch of rows scanned from the file, or null if the file has ended. */
+  private ColumnBatch nextChunkBatch() throws IOException {
+    while (chunkBatches == null || !chunkBatches.hasNext()) {
+      submitChunks();
+      final CompletableFuture<List<ColumnBatch>> chunk = pendingChunks.poll();
+      if (chunk == null) {
+        return null;
+      }
+      chunkBatches = join(chunk).iterator();
+    }
+    return chunkBatches.next();
+  }
+
+  /**
+   * Splits the next chunks of the file and submits their scans to the executor. The splits of the
+   * chunks are computed in parallel, and then combined in file order to find the record boundaries
+   * where the chunks end. If a part of the file has no record boundary (e.g., it is inside a long
+   * quoted value), the chunk that starts before it ends at the first boundary of a later part.
+   */
+  private void submitChunks() throws IOException {
+    while (pendingChunks.size() < maxPendingChunks && nextChunkStart < fileSize) {
+      final List<CompletableFuture<Split>> futures = new ArrayList<>();
+      for (int i = pendingChunks.size(); i < maxPendingChunks && nextSplit < fileSize; i++) {
+        final long start = nextSplit;
+        final long end = Math.min(fileSize, start + chunkSize);
+        nextSplit = end;
+        futures.add(CompletableFuture.supplyAsync(() -> split(start, end), executor));
+      }
+      for (CompletableFuture<Split> future : futures) {
+        final Split split = join(future);
+        // the previous chunk ends at the first record boundary of this part of the file, if any
+        if (split.start > nextChunkStart && split.firstRecordEnd[nextSplitState] >= 0) {
+          submitChunk(nextChunkStart, split.firstRecordEnd[nextSplitState]);
+        }
+        nextSplitState = split.endState[nextSplitState];
+      }
+      if (nextSplit == fileSize && nextChunkStart < fileSize) {
+        submitChunk(nextChunkStart, fileSize);
+      }
+    }
+  }
+
+  private void submitChunk(long start, long end) throws IOException {
+    if (end <= start) {
+      return;
+    }
+    nextChunkStart = end;
+    final MappedByteBuffer buffer = map(start, end);
+    pendingChunks.add(CompletableFuture.supplyAsync(() -> scanChunk(buffer), executor));
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /** Computes the {@link Split} of the part of the file between the given positions. */
+  private Split split(long start, long end) {
+    final Split split = new Split(start);
+    final int[] state = {Split.QUOTED, Split.FIELD_START, Split.CLOSING_QUOTE, Split.UNQUOTED};
+    try {
+      final MappedByteBuffer part = map(start, end);
+      for (int i = 0, length = part.limit(); i < length; i++) {
+        final int byteClass = Split.BYTE_CLASS[part.get(i) & 0xFF];
+        for (int s = 0; s < state.length; s++) {
+          if (byteClass == Split.LINE_FEED
+              && state[s] != Split.QUOTED
+              && split.firstRecordEnd[s] < 0) {
+            split.firstRecordEnd[s] = start + i + 1;
+          }
+          state[s] = Split.TRANSITIONS[state[s]][byteClass];
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    System.arraycopy(state, 0, split.endState, 0, state.length);
+    splitBytes.addAndGet(end - start);
+    return split;
+  }
+
+  /** Returns the number of bytes scanned to find the record boundaries of the chunks so far. */
+  long splitBytes() {
+    return splitBytes.get();
+  }
+
+  private MappedByteBuffer map(long start, long end) throws IOException {
+    if (end - start > Integer.MAX_VALUE) {
+      throw new IOException("CSV record is too large at file position: " + start);
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+  }
+
+  /**
+   * Finds the position right after the end of the first non-empty record that ends at or after the
+   * position {@code minEnd}, given that a record starts at the position {@code start}. The bytes
+   * between the positions are scanned to know whether each line break is inside a quoted value.
+   * This is only used to find the end of the header.
+   */
+  private long findRecordEnd(long start, long minEnd) throws IOException {
+    boolean fieldStart = true;
+    boolean quoted = false;
+    boolean closingQuote = false;
+    boolean emptyRecord = true;
+    long position = start;
+    while (position < fileSize) {
+      final long windowEnd = Math.min(fileSize, position + chunkSize);
+      final MappedByteBuffer window = map(position, windowEnd);
+      for (int i = 0, length = window.limit(); i < length; i++) {
+        final byte b = window.get(i);
+        if (b != '\n' && b != '\r') {
+          emptyRecord = false;
+        }
+        if (quoted) {
+          if (b == QUOTE) {
+            quoted = false;
+            closingQuote = true;
+          }
+          continue;
+        }
+        if (b == QUOTE && (fieldStart || closingQuote)) {
+          // opens a quoted value, or continues it after an escaped quote
+          quoted = true;
+          fieldStart = false;
+        } else if (b == DELIMITER || b == '\r') {
+          fieldStart = true;
+        } else if (b == '\n') {
+          fieldStart = true;
+          if (position + i >= minEnd && !emptyRecord) {
+            return position + i + 1;
+          }
+          emptyRecord = true;
+        } else if (b < 0 || b > ' ') {
+          fieldStart = false;
+        }
+        closingQuote = false;
+      }
+      position = windowEnd;
+    }
+    return fileSize;
+  }
+
+  private List<String> readHeader(ByteBuffer buffer) {
+    final List<String> header = new ArrayList<>();
+    final Scanner scanner = new Scanner(buffer);
+    scanner.skipByteOrderMark();
+    if (!scanner.skipEmptyLines()) {
+      return header;
+    }
+    do {
+      scanner.nextField();
+      header.add(decode(scanner.valueBuffer(), scanner.valueStart(), scanner.valueLength()));
+    } while (!scanner.endOfRecord());
+    return header;
+  }
+
+  /** Scans all records of the given chunk into batches of rows. */
+  private List<ColumnBatch> scanChunk(ByteBuffer buffer) {
+    final List<ColumnBatch> batches = new ArrayList<>();
+    final Scanner scanner = new Scanner(buffer);
+    ColumnBatch batch = null;
+    while (scanner.skipEmptyLines()) {
+      if (batch == null || batch.size == CHUNK_BATCH_SIZE) {
+        batch = new ColumnBatch(columns, CHUNK_BATCH_SIZE, readStrings);
+        batches.add(batch);
+      }
+      final int row = batch.size++;
+      int field = 0;
+      do {
+        scanner.nextField();
+        final int c = field < columnOfField.length ? columnOfField[field] : -1;
+        if (c >= 0) {
+          setValue(batch, c, row, scanner);
+        }
+        field++;
+      } while (!scanner.endOfRecord());
+      // fields missing at the end of short records are missing values
+      for (int c = 0; c < fieldOfColumn.length; c++) {
+        if (fieldOfColumn[c] >= field) {
+          setMissing(batch, c, row);
+        }
+      }
+    }
+    return batches;
+  }
+
+  private static void setValue(ColumnBatch batch, int column, int row, Scanner scanner) {
+    final ByteBuffer buffer = scanner.valueBuffer();
+    final int start = scanner.valueStart();
+    final int length = scanner.valueLength();
+    if (length == 0 || (length == 1 && buffer.get(start) == '-')) {
+      setMissing(batch, column, row);
+    } else if (batch.numbers[column] != null) {
+      batch.numbers[column][row] = parseDouble(buffer, start, start + length);
+    } else {
+      batch.missing[column][row] = false;
+      batch.hashes[column][row] = Hashes.murmur3_32(buffer, start, length);
+      if (batch.strings[column] != null) {
+        batch.strings[column][row] = decode(buffer, start, length);
+      }
+    }
+  }
+
+  private static void setMissing(ColumnBatch batch, int column, int row) {
+    if (batch.numbers[column] != null) {
+      batch.numbers[column][row] = Double.NaN;
+    } else {
+      batch.missing[column][row] = true;
+      batch.hashes[column][row] = MISSING_VALUE_HASH;
+      if (batch.strings[column] != null) {
+        batch.strings[column][row] = "";
+      }
+    }
+  }
+
+  private static String decode(ByteBuffer buffer, int start, int length) {
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses the bytes between the given positions as a double, with the same result as {@link
+   * Double#parseDouble(String)}, or returns NaN if they are not a number. Plain decimal numbers
+   * with at most 15 significant digits are parsed directly from the bytes, since their values
+   * are exactly computed by a single multiplication or division by a power of ten. Other numbers
+   * are parsed by {@link Double#parseDouble(String)}.
+   */
+  static double parseDouble(ByteBuffer buffer, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+      negative = buffer.get(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int significantDigits = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean fraction = false;
+    for (; i < end; i++) {
+      final byte b = buffer.get(i);
+      if (b >= '0' && b <= '9') {
+        digits++;
+        if (mantissa != 0 || b != '0') {
+          mantissa = mantissa * 10 + (b - '0');
+          significantDigits++;
+        }
+        if (fraction) {
+          exponent--;
+        }
+      } else if (b == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    if (i < end && digits > 0 && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+        negativeExponent = buffer.get(i) == '-';
+        i++;
+      }
+      int exponentDigits = 0;
+      int value = 0;
+      for (; i < end && exponentDigits < 4; i++, exponentDigits++) {
+        final byte b = buffer.get(i);
+        if (b < '0' || b > '9') {
+          break;
+        }
+        value = value * 10 + (b - '0');
+      }
+      if (exponentDigits == 0 || exponentDigits == 4) {
+        return parseDoubleSlow(buffer, start, end);
+      }
+      exponent += negativeExponent ? -value : value;
+    }
+    if (i < end || digits == 0 || significantDigits > 15 || Math.abs(exponent) > 22) {
+      return parseDoubleSlow(buffer, start, end);
+    }
+    double value = mantissa;
+    if (exponent >= 0) {
+      value *= POWERS_OF_TEN[exponent];
+    } else {
+      value /= POWERS_OF_TEN[-exponent];
+    }
+    return negative ? -value : value;
+  }
+
+  private static double parseDoubleSlow(ByteBuffer buffer, int start, int end) {
+    final byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    try {
+      return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1));
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * The summary of a part of the file used to split it into chunks without scanning it serially.
+   * A line feed is a record boundary unless it is inside a quoted value, which depends on the
+   * quoting state at the start of the part. Since there are only four such states, the part is
+   * scanned once for all of them: for each state at the start, the summary keeps the state at the
+   * end of the part and the position right after its first record boundary. Given the state at
+   * the start of the file, the summaries of consecutive parts determine the actual boundaries.
+   *
+   * <p>The states follow the same rules used by {@link #findRecordEnd(long, long)}: a quote opens
+   * a quoted value only at the start of a field, or right after a closing quote (i.e., an escaped
+   * quote), and any other quote is part of an unquoted value.
+   */
+  private static class Split {
+
+    /** Inside a quoted value. */
+    static final int QUOTED = 0;
+    /** At the start of a field, possibly after some whitespace. */
+    static final int FIELD_START = 1;
+    /** Right after the quote that closes a quoted value. */
+    static final int CLOSING_QUOTE = 2;
+    /** Inside an unquoted value, or after the closing quote of a quoted value. */
+    static final int UNQUOTED = 3;
+
+    static final int QUOTE_CHAR = 0;
+    static final int SEPARATOR = 1; // a delimiter or a carriage return
+    static final int LINE_FEED = 2;
+    static final int WHITESPACE = 3;
+    static final int OTHER = 4;
+
+    /** The next state given the current state and the class of the next byte. */
+    static final int[][] TRANSITIONS = {
+      // QUOTE_CHAR, SEPARATOR, LINE_FEED, WHITESPACE, OTHER
+      {CLOSING_QUOTE, QUOTED, QUOTED, QUOTED, QUOTED},
+      {QUOTED, FIELD_START, FIELD_START, FIELD_START, UNQUOTED},
+      {QUOTED, FIELD_START, FIELD_START, UNQUOTED, UNQUOTED},
+      {UNQUOTED, FIELD_START, FIELD_START, UNQUOTED, UNQUOTED}
+    };
+
+    static final int[] BYTE_CLASS = new int[256];
+
+    static {
+      for (int b = 0; b < 256; b++) {
+        final byte value = (byte) b;
+        if (value == QUOTE) {
+          BYTE_CLASS[b] = QUOTE_CHAR;
+        } else if (value == DELIMITER || value == '\r') {
+          BYTE_CLASS[b] = SEPARATOR;
+        } else if (value == '\n') {
+          BYTE_CLASS[b] = LINE_FEED;
+        } else if (value >= 0 && value <= ' ') {
+          BYTE_CLASS[b] = WHITESPACE;
+        } else {
+          BYTE_CLASS[b] = OTHER;
+        }
+      }
+    }
+
+    final long start;
+    /** The state at the end of the part, for each state at its start. */
+    final int[] endState = new int[4];
+    /**
+     * The position right after the first line feed of the part that is not inside a quoted value,
+     * for each state at the start, or -1 if there is none.
+     */
+    final long[] firstRecordEnd = {-1, -1, -1, -1};
+
+    Split(long start) {
+      this.start = start;
+    }
+  }
+
+  /**
+   * Finds the boundaries of the fields of the records of a buffer. Unquoted values are read
+   * directly from the buffer, and quoted values that contain escaped quotes are copied without the
+   * escapes into a separate buffer.
+   */
+  private static class Scanner {
+
+    final ByteBuffer buffer;
+    final int limit;
+    int position = 0;
+    boolean endOfRecord;
+    ByteBuffer valueBuffer;
+    int valueStart;
+    int valueLength;
+    byte[] unescaped = new byte[64];
+    ByteBuffer unescapedBuffer = ByteBuffer.wrap(unescaped);
+
+    Scanner(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.limit = buffer.limit();
+    }
+
+    void skipByteOrderMark() {
+      if (limit >= 3
+          && buffer.get(0) == (byte) 0xEF
+          && buffer.get(1) == (byte) 0xBB
+          && buffer.get(2) == (byte) 0xBF) {
+        position = 3;
+      }
+    }
+
+    /** Skips empty lines, and returns whether there is a record to be read. */
+    boolean skipEmptyLines() {
+      while (position < limit) {
+        final byte b = buffer.get(position);
+        if (b != '\n' && b != '\r') {
+          return true;
+        }
+        position++;
+      }
+      return false;
+    }
+
+    boolean endOfRecord() {
+      return endOfRecord;
+    }
+
+    ByteBuffer valueBuffer() {
+      return valueBuffer;
+    }
+
+    int valueStart() {
+      return valueStart;
+    }
+
+    int valueLength() {
+      return valueLength;
+    }
+
+    /** Reads the next field of the current record. */
+    void nextField() {
+      while (position < limit && isWhitespace(buffer.get(position))) {
+        position++;
+      }
+      if (position < limit && buffer.get(position) == QUOTE) {
+        readQuotedValue();
+      } else {
+        final int start = position;
+        int end = position;
+        while (position < limit) {
+          final byte b = buffer.get(position);
+          if (b == DELIMITER || b == '\n' || b == '\r') {
+            break;
+          }
+          position++;
+          if (!isWhitespace(b)) {
+            end = position;
+          }
+        }
+        valueBuffer = buffer;
+        valueStart = start;
+        valueLength = end - start;
+      }
+      // consumes the delimiter or the line break that ends the field
+      if (position < limit && buffer.get(position) == DELIMITER) {
+        position++;
+        endOfRecord = false;
+      } else {
+        if (position < limit && buffer.get(position) == '\r') {
+          position++;
+        }
+        if (position < limit && buffer.get(position) == '\n') {
+          position++;
+        }
+        endOfRecord = true;
+      }
+    }
+
+    private void readQuotedValue() {
+      final int start = ++position;
+      int length = 0;
+      boolean escaped = false;
+      while (position < limit) {
+        final byte b = buffer.get(position);
+        if (b == QUOTE) {
+          if (position + 1 < limit && buffer.get(position + 1) == QUOTE) {
+            // an escaped quote: from now on, the value is copied without the escapes
+            if (!escaped) {
+              copyToUnescaped(start, length);
+              escaped = true;
+            }
+            appendUnescaped(length++, QUOTE);
+            position += 2;
+            continue;
+          }
+          break;
+        }
+        if (escaped) {
+          appendUnescaped(length, b);
+        }
+        length++;
+        position++;
+      }
+      position++; // skips the closing quote
+      // any content after the closing quote is ignored
+      while (position < limit) {
+        final byte b = buffer.get(position);
+        if (b == DELIMITER || b == '\n' || b == '\r') {
+          break;
+        }
+        position++;
+      }
+      if (escaped) {
+        valueBuffer = unescapedBuffer;
+        valueStart = 0;
+      } else {
+        valueBuffer = buffer;
+        valueStart = start;
+      }
+      valueLength = length;
+    }
+
+    private void copyToUnescaped(int start, int length) {
+      for (int i = 0; i < length; i++) {
+        appendUnescaped(i, buffer.get(start + i));
+      }
+    }
+
+    private void appendUnescaped(int index, byte b) {
+      if (index == unescaped.length) {
+        unescaped = Arrays.copyOf(unescaped, 2 * unescaped.length);
+        unescapedBuffer = ByteBuffer.wrap(unescaped);
+      }
+      unescaped[index] = b;
+    }
+
+    private static boolean isWhitespace(byte b) {
+      // same as the whitespace ignored by the CSV parser, except for the line breaks
+      return b >= 0 && b <= ' ' && b != '\n' && b != '\r';
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package corrsketches.benchmark.io;
+
+import corrsketches.ColumnType;
+import corrsketches.util.Hashes;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Type;
+
+/**
+ * Reads the selected columns of a Parquet file in batches of rows. Only the column chunks of the
+ * selected columns are read from the file (using a requested schema), and the file is read one
+ * row group at a time.
+ *
+ * <p>String columns are the BINARY columns that are either annotated as strings (or enums) or not
+ * annotated, and numeric columns are the INT32, INT64, FLOAT and DOUBLE columns that are not
+ * annotated as dates or times. Nested and repeated columns are not supported.
+ */
+public class ParquetBatchReader implements TableBatchReader {
+
+  private static final int MISSING_VALUE_HASH = Hashes.murmur3_32("");
+
+  private final List<ColumnSchema> columns;
+  private final ParquetFileReader reader;
+  private final MessageType projection;
+  private final PrimitiveTypeName[] types;
+  private final boolean readStrings;
+  private RecordReader<Group> records;
+  private long remainingRows = 0;
+
+  public ParquetBatchReader(String path, List<ColumnSchema> columns) throws IOException {
+    this(path, columns, false);
+  }
+
+  public ParquetBatchReader(String path, List<ColumnSchema> columns, boolean readStrings)
+      throws IOException {
+    this.columns = columns;
+    this.readStrings = readStrings;
+    this.reader = open(path);
+    final MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+    final List<Type> fields = new ArrayList<>(columns.size());
+    this.types = new PrimitiveTypeName[columns.size()];
+    for (int c = 0; c < columns.size(); c++) {
+      final Type field = schema.getType(columns.get(c).name);
+      fields.add(field);
+      types[c] = field.asPrimitiveType().getPrimitiveTypeName();
+    }
+    this.projection = new MessageType(schema.getName(), fields);
+    reader.setRequestedSchema(projection);
+  }
+
+  public static List<ColumnSchema> readSchema(String path) throws IOException {
+    try (ParquetFileReader reader = open(path)) {
+      final MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+      final List<ColumnSchema> columns = new ArrayList<>();
+      for (Type field : schema.getFields()) {
+        if (!field.isPrimitive() || field.isRepetition(Type.Repetition.REPEATED)) {
+          continue;
+        }
+        final ColumnType type = columnType(field.asPrimitiveType());
+        if (type != null) {
+          columns.add(new ColumnSchema(field.getName(), type));
+        }
+      }
+      return columns;
+    }
+  }
+
+  /** Returns the type of the values of the given column, or null if it is not supported. */
+  private static ColumnType columnType(PrimitiveType type) {
+    final LogicalTypeAnnotation annotation = type.getLogicalTypeAnnotation();
+    switch (type.getPrimitiveTypeName()) {
+      case BINARY:
+        if (annotation == null
+            || annotation instanceof LogicalTypeAnnotation.StringLogicalTypeAnnotation
+            || annotation instanceof LogicalTypeAnnotation.EnumLogicalTypeAnnotation) {
+          return ColumnType.CATEGORICAL;
+        }
+        return null;
+      case INT32:
+      case INT64:
+        if (annotation == null
+            || annotation instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation) {
+          return ColumnType.NUMERICAL;
+        }
+        return null;
+      case FLOAT:
+      case DOUBLE:
+        return ColumnType.NUMERICAL;
+      default:
+        return null;
+    }
+  }
+
+  private static ParquetFileReader open(String path) throws IOException {
+    return ParquetFileReader.open(HadoopInputFile.fromPath(new Path(path), new Configuration()));
+  }
+
+  @Override
+  public List<ColumnSchema> columns() {
+    return columns;
+  }
+
+  @Override
+  public boolean readsStrings() {
+    return readStrings;
+  }
+
+  @Override
+  public int read(ColumnBatch batch) throws IOException {
+    int n = 0;
+    while (n < batch.capacity()) {
+      if (remainingRows == 0) {
+        // move to the next row group
+        final PageReadStore rowGroup = reader.readNextRowGroup();
+        if (rowGroup == null) {
+          break;
+        }
+        remainingRows = rowGroup.getRowCount();
+        records =
+            new ColumnIOFactory()
+                .getColumnIO(projection)
+                .getRecordReader(rowGroup, new GroupRecordConverter(projection));
+        continue;
+      }
+      final Group row = records.read();
+      remainingRows--;
+      for (int c = 0; c < types.length; c++) {
+        final boolean missing = row.getFieldRepetitionCount(c) == 0;
+        switch (types[c]) {
+          case BINARY:
+            batch.missing[c][n] = missing;
+            if (missing) {
+              batch.hashes[c][n] = MISSING_VALUE_HASH;
+              if (readStrings) {
+                batch.strings[c][n] = "";
+              }
+            } else {
+              final byte[] bytes = row.getBinary(c, 0).getBytesUnsafe();
+              batch.hashes[c][n] = Hashes.murmur3_32(bytes, 0, bytes.length);
+              if (readStrings) {
+                batch.strings[c][n] = new String(bytes, StandardCharsets.UTF_8);
+              }
+            }
+            break;
+          case INT32:
+            batch.numbers[c][n] = missing ? Double.NaN : row.getInteger(c, 0);
+            break;
+          case INT64:
+            batch.numbers[c][n] = missing ? Double.NaN : row.getLong(c, 0);
+            break;
+          case FLOAT:
+            batch.numbers[c][n] = missing ? Double.NaN : row.getFloat(c, 0);
+            break;
+          case DOUBLE:
+            batch.numbers[c][n] = missing ? Double.NaN : row.getDouble(c, 0);
+            break;
+          default:
+            throw new IllegalStateException("Unsupported column type: " + types[c]);
+        }
+      }
+      n++;
+    }
+    batch.size = n;
+    return n;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
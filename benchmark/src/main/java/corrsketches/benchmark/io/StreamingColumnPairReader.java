@@ -0,0 +1,326 @@
+package corrsketches.benchmark.io;
+
+import corrsketches.Column;
+import corrsketches.ColumnType;
+import corrsketches.benchmark.ColumnPair;
+import corrsketches.benchmark.io.TableBatchReader.ColumnSchema;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reads the column pairs of a table file with hashed keys, like {@link
+ * corrsketches.benchmark.Tables#readHashedColumnPairs(String, int, Set)}, but using a {@link
+ * TableBatchReader} instead of loading the table with Tablesaw. Only the key hashes and the
+ * numbers of the columns used by the column pairs are kept in memory, and the column pairs are
+ * created lazily from them, one at a time.
+ */
+public class StreamingColumnPairReader {
+
+  private StreamingColumnPairReader() {}
+
+  /**
+   * Reads the column pairs of the given table. If the table has fewer than {@code minRows} rows, or
+   * if it can't be read, no column pairs are returned.
+   */
+  public static Iterator<ColumnPair> readHashedColumnPairs(
+      String datasetFilePath, int minRows, Set<ColumnType> types) {
+    return readColumnPairs(datasetFilePath, minRows, types, false);
+  }
+
+  /**
+   * Reads the column pairs of the given table like {@link #readHashedColumnPairs(String, int,
+   * Set)}, but the column pairs also have the strings of their keys in {@link
+   * ColumnPair#keyValues}, which are needed to create key dictionaries. The strings of all key
+   * columns are kept in memory until all column pairs are created.
+   */
+  public static Iterator<ColumnPair> readColumnPairs(
+      String datasetFilePath, int minRows, Set<ColumnType> types) {
+    return readColumnPairs(datasetFilePath, minRows, types, true);
+  }
+
+  private static Iterator<ColumnPair> readColumnPairs(
+      String datasetFilePath, int minRows, Set<ColumnType> types, boolean keyStrings) {
+    try {
+      final Table table = readTable(datasetFilePath, minRows, types, keyStrings);
+      if (table == null) {
+        return Collections.emptyIterator();
+      }
+      final List<ColumnData[]> pairs = new ArrayList<>();
+      for (ColumnData key : table.keyColumns) {
+        for (ColumnData value : table.valueColumns) {
+          pairs.add(new ColumnData[] {key, value});
+        }
+      }
+      return new ColumnPairIterator(table.datasetName, pairs);
+    } catch (Exception e) {
+      System.out.println("\nFailed to read dataset from file: " + datasetFilePath);
+      e.printStackTrace(System.out);
+      return Collections.emptyIterator();
+    }
+  }
+
+  /**
+   * Reads the value columns of the given table grouped by key column, i.e., the same columns as
+   * the column pairs returned by {@link #readHashedColumnPairs(String, int, Set)}, but with the key
+   * hashes of each key column read only once. If the table has fewer than {@code minRows} rows, or
+   * if it can't be read, an empty list is returned.
+   */
+  public static List<KeyColumns> readKeyColumns(
+      String datasetFilePath, int minRows, Set<ColumnType> types) {
+    try {
+      final Table table = readTable(datasetFilePath, minRows, types, false);
+      if (table == null) {
+        return Collections.emptyList();
+      }
+      final List<String> columnNames = new ArrayList<>();
+      final List<Column> columns = new ArrayList<>();
+      for (ColumnData value : table.valueColumns) {
+        final double[] values = new double[value.size];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = value.value(i);
+        }
+        columnNames.add(value.schema.name);
+        columns.add(Column.of(values, value.schema.type));
+      }
+      final List<KeyColumns> result = new ArrayList<>();
+      for (ColumnData key : table.keyColumns) {
+        result.add(
+            new KeyColumns(
+                table.datasetName, key.schema.name, key.hashes.toIntArray(), columnNames, columns));
+      }
+      return result;
+    } catch (Exception e) {
+      System.out.println("\nFailed to read dataset from file: " + datasetFilePath);
+      e.printStackTrace(System.out);
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Reads the key columns and the value columns of the given types of a table, or returns null if
+   * the table has no column pairs or has fewer than {@code minRows} rows. The strings of the key
+   * columns are also read if {@code keyStrings} is set.
+   */
+  private static Table readTable(
+      String datasetFilePath, int minRows, Set<ColumnType> types, boolean keyStrings)
+      throws Exception {
+    final String datasetName = Paths.get(datasetFilePath).getFileName().toString();
+    final List<ColumnSchema> schema = TableBatchReader.readSchema(datasetFilePath);
+
+    final List<ColumnSchema> keyColumns = new ArrayList<>();
+    final List<ColumnSchema> valueColumns = new ArrayList<>();
+    for (ColumnSchema column : schema) {
+      if (column.type == ColumnType.CATEGORICAL) {
+        keyColumns.add(column);
+      }
+    }
+    for (ColumnType type : new ColumnType[] {ColumnType.CATEGORICAL, ColumnType.NUMERICAL}) {
+      if (!types.contains(type)) {
+        continue;
+      }
+      for (ColumnSchema column : schema) {
+        if (column.type == type) {
+          valueColumns.add(column);
+        }
+      }
+    }
+    if (keyColumns.isEmpty() || valueColumns.isEmpty()) {
+      return null;
+    }
+
+    final List<ColumnSchema> projection = new ArrayList<>();
+    for (ColumnSchema column : schema) {
+      if (keyColumns.contains(column) || valueColumns.contains(column)) {
+        projection.add(column);
+      }
+    }
+    final ColumnData[] columns = readColumns(datasetFilePath, projection, keyStrings);
+    System.out.println("Read table: " + datasetName);
+    if (columns[0].size < minRows) {
+      return null;
+    }
+
+    final Table table = new Table(datasetName);
+    for (ColumnSchema key : keyColumns) {
+      table.keyColumns.add(columns[projection.indexOf(key)]);
+    }
+    for (ColumnSchema value : valueColumns) {
+      table.valueColumns.add(columns[projection.indexOf(value)]);
+    }
+    return table;
+  }
+
+  /** The value columns of a table that share a key column, with one value per row of the table. */
+  public static class KeyColumns {
+
+    public final String datasetId;
+    public final String keyName;
+    /** The hashes of the keys of all rows. */
+    public final int[] keyHashes;
+
+    public final List<String> columnNames;
+    /** The value columns, with {@link Double#NaN} in the rows where the value is missing. */
+    public final List<Column> columns;
+
+    KeyColumns(
+        String datasetId,
+        String keyName,
+        int[] keyHashes,
+        List<String> columnNames,
+        List<Column> columns) {
+      this.datasetId = datasetId;
+      this.keyName = keyName;
+      this.keyHashes = keyHashes;
+      this.columnNames = columnNames;
+      this.columns = columns;
+    }
+  }
+
+  /** The key columns and the value columns read from a table, in the order of the column pairs. */
+  private static class Table {
+
+    final String datasetName;
+    final List<ColumnData> keyColumns = new ArrayList<>();
+    final List<ColumnData> valueColumns = new ArrayList<>();
+
+    Table(String datasetName) {
+      this.datasetName = datasetName;
+    }
+  }
+
+  /**
+   * Reads all rows of the given columns of the table in batches, including the strings of the
+   * string columns if {@code strings} is set.
+   */
+  private static ColumnData[] readColumns(
+      String datasetFilePath, List<ColumnSchema> projection, boolean strings) throws Exception {
+    final ColumnData[] columns = new ColumnData[projection.size()];
+    for (int c = 0; c < columns.length; c++) {
+      columns[c] = new ColumnData(projection.get(c), strings);
+    }
+    try (TableBatchReader reader = TableBatchReader.open(datasetFilePath, projection, strings)) {
+      final ColumnBatch batch = reader.newBatch(TableBatchReader.DEFAULT_BATCH_SIZE);
+      while (reader.read(batch) > 0) {
+        for (int c = 0; c < columns.length; c++) {
+          columns[c].add(batch, c);
+        }
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * The rows of a column of the table: the hashes of the strings (and which of them are missing)
+   * for string columns, or the numbers for numeric columns. The strings themselves are only kept
+   * if they are read.
+   */
+  private static class ColumnData {
+
+    final ColumnSchema schema;
+    final IntArrayList hashes;
+    final BitSet missing;
+    final List<String> strings;
+    final DoubleArrayList numbers;
+    int size = 0;
+
+    ColumnData(ColumnSchema schema, boolean strings) {
+      this.schema = schema;
+      if (schema.type == ColumnType.CATEGORICAL) {
+        this.hashes = new IntArrayList();
+        this.missing = new BitSet();
+        this.strings = strings ? new ArrayList<>() : null;
+        this.numbers = null;
+      } else {
+        this.hashes = null;
+        this.missing = null;
+        this.strings = null;
+        this.numbers = new DoubleArrayList();
+      }
+    }
+
+    void add(ColumnBatch batch, int column) {
+      if (hashes != null) {
+        hashes.addElements(hashes.size(), batch.hashes[column], 0, batch.size);
+        for (int i = 0; i < batch.size; i++) {
+          if (batch.missing[column][i]) {
+            missing.set(size + i);
+          }
+        }
+        if (strings != null) {
+          strings.addAll(Arrays.asList(batch.strings[column]).subList(0, batch.size));
+        }
+      } else {
+        numbers.addElements(numbers.size(), batch.numbers[column], 0, batch.size);
+      }
+      size += batch.size;
+    }
+
+    /** Returns the value of the given row as it is used in sketches, or NaN if it is missing. */
+    double value(int row) {
+      if (numbers != null) {
+        return numbers.getDouble(row);
+      }
+      return missing.get(row) ? Double.NaN : hashes.getInt(row);
+    }
+  }
+
+  /** Creates the column pairs of the table one at a time, skipping rows with missing values. */
+  private static class ColumnPairIterator implements Iterator<ColumnPair> {
+
+    private final String datasetName;
+    private final Iterator<ColumnData[]> it;
+
+    ColumnPairIterator(String datasetName, List<ColumnData[]> pairs) {
+      this.datasetName = datasetName;
+      this.it = pairs.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return it.hasNext();
+    }
+
+    @Override
+    public ColumnPair next() {
+      if (!it.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final ColumnData[] pair = it.next();
+      final ColumnData key = pair[0];
+      final ColumnData column = pair[1];
+      final int[] keyHashes = new int[column.size];
+      final double[] values = new double[column.size];
+      final List<String> keyValues = key.strings != null ? new ArrayList<>() : null;
+      int size = 0;
+      for (int i = 0; i < column.size; i++) {
+        final double value = column.value(i);
+        if (!Double.isNaN(value)) {
+          keyHashes[size] = key.hashes.getInt(i);
+          values[size++] = value;
+          if (keyValues != null) {
+            keyValues.add(key.strings.get(i));
+          }
+        }
+      }
+      final ColumnPair cp =
+          new ColumnPair(
+              datasetName,
+              key.schema.name,
+              Arrays.copyOf(keyHashes, size),
+              column.schema.name,
+              column.schema.type,
+              Arrays.copyOf(values, size));
+      cp.keyValues = keyValues;
+      return cp;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package corrsketches.benchmark.io;
+
+import corrsketches.ColumnType;
+import corrsketches.CorrelationSketch;
+import corrsketches.benchmark.io.TableBatchReader.ColumnSchema;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the correlation sketches of all (key, value) column pairs of a table while the table is
+ * read in batches, so that the table is never fully loaded in memory. The column pairs are the
+ * same ones created by {@code Tables.readColumnPairs()}: every categorical column is used as a key
+ * column, and is paired with every value column of the requested types.
+ *
+ * <p>Sketches whose types support incremental updates are updated directly with each batch, so
+ * the memory used only depends on the batch size and on the size of the sketches. Other sketch
+ * types (see {@link corrsketches.SketchType#supportsIncrementalUpdates()}) need to see all rows
+ * at once, so the table is read once per column pair, projecting only the key and value columns
+ * of the pair, and only the rows of the current pair are kept in memory.
+ */
+public class StreamingSketchBuilder {
+
+  /** The sketch of a (key, value) column pair of a table. */
+  public static class ColumnPairSketch {
+
+    public final String datasetId;
+    public final String keyName;
+    public final String columnName;
+    public final CorrelationSketch sketch;
+
+    public ColumnPairSketch(
+        String datasetId, String keyName, String columnName, CorrelationSketch sketch) {
+      this.datasetId = datasetId;
+      this.keyName = keyName;
+      this.columnName = columnName;
+      this.sketch = sketch;
+    }
+  }
+
+  private final CorrelationSketch.Builder builder;
+  private final int batchSize;
+
+  public StreamingSketchBuilder(CorrelationSketch.Builder builder) {
+    this(builder, TableBatchReader.DEFAULT_BATCH_SIZE);
+  }
+
+  public StreamingSketchBuilder(CorrelationSketch.Builder builder, int batchSize) {
+    this.builder = builder;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Reads the given table file and builds the sketches of all its column pairs. If the table has
+   * fewer than {@code minRows} rows, no sketches are returned.
+   */
+  public List<ColumnPairSketch> build(String datasetFilePath, int minRows, Set<ColumnType> types)
+      throws IOException {
+    final String datasetName = Paths.get(datasetFilePath).getFileName().toString();
+    final List<ColumnSchema> schema = TableBatchReader.readSchema(datasetFilePath);
+
+    // project only the columns used by the column pairs
+    final Map<String, Integer> positions = new LinkedHashMap<>();
+    final List<ColumnSchema> projection = new ArrayList<>();
+    final List<ColumnSchema> keyColumns = new ArrayList<>();
+    final List<ColumnSchema> valueColumns = new ArrayList<>();
+    for (ColumnSchema column : schema) {
+      if (column.type == ColumnType.CATEGORICAL) {
+        keyColumns.add(column);
+      }
+    }
+    for (ColumnType type : new ColumnType[] {ColumnType.CATEGORICAL, ColumnType.NUMERICAL}) {
+      if (!types.contains(type)) {
+        continue;
+      }
+      for (ColumnSchema column : schema) {
+        if (column.type == type) {
+          valueColumns.add(column);
+        }
+      }
+    }
+    for (ColumnSchema column : schema) {
+      if (keyColumns.contains(column) || valueColumns.contains(column)) {
+        positions.put(column.name, projection.size());
+        projection.add(column);
+      }
+    }
+    if (keyColumns.isEmpty() || valueColumns.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    if (!builder.sketchType().supportsIncrementalUpdates()) {
+      return buildOnePairAtATime(datasetFilePath, datasetName, minRows, keyColumns, valueColumns);
+    }
+
+    final List<PairBuilder> pairs = new ArrayList<>();
+    for (ColumnSchema key : keyColumns) {
+      for (ColumnSchema value : valueColumns) {
+        pairs.add(new PairBuilder(key, positions.get(key.name), value, positions.get(value.name)));
+      }
+    }
+    if (readPairs(datasetFilePath, projection, pairs) < minRows) {
+      return Collections.emptyList();
+    }
+
+    final List<ColumnPairSketch> sketches = new ArrayList<>(pairs.size());
+    for (PairBuilder pair : pairs) {
+      sketches.add(
+          new ColumnPairSketch(datasetName, pair.key.name, pair.value.name, pair.build()));
+    }
+    return sketches;
+  }
+
+  /**
+   * Builds the sketches of the column pairs by reading the table once per column pair, so that only
+   * the rows of a single column pair are kept in memory at any time.
+   */
+  private List<ColumnPairSketch> buildOnePairAtATime(
+      String datasetFilePath,
+      String datasetName,
+      int minRows,
+      List<ColumnSchema> keyColumns,
+      List<ColumnSchema> valueColumns)
+      throws IOException {
+    final List<ColumnPairSketch> sketches = new ArrayList<>();
+    for (ColumnSchema key : keyColumns) {
+      for (ColumnSchema value : valueColumns) {
+        final List<ColumnSchema> projection =
+            key == value ? Collections.singletonList(key) : Arrays.asList(key, value);
+        final PairBuilder pair = new PairBuilder(key, 0, value, projection.size() - 1);
+        if (readPairs(datasetFilePath, projection, Collections.singletonList(pair)) < minRows) {
+          return Collections.emptyList();
+        }
+        sketches.add(new ColumnPairSketch(datasetName, key.name, value.name, pair.build()));
+      }
+    }
+    return sketches;
+  }
+
+  /**
+   * Reads the given columns of the table in batches and updates the given column pairs with each
+   * batch.
+   *
+   * @return the number of rows of the table
+   */
+  private long readPairs(
+      String datasetFilePath, List<ColumnSchema> projection, List<PairBuilder> pairs)
+      throws IOException {
+    long numRows = 0;
+    try (TableBatchReader reader = TableBatchReader.open(datasetFilePath, projection)) {
+      final ColumnBatch batch = reader.newBatch(batchSize);
+      while (reader.read(batch) > 0) {
+        numRows += batch.size;
+        for (PairBuilder pair : pairs) {
+          pair.update(batch);
+        }
+      }
+    }
+    return numRows;
+  }
+
+  /** Builds the sketch of a single column pair from the batches of rows of the table. */
+  private class PairBuilder {
+
+    final ColumnSchema key;
+    final int keyPosition;
+    final ColumnSchema value;
+    final int valuePosition;
+    final CorrelationSketch sketch; // null if the rows are accumulated
+    final IntArrayList keyHashes;
+    final DoubleArrayList values;
+
+    PairBuilder(ColumnSchema key, int keyPosition, ColumnSchema value, int valuePosition) {
+      this.key = key;
+      this.keyPosition = keyPosition;
+      this.value = value;
+      this.valuePosition = valuePosition;
+      if (builder.sketchType().supportsIncrementalUpdates()) {
+        this.sketch = builder.build(value.type);
+        this.keyHashes = null;
+        this.values = null;
+      } else {
+        this.sketch = null;
+        this.keyHashes = new IntArrayList();
+        this.values = new DoubleArrayList();
+      }
+    }
+
+    void update(ColumnBatch batch) {
+      final int[] hashes = batch.hashes[keyPosition];
+      for (int i = 0; i < batch.size; i++) {
+        final double v = batch.value(valuePosition, i);
+        if (Double.isNaN(v)) {
+          continue; // rows with missing values are ignored, as in Tables.createColumnPair()
+        }
+        if (sketch != null) {
+          sketch.update(hashes[i], v);
+        } else {
+          keyHashes.add(hashes[i]);
+          values.add(v);
+        }
+      }
+    }
+
+    CorrelationSketch build() {
+      if (sketch != null) {
+        return sketch;
+      }
+      return builder.build(keyHashes.toIntArray(), values.toDoubleArray(), value.type);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package corrsketches.benchmark.io;
+
+import corrsketches.ColumnType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads a subset of the columns of a table file in batches of rows, so that the memory used
+ * depends on the batch size instead of the size of the table. Only the columns given in the
+ * projection are decoded: string columns are read as the murmur3 hashes of their values, and
+ * numeric columns are read as doubles (see {@link ColumnBatch}). Readers can be opened to
+ * also read the strings of the string columns, e.g., to create the dictionaries of the keys.
+ */
+public interface TableBatchReader extends Closeable {
+
+  int DEFAULT_BATCH_SIZE = 64 * 1024;
+
+  /** Returns the columns read by this reader, in the same order used by the batches. */
+  List<ColumnSchema> columns();
+
+  /**
+   * Reads the next rows of the table into the given batch, up to its capacity.
+   *
+   * @return the number of rows read, which is zero when the end of the table is reached
+   */
+  int read(ColumnBatch batch) throws IOException;
+
+  /**
+   * Returns whether this reader reads the strings of the string columns, in which case the batches
+   * read must have them (see {@link #newBatch(int)}).
+   */
+  boolean readsStrings();
+
+  /** Creates an empty batch that can be used to read rows from this reader. */
+  default ColumnBatch newBatch(int capacity) {
+    return new ColumnBatch(columns(), capacity, readsStrings());
+  }
+
+  /**
+   * Reads the schema of the table stored in the given CSV or Parquet file. Only the columns that
+   * can be used in sketches (i.e., string and numeric columns) are returned.
+   */
+  static List<ColumnSchema> readSchema(String path) throws IOException {
+    if (path.endsWith("csv")) {
+      return CsvBatchReader.readSchema(path);
+    } else if (path.endsWith("parquet")) {
+      return ParquetBatchReader.readSchema(path);
+    } else {
+      throw new IllegalArgumentException("Invalid file extension in file: " + path);
+    }
+  }
+
+  /**
+   * Opens a reader for the given columns of the table stored in the given CSV or Parquet file.
+   * The columns must be a subset of the columns returned by {@link #readSchema(String)}.
+   */
+  static TableBatchReader open(String path, List<ColumnSchema> projection) throws IOException {
+    return open(path, projection, false);
+  }
+
+  /**
+   * Opens a reader for the given columns of the table stored in the given CSV or Parquet file,
+   * which also reads the strings of the string columns if {@code readStrings} is set.
+   */
+  static TableBatchReader open(String path, List<ColumnSchema> projection, boolean readStrings)
+      throws IOException {
+    if (path.endsWith("csv")) {
+      return new MappedCsvBatchReader(path, projection, readStrings);
+    } else if (path.endsWith("parquet")) {
+      return new ParquetBatchReader(path, projection, readStrings);
+    } else {
+      throw new IllegalArgumentException("Invalid file extension in file: " + path);
+    }
+  }
+
+  class ColumnSchema {
+
+    public final String name;
+    public final ColumnType type;
+
+    public ColumnSchema(String name, ColumnType type) {
+      this.name = name;
+      this.type = type;
+    }
+
+    @Override
+    public String toString() {
+      return "ColumnSchema{name='" + name + "', type=" + type + '}';
+    }
+  }
+}
@@ -50,4 +50,34 @@ public class Sets {
     }
     return size;
   }
+
+  /**
+   * Computes the size of the intersection of the given sets, which are represented by arrays of
+   * distinct values sorted in ascending order (e.g., {@code ColumnPair.distinctKeyHashes()}).
+   */
+  public static int intersectionSize(int[] x, int[] y) {
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < x.length && j < y.length) {
+      if (x[i] < y[j]) {
+        i++;
+      } else if (x[i] > y[j]) {
+        j++;
+      } else {
+        size++;
+        i++;
+        j++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Computes the size of the union of the given sets, which are represented by arrays of distinct
+   * values sorted in ascending order (e.g., {@code ColumnPair.distinctKeyHashes()}).
+   */
+  public static int unionSize(int[] x, int[] y) {
+    return x.length + y.length - intersectionSize(x, y);
+  }
 }
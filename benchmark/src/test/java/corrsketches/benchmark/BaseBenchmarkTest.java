@@ -0,0 +1,30 @@
+package corrsketches.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class BaseBenchmarkTest {
+
+  @Test
+  public void shouldSplitCombinationsInContiguousRangesInOrder() {
+    for (int n : new int[] {0, 1, 2, 7, 100, 1001}) {
+      List<Integer> combinations = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        combinations.add(i);
+      }
+      for (int totalTasks : new int[] {2, 3, 8, 16}) {
+        List<Integer> concatenated = new ArrayList<>();
+        for (int taskId = 0; taskId < totalTasks; taskId++) {
+          List<Integer> range = BaseBenchmark.taskRange(combinations, totalTasks, taskId);
+          assertThat(range.size()).isBetween(n / totalTasks, n / totalTasks + 1);
+          concatenated.addAll(range);
+        }
+        // the tasks get consecutive combinations, and together they keep the original order
+        assertThat(concatenated).isEqualTo(combinations);
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package corrsketches.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import corrsketches.ColumnType;
+import corrsketches.benchmark.CreateColumnStore.ColumnStore;
+import corrsketches.benchmark.CreateColumnStore.ColumnStoreMetadata;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CreateColumnStoreTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void shouldReadWrittenProgress() throws Exception {
+    Path progressFile = tempDir.resolve(CreateColumnStore.PROGRESS_FILE);
+    assertThat(CreateColumnStore.readProgress(progressFile)).isEmpty();
+
+    Writer progress = new StringWriter();
+    CreateColumnStore.writeProgress(progress, "a.csv", Set.of("a1", "a2"));
+    CreateColumnStore.writeProgress(progress, "b.csv", Set.of());
+    // a line partially written when the execution was interrupted
+    Files.writeString(progressFile, progress + "c.csv", StandardCharsets.UTF_8);
+
+    Map<String, Set<String>> expected = new LinkedHashMap<>();
+    expected.put("a.csv", Set.of("a1", "a2"));
+    expected.put("b.csv", Set.of());
+    assertThat(CreateColumnStore.readProgress(progressFile)).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldSkipTablesIngestedByPreviousExecution() throws Exception {
+    Path input = Files.createDirectory(tempDir.resolve("input"));
+    Path output = Files.createDirectory(tempDir.resolve("output"));
+    Files.writeString(input.resolve("t1.csv"), "key,num\na,1\nb,2\nc,3\n");
+    Files.writeString(input.resolve("t2.csv"), "key,num,other\na,1,4\nb,2,5\nc,3,6\n");
+
+    MemoryColumnStore firstStore = new MemoryColumnStore();
+    Map<String, Set<String>> firstColumns = createTool(input, output).writeColumns(firstStore);
+    assertThat(firstStore.closed).isTrue();
+    assertThat(firstColumns).hasSize(2);
+    assertThat(firstStore.columns.keySet()).hasSize(3);
+
+    // the execution is interrupted after the progress is written, but before the metadata file
+    Files.writeString(input.resolve("t3.csv"), "key,num\nd,7\ne,8\nf,9\n");
+    Path progressFile = output.resolve(CreateColumnStore.PROGRESS_FILE);
+    Files.writeString(
+        progressFile,
+        Files.readString(progressFile) + input.resolve("t3.csv"),
+        StandardCharsets.UTF_8);
+
+    CreateColumnStore tool = createTool(input, output);
+    MemoryColumnStore secondStore = new MemoryColumnStore();
+    Map<String, Set<String>> allColumns = tool.writeColumns(secondStore);
+    // only the table that was not listed in the progress file is read again
+    assertThat(secondStore.columns.keySet()).hasSize(1);
+    assertThat(secondStore.columns.values().iterator().next().datasetId).isEqualTo("t3.csv");
+    assertThat(allColumns).hasSize(3);
+    assertThat(allColumns).containsAllEntriesOf(firstColumns);
+    assertThat(CreateColumnStore.readProgress(progressFile)).isEqualTo(allColumns);
+
+    // the metadata file lists the columns of the tables ingested by both executions
+    tool.writeMetadata(allColumns);
+    ColumnStoreMetadata metadata = CreateColumnStore.readMetadata(output.toString());
+    assertThat(metadata.dbType).isEqualTo(DBType.ROCKSDB);
+    assertThat(metadata.columnSets).containsExactlyInAnyOrderElementsOf(allColumns.values());
+
+    // a complete execution writes no columns
+    MemoryColumnStore thirdStore = new MemoryColumnStore();
+    assertThat(createTool(input, output).writeColumns(thirdStore)).isEqualTo(allColumns);
+    assertThat(thirdStore.columns).isEmpty();
+  }
+
+  private static CreateColumnStore createTool(Path input, Path output) {
+    CreateColumnStore tool = new CreateColumnStore();
+    tool.inputPath = input.toString();
+    tool.outputPath = output.toString();
+    tool.columnTypes = new ColumnType[] {ColumnType.NUMERICAL};
+    return tool;
+  }
+
+  private static class MemoryColumnStore implements ColumnStore {
+
+    final Map<String, ColumnPair> columns = new HashMap<>();
+    boolean closed = false;
+
+    @Override
+    public void store(String id, ColumnPair cp) {
+      columns.put(id, cp);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
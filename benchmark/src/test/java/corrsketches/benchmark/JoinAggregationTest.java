@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import corrsketches.ColumnType;
 import corrsketches.aggregations.AggregateFunction;
+import corrsketches.benchmark.io.HashedColumnCodec;
+import corrsketches.util.Hashes;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -29,14 +31,14 @@ public class JoinAggregationTest {
     ColumnPair count = columnPairs.get(1);
 
     // then
-    assertEquals(4, mean.keyValues.size());
+    assertEquals(4, mean.keyHashes().length);
     assertEquals(4, mean.columnValues.length);
     assertEquals(1.0, getValueOfKey(mean, "a"));
     assertEquals(2.0, getValueOfKey(mean, "b"));
     assertEquals(3.0, getValueOfKey(mean, "c"));
     assertEquals(4.0, getValueOfKey(mean, "d"));
 
-    assertEquals(4, count.keyValues.size());
+    assertEquals(4, count.keyHashes().length);
     assertEquals(4, count.columnValues.length);
     assertEquals(1.0, getValueOfKey(count, "a"));
     assertEquals(2.0, getValueOfKey(count, "b"));
@@ -59,7 +61,7 @@ public class JoinAggregationTest {
     ColumnPair count = columnPairs.get(1);
 
     // then
-    assertEquals(5, mean.keyValues.size());
+    assertEquals(5, mean.keyHashes().length);
     assertEquals(5, mean.columnValues.length);
     assertEquals(1.0, getValueOfKey(mean, "a"));
     assertEquals(2.0, getValueOfKey(mean, "b"));
@@ -67,7 +69,7 @@ public class JoinAggregationTest {
     assertEquals(4.0, getValueOfKey(mean, "d"));
     assertEquals(5.0, getValueOfKey(mean, "e"));
 
-    assertEquals(5, count.keyValues.size());
+    assertEquals(5, count.keyHashes().length);
     assertEquals(5, count.columnValues.length);
     assertEquals(1.0, getValueOfKey(count, "a"));
     assertEquals(1.0, getValueOfKey(count, "b"));
@@ -76,9 +78,33 @@ public class JoinAggregationTest {
     assertEquals(1.0, getValueOfKey(count, "e"));
   }
 
+  @Test
+  public void shouldAggregateColumnPairWithOnlyKeyHashes() {
+    // given: a column pair as read from the column store, which has no key strings
+    List<String> keys = Arrays.asList("a", "b", "b", "c", "d", "d", "d");
+    double[] values = new double[] {1.0, 1.0, 3.0, 3.0, 0.0, 8.0, 4.0};
+    final ColumnPair cp =
+        HashedColumnCodec.decode(
+            HashedColumnCodec.encode(createNumericalColumnPair("B", keys, values)));
+    assertNull(cp.keyValues);
+
+    // when
+    final List<ColumnPair> columnPairs =
+        JoinAggregation.aggregateColumnPair(cp, Collections.singletonList(SUM));
+    ColumnPair sum = columnPairs.get(0);
+
+    // then
+    assertEquals(4, sum.keyHashes().length);
+    assertEquals(1.0, getValueOfKey(sum, "a"));
+    assertEquals(4.0, getValueOfKey(sum, "b"));
+    assertEquals(3.0, getValueOfKey(sum, "c"));
+    assertEquals(12.0, getValueOfKey(sum, "d"));
+  }
+
   private double getValueOfKey(ColumnPair aggregate, String key) {
-    for (int i = 0; i < aggregate.keyValues.size(); i++) {
-      if (aggregate.keyValues.get(i).equals(key)) {
+    final int[] keyHashes = aggregate.keyHashes();
+    for (int i = 0; i < keyHashes.length; i++) {
+      if (keyHashes[i] == Hashes.murmur3_32(key)) {
         return aggregate.columnValues[i];
       }
     }
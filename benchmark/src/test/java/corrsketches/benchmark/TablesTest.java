@@ -128,6 +128,28 @@ public class TablesTest {
     assertThat(cp.columnName).isEqualTo("value");
   }
 
+  @Test
+  public void shouldReadSameColumnPairsWithHashedKeys() throws Exception {
+    String csvFile = resolvePath("TablesTest/csv-files/test-column-types.csv");
+    Set<ColumnType> types = Set.of(ColumnType.CATEGORICAL, ColumnType.NUMERICAL);
+    final Iterator<ColumnPair> it = Tables.readColumnPairs(csvFile, 0, types);
+    final Iterator<ColumnPair> hashedIt = Tables.readHashedColumnPairs(csvFile, 0, types);
+
+    int count = 0;
+    while (it.hasNext()) {
+      assertThat(hashedIt.hasNext()).isTrue();
+      ColumnPair cp = it.next();
+      ColumnPair hashed = hashedIt.next();
+      assertThat(hashed.keyValues).isNull();
+      assertThat(hashed).isEqualTo(cp);
+      assertThat(hashed.keyHashes).isEqualTo(cp.keyHashes());
+      assertThat(hashed.columnValues).isEqualTo(cp.columnValues);
+      count++;
+    }
+    assertThat(hashedIt.hasNext()).isFalse();
+    assertThat(count).isEqualTo(8);
+  }
+
   @Test
   public void shouldFindParquetFiles() throws Exception {
     String directory = resolvePath("TablesTest/parquet-files/");
@@ -0,0 +1,75 @@
+package corrsketches.benchmark.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class DBSourceTest {
+
+  @Test
+  public void shouldCreateAllPairsInBlockNestedLoopOrder() {
+    for (int n : new int[] {0, 1, 2, 7, 64, 100}) {
+      for (int blockSize : new int[] {1, 3, 10, 64, 200}) {
+        List<String> columns = createColumns(n);
+        List<String> pairs =
+            DBSource.blockNestedLoopPairs(columns, blockSize, (x, y) -> x + ":" + y);
+
+        Set<String> expected = new HashSet<>();
+        for (int x = 0; x < n; x++) {
+          for (int y = x + 1; y < n; y++) {
+            expected.add(columns.get(x) + ":" + columns.get(y));
+          }
+        }
+        assertThat(pairs).hasSize(expected.size());
+        assertThat(new HashSet<>(pairs)).isEqualTo(expected);
+      }
+    }
+  }
+
+  @Test
+  public void shouldLoadEachColumnOncePerBlockPair() {
+    int n = 200;
+    int blockSize = 10;
+    List<String> columns = createColumns(n);
+    List<String[]> pairs =
+        DBSource.blockNestedLoopPairs(columns, blockSize, (x, y) -> new String[] {x, y});
+
+    // a LRU cache that holds two blocks of columns
+    final int capacity = 2 * blockSize;
+    Map<String, String> cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > capacity;
+          }
+        };
+    int loads = 0;
+    for (String[] pair : pairs) {
+      for (String column : pair) {
+        if (cache.get(column) == null) {
+          cache.put(column, column);
+          loads++;
+        }
+      }
+    }
+    int blocks = n / blockSize;
+    int blockPairs = blocks * (blocks + 1) / 2;
+    assertThat(loads).isLessThanOrEqualTo(blockPairs * 2 * blockSize);
+    // much fewer loads than the number of column uses
+    assertThat(loads).isLessThan(pairs.size() / 4);
+  }
+
+  private static List<String> createColumns(int n) {
+    List<String> columns = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      columns.add("c" + i);
+    }
+    return columns;
+  }
+}
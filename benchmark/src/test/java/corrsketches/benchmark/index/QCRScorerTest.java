@@ -0,0 +1,157 @@
+package corrsketches.benchmark.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiBits;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.similarities.BooleanSimilarity;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.Bits;
+import org.junit.jupiter.api.Test;
+
+public class QCRScorerTest {
+
+  private static final String ID_FIELD = "i";
+  private static final String FIELD = "s";
+  private static final String OPPOSITE_FIELD = "f";
+
+  @Test
+  public void shouldRankDocumentsLikeDisjunctionMaxQuery() throws IOException {
+    Random random = new Random(1234);
+    // a small key universe (with negative and positive hashes) creates many score ties
+    int[] universe = new int[40];
+    for (int i = 0; i < universe.length; i++) {
+      universe[i] = random.nextInt();
+    }
+    int[] queryKeys = sample(random, universe, 20);
+    byte[] querySigns = randomSigns(random, queryKeys.length);
+    byte[] flippedSigns = new byte[querySigns.length];
+    for (int i = 0; i < querySigns.length; i++) {
+      flippedSigns[i] = QCRTerms.flip(querySigns[i]);
+    }
+
+    BooleanSimilarity similarity = new BooleanSimilarity();
+    IndexWriter writer =
+        new IndexWriter(
+            new ByteBuffersDirectory(), new IndexWriterConfig().setSimilarity(similarity));
+    // documents that match all query keys in the positive and negative orientations
+    addDocument(writer, "positive", queryKeys, querySigns);
+    addDocument(writer, "negative", queryKeys, flippedSigns);
+    for (int i = 0; i < 300; i++) {
+      int[] keys = sample(random, universe, 1 + random.nextInt(universe.length));
+      addDocument(writer, "d" + i, keys, randomSigns(random, keys.length));
+      if (i % 60 == 59) {
+        writer.commit(); // creates multiple segments
+      }
+    }
+    for (int i = 0; i < 300; i += 7) {
+      writer.deleteDocuments(new Term(ID_FIELD, "d" + i));
+    }
+    writer.commit();
+
+    IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(writer));
+    searcher.setSimilarity(similarity);
+    assertTrue(searcher.getIndexReader().leaves().size() > 1);
+    assertTrue(searcher.getIndexReader().hasDeletions());
+
+    for (int k : new int[] {1, 2, 10, 50, 1000}) {
+      // QCR: both orientations are matched against the same field
+      assertSameRanking(
+          searcher,
+          dismax(FIELD, queryKeys, querySigns, FIELD, flippedSigns),
+          QCRScorer.search(searcher, FIELD, null, queryKeys, querySigns, k).scoreDocs,
+          k);
+      // QCRI: the negative orientation is matched against the opposite signs of the documents
+      assertSameRanking(
+          searcher,
+          dismax(FIELD, queryKeys, querySigns, OPPOSITE_FIELD, querySigns),
+          QCRScorer.search(searcher, FIELD, OPPOSITE_FIELD, queryKeys, querySigns, k).scoreDocs,
+          k);
+    }
+
+    ScoreDoc[] top = QCRScorer.search(searcher, FIELD, null, queryKeys, querySigns, 2).scoreDocs;
+    assertEquals("positive", searcher.doc(top[0].doc).get(ID_FIELD));
+    assertEquals("negative", searcher.doc(top[1].doc).get(ID_FIELD));
+    assertEquals((float) queryKeys.length, top[0].score);
+    assertEquals((float) queryKeys.length, top[1].score);
+
+    searcher.getIndexReader().close();
+    writer.close();
+  }
+
+  /** Creates the query used by the QCR indexes before the single-pass scorer. */
+  private static Query dismax(
+      String field, int[] keys, byte[] signs, String negativeField, byte[] negativeSigns) {
+    BooleanQuery.Builder positive = new BooleanQuery.Builder();
+    BooleanQuery.Builder negative = new BooleanQuery.Builder();
+    for (int i = 0; i < keys.length; i++) {
+      positive.add(new TermQuery(new Term(field, QCRTerms.term(keys[i], signs[i]))), Occur.SHOULD);
+      negative.add(
+          new TermQuery(new Term(negativeField, QCRTerms.term(keys[i], negativeSigns[i]))),
+          Occur.SHOULD);
+    }
+    return new DisjunctionMaxQuery(Arrays.asList(positive.build(), negative.build()), 0f);
+  }
+
+  private static void assertSameRanking(
+      IndexSearcher searcher, Query expectedQuery, ScoreDoc[] actual, int k) throws IOException {
+    ScoreDoc[] expected = searcher.search(expectedQuery, k).scoreDocs;
+    Bits liveDocs = MultiBits.getLiveDocs(searcher.getIndexReader());
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].doc, actual[i].doc, "doc at position " + i);
+      assertEquals(expected[i].score, actual[i].score, "score at position " + i);
+      // deleted documents are never returned
+      assertTrue(liveDocs == null || liveDocs.get(actual[i].doc));
+    }
+  }
+
+  private static void addDocument(IndexWriter writer, String id, int[] keys, byte[] signs)
+      throws IOException {
+    Document doc = new Document();
+    doc.add(new StringField(ID_FIELD, id, Field.Store.YES));
+    QCRTerms.index(doc, FIELD, keys, signs, false);
+    QCRTerms.index(doc, OPPOSITE_FIELD, keys, signs, true);
+    writer.addDocument(doc);
+  }
+
+  /** Returns a sorted sample of distinct keys, as the keys of a sketch. */
+  private static int[] sample(Random random, int[] universe, int size) {
+    int[] shuffled = universe.clone();
+    for (int i = shuffled.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = shuffled[i];
+      shuffled[i] = shuffled[j];
+      shuffled[j] = tmp;
+    }
+    int[] keys = Arrays.copyOf(shuffled, size);
+    Arrays.sort(keys);
+    return keys;
+  }
+
+  /** Returns random sign codes, including ZERO, which is its own opposite. */
+  private static byte[] randomSigns(Random random, int size) {
+    byte[] signs = new byte[size];
+    for (int i = 0; i < size; i++) {
+      signs[i] = (byte) random.nextInt(3);
+    }
+    return signs;
+  }
+}
@@ -0,0 +1,45 @@
+package corrsketches.benchmark.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.hash.HashCode;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class QueryResultCacheTest {
+
+  @Test
+  public void shouldNotStoreResultsComputedBeforeInvalidation() {
+    QueryResultCache cache = new QueryResultCache(10, 1 << 20);
+    HashCode query = HashCode.fromInt(42);
+    List<Hit> hits = Collections.singletonList(new Hit("a", null, null, 1f, 0, null));
+
+    long generation = cache.generation();
+    cache.put(query, generation, hits);
+    assertThat(cache.get(query)).hasSize(1);
+
+    // results of a query that started before the refresh are stale
+    cache.invalidate();
+    assertThat(cache.get(query)).isNull();
+    cache.put(query, generation, hits);
+    assertThat(cache.get(query)).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+
+    cache.put(query, cache.generation(), hits);
+    assertThat(cache.get(query)).hasSize(1);
+  }
+
+  @Test
+  public void shouldReturnCopiesOfTheCachedHits() {
+    QueryResultCache cache = new QueryResultCache(10, 1 << 20);
+    HashCode query = HashCode.fromInt(42);
+    cache.put(
+        query,
+        cache.generation(),
+        Collections.singletonList(new Hit("a", null, null, 1f, 0, null)));
+
+    cache.get(query).get(0).rerankScore = 10;
+    assertThat(cache.get(query).get(0).rerankScore).isEqualTo(0);
+  }
+}
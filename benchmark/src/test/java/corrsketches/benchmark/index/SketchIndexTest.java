@@ -1,13 +1,19 @@
 package corrsketches.benchmark.index;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
+import corrsketches.Column;
 import corrsketches.ColumnType;
 import corrsketches.CorrelationSketch;
 import corrsketches.benchmark.ColumnPair;
+import corrsketches.util.Hashes;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 public class SketchIndexTest {
@@ -136,6 +142,169 @@ public class SketchIndexTest {
     assertEquals("c4", hits.get(5).id);
   }
 
+  @Test
+  public void shouldLoadSketchesOfAllHitsInBatch() throws IOException {
+    SketchIndex index = new SketchIndex(null, new CorrelationSketch.Builder(), SortBy.KEY, false);
+    ColumnPair q =
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d", "e"), new double[] {1.0, 2.0, 3.0, 4.0, 5.0});
+    index.index("c0", q);
+    index.refresh();
+    index.index(
+        "c1",
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d"), new double[] {1.1, 2.5, 3.0, 4.4}));
+    index.refresh();
+    index.index(
+        "c2",
+        createNumericalColumnPair(Arrays.asList("a", "b", "c"), new double[] {1.0, 3.1, 3.2}));
+    index.refresh();
+
+    List<Hit> hits = index.search(q, 5);
+    assertEquals(3, hits.size());
+    for (Hit hit : hits) {
+      assertNull(hit.sketch);
+    }
+
+    index.loadSketches(hits, true);
+
+    List<Hit> expected = index.search(q, 5);
+    for (int i = 0; i < hits.size(); i++) {
+      assertEquals(expected.get(i).id, hits.get(i).id);
+      assertArrayEquals(expected.get(i).sketch().getKeys(), hits.get(i).sketch.getKeys());
+      assertArrayEquals(expected.get(i).sketch().getValues(), hits.get(i).sketch.getValues());
+    }
+  }
+
+  @Test
+  public void shouldCacheSearchResultsUntilIndexIsRefreshed() throws IOException {
+    SketchIndex index = new SketchIndex();
+    index.enableResultCache(100, 1 << 20);
+    ColumnPair q =
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d", "e"), new double[] {1.0, 2.0, 3.0, 4.0, 5.0});
+    index.index("c0", q);
+    index.index(
+        "c1",
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d"), new double[] {1.1, 2.5, 3.0, 4.4}));
+    index.refresh();
+
+    List<Hit> hits = index.search(q, 5);
+    assertEquals(2, hits.size());
+    assertEquals(0, index.resultCache().stats().hitCount());
+    assertEquals(1, index.resultCache().stats().missCount());
+
+    List<Hit> cachedHits = index.search(q, 5);
+    assertEquals(ids(hits), ids(cachedHits));
+    assertEquals(1, index.resultCache().stats().hitCount());
+
+    // a different number of hits is a different query
+    index.search(q, 1);
+    assertEquals(2, index.resultCache().stats().missCount());
+
+    index.index(
+        "c2",
+        createNumericalColumnPair(Arrays.asList("a", "b", "c"), new double[] {1.0, 3.1, 3.2}));
+    index.refresh();
+    assertEquals(0, index.resultCache().size());
+
+    hits = index.search(q, 5);
+    assertEquals(3, hits.size());
+    assertEquals(3, index.resultCache().stats().missCount());
+  }
+
+  @Test
+  public void shouldNotShareCachedHitsBetweenCallers() throws IOException {
+    SketchIndex index = new SketchIndex();
+    index.enableResultCache(100, 1 << 20);
+    ColumnPair q =
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d", "e"), new double[] {1.0, 2.0, 3.0, 4.0, 5.0});
+    index.index("c0", q);
+    index.index(
+        "c1",
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d"), new double[] {5.0, 1.0, 4.0, 2.0}));
+    index.refresh();
+
+    List<Hit> hits = index.search(q, 5);
+    double[] rerankScores = hits.stream().mapToDouble(hit -> hit.rerankScore).toArray();
+
+    // re-rank one copy of the cached results with a different strategy
+    List<Hit> cachedHits = index.search(q, 5);
+    for (Hit hit : cachedHits) {
+      hit.rerankScore = -1;
+    }
+    new Hit.Corr1Join1SketchReranker().sort(cachedHits);
+    cachedHits.clear();
+
+    List<Hit> cachedHitsAgain = index.search(q, 5);
+    assertEquals(2, index.resultCache().stats().hitCount());
+    assertEquals(ids(hits), ids(cachedHitsAgain));
+    assertArrayEquals(
+        rerankScores, cachedHitsAgain.stream().mapToDouble(hit -> hit.rerankScore).toArray());
+  }
+
+  @Test
+  public void shouldReuseCachedDecodedSketches() throws IOException {
+    SketchIndex index = new SketchIndex();
+    index.enableSketchCache(1 << 20);
+    ColumnPair q =
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d", "e"), new double[] {1.0, 2.0, 3.0, 4.0, 5.0});
+    index.index("c0", q);
+    index.index(
+        "c1",
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d"), new double[] {1.1, 2.5, 3.0, 4.4}));
+    index.refresh();
+
+    List<Hit> hits = index.search(q, 5);
+    assertEquals(2, hits.size());
+    assertEquals(2, index.sketchCache().size());
+    assertEquals(0, index.sketchCache().stats().hitCount());
+
+    List<Hit> hitsAgain = index.search(q, 5);
+    assertEquals(2, index.sketchCache().stats().hitCount());
+    for (int i = 0; i < hits.size(); i++) {
+      assertEquals(hits.get(i).id, hitsAgain.get(i).id);
+      assertSame(hits.get(i).sketch, hitsAgain.get(i).sketch);
+    }
+  }
+
+  @Test
+  public void shouldIndexMultiColumnSketches() throws IOException {
+    ColumnPair q =
+        createNumericalColumnPair(
+            Arrays.asList("a", "b", "c", "d", "e"), new double[] {1.0, 2.0, 3.0, 4.0, 5.0});
+
+    List<String> keys = Arrays.asList("a", "b", "c", "d", "e");
+    int[] keyHashes = new int[keys.size()];
+    for (int i = 0; i < keyHashes.length; i++) {
+      keyHashes[i] = Hashes.murmur3_32(keys.get(i));
+    }
+    List<Column> columns =
+        Arrays.asList(
+            Column.numerical(1.0, 2.0, 3.0, 4.0, 5.0),
+            Column.numerical(5.0, 4.0, 3.0, 2.0, 1.0),
+            Column.numerical(1.0, 2.0, 3.0, Double.NaN, Double.NaN));
+
+    MultiColumnSketchIndex index = new MultiColumnSketchIndex();
+    index.index("t", Arrays.asList("x", "y", "z"), keyHashes, columns);
+    index.refresh();
+
+    List<Hit> hits = index.search(q, 5);
+
+    assertEquals(3, hits.size());
+    for (Hit hit : hits) {
+      assertEquals(1.0, Math.abs(hit.correlation()), 0.0001);
+    }
+    assertEquals(
+        Arrays.asList("t:x", "t:y", "t:z"),
+        hits.stream().map(hit -> hit.id).sorted().collect(Collectors.toList()));
+  }
+
   @Test
   public void shouldEncodeAndDecodeDoubleArrayToBytes() {
     double[] doubles = new double[] {1.1, 2.2, 3.3};
@@ -146,6 +315,10 @@ public class SketchIndexTest {
     }
   }
 
+  private static List<String> ids(List<Hit> hits) {
+    return hits.stream().map(hit -> hit.id).collect(Collectors.toList());
+  }
+
   public ColumnPair createNumericalColumnPair(List<String> keyValues, double[] columnValues) {
     ColumnPair cp = new ColumnPair();
     cp.columnValues = columnValues;
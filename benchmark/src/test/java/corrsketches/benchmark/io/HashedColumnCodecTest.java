@@ -0,0 +1,109 @@
+package corrsketches.benchmark.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import corrsketches.ColumnType;
+import corrsketches.benchmark.ColumnPair;
+import corrsketches.benchmark.io.HashedColumnCodec.KeyDictionary;
+import corrsketches.util.Hashes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class HashedColumnCodecTest {
+
+  @Test
+  public void shouldDecodeColumnsSortedByKeyHash() {
+    List<String> keys = Arrays.asList("c", "a", "b", "a", "S\u00e3o Paulo", "c", "a");
+    double[] values = {1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0};
+    ColumnPair cp =
+        new ColumnPair("dataset.csv", "key", keys, "value", ColumnType.NUMERICAL, values);
+
+    ColumnPair decoded = HashedColumnCodec.decode(HashedColumnCodec.encode(cp));
+
+    assertThat(decoded.datasetId).isEqualTo("dataset.csv");
+    assertThat(decoded.keyName).isEqualTo("key");
+    assertThat(decoded.columnName).isEqualTo("value");
+    assertThat(decoded.columnValueType).isEqualTo(ColumnType.NUMERICAL);
+    assertThat(decoded.keyValues).isNull();
+    assertThat(decoded.keyHashes).isSorted().hasSize(keys.size());
+
+    // the rows of each key keep their original order
+    int[] hashes = decoded.keyHashes;
+    for (String key : Arrays.asList("a", "b", "c", "S\u00e3o Paulo")) {
+      int hash = Hashes.murmur3_32(key);
+      double[] expected =
+          IntStream.range(0, keys.size())
+              .filter(i -> keys.get(i).equals(key))
+              .mapToDouble(i -> values[i])
+              .toArray();
+      double[] actual =
+          IntStream.range(0, hashes.length)
+              .filter(i -> hashes[i] == hash)
+              .mapToDouble(i -> decoded.columnValues[i])
+              .toArray();
+      assertThat(actual).as(key).containsExactly(expected);
+    }
+    assertThat(decoded.distinctKeyHashes()).hasSize(4);
+  }
+
+  @Test
+  public void shouldRecoverValuesExactly() {
+    double[][] columns = {
+      {1, -2, 3, 1e15},
+      {0.5, -0.25, 12.125},
+      {0.1, 0.2, 0.3, 1.000001},
+      {-0.0, 1},
+      {Double.NaN, 1.5},
+      {Math.PI, Double.MIN_VALUE, Double.POSITIVE_INFINITY},
+      {}
+    };
+    int[] expectedScales = {0, 3, 6, -1, -1, -1, 0};
+    for (int c = 0; c < columns.length; c++) {
+      double[] values = columns[c];
+      assertThat(HashedColumnCodec.decimalScale(values)).isEqualTo(expectedScales[c]);
+
+      int[] keys = new int[values.length];
+      Arrays.setAll(keys, i -> i);
+      ColumnPair cp = new ColumnPair("d", "k", keys, "v", ColumnType.NUMERICAL, values);
+      ColumnPair decoded = HashedColumnCodec.decode(HashedColumnCodec.encode(cp));
+      assertThat(decoded.keyHashes).containsExactly(keys);
+      for (int i = 0; i < values.length; i++) {
+        assertThat(Double.doubleToRawLongBits(decoded.columnValues[i]))
+            .isEqualTo(Double.doubleToRawLongBits(values[i]));
+      }
+    }
+  }
+
+  @Test
+  public void shouldEncodeNegativeKeyHashDifferences() {
+    int[] keys = {Integer.MAX_VALUE, Integer.MIN_VALUE, -1, 0, 1, Integer.MIN_VALUE};
+    double[] values = {1, 2, 3, 4, 5, 6};
+    ColumnPair cp = new ColumnPair(null, "k", keys, "v", ColumnType.CATEGORICAL, values);
+
+    ColumnPair decoded = HashedColumnCodec.decode(HashedColumnCodec.encode(cp));
+
+    assertThat(decoded.datasetId).isNull();
+    assertThat(decoded.columnValueType).isEqualTo(ColumnType.CATEGORICAL);
+    assertThat(decoded.keyHashes)
+        .containsExactly(Integer.MIN_VALUE, Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE);
+    assertThat(decoded.columnValues).containsExactly(2, 6, 3, 4, 5, 1);
+  }
+
+  @Test
+  public void shouldDecodeKeyDictionary() {
+    List<String> keys = Arrays.asList("c", "a", "b", "a", "S\u00e3o Paulo");
+    ColumnPair cp =
+        new ColumnPair("d", "k", keys, "v", ColumnType.NUMERICAL, new double[] {1, 2, 3, 4, 5});
+
+    KeyDictionary dictionary =
+        HashedColumnCodec.decodeKeyDictionary(HashedColumnCodec.encodeKeyDictionary(cp));
+
+    assertThat(dictionary.size()).isEqualTo(4);
+    for (String key : keys) {
+      assertThat(dictionary.get(Hashes.murmur3_32(key))).isEqualTo(key);
+    }
+    assertThat(dictionary.get(Hashes.murmur3_32("missing"))).isNull();
+  }
+}
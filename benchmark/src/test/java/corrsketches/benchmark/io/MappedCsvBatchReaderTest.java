@@ -0,0 +1,149 @@
+package corrsketches.benchmark.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import corrsketches.ColumnType;
+import corrsketches.benchmark.io.TableBatchReader.ColumnSchema;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedCsvBatchReaderTest {
+
+  static ForkJoinPool executor;
+
+  @TempDir Path tempDir;
+
+  @BeforeAll
+  public static void createExecutor() {
+    executor = new ForkJoinPool(3);
+  }
+
+  @AfterAll
+  public static void shutdownExecutor() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void shouldParseDoublesAsJdk() {
+    String[] values = {
+      "1", "-1", "+2.5", "0.1", "-0", "1e10", "1E-5", "123.456e-7", "99999999999999.9", "1e22",
+      "1e23", "0.000000000000000000000001", "123456789012345678", "3.14159265358979323846",
+      "9007199254740993", "4.9e-324", "1e400", "1.", ".5", ".", "1e", "abc", "NaN", "Infinity",
+      "0x1p3", "1d", " 7 "
+    };
+    for (String value : values) {
+      double expected;
+      try {
+        expected = Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        expected = Double.NaN;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+      assertThat(MappedCsvBatchReader.parseDouble(buffer, 0, buffer.limit()))
+          .as(value)
+          .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void shouldReadSameValuesAsCsvBatchReader() throws Exception {
+    String[] keys = {
+      "a",
+      "S\u00e3o Paulo",
+      "\"with, comma\"",
+      "\"multi\nline\"",
+      "\"escaped \"\"quotes\"\"\"",
+      "",
+      "-",
+      "  spaced  ",
+      "#not a comment"
+    };
+    String[] values = {"1", "2.5", " 3 ", "\"4\"", "", "-", "x", "1e3", "-0.25"};
+
+    StringBuilder csv = new StringBuilder("key,num,other\r\n");
+    Random random = new Random(0);
+    for (int row = 0; row < 1000; row++) {
+      csv.append(keys[random.nextInt(keys.length)]);
+      csv.append(',');
+      csv.append(values[random.nextInt(values.length)]);
+      if (row % 7 != 0) {
+        // some records are shorter than the header
+        csv.append(",o").append(row);
+      }
+      csv.append("\r\n");
+    }
+    Path file = tempDir.resolve("table.csv");
+    Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+    List<ColumnSchema> projection =
+        Arrays.asList(
+            new ColumnSchema("num", ColumnType.NUMERICAL),
+            new ColumnSchema("key", ColumnType.CATEGORICAL));
+
+    List<double[]> expected = readAll(new CsvBatchReader(file.toString(), projection));
+    assertThat(expected).hasSize(1000);
+    // uses tiny chunks so that records are split across many chunks scanned in parallel
+    for (int chunkSize : new int[] {1, 100, MappedCsvBatchReader.DEFAULT_CHUNK_SIZE}) {
+      List<double[]> actual =
+          readAll(new MappedCsvBatchReader(file.toString(), projection, chunkSize, executor));
+      assertThat(actual).hasSize(expected.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(actual.get(i)).as("row " + i).isEqualTo(expected.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void shouldScanEachByteOnceToSplitFileWithoutQuotes() throws Exception {
+    String header = "key,num\n";
+    StringBuilder csv = new StringBuilder(header);
+    for (int row = 0; row < 5000; row++) {
+      csv.append('k').append(row % 17).append(',').append(row).append('\n');
+    }
+    Path file = tempDir.resolve("unquoted.csv");
+    Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+    List<ColumnSchema> projection =
+        Arrays.asList(
+            new ColumnSchema("key", ColumnType.CATEGORICAL),
+            new ColumnSchema("num", ColumnType.NUMERICAL));
+
+    // without quotes, a part never has a record boundary for a start inside a quoted value, which
+    // must not make the split of each part scan the rest of the file
+    MappedCsvBatchReader reader =
+        new MappedCsvBatchReader(file.toString(), projection, 1000, executor);
+    List<double[]> rows = readAll(reader);
+    assertThat(rows).hasSize(5000);
+    for (int row = 0; row < rows.size(); row++) {
+      assertThat(rows.get(row)[1]).isEqualTo(row);
+    }
+    assertThat(reader.splitBytes()).isEqualTo(Files.size(file) - header.length());
+  }
+
+  private static List<double[]> readAll(TableBatchReader reader) throws Exception {
+    List<double[]> rows = new ArrayList<>();
+    try (reader) {
+      ColumnBatch batch = reader.newBatch(64);
+      while (reader.read(batch) > 0) {
+        for (int i = 0; i < batch.size; i++) {
+          double[] row = new double[reader.columns().size()];
+          for (int c = 0; c < row.length; c++) {
+            row[c] = batch.value(c, i);
+          }
+          rows.add(row);
+        }
+      }
+    }
+    return rows;
+  }
+}
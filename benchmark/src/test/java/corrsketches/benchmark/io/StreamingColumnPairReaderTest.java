@@ -0,0 +1,124 @@
+package corrsketches.benchmark.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import corrsketches.Column;
+import corrsketches.ColumnType;
+import corrsketches.benchmark.ColumnPair;
+import corrsketches.benchmark.Tables;
+import corrsketches.benchmark.io.StreamingColumnPairReader.KeyColumns;
+import corrsketches.util.Hashes;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class StreamingColumnPairReaderTest {
+
+  @Test
+  public void shouldReadSameColumnPairsAsTables() throws Exception {
+    Set<ColumnType> types = Set.of(ColumnType.CATEGORICAL, ColumnType.NUMERICAL);
+    assertSameColumnPairsAsTables(resolvePath("csv-files/test-column-types.csv"), types);
+    assertSameColumnPairsAsTables(resolvePath("csv-files/test-date-columns.csv"), types);
+    assertSameColumnPairsAsTables(
+        resolvePath("parquet-files/test1.parquet"), Set.of(ColumnType.NUMERICAL));
+  }
+
+  @Test
+  public void shouldNotReadTablesWithFewerRowsThanMinRows() throws Exception {
+    String csvFile = resolvePath("csv-files/test-column-types.csv");
+    Set<ColumnType> types = Set.of(ColumnType.NUMERICAL);
+    assertThat(StreamingColumnPairReader.readHashedColumnPairs(csvFile, 3, types).hasNext())
+        .isTrue();
+    assertThat(StreamingColumnPairReader.readHashedColumnPairs(csvFile, 4, types).hasNext())
+        .isFalse();
+  }
+
+  @Test
+  public void shouldReadKeyColumnsWithSameValuesAsColumnPairs() throws Exception {
+    String csvFile = resolvePath("csv-files/test-column-types.csv");
+    Set<ColumnType> types = Set.of(ColumnType.CATEGORICAL, ColumnType.NUMERICAL);
+    Iterator<ColumnPair> pairs = StreamingColumnPairReader.readHashedColumnPairs(csvFile, 0, types);
+    List<KeyColumns> keyColumns = StreamingColumnPairReader.readKeyColumns(csvFile, 0, types);
+
+    assertThat(keyColumns).isNotEmpty();
+    for (KeyColumns kc : keyColumns) {
+      assertThat(kc.columns).hasSize(kc.columnNames.size());
+      for (int c = 0; c < kc.columns.size(); c++) {
+        // the column pairs are the rows of the key columns in which the value is not missing
+        ColumnPair pair = pairs.next();
+        assertThat(pair.keyName).isEqualTo(kc.keyName);
+        assertThat(pair.columnName).isEqualTo(kc.columnNames.get(c));
+        Column column = kc.columns.get(c);
+        assertThat(column.type).isEqualTo(pair.columnValueType);
+        assertThat(column.values).hasSize(kc.keyHashes.length);
+        int row = 0;
+        for (int i = 0; i < column.values.length; i++) {
+          if (!Double.isNaN(column.values[i])) {
+            assertThat(kc.keyHashes[i]).isEqualTo(pair.keyHashes()[row]);
+            assertThat(column.values[i]).isEqualTo(pair.columnValues[row]);
+            row++;
+          }
+        }
+        assertThat(row).isEqualTo(pair.columnValues.length);
+      }
+    }
+    assertThat(pairs.hasNext()).isFalse();
+    assertThat(StreamingColumnPairReader.readKeyColumns(csvFile, 4, types)).isEmpty();
+  }
+
+  @Test
+  public void shouldReadKeyStringsOfSameColumnPairs() throws Exception {
+    Set<ColumnType> types = Set.of(ColumnType.CATEGORICAL, ColumnType.NUMERICAL);
+    for (String path :
+        new String[] {
+          resolvePath("csv-files/test-column-types.csv"), resolvePath("parquet-files/test1.parquet")
+        }) {
+      Iterator<ColumnPair> hashed = StreamingColumnPairReader.readHashedColumnPairs(path, 0, types);
+      Iterator<ColumnPair> withKeys = StreamingColumnPairReader.readColumnPairs(path, 0, types);
+      assertThat(withKeys.hasNext()).isTrue();
+      while (withKeys.hasNext()) {
+        ColumnPair e = hashed.next();
+        ColumnPair a = withKeys.next();
+        assertThat(a.keyName).isEqualTo(e.keyName);
+        assertThat(a.columnName).isEqualTo(e.columnName);
+        assertThat(a.keyHashes).isEqualTo(e.keyHashes);
+        assertThat(a.columnValues).isEqualTo(e.columnValues);
+        assertThat(a.keyValues).hasSize(a.keyHashes.length);
+        for (int i = 0; i < a.keyHashes.length; i++) {
+          assertThat(Hashes.murmur3_32(a.keyValues.get(i))).isEqualTo(a.keyHashes[i]);
+        }
+      }
+      assertThat(hashed.hasNext()).isFalse();
+    }
+  }
+
+  private static void assertSameColumnPairsAsTables(String path, Set<ColumnType> types) {
+    Iterator<ColumnPair> actual = StreamingColumnPairReader.readHashedColumnPairs(path, 0, types);
+    Iterator<ColumnPair> expected = Tables.readHashedColumnPairs(path, 0, types);
+
+    int count = 0;
+    while (expected.hasNext()) {
+      assertThat(actual.hasNext()).isTrue();
+      ColumnPair e = expected.next();
+      ColumnPair a = actual.next();
+      assertThat(a.datasetId).isEqualTo(e.datasetId);
+      assertThat(a.keyName).isEqualTo(e.keyName);
+      assertThat(a.columnName).isEqualTo(e.columnName);
+      assertThat(a.columnValueType).isEqualTo(e.columnValueType);
+      assertThat(a.keyHashes()).isEqualTo(e.keyHashes());
+      assertThat(a.columnValues).isEqualTo(e.columnValues);
+      count++;
+    }
+    assertThat(actual.hasNext()).isFalse();
+    assertThat(count).isGreaterThan(0);
+  }
+
+  /** Resolves paths in OS-independent way. */
+  private static String resolvePath(String path) throws URISyntaxException {
+    final String resource = "/corrsketches/benchmark/TablesTest/" + path;
+    return Paths.get(StreamingColumnPairReaderTest.class.getResource(resource).toURI()).toString();
+  }
+}
@@ -0,0 +1,112 @@
+package corrsketches.benchmark.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import corrsketches.ColumnType;
+import corrsketches.CorrelationSketch;
+import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
+import corrsketches.SketchType;
+import corrsketches.benchmark.ColumnPair;
+import corrsketches.benchmark.Tables;
+import corrsketches.benchmark.io.StreamingSketchBuilder.ColumnPairSketch;
+import corrsketches.benchmark.io.TableBatchReader.ColumnSchema;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class StreamingSketchBuilderTest {
+
+  @Test
+  public void shouldInferCSVSchema() throws Exception {
+    String csvFile = resolvePath("csv-files/test-column-types.csv");
+    List<ColumnSchema> schema = TableBatchReader.readSchema(csvFile);
+    assertThat(schema).extracting(c -> c.name).containsExactly("char", "int", "str", "double");
+    assertThat(schema)
+        .extracting(c -> c.type)
+        .containsExactly(
+            ColumnType.CATEGORICAL,
+            ColumnType.NUMERICAL,
+            ColumnType.CATEGORICAL,
+            ColumnType.NUMERICAL);
+  }
+
+  @Test
+  public void shouldBuildSameSketchesAsTables() throws Exception {
+    String csvFile = resolvePath("csv-files/test-column-types.csv");
+    assertSameSketchesAsTables(csvFile, Set.of(ColumnType.CATEGORICAL, ColumnType.NUMERICAL));
+    String parquetFile = resolvePath("parquet-files/test1.parquet");
+    assertSameSketchesAsTables(parquetFile, Set.of(ColumnType.NUMERICAL));
+  }
+
+  @Test
+  public void shouldNotUseDateOrBooleanColumnsAsKeys() throws Exception {
+    String csvFile = resolvePath("csv-files/test-date-columns.csv");
+    List<ColumnSchema> schema = TableBatchReader.readSchema(csvFile);
+    assertThat(schema).extracting(c -> c.name).containsExactly("id", "name", "value");
+
+    Set<ColumnType> types = Set.of(ColumnType.CATEGORICAL, ColumnType.NUMERICAL);
+    List<ColumnPairSketch> sketches =
+        new StreamingSketchBuilder(CorrelationSketch.builder()).build(csvFile, 0, types);
+    assertThat(sketches).extracting(s -> s.keyName).containsOnly("id", "name");
+    assertThat(sketches).extracting(s -> s.columnName).doesNotContain("date", "flag");
+    assertSameSketchesAsTables(csvFile, types);
+  }
+
+  @Test
+  public void shouldBuildNonIncrementalSketchesOnePairAtATime() throws Exception {
+    String csvFile = resolvePath("csv-files/test-column-types.csv");
+    CorrelationSketch.Builder builder =
+        CorrelationSketch.builder().sketchType(SketchType.TUPSK, 8);
+    assertSameSketchesAsTables(
+        builder, csvFile, Set.of(ColumnType.CATEGORICAL, ColumnType.NUMERICAL));
+  }
+
+  @Test
+  public void shouldReadOnlyTheRequestedColumnPair() throws Exception {
+    String csvFile = resolvePath("csv-files/test-column-types.csv");
+    ColumnPair cp = Tables.readColumnPair(csvFile, "str", "double");
+    assertThat(cp.keyName).isEqualTo("str");
+    assertThat(cp.columnName).isEqualTo("double");
+    assertThat(cp.columnValueType).isEqualTo(ColumnType.NUMERICAL);
+    assertThat(cp.columnValues).containsExactly(1.1, 2.2, 3.3);
+    assertThat(cp.keyHashes).hasSize(3);
+  }
+
+  private static void assertSameSketchesAsTables(String path, Set<ColumnType> types)
+      throws Exception {
+    assertSameSketchesAsTables(CorrelationSketch.builder(), path, types);
+  }
+
+  private static void assertSameSketchesAsTables(
+      CorrelationSketch.Builder builder, String path, Set<ColumnType> types) throws Exception {
+    // use a batch size smaller than the tables to read them in multiple batches
+    List<ColumnPairSketch> sketches = new StreamingSketchBuilder(builder, 2).build(path, 0, types);
+    Iterator<ColumnPair> it = Tables.readHashedColumnPairs(path, 0, types);
+
+    int count = 0;
+    for (ColumnPairSketch sketch : sketches) {
+      assertThat(it.hasNext()).isTrue();
+      ColumnPair cp = it.next();
+      assertThat(sketch.keyName).isEqualTo(cp.keyName);
+      assertThat(sketch.columnName).isEqualTo(cp.columnName);
+      ImmutableCorrelationSketch expected =
+          builder.build(cp.keyHashes(), cp.columnValues, cp.columnValueType).toImmutable();
+      ImmutableCorrelationSketch actual = sketch.sketch.toImmutable();
+      assertThat(actual.getKeys()).isEqualTo(expected.getKeys());
+      assertThat(actual.getValues()).isEqualTo(expected.getValues());
+      assertThat(actual.valuesType()).isEqualTo(expected.valuesType());
+      count++;
+    }
+    assertThat(it.hasNext()).isFalse();
+    assertThat(count).isGreaterThan(0);
+  }
+
+  /** Resolves paths in OS-independent way. */
+  private static String resolvePath(String path) throws URISyntaxException {
+    final String resource = "/corrsketches/benchmark/TablesTest/" + path;
+    return Paths.get(StreamingSketchBuilderTest.class.getResource(resource).toURI()).toString();
+  }
+}
@@ -1,15 +1,33 @@
 package corrsketches;
 
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import java.util.Arrays;
 
 public class Column {
 
   public final double[] values;
   public final ColumnType type;
+  /**
+   * Dense dictionary codes of the values of a categorical column, in the range [0, dictionarySize).
+   * Values that are equal (when cast to int) have the same code. This is null if the column is not
+   * dictionary-encoded.
+   */
+  public final int[] codes;
+  /** The number of distinct codes of a dictionary-encoded column. */
+  public final int dictionarySize;
 
   public Column(double[] values, ColumnType type) {
+    this(values, type, null, 0);
+  }
+
+  public Column(double[] values, ColumnType type, int[] codes, int dictionarySize) {
+    if (codes != null && codes.length != values.length) {
+      throw new IllegalArgumentException("codes and values must have same size");
+    }
     this.values = values;
     this.type = type;
+    this.codes = codes;
+    this.dictionarySize = dictionarySize;
   }
 
   public static Column of(double[] values, ColumnType type) {
@@ -28,6 +46,26 @@ public class Column {
     return of(castToDoubleArray(values), ColumnType.CATEGORICAL);
   }
 
+  /**
+   * Creates a categorical column whose values are dictionary-encoded. Codes are assigned to the
+   * distinct values in order of first appearance.
+   */
+  public static Column dictionaryEncoded(double[] values) {
+    final Int2IntOpenHashMap dictionary = new Int2IntOpenHashMap();
+    dictionary.defaultReturnValue(-1);
+    final int[] codes = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      final int nextCode = dictionary.size();
+      final int code = dictionary.putIfAbsent((int) values[i], nextCode);
+      codes[i] = code == -1 ? nextCode : code;
+    }
+    return new Column(values, ColumnType.CATEGORICAL, codes, dictionary.size());
+  }
+
+  public boolean isDictionaryEncoded() {
+    return codes != null;
+  }
+
   @Override
   public String toString() {
     return "Column{" + "values=" + Arrays.toString(values) + ", type=" + type + '}';
@@ -73,6 +73,16 @@ public class CorrelationSketch {
     return this;
   }
 
+  /**
+   * Updates this sketch with a single key hash and its associated value. This allows building a
+   * sketch incrementally (e.g., from batches of rows of a table) using a sketch created by {@link
+   * Builder#build(ColumnType)}. It is only supported by the sketch types for which {@link
+   * SketchType#supportsIncrementalUpdates()} is true.
+   */
+  public void update(int keyHash, double value) {
+    minValueSketch.update(keyHash, value);
+  }
+
   public void setCardinality(int cardinality) {
     this.cardinality = cardinality;
   }
@@ -126,14 +136,25 @@ public class CorrelationSketch {
     final int[] keys; // sorted in ascending order
     final double[] values; // values associated with the keys
     final ColumnType valuesType; // the data type of values variable
+    private Column column; // the values used in joins, created lazily by column()
     private boolean uniqueKeys;
 
     public ImmutableCorrelationSketch(
         int[] keys, double[] values, ColumnType valuesType, Correlation correlation) {
+      this(keys, values, valuesType, correlation, false);
+    }
+
+    ImmutableCorrelationSketch(
+        int[] keys,
+        double[] values,
+        ColumnType valuesType,
+        Correlation correlation,
+        boolean uniqueKeys) {
       this.keys = keys;
       this.values = values;
       this.valuesType = valuesType;
       this.correlation = correlation;
+      this.uniqueKeys = uniqueKeys;
     }
 
     public ImmutableCorrelationSketch(CorrelationSketch cs) {
@@ -146,6 +167,25 @@ public class CorrelationSketch {
       QuickSort.sort(keys, values);
     }
 
+    /**
+     * Returns the column used in joins. It is created on first use, so that sketches that are
+     * never joined do not pay for it. Categorical values are dictionary-encoded only once, so that
+     * estimators do not need to re-index them on every join. Since a Column is immutable, racing
+     * threads may at worst create it more than once.
+     */
+    private Column column() {
+      Column column = this.column;
+      if (column == null) {
+        if (valuesType == ColumnType.CATEGORICAL) {
+          column = Column.dictionaryEncoded(values);
+        } else {
+          column = Column.of(values, valuesType);
+        }
+        this.column = column;
+      }
+      return column;
+    }
+
     public int[] getKeys() {
       return keys;
     }
@@ -164,9 +204,8 @@ public class CorrelationSketch {
     }
 
     public Join join(ImmutableCorrelationSketch other) {
-      Table left = new Table(this.keys, Column.of(this.values, this.valuesType), this.uniqueKeys);
-      Table right =
-          new Table(other.keys, Column.of(other.values, other.valuesType), this.uniqueKeys);
+      Table left = new Table(this.keys, this.column(), this.uniqueKeys);
+      Table right = new Table(other.keys, other.column(), this.uniqueKeys);
       return Table.join(left, right);
     }
 
@@ -316,7 +355,7 @@ public class CorrelationSketch {
   }
 
   public ColumnType getOutputType() {
-    return this.minValueSketch.aggregatorProvider().create().getOutputType(valuesType);
+    return this.minValueSketch.aggregatorProvider().getOutputType(valuesType);
   }
 
   public static class Builder {
@@ -364,6 +403,10 @@ public class CorrelationSketch {
       return estimator;
     }
 
+    public SketchType sketchType() {
+      return sketchType;
+    }
+
     private Builder valuesType(ColumnType valuesType) {
       this.valuesType = valuesType;
       return this;
@@ -373,6 +416,12 @@ public class CorrelationSketch {
       return new CorrelationSketch(this);
     }
 
+    /** Creates an empty sketch for values of the given type, to be updated incrementally. */
+    public CorrelationSketch build(ColumnType valuesType) {
+      this.valuesType(valuesType);
+      return new CorrelationSketch(this);
+    }
+
     public CorrelationSketch build(String[] keys, Column column) {
       return build(keys, column.values, column.type);
     }
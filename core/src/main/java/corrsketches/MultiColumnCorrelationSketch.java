@@ -0,0 +1,217 @@
+package corrsketches;
+
+import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
+import corrsketches.aggregations.AggregateFunction;
+import corrsketches.aggregations.ColumnarAggregator;
+import corrsketches.correlation.Correlation;
+import corrsketches.correlation.CorrelationType;
+import corrsketches.kmv.AbstractMinValueSketch;
+import corrsketches.kmv.GKMV;
+import corrsketches.kmv.KMV;
+import corrsketches.kmv.ValueHash;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A correlation sketch of many value columns that share the same key column. Given that KMV and
+ * GKMV select the sampled keys using only the hashes of the keys, the sketches of all the (key,
+ * value) column pairs of a table would sample the same keys. This sketch samples the keys only
+ * once and stores, for each value column, the aggregated values of the sampled keys.
+ *
+ * <p>The rows in which a value column is missing (represented by {@link Double#NaN}) are ignored
+ * when aggregating the values of that column, and the keys that have no values in a column are
+ * left out of the sketch of that column (see {@link #toImmutable(int)}). For value columns without
+ * missing values, the sketch of each column is the same as the sketch built by {@link
+ * CorrelationSketch} using the same parameters. When there are missing values, the key sample is
+ * still selected from all keys, so the sketch of a column may contain fewer keys.
+ */
+public class MultiColumnCorrelationSketch {
+
+  private final int[] keys; // sorted in ascending order
+  private final double[][] values; // the values of each column, aligned with the keys
+  private final ColumnType[] valuesTypes; // the data type of the values of each column
+  private final Correlation correlation;
+
+  /**
+   * Creates a sketch from its (pre-computed) data, e.g., when it is read from an index.
+   *
+   * @param keys the sampled key hashes, sorted in ascending order
+   * @param values the values of each column aligned with the keys, where {@link Double#NaN}
+   *     indicates that the column has no value for the key
+   * @param valuesTypes the data type of the values of each column
+   * @param correlation the estimator used by the sketches of the columns
+   */
+  public MultiColumnCorrelationSketch(
+      int[] keys, double[][] values, ColumnType[] valuesTypes, Correlation correlation) {
+    if (values.length != valuesTypes.length) {
+      throw new IllegalArgumentException("values and valuesTypes must have equal size.");
+    }
+    for (double[] columnValues : values) {
+      if (columnValues.length != keys.length) {
+        throw new IllegalArgumentException("The values of all columns must have the keys size.");
+      }
+    }
+    this.keys = keys;
+    this.values = values;
+    this.valuesTypes = valuesTypes;
+    this.correlation = correlation;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Returns the number of value columns in this sketch. */
+  public int numColumns() {
+    return values.length;
+  }
+
+  /** Returns the sampled key hashes shared by all columns, sorted in ascending order. */
+  public int[] getKeys() {
+    return keys;
+  }
+
+  /** Returns the values of the given column aligned with {@link #getKeys()}. */
+  public double[] getValues(int column) {
+    return values[column];
+  }
+
+  public ColumnType valuesType(int column) {
+    return valuesTypes[column];
+  }
+
+  /** Returns the sketch of the given value column. */
+  public ImmutableCorrelationSketch toImmutable(int column) {
+    final double[] columnValues = values[column];
+    int size = 0;
+    for (double value : columnValues) {
+      if (!Double.isNaN(value)) {
+        size++;
+      }
+    }
+    if (size == keys.length) {
+      return new ImmutableCorrelationSketch(
+          keys, columnValues, valuesTypes[column], correlation, true);
+    }
+    // leave out the keys that have no value in this column
+    final int[] columnKeys = new int[size];
+    final double[] presentValues = new double[size];
+    int j = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (!Double.isNaN(columnValues[i])) {
+        columnKeys[j] = keys[i];
+        presentValues[j] = columnValues[i];
+        j++;
+      }
+    }
+    return new ImmutableCorrelationSketch(
+        columnKeys, presentValues, valuesTypes[column], correlation, true);
+  }
+
+  public static class Builder {
+
+    protected Correlation estimator = CorrelationSketch.DEFAULT_ESTIMATOR;
+    protected AggregateFunction aggregateFunction = AggregateFunction.FIRST;
+    protected SketchType sketchType = SketchType.KMV;
+    protected double budget = KMV.DEFAULT_K;
+
+    public Builder aggregateFunction(AggregateFunction aggregateFunction) {
+      if (aggregateFunction == AggregateFunction.NONE) {
+        throw new IllegalArgumentException(
+            "Multi-column sketches require an aggregate function, but got: " + aggregateFunction);
+      }
+      this.aggregateFunction = aggregateFunction;
+      return this;
+    }
+
+    /** Sets the type of the sketch, which must be either {@link SketchType#KMV} or GKMV. */
+    public Builder sketchType(SketchType sketchType, double budget) {
+      if (sketchType != SketchType.KMV && sketchType != SketchType.GKMV) {
+        throw new IllegalArgumentException(
+            "Multi-column sketches only support KMV and GKMV, but got: " + sketchType);
+      }
+      this.sketchType = sketchType;
+      this.budget = budget;
+      return this;
+    }
+
+    public Builder estimator(Correlation estimator) {
+      this.estimator = estimator;
+      return this;
+    }
+
+    public Builder estimator(CorrelationType correlationType) {
+      return estimator(correlationType.get());
+    }
+
+    /**
+     * Creates a sketch of the given value columns.
+     *
+     * @param keys the hashes of the keys of all rows
+     * @param columns the value columns, with one value per row ({@link Double#NaN} if missing)
+     */
+    public MultiColumnCorrelationSketch build(int[] keys, List<Column> columns) {
+      for (Column column : columns) {
+        if (column.values.length != keys.length) {
+          throw new IllegalArgumentException("keys and the columns must have equal size.");
+        }
+      }
+
+      // select the keys sampled by the sketch: only the key hashes are needed for this
+      final AbstractMinValueSketch<?> keySketch;
+      if (sketchType == SketchType.KMV) {
+        keySketch = new KMV.Builder().maxSize((int) budget).build();
+      } else {
+        keySketch = new GKMV.Builder().threshold(budget).build();
+      }
+      for (int key : keys) {
+        keySketch.update(key, 0);
+      }
+      final int numKeys = keySketch.getKMinValues().size();
+      final int[] sampledKeys = new int[numKeys];
+      int k = 0;
+      for (ValueHash vh : keySketch.getKMinValues()) {
+        sampledKeys[k++] = vh.keyHash;
+      }
+      Arrays.sort(sampledKeys);
+      final Int2IntOpenHashMap positions = new Int2IntOpenHashMap(numKeys);
+      positions.defaultReturnValue(-1);
+      for (int i = 0; i < numKeys; i++) {
+        positions.put(sampledKeys[i], i);
+      }
+
+      // aggregate the values of the sampled keys of each column
+      final double[][] values = new double[columns.size()][];
+      final ColumnType[] valuesTypes = new ColumnType[columns.size()];
+      final int[] slots = new int[numKeys];
+      for (int c = 0; c < values.length; c++) {
+        final Column column = columns.get(c);
+        final ColumnarAggregator aggregates = new ColumnarAggregator(aggregateFunction, numKeys);
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < keys.length; i++) {
+          final double value = column.values[i];
+          if (Double.isNaN(value)) {
+            continue;
+          }
+          final int position = positions.get(keys[i]);
+          if (position < 0) {
+            continue;
+          }
+          if (slots[position] < 0) {
+            slots[position] = aggregates.add(value);
+          } else {
+            aggregates.update(slots[position], value);
+          }
+        }
+        final double[] columnValues = new double[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+          columnValues[i] = slots[i] < 0 ? Double.NaN : aggregates.aggregatedValue(slots[i]);
+        }
+        values[c] = columnValues;
+        valuesTypes[c] = aggregateFunction.getOutputType(column.type);
+      }
+      return new MultiColumnCorrelationSketch(sampledKeys, values, valuesTypes, estimator);
+    }
+  }
+}
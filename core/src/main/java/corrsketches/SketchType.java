@@ -7,6 +7,15 @@ public enum SketchType {
   GKMV,
   INDSK;
 
+  /**
+   * Returns whether sketches of this type can be updated one item at a time, i.e., whether the
+   * sample does not depend on statistics of the whole table (such as the number of occurrences of
+   * each key).
+   */
+  public boolean supportsIncrementalUpdates() {
+    return this != TUPSK && this != PRISK;
+  }
+
   public static SketchOptions parseOptions(SketchType type, String value) {
     final SketchOptions options;
     switch (type) {
@@ -32,6 +32,10 @@ public class Table {
     IntArrayList k = new IntArrayList(initialCapacity);
     DoubleArrayList l = new DoubleArrayList(initialCapacity);
     DoubleArrayList r = new DoubleArrayList(initialCapacity);
+    IntArrayList lcodes =
+        left.values.isDictionaryEncoded() ? new IntArrayList(initialCapacity) : null;
+    IntArrayList rcodes =
+        right.values.isDictionaryEncoded() ? new IntArrayList(initialCapacity) : null;
     int lidx = 0;
     int ridx = 0;
     int i, j;
@@ -50,6 +54,12 @@ public class Table {
             k.add(left.keys[i]);
             l.add(left.values.values[i]);
             r.add(right.values.values[j]);
+            if (lcodes != null) {
+              lcodes.add(left.values.codes[i]);
+            }
+            if (rcodes != null) {
+              rcodes.add(right.values.codes[j]);
+            }
             j++;
           }
           i++;
@@ -60,8 +70,8 @@ public class Table {
     }
     return new Join(
         k.toIntArray(),
-        Column.of(l.toDoubleArray(), left.values.type),
-        Column.of(r.toDoubleArray(), right.values.type));
+        joinedColumn(left.values, l, lcodes),
+        joinedColumn(right.values, r, rcodes));
   }
 
   /**
@@ -73,6 +83,8 @@ public class Table {
     IntArrayList k = new IntArrayList(capacity);
     DoubleArrayList l = new DoubleArrayList(capacity);
     DoubleArrayList r = new DoubleArrayList(capacity);
+    IntArrayList lcodes = left.values.isDictionaryEncoded() ? new IntArrayList(capacity) : null;
+    IntArrayList rcodes = right.values.isDictionaryEncoded() ? new IntArrayList(capacity) : null;
     int lidx = 0;
     int ridx = 0;
     while (lidx < left.keys.length && ridx < right.keys.length) {
@@ -85,14 +97,29 @@ public class Table {
         k.add(left.keys[lidx]);
         l.add(left.values.values[lidx]);
         r.add(right.values.values[ridx]);
+        if (lcodes != null) {
+          lcodes.add(left.values.codes[lidx]);
+        }
+        if (rcodes != null) {
+          rcodes.add(right.values.codes[ridx]);
+        }
         lidx++;
         ridx++;
       }
     }
     return new Join(
         k.toIntArray(),
-        Column.of(l.toDoubleArray(), left.values.type),
-        Column.of(r.toDoubleArray(), right.values.type));
+        joinedColumn(left.values, l, lcodes),
+        joinedColumn(right.values, r, rcodes));
+  }
+
+  /** Creates the column of joined values, which keeps the dictionary encoding of the source. */
+  private static Column joinedColumn(Column source, DoubleArrayList values, IntArrayList codes) {
+    if (codes == null) {
+      return Column.of(values.toDoubleArray(), source.type);
+    }
+    return new Column(
+        values.toDoubleArray(), source.type, codes.toIntArray(), source.dictionarySize);
   }
 
   public static class Join {
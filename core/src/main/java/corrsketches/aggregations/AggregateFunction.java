@@ -7,6 +7,7 @@ import it.unimi.dsi.fastutil.ints.Int2IntMap;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
 public enum AggregateFunction {
   FIRST(FirstAggregator::new),
@@ -20,9 +21,24 @@ public enum AggregateFunction {
   NONE(NoneAggregator::new);
 
   private final AggregatorProvider provider;
-
-  AggregateFunction(AggregatorProvider provider) {
-    this.provider = provider;
+  /** An aggregator instance used only to answer type queries, which do not depend on its state. */
+  private final Aggregator prototype;
+
+  AggregateFunction(Supplier<Aggregator> factory) {
+    final Aggregator prototype = factory.get();
+    this.prototype = prototype;
+    this.provider =
+        new AggregatorProvider() {
+          @Override
+          public Aggregator get() {
+            return factory.get();
+          }
+
+          @Override
+          public ColumnType getOutputType(ColumnType columnValueType) {
+            return prototype.getOutputType(columnValueType);
+          }
+        };
   }
 
   public AggregatorProvider getProvider() {
@@ -33,6 +49,14 @@ public enum AggregateFunction {
     return provider.get();
   }
 
+  public ColumnType getOutputType(ColumnType columnValueType) {
+    return prototype.getOutputType(columnValueType);
+  }
+
+  public boolean acceptsInputColumnType(ColumnType inputDataType) {
+    return prototype.acceptsInputColumnType(inputDataType);
+  }
+
   public static List<AggregateFunction> all() {
     return Arrays.asList(FIRST, LAST, MAX, MIN, SUM, MEAN, COUNT);
   }
@@ -56,11 +80,17 @@ public enum AggregateFunction {
 
   interface AggregatorProvider extends RepeatedValueHandlerProvider {
 
+    @Override
     default RepeatedValueHandler create() {
       return get();
     }
 
     Aggregator get();
+
+    @Override
+    default boolean isAggregator() {
+      return true;
+    }
   }
 
   /** Common interface for all double number aggregators. */
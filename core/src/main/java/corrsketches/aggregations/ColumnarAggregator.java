@@ -0,0 +1,226 @@
+package corrsketches.aggregations;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates the values of many keys using a single {@link AggregateFunction}. Instead of creating
+ * one {@link RepeatedValueHandler} object per key, the state of all aggregates is stored in
+ * parallel primitive arrays indexed by a slot number. A slot is allocated when the first value of
+ * a key is seen (see {@link #add(double)}), and can be given back with {@link #release(int)} when
+ * the key is evicted, so that it can be reused by another key.
+ *
+ * <p>The aggregated values are the same as the ones computed by the aggregators returned by {@link
+ * AggregateFunction#get()}. The only exception is {@link AggregateFunction#MOST_FREQUENT}: when
+ * multiple values have the same largest count, the value that first reached this count is
+ * returned.
+ */
+public class ColumnarAggregator {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int MIN_COUNTER_CAPACITY = 4;
+
+  private final AggregateFunction function;
+
+  /** The current aggregated value of each slot (the mode of the slot for MOST_FREQUENT). */
+  private double[] values;
+  /** The number of values seen by each slot (MEAN and COUNT) or the count of the mode. */
+  private long[] counts;
+  /**
+   * Open-addressing hash tables that count the occurrences of the values of each slot (used only
+   * by MOST_FREQUENT). Each table stores interleaved (value, count) pairs, and a pair with count
+   * zero is empty. Tables are created only once a slot sees a second distinct value.
+   */
+  private int[][] counters;
+  /** The number of distinct values in the counter of each slot, or zero if it is not used. */
+  private int[] counterSizes;
+
+  private int size = 0;
+  private int[] freeSlots = new int[0];
+  private int numFreeSlots = 0;
+
+  public ColumnarAggregator(AggregateFunction function) {
+    this(function, DEFAULT_CAPACITY);
+  }
+
+  public ColumnarAggregator(AggregateFunction function, int initialCapacity) {
+    this.function = function;
+    final int capacity = Math.max(1, initialCapacity);
+    this.values = new double[capacity];
+    if (function == AggregateFunction.MEAN
+        || function == AggregateFunction.COUNT
+        || function == AggregateFunction.MOST_FREQUENT) {
+      this.counts = new long[capacity];
+    }
+    if (function == AggregateFunction.MOST_FREQUENT) {
+      this.counters = new int[capacity][];
+      this.counterSizes = new int[capacity];
+    }
+  }
+
+  public AggregateFunction function() {
+    return function;
+  }
+
+  /** Allocates a new slot whose aggregate is initialized with the given first value. */
+  public int add(double value) {
+    final int slot;
+    if (numFreeSlots > 0) {
+      slot = freeSlots[--numFreeSlots];
+    } else {
+      if (size == values.length) {
+        grow();
+      }
+      slot = size++;
+    }
+    switch (function) {
+      case MEAN:
+      case COUNT:
+        values[slot] = value;
+        counts[slot] = 1;
+        break;
+      case MOST_FREQUENT:
+        values[slot] = (int) value;
+        counts[slot] = 1;
+        break;
+      default:
+        values[slot] = value;
+    }
+    return slot;
+  }
+
+  /** Updates the aggregate of the given slot with a new value. */
+  public void update(int slot, double value) {
+    switch (function) {
+      case FIRST:
+        break;
+      case LAST:
+        values[slot] = value;
+        break;
+      case MAX:
+        values[slot] = Math.max(values[slot], value);
+        break;
+      case MIN:
+        values[slot] = Math.min(values[slot], value);
+        break;
+      case SUM:
+        values[slot] += value;
+        break;
+      case MEAN:
+        final long n = ++counts[slot];
+        values[slot] = values[slot] + ((value - values[slot]) / n);
+        break;
+      case COUNT:
+        counts[slot]++;
+        break;
+      case MOST_FREQUENT:
+        updateMostFrequent(slot, (int) value);
+        break;
+      case NONE:
+        throw new IllegalStateException(
+            "update() shouldn't be called when NONE aggregator is used.");
+      default:
+        throw new IllegalStateException("Unsupported aggregate function: " + function);
+    }
+  }
+
+  /** Returns the current aggregated value of the given slot. */
+  public double aggregatedValue(int slot) {
+    if (function == AggregateFunction.COUNT) {
+      return counts[slot];
+    }
+    return values[slot];
+  }
+
+  /** Gives back the given slot, so that it can be reused by later calls to {@link #add(double)}. */
+  public void release(int slot) {
+    if (counterSizes != null && counterSizes[slot] > 0) {
+      // keep the table allocated for the next key that uses this slot
+      Arrays.fill(counters[slot], 0);
+      counterSizes[slot] = 0;
+    }
+    if (numFreeSlots == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, Math.max(DEFAULT_CAPACITY, 2 * numFreeSlots));
+    }
+    freeSlots[numFreeSlots++] = slot;
+  }
+
+  /** Returns the number of slots that are currently in use. */
+  public int size() {
+    return size - numFreeSlots;
+  }
+
+  private void updateMostFrequent(int slot, int value) {
+    final int mode = (int) values[slot];
+    if (counterSizes[slot] == 0) {
+      if (value == mode) {
+        // only one distinct value seen so far: the count of the mode is all we need
+        counts[slot]++;
+        return;
+      }
+      if (counters[slot] == null) {
+        counters[slot] = new int[2 * MIN_COUNTER_CAPACITY];
+      }
+      increment(slot, mode, (int) counts[slot]);
+    }
+    final int count = increment(slot, value, 1);
+    if (count > counts[slot]) {
+      values[slot] = value;
+      counts[slot] = count;
+    }
+  }
+
+  /** Adds the given amount to the count of the value in the counter of the slot. */
+  private int increment(int slot, int value, int amount) {
+    int[] table = counters[slot];
+    if (2 * (counterSizes[slot] + 1) > table.length / 2) {
+      // keep the load factor at most 1/2
+      table = rehash(table);
+      counters[slot] = table;
+    }
+    final int pos = find(table, value);
+    if (table[pos + 1] == 0) {
+      table[pos] = value;
+      counterSizes[slot]++;
+    }
+    return table[pos + 1] += amount;
+  }
+
+  /** Returns the position of the value in the table, or of the empty pair where it belongs. */
+  private static int find(int[] table, int value) {
+    final int mask = table.length / 2 - 1;
+    int i = mix(value) & mask;
+    while (table[2 * i + 1] != 0 && table[2 * i] != value) {
+      i = (i + 1) & mask;
+    }
+    return 2 * i;
+  }
+
+  private static int[] rehash(int[] table) {
+    final int[] newTable = new int[2 * table.length];
+    for (int i = 0; i < table.length; i += 2) {
+      if (table[i + 1] != 0) {
+        final int pos = find(newTable, table[i]);
+        newTable[pos] = table[i];
+        newTable[pos + 1] = table[i + 1];
+      }
+    }
+    return newTable;
+  }
+
+  private static int mix(int x) {
+    final int h = x * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private void grow() {
+    final int capacity = 2 * values.length;
+    values = Arrays.copyOf(values, capacity);
+    if (counts != null) {
+      counts = Arrays.copyOf(counts, capacity);
+    }
+    if (counters != null) {
+      counters = Arrays.copyOf(counters, capacity);
+      counterSizes = Arrays.copyOf(counterSizes, capacity);
+    }
+  }
+}
@@ -1,7 +1,21 @@
 package corrsketches.aggregations;
 
+import corrsketches.ColumnType;
+
 /** Creates an instance of an object that implements the RepeatedValueProvider interface. */
 public interface RepeatedValueHandlerProvider {
 
   RepeatedValueHandler create();
+
+  /**
+   * Same as {@code create().isAggregator()}, but implementations should answer it without creating
+   * a new handler.
+   */
+  boolean isAggregator();
+
+  /**
+   * Same as {@code create().getOutputType(columnValueType)}, but implementations should answer it
+   * without creating a new handler.
+   */
+  ColumnType getOutputType(ColumnType columnValueType);
 }
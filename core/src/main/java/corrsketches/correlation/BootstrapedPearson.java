@@ -1,8 +1,12 @@
 package corrsketches.correlation;
 
 import corrsketches.statistics.Stats;
+import corrsketches.util.Workspace;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /** Implements the PM1 bootstrapping for estimating the Pearson's correlation coefficient. */
 public class BootstrapedPearson {
@@ -73,82 +77,175 @@ public class BootstrapedPearson {
   //    return new CI(corr, corrMean, corrMedian, lb, ub);
   //  }
 
-  public static double coefficient(double[] x, double[] y) {
-    return estimate(x, y).corrBsMean;
-  }
+  /** Seed used by default, so that the estimates are reproducible. */
+  public static final long DEFAULT_SEED = 0;
 
-  public static BootstrapEstimate estimate(double[] x, double[] y) {
-    Random random = new Random(0);
-
-    final int n = y.length;
+  private static final int MAX_RESAMPLES = 10000;
 
-    int B = 10000;
-    double[] estimates = new double[B];
+  /** Number of resamples drawn by each task, which uses its own random number generator. */
+  private static final int BLOCK_SIZE = 32;
 
-    final double corr = PearsonCorrelation.coefficient(x, y);
+  /**
+   * Maximum number of tasks that run before evaluating the early termination rule. The first round
+   * has a single block, and the number of blocks doubles in each round up to this limit, so that
+   * few resamples are computed past the termination point when the rule is met early.
+   */
+  private static final int MAX_BLOCKS_PER_ROUND = 16;
 
-    double mean = 0.0;
-    int ind = 0;
+  /** Minimum number of sampled values (resamples * sample size) to run a round in parallel. */
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
 
-    double[] sy = new double[n];
-    double[] sx = new double[n];
-    for (int i = 0; i < B; i++) {
-      resample(x, y, random, n, sy, sx);
-      // compute correlation estimate on bootstrapped sample
-      double sr = PearsonCorrelation.coefficient(sx, sy);
-      if (Double.isNaN(sr)) {
-        estimates[i] = 0.0;
-      } else {
-        estimates[i] = sr;
-      }
+  public static double coefficient(double[] x, double[] y) {
+    return estimate(x, y).corrBsMean;
+  }
 
-      // updated current mean
-      final int count = i + 1;
-      final double diff = (estimates[i] - mean) / count;
-      mean = mean + diff;
+  public static BootstrapEstimate estimate(double[] x, double[] y) {
+    return estimate(x, y, PearsonCorrelation.coefficient(x, y));
+  }
 
-      // evaluate early termination
-      final double absDiff = Math.abs(diff);
-      if (absDiff > 0.01) {
-        ind++;
-      }
-      final double p = ind / (double) count;
-      if (i >= 5 && p < 0.05) {
-        B = count;
-        break;
-      }
-    }
-    Arrays.sort(estimates, 0, B);
+  /**
+   * Same as {@link #estimate(double[], double[])}, but the resamples are computed by the threads of
+   * the given pool.
+   */
+  public static BootstrapEstimate estimate(double[] x, double[] y, ForkJoinPool pool) {
+    return bootstrap(x, y, PearsonCorrelation.coefficient(x, y), DEFAULT_SEED, pool, true);
+  }
 
-    return createPM1ConfidenceInterval(B, estimates, n, corr);
+  /**
+   * Same as {@link #estimate(double[], double[])}, but uses the given (pre-computed) Pearson's
+   * correlation coefficient of x and y.
+   */
+  static BootstrapEstimate estimate(double[] x, double[] y, final double corr) {
+    return bootstrap(x, y, corr, DEFAULT_SEED, null, true);
   }
 
   /** PM1 Bootstrap without early termination. */
   public static BootstrapEstimate simpleEstimate(double[] x, double[] y) {
-    Random random = new Random(0);
+    return bootstrap(x, y, PearsonCorrelation.coefficient(x, y), DEFAULT_SEED, null, false);
+  }
+
+  /**
+   * Computes the PM1 bootstrap estimate using up to {@link #MAX_RESAMPLES} resamples of x and y.
+   *
+   * <p>Resamples are split in fixed-size blocks, and each block draws its samples from its own
+   * {@link SplittableRandom} split from a generator initialized with the given seed. Since the
+   * blocks and their generators do not depend on the number of threads, the estimates are
+   * deterministic for a given seed. Blocks are computed in rounds of up to {@link
+   * #MAX_BLOCKS_PER_ROUND} blocks (in parallel, using the given pool, or the current one if it is
+   * null). If early termination is enabled, the stopping rule is evaluated after each round, over
+   * the resamples in the same order as they would be computed sequentially.
+   */
+  static BootstrapEstimate bootstrap(
+      double[] x,
+      double[] y,
+      final double corr,
+      long seed,
+      ForkJoinPool pool,
+      boolean earlyTermination) {
 
     final int n = y.length;
+    final int numBlocks = (MAX_RESAMPLES + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final int maxBlocksPerRound = earlyTermination ? MAX_BLOCKS_PER_ROUND : numBlocks;
+    final SplittableRandom random = new SplittableRandom(seed);
+    final SplittableRandom[] blockRandoms = new SplittableRandom[maxBlocksPerRound];
 
-    int B = 10000;
-    double[] estimates = new double[B];
-
-    final double corr = PearsonCorrelation.coefficient(x, y);
-
-    double[] sy = new double[n];
-    double[] sx = new double[n];
-    for (int i = 0; i < B; i++) {
-      resample(x, y, random, n, sy, sx);
-      // compute correlation estimate on bootstrapped sample
-      double sr = PearsonCorrelation.coefficient(sx, sy);
-      if (Double.isNaN(sr)) {
-        estimates[i] = 0.0;
-      } else {
-        estimates[i] = sr;
+    final Workspace workspace = Workspace.local();
+    final long mark = workspace.mark();
+    try {
+      final double[] estimates = workspace.doubles(MAX_RESAMPLES);
+
+      int B = MAX_RESAMPLES;
+      double mean = 0.0;
+      int ind = 0;
+      int i = 0;
+      boolean terminated = false;
+      int blocksPerRound = earlyTermination ? 1 : numBlocks;
+      for (int firstBlock = 0; firstBlock < numBlocks && !terminated; ) {
+        final int roundBlocks = Math.min(blocksPerRound, numBlocks - firstBlock);
+        for (int b = 0; b < roundBlocks; b++) {
+          blockRandoms[b] = random.split();
+        }
+        final int roundStart = firstBlock * BLOCK_SIZE;
+        final int roundEnd = Math.min(roundStart + roundBlocks * BLOCK_SIZE, MAX_RESAMPLES);
+        final IntStream blocks = IntStream.range(0, roundBlocks);
+        final IntConsumer computeBlock =
+            (int b) -> {
+              final int start = roundStart + b * BLOCK_SIZE;
+              final int end = Math.min(start + BLOCK_SIZE, MAX_RESAMPLES);
+              for (int j = start; j < end; j++) {
+                estimates[j] = resampledCoefficient(x, y, n, blockRandoms[b]);
+              }
+            };
+        if ((roundEnd - roundStart) * (long) n < PARALLEL_THRESHOLD) {
+          blocks.forEach(computeBlock);
+        } else if (pool == null) {
+          blocks.parallel().forEach(computeBlock);
+        } else {
+          pool.submit(() -> blocks.parallel().forEach(computeBlock)).join();
+        }
+        firstBlock += roundBlocks;
+        blocksPerRound = Math.min(2 * blocksPerRound, maxBlocksPerRound);
+
+        if (!earlyTermination) {
+          i = roundEnd;
+          continue;
+        }
+        for (; i < roundEnd; i++) {
+          // updated current mean
+          final int count = i + 1;
+          final double diff = (estimates[i] - mean) / count;
+          mean = mean + diff;
+
+          // evaluate early termination
+          final double absDiff = Math.abs(diff);
+          if (absDiff > 0.01) {
+            ind++;
+          }
+          final double p = ind / (double) count;
+          if (i >= 5 && p < 0.05) {
+            B = count;
+            terminated = true;
+            break;
+          }
+        }
       }
+      Arrays.sort(estimates, 0, B);
+
+      return createPM1ConfidenceInterval(B, estimates, n, corr);
+    } finally {
+      workspace.release(mark);
     }
-    Arrays.sort(estimates, 0, B);
+  }
 
-    return createPM1ConfidenceInterval(B, estimates, n, corr);
+  /**
+   * Computes the Pearson's correlation of a sample with replacement of the vectors x and y. The
+   * sampled values are not copied: they are accumulated in a single pass using Welford's updates of
+   * the means and of the (co-)moments. If the correlation is undefined (e.g., all sampled values
+   * are equal), zero is returned.
+   */
+  private static double resampledCoefficient(
+      double[] x, double[] y, int n, SplittableRandom random) {
+    double meanX = 0.0;
+    double meanY = 0.0;
+    double sxx = 0.0;
+    double syy = 0.0;
+    double sxy = 0.0;
+    for (int j = 0; j < n; j++) {
+      final int ni = random.nextInt(n);
+      final double xj = x[ni];
+      final double yj = y[ni];
+      final double dx = xj - meanX;
+      final double dy = yj - meanY;
+      final double inverseCount = 1.0 / (j + 1);
+      meanX += dx * inverseCount;
+      meanY += dy * inverseCount;
+      final double dyNew = yj - meanY;
+      sxx += dx * (xj - meanX);
+      syy += dy * dyNew;
+      sxy += dx * dyNew;
+    }
+    final double sr = sxy / Math.sqrt(sxx * syy);
+    return Double.isNaN(sr) ? 0.0 : sr;
   }
 
   /**
@@ -192,19 +289,6 @@ public class BootstrapedPearson {
     return new BootstrapEstimate(n, corr, corrMean, corrMedian, lb, ub);
   }
 
-  /**
-   * Creates a sample with replacement of the vectors x and y and writes the output to sx and sy.
-   * Output is written to sx and sy to avoid creating multiple instances of the array.
-   */
-  private static void resample(
-      double[] x, double[] y, Random random, int n, double[] sy, double[] sx) {
-    for (int j = 0; j < n; j++) {
-      int ni = random.nextInt(n);
-      sx[j] = x[ni];
-      sy[j] = y[ni];
-    }
-  }
-
   public static class BootstrapEstimate extends Estimate {
 
     public final double corrEst;
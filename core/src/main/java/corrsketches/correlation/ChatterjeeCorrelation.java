@@ -3,8 +3,9 @@ package corrsketches.correlation;
 import static corrsketches.statistics.Stats.*;
 
 import corrsketches.Column;
-import corrsketches.util.RandomArrays;
 import corrsketches.util.Sorting;
+import corrsketches.util.Workspace;
+import java.util.concurrent.ThreadLocalRandom;
 
 /** Computes Chatterjee's cross-rank correlation coefficient. */
 public class ChatterjeeCorrelation {
@@ -17,45 +18,64 @@ public class ChatterjeeCorrelation {
 
   /** Computes the Chatterjee's correlation coefficient for two vectors. */
   public static double coefficient(double[] x, double[] y) {
-    final int n = x.length;
-    final double[] a = x.clone();
-    final double[] b = y.clone();
-
-    final int[] tieBreaker = RandomArrays.randIntUniform(x.length);
-
-    //
-    // Sort both vectors according to y's order, then compute the number of j s.t. y[j] <= y[i],
-    // divided by n, that will be used in the numerator.
-    //
-    sort(b, a, tieBreaker);
-    rank(b, TiesMethod.MAX); // rank() computes the rank in-place
-    for (int i = 0; i < n; i++) {
-      b[i] = b[i] / n;
-    }
+    return coefficient(x, y, Workspace.local());
+  }
 
-    //
-    // Compute the number of j s.t. y[j] >= y[i] used in the denominator.
-    //
-    final int lastIdx = b.length - 1;
-    final double[] gr = new double[b.length];
-    // Given that b is already sorted, we just need to invert the array order to get a sorted array
-    // with the additive inverse of b.
-    for (int i = 0; i < gr.length; i++) {
-      gr[i] = -b[lastIdx - i];
-    }
-    rank(gr, TiesMethod.MAX);
-    for (int i = 0; i < n; i++) {
-      final double g = gr[i] / n;
-      gr[i] = g * (1 - g);
+  /**
+   * Computes the Chatterjee's correlation coefficient for two vectors using the given workspace for
+   * all temporary arrays.
+   */
+  public static double coefficient(double[] x, double[] y, Workspace workspace) {
+    final int n = x.length;
+    final long mark = workspace.mark();
+    try {
+      final double[] a = workspace.doubles(n);
+      final double[] b = workspace.doubles(n);
+      System.arraycopy(x, 0, a, 0, n);
+      System.arraycopy(y, 0, b, 0, n);
+
+      final int[] tieBreaker = workspace.ints(n);
+      final ThreadLocalRandom random = ThreadLocalRandom.current();
+      for (int i = 0; i < n; i++) {
+        tieBreaker[i] = random.nextInt();
+      }
+
+      //
+      // Sort both vectors according to y's order, then compute the number of j s.t. y[j] <= y[i],
+      // divided by n, that will be used in the numerator.
+      //
+      sort(b, a, tieBreaker, n);
+      rank(b, n, TiesMethod.MAX); // rank() computes the rank in-place
+      for (int i = 0; i < n; i++) {
+        b[i] = b[i] / n;
+      }
+
+      //
+      // Compute the number of j s.t. y[j] >= y[i] used in the denominator.
+      //
+      final int lastIdx = n - 1;
+      final double[] gr = workspace.doubles(n);
+      // Given that b is already sorted, we just need to invert the array order to get a sorted
+      // array with the additive inverse of b.
+      for (int i = 0; i < n; i++) {
+        gr[i] = -b[lastIdx - i];
+      }
+      rank(gr, n, TiesMethod.MAX);
+      for (int i = 0; i < n; i++) {
+        final double g = gr[i] / n;
+        gr[i] = g * (1 - g);
+      }
+
+      // sort according to x to compute the sum of absolute differences for the numerator
+      sort(a, b, tieBreaker, n);
+
+      double A1 = sumAbsDiff(b, n) / (2. * n);
+      double CU = mean(gr, n);
+      double xi = 1.0 - A1 / CU;
+      return xi;
+    } finally {
+      workspace.release(mark);
     }
-
-    // sort according to x to compute the sum of absolute differences for the numerator
-    sort(a, b, tieBreaker);
-
-    double A1 = sumAbsDiff(b) / (2. * n);
-    double CU = mean(gr);
-    double xi = 1.0 - A1 / CU;
-    return xi;
   }
 
   private static double[] additiveInverse(double[] y) {
@@ -67,14 +87,18 @@ public class ChatterjeeCorrelation {
   }
 
   protected static double sumAbsDiff(double[] x) {
+    return sumAbsDiff(x, x.length);
+  }
+
+  protected static double sumAbsDiff(double[] x, int n) {
     double sum = 0.0;
-    for (int i = 0; i < x.length - 1; i++) {
+    for (int i = 0; i < n - 1; i++) {
       sum += Math.abs(x[i + 1] - x[i]);
     }
     return sum;
   }
 
-  private static void sort(double[] x, double[] y, int[] tieBreaker) {
+  private static void sort(double[] x, double[] y, int[] tieBreaker, int n) {
     Sorting.sort(
         new Sorting.Sortable() {
           @Override
@@ -95,7 +119,7 @@ public class ChatterjeeCorrelation {
           }
         },
         0,
-        x.length);
+        n);
   }
 
   public static Correlation<Estimate> INSTANCE =
@@ -13,6 +13,9 @@ public interface Correlation<E extends Estimate> {
       // x and y have the same type
       if (x.type == ColumnType.CATEGORICAL) {
         // both are categorical
+        if (x.isDictionaryEncoded() && y.isDictionaryEncoded()) {
+          return ofDictionaryEncoded(x, y);
+        }
         return ofCategorical(x.valuesAsIntArray(), y.valuesAsIntArray());
       }
       if (x.type == ColumnType.NUMERICAL) {
@@ -41,6 +44,16 @@ public interface Correlation<E extends Estimate> {
         getClass() + " does not support correlation for categorical variables");
   }
 
+  /**
+   * Computes the estimate for two categorical columns that are dictionary-encoded (see {@link
+   * Column#codes}). By default, this uses the original values of the columns, same as {@link
+   * #ofCategorical(int[], int[])}. Estimators that only compare values for equality can override
+   * it to use the dense codes of the columns instead.
+   */
+  default E ofDictionaryEncoded(Column x, Column y) {
+    return ofCategorical(x.valuesAsIntArray(), y.valuesAsIntArray());
+  }
+
   default E ofNumericalCategorical(final double[] y, final int[] x) {
     throw new UnsupportedOperationException(
         getClass() + " does not support correlation for numerical-categorical variables");
@@ -13,7 +13,8 @@ public enum CorrelationType {
   NMI_SQRT,
   NMI_MAX,
   NMI_MIN,
-  XICOR;
+  XICOR,
+  KENDALL;
 
   public Correlation get() {
     return get(this);
@@ -33,6 +34,8 @@ public enum CorrelationType {
         return (NumericalCorrelation) BootstrapedPearson::estimate;
       case QCR:
         return (NumericalCorrelation) QCRCorrelation::estimate;
+      case KENDALL:
+        return (NumericalCorrelation) KendallTauCorrelation::estimate;
       case XICOR:
         return ChatterjeeCorrelation.INSTANCE;
       case MUTUAL_INFORMATION_BINNING:
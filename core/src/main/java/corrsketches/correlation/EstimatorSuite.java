@@ -0,0 +1,349 @@
+package corrsketches.correlation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import corrsketches.Table.Join;
+import corrsketches.correlation.BootstrapedPearson.BootstrapEstimate;
+import corrsketches.statistics.Qn;
+import corrsketches.statistics.Stats;
+import corrsketches.statistics.Stats.TiesMethod;
+import corrsketches.util.Sorting;
+import corrsketches.util.Workspace;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Set;
+import smile.sort.QuickSort;
+
+/**
+ * Computes a set of numerical correlation estimators over the same pair of variables. Intermediate
+ * results that are needed by multiple estimators (e.g., sort permutations, ranks, and means) are
+ * computed only once and shared among them, instead of being recomputed by each estimator. All
+ * temporary arrays are taken from a {@link Workspace}, so computing the estimates does not allocate
+ * arrays proportional to the sample size.
+ */
+public class EstimatorSuite {
+
+  private static final Set<CorrelationType> SUPPORTED =
+      EnumSet.of(
+          CorrelationType.PEARSONS,
+          CorrelationType.SPEARMANS,
+          CorrelationType.RIN,
+          CorrelationType.ROBUST_QN,
+          CorrelationType.PM1_BOOTSTRAP,
+          CorrelationType.QCR,
+          CorrelationType.KENDALL);
+
+  private final Set<CorrelationType> estimators;
+
+  public EstimatorSuite(Collection<CorrelationType> estimators) {
+    checkArgument(!estimators.isEmpty(), "at least one estimator is required");
+    for (CorrelationType type : estimators) {
+      checkArgument(SUPPORTED.contains(type), "estimator %s is not supported", type);
+    }
+    this.estimators = EnumSet.copyOf(estimators);
+  }
+
+  public static EstimatorSuite of(CorrelationType... estimators) {
+    return new EstimatorSuite(Arrays.asList(estimators));
+  }
+
+  public Results compute(Join join) {
+    return compute(join.left.values, join.right.values);
+  }
+
+  public Results compute(double[] x, double[] y) {
+    return compute(x, y, Workspace.local());
+  }
+
+  /** Same as {@link #compute(double[], double[])}, but uses the given workspace. */
+  public Results compute(double[] x, double[] y, Workspace workspace) {
+    checkArgument(x.length == y.length, "x and y must have same size");
+    final int n = x.length;
+    final long mark = workspace.mark();
+    try {
+      final SharedData data = new SharedData(x, y, workspace);
+      final EnumMap<CorrelationType, Estimate> estimates = new EnumMap<>(CorrelationType.class);
+      for (CorrelationType type : estimators) {
+        switch (type) {
+          case PEARSONS:
+            estimates.put(type, new Estimate(data.pearson(), n));
+            break;
+          case SPEARMANS:
+            estimates.put(
+                type,
+                new Estimate(PearsonCorrelation.coefficient(data.rankX(), data.rankY(), n), n));
+            break;
+          case RIN:
+            estimates.put(type, new Estimate(rin(data), n));
+            break;
+          case ROBUST_QN:
+            estimates.put(type, new Estimate(qn(data), n));
+            break;
+          case PM1_BOOTSTRAP:
+            estimates.put(type, BootstrapedPearson.estimate(x, y, data.pearson()));
+            break;
+          case QCR:
+            estimates.put(
+                type,
+                new Estimate(QCRCorrelation.coefficient(x, y, data.meanX(), data.meanY()), n));
+            break;
+          case KENDALL:
+            estimates.put(type, new Estimate(kendall(data), n));
+            break;
+          default:
+            throw new IllegalStateException("Unsupported estimator: " + type);
+        }
+      }
+      return new Results(estimates);
+    } finally {
+      workspace.release(mark);
+    }
+  }
+
+  private static double rin(SharedData data) {
+    final int n = data.n;
+    final double[] a = data.workspace.doubles(n);
+    final double[] b = data.workspace.doubles(n);
+    System.arraycopy(data.rankX(), 0, a, 0, n);
+    System.arraycopy(data.rankY(), 0, b, 0, n);
+    RinCorrelation.rankit(a, n);
+    RinCorrelation.rankit(b, n);
+    return PearsonCorrelation.coefficient(a, b, n);
+  }
+
+  /** Same as {@link QnCorrelation#correlation(double[], double[])}, reusing the sorted x and y. */
+  private static double qn(SharedData data) {
+    final double[] x = data.x;
+    final double[] y = data.y;
+    final int n = data.n;
+    final Workspace workspace = data.workspace;
+    final double stdx = Qn.estimateScaleOfSorted(data.sortedX(), n, workspace);
+    final double stdy = Qn.estimateScaleOfSorted(data.sortedY(), n, workspace);
+    final double sqrtOfTwo = Math.sqrt(2);
+    final double[] u = workspace.doubles(n);
+    final double[] v = workspace.doubles(n);
+    for (int i = 0; i < n; i++) {
+      final double xstdsqrt2 = (x[i] / stdx) / sqrtOfTwo;
+      final double ystdsqrt2 = (y[i] / stdy) / sqrtOfTwo;
+      u[i] = xstdsqrt2 + ystdsqrt2;
+      v[i] = xstdsqrt2 - ystdsqrt2;
+    }
+    final double uscale = Qn.estimateScale(u, n, workspace);
+    final double vscale = Qn.estimateScale(v, n, workspace);
+    final double us2 = uscale * uscale;
+    final double vs2 = vscale * vscale;
+    return (us2 - vs2) / (us2 + vs2);
+  }
+
+  private static double kendall(SharedData data) {
+    // values of y in the (x, y) sort order; the kendall computation overwrites this array
+    final int n = data.n;
+    final int[] order = data.orderX();
+    final double[] y = data.workspace.doubles(n);
+    for (int i = 0; i < n; i++) {
+      y[i] = data.y[order[i]];
+    }
+    return KendallTauCorrelation.correlationOfSorted(
+        data.sortedX(), y, data.workspace.doubles(n), n);
+  }
+
+  /** The results computed by an {@link EstimatorSuite}. */
+  public static class Results {
+
+    private final EnumMap<CorrelationType, Estimate> estimates;
+
+    Results(EnumMap<CorrelationType, Estimate> estimates) {
+      this.estimates = estimates;
+    }
+
+    /** Returns the estimate computed for the given estimator type. */
+    public Estimate get(CorrelationType type) {
+      final Estimate estimate = estimates.get(type);
+      if (estimate == null) {
+        throw new IllegalArgumentException("Estimator " + type + " was not included in the suite");
+      }
+      return estimate;
+    }
+
+    /** Returns the value of the estimate computed for the given estimator type. */
+    public double value(CorrelationType type) {
+      return get(type).value;
+    }
+
+    /** Returns the full PM1 bootstrap estimate, including its confidence intervals. */
+    public BootstrapEstimate pm1() {
+      return (BootstrapEstimate) get(CorrelationType.PM1_BOOTSTRAP);
+    }
+
+    @Override
+    public String toString() {
+      return "Results{" + estimates + '}';
+    }
+  }
+
+  /**
+   * Lazily computes and caches the data shared by multiple estimators. The arrays are buffers of the
+   * workspace, so only their first {@code n} elements are valid.
+   */
+  private static class SharedData {
+
+    final double[] x;
+    final double[] y;
+    final int n;
+    final Workspace workspace;
+
+    private double meanX = Double.NaN;
+    private double meanY = Double.NaN;
+    private double pearson = Double.NaN;
+    private boolean pearsonComputed = false;
+    private int[] orderX; // permutation that sorts the pairs by (x, y)
+    private double[] sortedX;
+    private int[] orderY; // permutation that sorts the pairs by y
+    private double[] sortedY;
+    private double[] rankX;
+    private double[] rankY;
+
+    SharedData(double[] x, double[] y, Workspace workspace) {
+      this.x = x;
+      this.y = y;
+      this.n = x.length;
+      this.workspace = workspace;
+    }
+
+    double meanX() {
+      if (Double.isNaN(meanX)) {
+        meanX = Stats.mean(x);
+      }
+      return meanX;
+    }
+
+    double meanY() {
+      if (Double.isNaN(meanY)) {
+        meanY = Stats.mean(y);
+      }
+      return meanY;
+    }
+
+    double pearson() {
+      if (!pearsonComputed) {
+        pearson = PearsonCorrelation.coefficient(x, y, meanX(), meanY());
+        pearsonComputed = true;
+      }
+      return pearson;
+    }
+
+    int[] orderX() {
+      if (orderX == null) {
+        sortedX = copy(x);
+        orderX = identity();
+        // QuickSort does not order NaN, so NaNs are moved to the end (as Double.compare does)
+        int numbers = 0;
+        for (int i = 0; i < n; i++) {
+          if (!Double.isNaN(sortedX[i])) {
+            Sorting.swap(sortedX, i, numbers);
+            Sorting.swap(orderX, i, numbers);
+            numbers++;
+          }
+        }
+        QuickSort.sort(sortedX, orderX, numbers);
+        sortTiesByY(sortedX, orderX, numbers);
+      }
+      return orderX;
+    }
+
+    double[] sortedX() {
+      orderX();
+      return sortedX;
+    }
+
+    int[] orderY() {
+      if (orderY == null) {
+        sortedY = copy(y);
+        orderY = identity();
+        QuickSort.sort(sortedY, orderY, n);
+      }
+      return orderY;
+    }
+
+    double[] sortedY() {
+      orderY();
+      return sortedY;
+    }
+
+    /** The ranks of x in the original order of x (tied values get the average rank). */
+    double[] rankX() {
+      if (rankX == null) {
+        rankX = ranks(sortedX(), orderX());
+      }
+      return rankX;
+    }
+
+    /** The ranks of y in the original order of y (tied values get the average rank). */
+    double[] rankY() {
+      if (rankY == null) {
+        rankY = ranks(sortedY(), orderY());
+      }
+      return rankY;
+    }
+
+    /**
+     * Sorts the runs of tied values of x by the values of y, so pairs are sorted by (x, y) in the
+     * order of {@link Double#compare}. The runs are the values that are equal under the primitive
+     * operators (so -0.0 and 0.0 share a run), and the NaNs that start at {@code numbers}.
+     */
+    private void sortTiesByY(double[] sortedX, int[] order, int numbers) {
+      int start = 0;
+      while (start < n) {
+        int end = start + 1;
+        while (end < n && (sortedX[end] == sortedX[start] || start >= numbers)) {
+          end++;
+        }
+        if (end - start > 1) {
+          Sorting.sort(
+              new Sorting.Sortable() {
+                @Override
+                public int compare(int i, int j) {
+                  final int compareX = Double.compare(sortedX[i], sortedX[j]);
+                  return compareX != 0 ? compareX : Double.compare(y[order[i]], y[order[j]]);
+                }
+
+                @Override
+                public void swap(int i, int j) {
+                  Sorting.swap(sortedX, i, j);
+                  Sorting.swap(order, i, j);
+                }
+              },
+              start,
+              end - start);
+        }
+        start = end;
+      }
+    }
+
+    private double[] ranks(double[] sorted, int[] order) {
+      final double[] sortedRanks = copy(sorted);
+      Stats.rank(sortedRanks, n, TiesMethod.AVERAGE);
+      final double[] ranks = workspace.doubles(n);
+      for (int i = 0; i < n; i++) {
+        ranks[order[i]] = sortedRanks[i];
+      }
+      return ranks;
+    }
+
+    private double[] copy(double[] values) {
+      final double[] copy = workspace.doubles(n);
+      System.arraycopy(values, 0, copy, 0, n);
+      return copy;
+    }
+
+    private int[] identity() {
+      final int[] index = workspace.ints(n);
+      for (int i = 0; i < n; i++) {
+        index[i] = i;
+      }
+      return index;
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package corrsketches.correlation;
 
+import corrsketches.util.Sorting;
+import corrsketches.util.Workspace;
 import java.util.Arrays;
-import java.util.Comparator;
+import smile.sort.QuickSort;
 
 /**
  * Implements the Kendall's Tau Correlation using an algorithm that runs in O(n*log n) time. This
@@ -11,14 +13,16 @@ import java.util.Comparator;
  */
 public class KendallTauCorrelation {
 
-  @SuppressWarnings("ComparatorCombinators")
-  static final Comparator<PairDD> PAIR_COMPARATOR =
-      (pair1, pair2) -> {
-        int compareFirst = Double.compare(pair1.x, pair2.x);
-        return compareFirst != 0 ? compareFirst : Double.compare(pair1.y, pair2.y);
-      };
-
+  /**
+   * Computes the Kendall's Tau correlation using the scratch buffers of the current thread's
+   * {@link Workspace}.
+   */
   public static double correlation(final double[] x, final double[] y) {
+    return correlation(x, y, Workspace.local());
+  }
+
+  /** Computes the Kendall's Tau correlation using the given workspace for all temporary arrays. */
+  public static double correlation(final double[] x, final double[] y, final Workspace workspace) {
 
     if (x.length != y.length) {
       throw new IllegalArgumentException(
@@ -26,25 +30,92 @@ public class KendallTauCorrelation {
     }
 
     final int n = x.length;
-    final long numPairs = sum(n - 1);
+    final long mark = workspace.mark();
+    try {
+      final double[] sortedX = workspace.doubles(n);
+      final double[] sortedY = workspace.doubles(n);
+      System.arraycopy(x, 0, sortedX, 0, n);
+      System.arraycopy(y, 0, sortedY, 0, n);
+      sortByXY(sortedX, sortedY, n);
+      return correlationOfSorted(sortedX, sortedY, workspace.doubles(n), n);
+    } finally {
+      workspace.release(mark);
+    }
+  }
+
+  public static Estimate estimate(final double[] x, final double[] y) {
+    return new Estimate(correlation(x, y), x.length);
+  }
 
-    PairDD[] pairs = new PairDD[n];
+  /**
+   * Sorts the first n pairs of values (x[i], y[i]) by x, and then by y when values of x are tied.
+   * Values are ordered as {@link Double#compare} does: -0.0 is smaller than 0.0, and NaN is greater
+   * than any other value.
+   */
+  static void sortByXY(final double[] x, final double[] y, final int n) {
+    // QuickSort uses the primitive operators, which do not order NaN, so NaNs are moved to the end
+    int numbers = 0;
     for (int i = 0; i < n; i++) {
-      pairs[i] = new PairDD(x[i], y[i]);
+      if (!Double.isNaN(x[i])) {
+        swap(x, y, i, numbers++);
+      }
+    }
+    QuickSort.sort(x, y, numbers);
+    int start = 0;
+    while (start < n) {
+      int end = start + 1;
+      while (end < n && (x[end] == x[start] || start >= numbers)) {
+        end++;
+      }
+      if (end - start > 1) {
+        sortTiedRun(x, y, start, end);
+      }
+      start = end;
+    }
+  }
+
+  /** Sorts a run of values of x that are equal under the primitive operators (or all NaN). */
+  private static void sortTiedRun(final double[] x, final double[] y, final int start, final int end) {
+    int middle = start;
+    if (x[start] == 0.0) {
+      // -0.0 == 0.0, but Double.compare orders -0.0 first
+      for (int i = start; i < end; i++) {
+        if (Double.compare(x[i], 0.0) < 0) {
+          swap(x, y, i, middle++);
+        }
+      }
     }
+    // Arrays.sort orders doubles as Double.compare does
+    Arrays.sort(y, start, middle);
+    Arrays.sort(y, middle, end);
+  }
 
-    Arrays.sort(pairs, PAIR_COMPARATOR);
+  private static void swap(final double[] x, final double[] y, final int i, final int j) {
+    Sorting.swap(x, i, j);
+    Sorting.swap(y, i, j);
+  }
+
+  /**
+   * Computes the Kendall's Tau correlation given the first n values of x and y already sorted by
+   * (x, y), i.e., sorted by x and then by y when values of x are tied. This method overwrites the
+   * contents of {@code y}, and uses {@code buffer} (which must have at least n elements) as scratch
+   * space for sorting.
+   *
+   * <p>Values are compared with {@link Double#compare}, so x and y must be sorted in that order
+   * (see {@link #sortByXY}).
+   */
+  static double correlationOfSorted(
+      final double[] x, final double[] y, final double[] buffer, final int n) {
+    final long numPairs = sum(n - 1);
 
     long tiedXPairs = 0;
     long tiedXYPairs = 0;
     long consecutiveXTies = 1;
     long consecutiveXYTies = 1;
-    PairDD prev = pairs[0];
     for (int i = 1; i < n; i++) {
-      final PairDD curr = pairs[i];
-      if (Double.compare(curr.x, prev.x) == 0) {
+      if (Double.compare(x[i], x[i - 1]) == 0) {
         consecutiveXTies++;
-        if (Double.compare(curr.y, prev.y) == 0) {
+        if (Double.compare(y[i], y[i - 1]) == 0) {
           consecutiveXYTies++;
         } else {
           tiedXYPairs += sum(consecutiveXYTies - 1);
@@ -56,61 +127,50 @@ public class KendallTauCorrelation {
         tiedXYPairs += sum(consecutiveXYTies - 1);
         consecutiveXYTies = 1;
       }
-      prev = curr;
     }
     tiedXPairs += sum(consecutiveXTies - 1);
     tiedXYPairs += sum(consecutiveXYTies - 1);
 
+    // bottom-up merge sort of y that counts the number of swaps (discordant pairs)
     long swaps = 0;
-
-    PairDD[] pairsDestination = new PairDD[n];
+    double[] source = y;
+    double[] destination = buffer;
     for (int segmentSize = 1; segmentSize < n; segmentSize <<= 1) {
       for (int offset = 0; offset < n; offset += 2 * segmentSize) {
         int i = offset;
         final int iEnd = Math.min(i + segmentSize, n);
         int j = iEnd;
         final int jEnd = Math.min(j + segmentSize, n);
-
         int copyLocation = offset;
-        while (i < iEnd || j < jEnd) {
-          if (i < iEnd) {
-            if (j < jEnd) {
-              if (Double.compare(pairs[i].y, pairs[j].y) <= 0) {
-                pairsDestination[copyLocation] = pairs[i];
-                i++;
-              } else {
-                pairsDestination[copyLocation] = pairs[j];
-                j++;
-                swaps += iEnd - i;
-              }
-            } else {
-              pairsDestination[copyLocation] = pairs[i];
-              i++;
-            }
+        while (i < iEnd && j < jEnd) {
+          if (Double.compare(source[i], source[j]) <= 0) {
+            destination[copyLocation++] = source[i++];
           } else {
-            pairsDestination[copyLocation] = pairs[j];
-            j++;
+            destination[copyLocation++] = source[j++];
+            swaps += iEnd - i;
           }
-          copyLocation++;
+        }
+        while (i < iEnd) {
+          destination[copyLocation++] = source[i++];
+        }
+        while (j < jEnd) {
+          destination[copyLocation++] = source[j++];
         }
       }
-      final PairDD[] pairsTemp = pairs;
-      pairs = pairsDestination;
-      pairsDestination = pairsTemp;
+      final double[] temp = source;
+      source = destination;
+      destination = temp;
     }
 
     long tiedYPairs = 0;
     long consecutiveYTies = 1;
-    prev = pairs[0];
     for (int i = 1; i < n; i++) {
-      final PairDD curr = pairs[i];
-      if (Double.compare(curr.y, prev.y) == 0) {
+      if (Double.compare(source[i], source[i - 1]) == 0) {
         consecutiveYTies++;
       } else {
         tiedYPairs += sum(consecutiveYTies - 1);
         consecutiveYTies = 1;
       }
-      prev = curr;
     }
     tiedYPairs += sum(consecutiveYTies - 1);
 
@@ -145,14 +205,4 @@ public class KendallTauCorrelation {
   public static double kendallToMI(double tau) {
     return tau * Math.log(Math.sqrt((1 + tau) / (1 - tau))) + Math.log(Math.sqrt(1 - tau * tau));
   }
-
-  private static class PairDD {
-    double x;
-    double y;
-
-    PairDD(double x, double y) {
-      this.x = x;
-      this.y = y;
-    }
-  }
 }
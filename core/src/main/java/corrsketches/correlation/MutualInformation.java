@@ -24,6 +24,10 @@ public class MutualInformation {
   }
 
   public static MIEstimate ofCategorical(final Column x, final Column y) {
+    if (x.isDictionaryEncoded() && y.isDictionaryEncoded()) {
+      checkArgument(x.codes.length == y.codes.length, "x and y must have same size");
+      return MutualInformationMLE.mi(x.codes, x.dictionarySize, y.codes, y.dictionarySize);
+    }
     return ofCategorical(x.values, y.values);
   }
 
@@ -1,5 +1,6 @@
 package corrsketches.correlation;
 
+import corrsketches.Column;
 import corrsketches.statistics.Stats;
 
 public class MutualInformationBinning implements Correlation<MIEstimate> {
@@ -11,6 +12,11 @@ public class MutualInformationBinning implements Correlation<MIEstimate> {
     return MutualInformation.ofCategorical(x, y);
   }
 
+  @Override
+  public MIEstimate ofDictionaryEncoded(Column x, Column y) {
+    return MutualInformation.ofCategorical(x, y);
+  }
+
   @Override
   public MIEstimate ofCategoricalNumerical(int[] x, double[] y) {
     return MutualInformation.ofCategorical(x, Stats.binEqualWidth(y));
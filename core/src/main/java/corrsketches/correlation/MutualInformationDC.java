@@ -5,15 +5,15 @@ import static java.lang.Math.max;
 import static smile.math.special.Gamma.digamma;
 
 import corrsketches.statistics.NearestNeighbors1D;
-import corrsketches.statistics.NearestNeighbors1D.NearestNeighbor;
 import corrsketches.statistics.Stats;
+import corrsketches.util.ChunkedSum;
 import corrsketches.util.Sorting;
-import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import corrsketches.util.Workspace;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implements computation of mutual information between continuous and discrete variables as
@@ -35,6 +35,14 @@ public class MutualInformationDC {
     return miNonNegative(d, c, k);
   }
 
+  /**
+   * Same as {@link #mi(int[], double[], int)}, but the neighbor statistics of large inputs are
+   * computed by the threads of the given pool.
+   */
+  public static double mi(int[] d, double[] c, int k, ForkJoinPool pool) {
+    return max(0, miRaw(d, c, k, new Random(DEFAULT_SEED), pool));
+  }
+
   static double miNonNegative(final int[] d, final double[] c, final int k, final double base) {
     return miNonNegative(d, c, k) / log(base);
   }
@@ -52,6 +60,11 @@ public class MutualInformationDC {
     return miRaw(discrete, continuous, k, null);
   }
 
+  static double miRaw(
+      final int[] discrete, final double[] continuous, final int k, final Random rng) {
+    return miRaw(discrete, continuous, k, rng, null);
+  }
+
   /**
    * Computes the mutual information between the array {@code discrete} and the array {@code
    * continuous} using the estimator described in the paper: Ross, Brian C. "Mutual information
@@ -63,10 +76,16 @@ public class MutualInformationDC {
    * @param rng (Optional) if not null, this random number generator is used to add small Gaussian
    *     noise for the continuous variable. This avoids estimation errors when the continuous
    *     variable contains tied values.
+   * @param pool (Optional) the pool used to compute the statistics of large inputs in parallel. If
+   *     null, the statistics are computed sequentially.
    * @return the mutual information estimate.
    */
   static double miRaw(
-      final int[] discrete, final double[] continuous, final int k, final Random rng) {
+      final int[] discrete,
+      final double[] continuous,
+      final int k,
+      final Random rng,
+      final ForkJoinPool pool) {
 
     // Make copy to avoid mutating original data
     final int[] d = Arrays.copyOf(discrete, discrete.length);
@@ -85,37 +104,94 @@ public class MutualInformationDC {
     sort(c, d);
 
     // Group the continuous data 'c' according to the discrete symbols in 'd'
-    List<DoubleArrayList> c_split = groupContinuousByCategories(d, c);
-    final int num_d_symbols = c_split.size();
+    final double[][] c_split = groupContinuousByCategories(d, c);
+    final int num_d_symbols = c_split.length;
 
     //
     // Compute the neighbor statistic for each data pair (c, d)
     // using the binned c_split list
     //
-    double psi_m_sum = 0;
+    final int N = d.length;
+    // position of the first value of each group in the concatenation of all groups
+    final int[] groupStart = new int[num_d_symbols + 1];
+    for (int g = 0; g < num_d_symbols; g++) {
+      groupStart[g + 1] = groupStart[g] + c_split[g].length;
+    }
+    final double psi_m_sum =
+        ChunkedSum.sum(
+            N,
+            (start, end) -> sumDigammaOfNeighborCounts(c_split, groupStart, c, k, start, end),
+            pool);
+
     double psi_Nd_avg = 0;
     double psi_k_avg = 0;
-    final int N = d.length;
-    final NearestNeighbor nn = new NearestNeighbor();
-    for (final DoubleArrayList split : c_split) {
-      int one_k = Math.min(k, split.size() - 1);
-      if (one_k > 0) {
-        for (int i = 0; i < split.size(); i++) {
-          // find the radius of our volume using only those samples with
-          // the particular value of the discrete symbol 'd'
-          NearestNeighbors1D.kthNearest(split.elements(), split.size(), i, one_k, nn);
+    for (final double[] split : c_split) {
+      final int one_k = Math.min(k, split.length - 1);
+      final double p_d = split.length / (double) N;
+      psi_Nd_avg += p_d * digamma(p_d * N);
+      psi_k_avg += p_d * digamma(Math.max(one_k, 1));
+    }
 
+    // In the comments below, <> indicates average, and
+    // psi is the digamma function described in the paper
+    return (digamma(N) // psi(N)
+        - psi_Nd_avg // < psi(N_x) >
+        + psi_k_avg // < psi(k) >
+        - (psi_m_sum / (double) N) // < psi(m) >
+    );
+  }
+
+  /**
+   * Computes the sum of digamma(m) over the values at positions [start, end) of the concatenation
+   * of all groups, where m is the number of values of {@code c} (of any group) within the distance
+   * of the k-th nearest neighbor among the values of the same group.
+   */
+  private static double sumDigammaOfNeighborCounts(
+      final double[][] c_split,
+      final int[] groupStart,
+      final double[] c,
+      final int k,
+      final int start,
+      final int end) {
+    final int num_d_symbols = c_split.length;
+    final Workspace workspace = Workspace.local();
+    final long mark = workspace.mark();
+    try {
+      final double[] distances = workspace.doubles(end - start);
+      final int[] neighbors = workspace.ints(end - start);
+      final int firstGroup = Arrays.binarySearch(groupStart, 0, num_d_symbols, start);
+      int g = firstGroup >= 0 ? firstGroup : -firstGroup - 2;
+      double psi_m_sum = 0;
+      for (int from = start; from < end; g++) {
+        final int to = Math.min(end, groupStart[g + 1]);
+        final double[] split = c_split[g];
+        final int one_k = Math.min(k, split.length - 1);
+        if (one_k <= 0) {
+          psi_m_sum += digamma(num_d_symbols * 2);
+          from = to;
+          continue;
+        }
+        // find the radius of our volume using only those samples with
+        // the particular value of the discrete symbol 'd'
+        final int lo = from - groupStart[g];
+        final int hi = to - groupStart[g];
+        NearestNeighbors1D.kthNearestRange(
+            split, split.length, one_k, lo, hi, distances, neighbors);
+
+        for (int i = lo; i < hi; i++) {
           // count the number of total samples within our volume using all samples
           // (all values of 'c')
-          final double one_c = split.getDouble(i);
+          final double one_c = split[i];
+          final double distance = distances[i - lo];
+          final int neighbor = neighbors[i - lo];
           final double min;
           final double max;
-          if (nn.left) {
-            min = nn.kthNearest;
-            max = one_c + nn.distance;
+          if (neighbor < i) {
+            min = split[neighbor];
+            max = one_c + distance;
           } else {
-            min = one_c - nn.distance;
-            max = nn.kthNearest;
+            min = one_c - distance;
+            max = split[neighbor];
           }
           double m = NearestNeighbors1D.countPointsInRange(c, c.length, min, max);
           if (m < one_k) {
@@ -124,22 +200,12 @@ public class MutualInformationDC {
 
           psi_m_sum += digamma(m);
         }
-      } else {
-        psi_m_sum += digamma(num_d_symbols * 2);
+        from = to;
       }
-
-      final double p_d = split.size() / (double) N;
-      psi_Nd_avg += p_d * digamma(p_d * N);
-      psi_k_avg += p_d * digamma(Math.max(one_k, 1));
+      return psi_m_sum;
+    } finally {
+      workspace.release(mark);
     }
-
-    // In the comments below, <> indicates average, and
-    // psi is the digamma function described in the paper
-    return (digamma(N) // psi(N)
-        - psi_Nd_avg // < psi(N_x) >
-        + psi_k_avg // < psi(k) >
-        - (psi_m_sum / (double) N) // < psi(m) >
-    );
   }
 
   /**
@@ -147,40 +213,41 @@ public class MutualInformationDC {
    * that they are paired with. This method assumes that the input is ordered by the continuous
    * variable {@code c}, and also returns the numerical splits sorted.
    *
+   * <p>Symbols are mapped to group ids (in order of first appearance) using a hash map, so the
+   * grouping takes linear time regardless of the number of distinct symbols.
+   *
    * @param d an array containing discrete values
    * @param c an array containing continuous values
    * @return cSplit: an 'inverted index' containing all the continuous values associated with each
-   *     discrete value. The index of the outer list represents a discrete value, and the list
-   *     doubles are the list of continuous values associated with the discrete value represented by
-   *     the index of the outer list.
+   *     discrete value. The index of the outer array is the id of a discrete value, and the inner
+   *     array contains the continuous values associated with that discrete value.
    */
-  private static List<DoubleArrayList> groupContinuousByCategories(int[] d, double[] c) {
-    List<DoubleArrayList> cSplit = new ArrayList<>();
-    IntArrayList firstSymbol = new IntArrayList();
-    int numSymbols = 0;
-    int[] symbolIDs = new int[d.length];
-
-    for (int c1 = 0; c1 < d.length; c1++) {
-      // symbol_ID's are integers starting from 0
-      symbolIDs[c1] = numSymbols;
-
-      // Find if symbol d[c1] has appeared before, and if so, use its first symbolID (c2)
-      // for value in d[c1]
-      for (int c2 = 0; c2 < numSymbols; c2++) {
-        if (d[c1] == d[firstSymbol.getInt(c2)]) {
-          symbolIDs[c1] = c2;
-          break;
-        }
+  private static double[][] groupContinuousByCategories(int[] d, double[] c) {
+    final Int2IntOpenHashMap groupIds = new Int2IntOpenHashMap();
+    groupIds.defaultReturnValue(-1);
+    final int[] symbolIDs = new int[d.length];
+    final IntArrayList groupSizes = new IntArrayList();
+    for (int i = 0; i < d.length; i++) {
+      int group = groupIds.putIfAbsent(d[i], groupIds.size());
+      if (group == -1) {
+        // first time we see this symbol
+        group = groupSizes.size();
+        groupSizes.add(0);
       }
+      symbolIDs[i] = group;
+      groupSizes.set(group, groupSizes.getInt(group) + 1);
+    }
 
-      if (symbolIDs[c1] >= numSymbols) {
-        numSymbols++;
-        firstSymbol.add(c1); // record the position where the symbol c1 appeared for the first time
-        cSplit.add(new DoubleArrayList());
-      }
-      // cSplit works as an inverted index: it will record all continuous values in c[] that appear
-      // together with the symbol[c1]
-      cSplit.get(symbolIDs[c1]).add(c[c1]);
+    final double[][] cSplit = new double[groupSizes.size()][];
+    for (int g = 0; g < cSplit.length; g++) {
+      cSplit[g] = new double[groupSizes.getInt(g)];
+    }
+    // cSplit works as an inverted index: it records all continuous values in c[] that appear
+    // together with each symbol, in the same (sorted) order as they appear in c[]
+    final int[] next = new int[cSplit.length];
+    for (int i = 0; i < d.length; i++) {
+      final int group = symbolIDs[i];
+      cSplit[group][next[group]++] = c[i];
     }
     return cSplit;
   }
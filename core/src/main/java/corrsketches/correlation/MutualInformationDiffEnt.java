@@ -1,5 +1,6 @@
 package corrsketches.correlation;
 
+import corrsketches.Column;
 import corrsketches.statistics.DifferentialEntropy;
 import corrsketches.statistics.Entropy;
 
@@ -22,6 +23,11 @@ public class MutualInformationDiffEnt implements Correlation<MIEstimate> {
     return MutualInformation.ofCategorical(x, y);
   }
 
+  @Override
+  public MIEstimate ofDictionaryEncoded(Column x, Column y) {
+    return MutualInformation.ofCategorical(x, y);
+  }
+
   @Override
   public MIEstimate ofCategoricalNumerical(int[] x, double[] y) {
     // y = Stats.addRandomNoise(y);
@@ -2,28 +2,69 @@ package corrsketches.correlation;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import corrsketches.util.Workspace;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import java.util.Arrays;
 
 public class MutualInformationMLE {
 
+  /**
+   * The co-occurrence counts are stored in a dense matrix when it has at most this number of cells
+   * per sample. Otherwise, only the non-zero cells are counted (by sorting the pairs of indexes),
+   * since most cells of the matrix would be empty.
+   */
+  private static final int DENSE_CELLS_PER_SAMPLE = 8;
+
   public static MIEstimate mi(int[] x, int[] y) {
     checkArgument(x.length == y.length, "x and y must have same size");
 
     final int n = x.length;
-    int[][] cooMatrix = coOccurrenceMatrix(x, y, n);
-    final int xlabelLength = cooMatrix.length;
-    final int ylabelLength = cooMatrix[0].length;
+    final Workspace workspace = Workspace.local();
+    final long mark = workspace.mark();
+    try {
+      final int[] xIdx = workspace.ints(n);
+      final int[] yIdx = workspace.ints(n);
+      final int xlabelLength = indexValues(x, xIdx, n);
+      final int ylabelLength = indexValues(y, yIdx, n);
+      return mi(xIdx, xlabelLength, yIdx, ylabelLength, n);
+    } finally {
+      workspace.release(mark);
+    }
+  }
+
+  /**
+   * Same as {@link #mi(int[], int[])}, but for dictionary-encoded variables, i.e., whose values are
+   * dense codes in the ranges [0, xDictionarySize) and [0, yDictionarySize). The codes are used to
+   * index arrays directly instead of being mapped to indexes using hash maps. Codes that do not
+   * appear in the data (e.g., because their rows were removed by a join) are ignored. The
+   * temporary arrays are taken from the current thread's {@link Workspace}.
+   */
+  public static MIEstimate mi(int[] x, int xDictionarySize, int[] y, int yDictionarySize) {
+    checkArgument(x.length == y.length, "x and y must have same size");
+
+    final int n = x.length;
+    final Workspace workspace = Workspace.local();
+    final long mark = workspace.mark();
+    try {
+      final int[] xIdx = workspace.ints(n);
+      final int[] yIdx = workspace.ints(n);
+      final int[] indexMap = workspace.ints(Math.max(xDictionarySize, yDictionarySize));
+      final int xlabelLength = indexCodes(x, xDictionarySize, indexMap, xIdx, n);
+      final int ylabelLength = indexCodes(y, yDictionarySize, indexMap, yIdx, n);
+      return mi(xIdx, xlabelLength, yIdx, ylabelLength, n);
+    } finally {
+      workspace.release(mark);
+    }
+  }
 
-    // Now compute the marginals using the co-occurrence matrix
+  private static MIEstimate mi(
+      int[] xIdx, int xlabelLength, int[] yIdx, int ylabelLength, int n) {
+    // compute the marginals
     final int[] xSum = new int[xlabelLength];
     final int[] ySum = new int[ylabelLength];
-
-    for (int i = 0; i < xlabelLength; i++) {
-      for (int j = 0; j < ylabelLength; j++) {
-        xSum[i] += cooMatrix[i][j];
-        ySum[j] += cooMatrix[i][j];
-      }
+    for (int i = 0; i < n; i++) {
+      xSum[xIdx[i]]++;
+      ySum[yIdx[i]]++;
     }
 
     // transform marginals into probabilities
@@ -37,41 +78,110 @@ public class MutualInformationMLE {
     }
 
     // compute the mutual information
+    final double mi;
+    if ((long) xlabelLength * ylabelLength <= (long) DENSE_CELLS_PER_SAMPLE * n) {
+      mi = denseMI(xIdx, yIdx, n, px, py);
+    } else {
+      mi = sparseMI(xIdx, yIdx, n, px, py);
+    }
+
+    return new MIEstimate(mi, n, px, py);
+  }
+
+  /** Computes the MI by counting the co-occurrences using a dense co-occurrence matrix. */
+  private static double denseMI(int[] xIdx, int[] yIdx, int n, double[] px, double[] py) {
+    final int ylabelLength = py.length;
+    final int[] cooMatrix = new int[px.length * ylabelLength];
+    for (int i = 0; i < n; i++) {
+      cooMatrix[xIdx[i] * ylabelLength + yIdx[i]]++;
+    }
     double mi = 0.0;
     for (int i = 0; i < px.length; i++) {
-      for (int j = 0; j < py.length; j++) {
-        if (cooMatrix[i][j] > 0) {
-          final double p = cooMatrix[i][j] / (double) n;
-          mi += p * Math.log(p / (px[i] * py[j]));
+      for (int j = 0; j < ylabelLength; j++) {
+        final int count = cooMatrix[i * ylabelLength + j];
+        if (count > 0) {
+          mi += cellMI(count, n, px[i], py[j]);
         }
       }
     }
+    return mi;
+  }
 
-    return new MIEstimate(mi, n, px, py);
+  /**
+   * Computes the MI by counting only the non-zero cells of the co-occurrence matrix. The pairs of
+   * indexes are packed into longs and sorted, so that equal pairs form runs. Since the runs are
+   * sorted by (x, y), the cells are visited in the same order as in {@link #denseMI}.
+   */
+  private static double sparseMI(int[] xIdx, int[] yIdx, int n, double[] px, double[] py) {
+    final long[] cells = new long[n];
+    for (int i = 0; i < n; i++) {
+      cells[i] = ((long) xIdx[i] << 32) | yIdx[i];
+    }
+    Arrays.sort(cells);
+    double mi = 0.0;
+    int start = 0;
+    while (start < n) {
+      final long cell = cells[start];
+      int end = start + 1;
+      while (end < n && cells[end] == cell) {
+        end++;
+      }
+      mi += cellMI(end - start, n, px[(int) (cell >>> 32)], py[(int) cell]);
+      start = end;
+    }
+    return mi;
+  }
+
+  private static double cellMI(int count, int n, double px, double py) {
+    final double p = count / (double) n;
+    return p * Math.log(p / (px * py));
   }
 
   /** Computes the co-occurrence matrix. */
   protected static int[][] coOccurrenceMatrix(int[] x, int[] y, int n) {
-    Int2IntMap xmap = createValueToIndexMapping(x);
-    Int2IntMap ymap = createValueToIndexMapping(y);
-    final int[][] cooMatrix = new int[xmap.size()][ymap.size()];
+    final int[] xIdx = new int[n];
+    final int[] yIdx = new int[n];
+    final int[][] cooMatrix = new int[indexValues(x, xIdx, n)][indexValues(y, yIdx, n)];
     for (int i = 0; i < n; i++) {
-      int xidx = xmap.get(x[i]);
-      int yidx = ymap.get(y[i]);
-      cooMatrix[xidx][yidx]++;
+      cooMatrix[xIdx[i]][yIdx[i]]++;
     }
     return cooMatrix;
   }
 
-  private static Int2IntMap createValueToIndexMapping(int[] labels) {
-    Int2IntMap indexMap = new Int2IntOpenHashMap();
-    int xLabelsLen = 0;
-    for (int value : labels) {
-      if (!indexMap.containsKey(value)) {
-        indexMap.put(value, xLabelsLen);
-        xLabelsLen++;
+  /**
+   * Maps the first n values of the given array to dense indexes, in order of first appearance, and
+   * stores the index of each value in the array {@code indexes}.
+   *
+   * @return the number of distinct values.
+   */
+  private static int indexValues(int[] values, int[] indexes, int n) {
+    final Int2IntOpenHashMap indexMap = new Int2IntOpenHashMap();
+    indexMap.defaultReturnValue(-1);
+    for (int i = 0; i < n; i++) {
+      final int nextIndex = indexMap.size();
+      final int index = indexMap.putIfAbsent(values[i], nextIndex);
+      indexes[i] = index == -1 ? nextIndex : index;
+    }
+    return indexMap.size();
+  }
+
+  /**
+   * Same as {@link #indexValues(int[], int[], int)}, but for dense codes in the range [0,
+   * dictionarySize), which are mapped to indexes using the array {@code indexMap} (which must have
+   * at least dictionarySize elements) instead of a hash map. The indexes are assigned in the same
+   * order, so both methods produce the same indexes.
+   */
+  private static int indexCodes(
+      int[] codes, int dictionarySize, int[] indexMap, int[] indexes, int n) {
+    Arrays.fill(indexMap, 0, dictionarySize, -1);
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      final int code = codes[i];
+      if (indexMap[code] == -1) {
+        indexMap[code] = size++;
       }
+      indexes[i] = indexMap[code];
     }
-    return indexMap;
+    return size;
   }
 }
@@ -3,11 +3,13 @@ package corrsketches.correlation;
 import static java.lang.Math.log;
 import static smile.math.special.Gamma.digamma;
 
+import corrsketches.statistics.NearestNeighbors1D;
+import corrsketches.statistics.NearestNeighbors2D;
 import corrsketches.statistics.Stats;
-import corrsketches.util.KDTree;
-import corrsketches.util.KDTree.Distance;
-import corrsketches.util.KDTree.Neighbor;
+import corrsketches.util.ChunkedSum;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implements the Mutual Information estimator for mixtures of continuous and discrete numerical
@@ -46,9 +48,22 @@ public class MutualInformationMixedKSG {
     return Math.max(0, miRaw(x, y, k));
   }
 
+  /**
+   * Same as {@link #mi(double[], double[], int)}, but the neighbor statistics of large inputs are
+   * computed by the threads of the given pool.
+   */
+  public static double mi(final double[] x, final double[] y, int k, ForkJoinPool pool) {
+    return Math.max(0, miRaw(x, y, k, null, pool));
+  }
+
   static double miRaw(final double[] x, final double[] y, int k) {
     return miRaw(x, y, k, null);
   }
+
+  static double miRaw(final double[] x, final double[] y, int k, Random rng) {
+    return miRaw(x, y, k, rng, null);
+  }
+
   /**
    * Computes the mutual information between the array {@param x} and the array {@param y}.
    *
@@ -58,72 +73,88 @@ public class MutualInformationMixedKSG {
    * @param rng (Optional) if not null, this random number generator is used to add small Gaussian
    *     noise to the variables. This should make this estimator behave like the original KSG
    *     estimator, given that discrete points (ties) are resolved using random noise.
+   * @param pool (Optional) the pool used to compute the statistics of large inputs in parallel. If
+   *     null, the statistics are computed sequentially.
    * @return the mutual information estimate.
    */
-  static double miRaw(final double[] x, final double[] y, int k, Random rng) {
+  static double miRaw(
+      final double[] x, final double[] y, int k, Random rng, ForkJoinPool pool) {
     if (x.length != y.length) {
       throw new IllegalArgumentException("Arrays x and y must have the same length.");
     }
     final int N = x.length;
-    final double[][] xy = new double[N][2];
-    final double[][] x1 = new double[N][1];
-    final double[][] y1 = new double[N][1];
+    final double[] xs;
+    final double[] ys;
 
     k = Math.min(k, x.length - 1); // k cannot exceed the vector size -1
 
     if (rng != null) {
       // If the random number generator is provided, we add random gaussian noise. According to the
       // paper, when there are no ties, the MixedKSG method recovers the original KSG method.
+      xs = new double[N];
+      ys = new double[N];
       double xm = Math.max(1, Stats.mean(x));
       double ym = Math.max(1, Stats.mean(y));
       for (int i = 0; i < N; i++) {
-        final double xi = x[i] + rng.nextGaussian() * xm * 1e-10;
-        final double yi = y[i] + rng.nextGaussian() * ym * 1e-10;
-        xy[i][0] = xi;
-        xy[i][1] = yi;
-        x1[i][0] = xi;
-        y1[i][0] = yi;
+        xs[i] = x[i] + rng.nextGaussian() * xm * 1e-10;
+        ys[i] = y[i] + rng.nextGaussian() * ym * 1e-10;
       }
     } else {
-      // Otherwise, just convert the 1-d vectors to 2-d vectors for use with the KDTree.
-      for (int i = 0; i < N; i++) {
-        xy[i][0] = x[i];
-        xy[i][1] = y[i];
-        x1[i][0] = x[i];
-        y1[i][0] = y[i];
-      }
+      xs = x;
+      ys = y;
     }
 
-    KDTree xyTree = new KDTree(xy, Distance.CHEBYSHEV);
-    KDTree xTree = new KDTree(x1, Distance.CHEBYSHEV);
-    KDTree yTree = new KDTree(y1, Distance.CHEBYSHEV);
+    // The joint space uses a 2-d Chebyshev neighbor search, and the marginal spaces use binary
+    // search over the sorted values.
+    final NearestNeighbors2D xyNeighbors = new NearestNeighbors2D(xs, ys);
+    final double[] sortedX = xs.clone();
+    final double[] sortedY = ys.clone();
+    Arrays.sort(sortedX);
+    Arrays.sort(sortedY);
 
-    double[] distances = new double[N];
-    for (int i = 0; i < N; i++) {
-      Neighbor[] neighbors = xyTree.knn(xy[i], k + 1); // k+1 because returns the query itself
-      distances[i] = neighbors[0].distance; // index 0 is the largest distance
-    }
+    final int kNeighbors = k;
+    double mi =
+        ChunkedSum.sum(
+            N,
+            (start, end) ->
+                sumOfPointTerms(xyNeighbors, sortedX, sortedY, xs, ys, kNeighbors, start, end),
+            pool);
+    mi += log(N);
+    return mi;
+  }
 
-    double mi = 0.0;
-    for (int i = 0; i < N; i++) {
-      final double kthDistance = distances[i]; // the k-th smallest distance to point i
+  /** Computes the sum of the terms of the estimator of the points in the range [start, end). */
+  private static double sumOfPointTerms(
+      NearestNeighbors2D xyNeighbors,
+      double[] sortedX,
+      double[] sortedY,
+      double[] xs,
+      double[] ys,
+      int k,
+      int start,
+      int end) {
+    final int N = xs.length;
+    final double[] heap = new double[k + 1];
+    double sum = 0.0;
+    for (int i = start; i < end; i++) {
+      // the k-th smallest distance to point i (k+1 because the search includes the point itself)
+      final double kthDistance = xyNeighbors.kthNearestDistance(i, k + 1, heap);
       final int kp;
       final double radius;
       if (kthDistance == 0) {
         radius = Math.nextUp(0); // smallest non-zero
-        kp = xyTree.countInRange(xy[i], radius);
+        kp = xyNeighbors.countInRange(i, radius);
       } else {
         radius = Math.nextDown(kthDistance);
         kp = k;
       }
-      // the kd-tree counts 1 for the query itself, so the values of nx and ny
+      // the range counts include the query point itself, so the values of nx and ny
       // actually are equal nx + 1 and ny + 1 from the paper
-      final int nx = xTree.countInRange(x1[i], radius);
-      final int ny = yTree.countInRange(y1[i], radius);
+      final int nx = NearestNeighbors1D.countInRadius(sortedX, xs[i], radius);
+      final int ny = NearestNeighbors1D.countInRadius(sortedY, ys[i], radius);
 
-      mi += (digamma(kp) - digamma(nx) - digamma(ny)) / N;
+      sum += (digamma(kp) - digamma(nx) - digamma(ny)) / N;
     }
-    mi += log(N);
-    return mi;
+    return sum;
   }
 }
@@ -27,9 +27,12 @@ public class PearsonCorrelation {
    * returns Double.NaN.
    */
   public static double coefficient(double[] x, double[] y) {
+    return coefficient(x, y, x.length);
+  }
 
-    int n = x.length;
-    double syy = 0.0, sxy = 0.0, sxx = 0.0, ay = 0.0, ax = 0.0;
+  /** Same as {@link #coefficient(double[], double[])}, but only uses the first n values. */
+  public static double coefficient(double[] x, double[] y, int n) {
+    double ay = 0.0, ax = 0.0;
 
     for (int i = 0; i < n; i++) {
       ax += x[i];
@@ -39,6 +42,16 @@ public class PearsonCorrelation {
     ax /= n;
     ay /= n;
 
+    return coefficient(x, y, n, ax, ay);
+  }
+
+  /** Same as {@link #coefficient(double[], double[])}, but uses the given (pre-computed) means. */
+  static double coefficient(double[] x, double[] y, double ax, double ay) {
+    return coefficient(x, y, x.length, ax, ay);
+  }
+
+  private static double coefficient(double[] x, double[] y, int n, double ax, double ay) {
+    double syy = 0.0, sxy = 0.0, sxx = 0.0;
     for (int i = 0; i < n; i++) {
       double xt = x[i] - ax;
       double yt = y[i] - ay;
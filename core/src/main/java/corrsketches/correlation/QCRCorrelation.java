@@ -10,9 +10,12 @@ public class QCRCorrelation {
   }
 
   public static double coefficient(double[] x, double[] y) {
+    return coefficient(x, y, Stats.mean(x), Stats.mean(y));
+  }
+
+  /** Same as {@link #coefficient(double[], double[])}, but uses the given (pre-computed) means. */
+  static double coefficient(double[] x, double[] y, final double mx, final double my) {
     final int n = x.length;
-    final double mx = Stats.mean(x);
-    final double my = Stats.mean(y);
 
     // double stdx = Stats.std(x);
     // double stdy = Stats.std(x);
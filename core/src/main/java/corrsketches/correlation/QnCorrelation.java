@@ -2,6 +2,7 @@ package corrsketches.correlation;
 
 import com.google.common.base.Preconditions;
 import corrsketches.statistics.Qn;
+import corrsketches.util.Workspace;
 
 /**
  * Implements the robust correlation based on principal component variances described in
@@ -18,28 +19,38 @@ public class QnCorrelation {
   }
 
   public static double correlation(double[] x, double[] y) {
-    Preconditions.checkArgument(x.length == y.length, "x and y dimensions must match");
+    return correlation(x, y, Workspace.local());
+  }
 
-    double stdx = Qn.estimateScale(x);
-    double stdy = Qn.estimateScale(y);
+  /** Same as {@link #correlation(double[], double[])}, but uses the given workspace. */
+  public static double correlation(double[] x, double[] y, Workspace workspace) {
+    Preconditions.checkArgument(x.length == y.length, "x and y dimensions must match");
 
     int n = y.length;
-    double[] u = new double[n];
-    double[] v = new double[n];
-
-    for (int i = 0; i < n; i++) {
-      final double xstdsqrt2 = (x[i] / stdx) / SQRT_OF_TWO;
-      final double ystdsqrt2 = (y[i] / stdy) / SQRT_OF_TWO;
-      u[i] = xstdsqrt2 + ystdsqrt2;
-      v[i] = xstdsqrt2 - ystdsqrt2;
+    double stdx = Qn.estimateScale(x, n, workspace);
+    double stdy = Qn.estimateScale(y, n, workspace);
+
+    final long mark = workspace.mark();
+    try {
+      double[] u = workspace.doubles(n);
+      double[] v = workspace.doubles(n);
+
+      for (int i = 0; i < n; i++) {
+        final double xstdsqrt2 = (x[i] / stdx) / SQRT_OF_TWO;
+        final double ystdsqrt2 = (y[i] / stdy) / SQRT_OF_TWO;
+        u[i] = xstdsqrt2 + ystdsqrt2;
+        v[i] = xstdsqrt2 - ystdsqrt2;
+      }
+
+      double uscale = Qn.estimateScale(u, n, workspace);
+      double vscale = Qn.estimateScale(v, n, workspace);
+
+      double us2 = uscale * uscale;
+      double vs2 = vscale * vscale;
+
+      return (us2 - vs2) / (us2 + vs2);
+    } finally {
+      workspace.release(mark);
     }
-
-    double uscale = Qn.estimateScale(u);
-    double vscale = Qn.estimateScale(v);
-
-    double us2 = uscale * uscale;
-    double vs2 = vscale * vscale;
-
-    return (us2 - vs2) / (us2 + vs2);
   }
 }
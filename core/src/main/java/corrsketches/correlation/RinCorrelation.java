@@ -2,6 +2,7 @@ package corrsketches.correlation;
 
 import static corrsketches.statistics.Stats.*;
 
+import corrsketches.util.Workspace;
 import smile.sort.QuickSort;
 
 /** Implements the Rank-Based Inverse Normal (RIN) Transformation correlation coefficient. */
@@ -25,23 +26,36 @@ public class RinCorrelation {
    * size is reasonable.
    */
   public static double coefficient(double[] x, double[] y) {
+    return coefficient(x, y, Workspace.local());
+  }
+
+  /** Same as {@link #coefficient(double[], double[])}, but uses the given workspace. */
+  public static double coefficient(double[] x, double[] y, Workspace workspace) {
 
     if (x.length != y.length) {
       throw new IllegalArgumentException("Input vector sizes are different.");
     }
 
-    double[] a = x.clone();
-    double[] b = y.clone();
+    final int n = x.length;
+    final long mark = workspace.mark();
+    try {
+      double[] a = workspace.doubles(n);
+      double[] b = workspace.doubles(n);
+      System.arraycopy(x, 0, a, 0, n);
+      System.arraycopy(y, 0, b, 0, n);
 
-    QuickSort.sort(a, b);
-    rank(a);
-    rankit(a);
+      QuickSort.sort(a, b, n);
+      rank(a, n, TiesMethod.AVERAGE);
+      rankit(a, n);
 
-    QuickSort.sort(b, a);
-    rank(b);
-    rankit(b);
+      QuickSort.sort(b, a, n);
+      rank(b, n, TiesMethod.AVERAGE);
+      rankit(b, n);
 
-    return PearsonCorrelation.coefficient(a, b);
+      return PearsonCorrelation.coefficient(a, b, n);
+    } finally {
+      workspace.release(mark);
+    }
   }
 
   /**
@@ -49,8 +63,11 @@ public class RinCorrelation {
    * regardless of the original distribution shape, so long as ties are rare and the sample size is
    * reasonable.
    */
-  private static void rankit(double[] x) {
-    final int n = x.length;
+  static void rankit(double[] x) {
+    rankit(x, x.length);
+  }
+
+  static void rankit(double[] x, int n) {
     for (int i = 0; i < n; i++) {
       x[i] = NORMAL.quantile((x[i] - .5) / n);
     }
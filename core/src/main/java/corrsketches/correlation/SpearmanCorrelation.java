@@ -2,6 +2,8 @@ package corrsketches.correlation;
 
 import static corrsketches.statistics.Stats.rank;
 
+import corrsketches.statistics.Stats.TiesMethod;
+import corrsketches.util.Workspace;
 import smile.sort.QuickSort;
 
 /** Implements Spearman's correlation coefficient. */
@@ -15,19 +17,36 @@ public class SpearmanCorrelation {
     return new Estimate(spearman(x, y), x.length);
   }
 
+  /** Same as {@link #coefficient(double[], double[])}, but uses the given workspace. */
+  public static double coefficient(double[] x, double[] y, Workspace workspace) {
+    return spearman(x, y, workspace);
+  }
+
   public static double spearman(double[] x, double[] y) {
+    return spearman(x, y, Workspace.local());
+  }
+
+  public static double spearman(double[] x, double[] y, Workspace workspace) {
     if (x.length != y.length) {
       throw new IllegalArgumentException("Input vector sizes are different.");
     }
 
-    double[] a = x.clone();
-    double[] b = y.clone();
-
-    QuickSort.sort(a, b);
-    rank(a);
-    QuickSort.sort(b, a);
-    rank(b);
-
-    return PearsonCorrelation.coefficient(a, b);
+    final int n = x.length;
+    final long mark = workspace.mark();
+    try {
+      double[] a = workspace.doubles(n);
+      double[] b = workspace.doubles(n);
+      System.arraycopy(x, 0, a, 0, n);
+      System.arraycopy(y, 0, b, 0, n);
+
+      QuickSort.sort(a, b, n);
+      rank(a, n, TiesMethod.AVERAGE);
+      QuickSort.sort(b, a, n);
+      rank(b, n, TiesMethod.AVERAGE);
+
+      return PearsonCorrelation.coefficient(a, b, n);
+    } finally {
+      workspace.release(mark);
+    }
   }
 }
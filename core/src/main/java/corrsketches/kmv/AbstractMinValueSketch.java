@@ -1,7 +1,10 @@
 package corrsketches.kmv;
 
 import corrsketches.aggregations.AggregateFunction;
+import corrsketches.aggregations.ColumnarAggregator;
 import corrsketches.aggregations.RepeatedValueHandlerProvider;
+import corrsketches.sampling.KeyedSamplerProvider;
+import corrsketches.sampling.Samplers;
 import corrsketches.util.Hashes;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.util.HashSet;
@@ -14,6 +17,8 @@ public abstract class AbstractMinValueSketch<T> {
   protected final Int2ObjectOpenHashMap<ValueHash> valueHashMap;
   protected final RepeatedValueHandlerProvider aggregatorProvider;
   protected final AggregateFunction aggregateFunction;
+  /** The aggregates of all keys, or null if the values of each key are sampled instead. */
+  protected final ColumnarAggregator aggregates;
   protected double kthValue = Double.MIN_VALUE;
   protected int kMinItems;
   protected int seenItems;
@@ -30,12 +35,22 @@ public abstract class AbstractMinValueSketch<T> {
     } else {
       this.valueHashMap = new Int2ObjectOpenHashMap<>(builder.expectedSize() + 1);
     }
+    if (aggregatorProvider == aggregateFunction.getProvider()) {
+      // keep the aggregates of all keys in a single columnar structure instead of
+      // creating one aggregator object per key
+      this.aggregates =
+          builder.expectedSize() < 1
+              ? new ColumnarAggregator(aggregateFunction)
+              : new ColumnarAggregator(aggregateFunction, builder.expectedSize() + 1);
+    } else {
+      this.aggregates = null;
+    }
   }
 
   protected ValueHash createOrUpdateValueHash(int hash, double value, double hu) {
     ValueHash vh = valueHashMap.get(hash);
     if (vh == null) {
-      vh = new ValueHash(hash, hu, value, aggregatorProvider.create());
+      vh = newValueHash(hash, hu, value);
       valueHashMap.put(hash, vh);
     } else {
       vh.update(value);
@@ -43,6 +58,17 @@ public abstract class AbstractMinValueSketch<T> {
     return vh;
   }
 
+  /** Creates the value hash of a key that is not in the sketch yet. */
+  protected ValueHash newValueHash(int hash, double hu, double value) {
+    if (aggregates != null) {
+      return new ValueHash(hash, hu, value, aggregates);
+    } else if (aggregatorProvider instanceof KeyedSamplerProvider) {
+      return new ValueHash(hash, hu, value, ((KeyedSamplerProvider) aggregatorProvider).get(hash));
+    } else {
+      return new ValueHash(hash, hu, value, aggregatorProvider.create());
+    }
+  }
+
   /**
    * Updates this synopsis with the hashes of all the given key strings and their associated values
    */
@@ -127,7 +153,7 @@ public abstract class AbstractMinValueSketch<T> {
   }
 
   public boolean isAggregate() {
-    return aggregatorProvider.create().isAggregator();
+    return aggregatorProvider.isAggregator();
   }
 
   public abstract Samples getSamples();
@@ -148,6 +174,7 @@ public abstract class AbstractMinValueSketch<T> {
 
     protected AggregateFunction aggregateFunction = AggregateFunction.FIRST;
     protected RepeatedValueHandlerProvider repeatedValueHandlerProvider;
+    protected long seed = Samplers.DEFAULT_SEED;
 
     protected int expectedSize() {
       return -1;
@@ -158,6 +185,15 @@ public abstract class AbstractMinValueSketch<T> {
       return (T) this;
     }
 
+    /**
+     * Sets the seed used to sample the values of repeated keys when no aggregate function is used
+     * (i.e., {@link AggregateFunction#NONE}).
+     */
+    public T seed(long seed) {
+      this.seed = seed;
+      return (T) this;
+    }
+
     /** Creates an empty min-values sketch. */
     public abstract <S extends AbstractMinValueSketch> S build();
 
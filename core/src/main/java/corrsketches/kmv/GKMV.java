@@ -160,7 +160,7 @@ public class GKMV extends AbstractMinValueSketch<GKMV> {
     @Override
     public GKMV build() {
       if (this.aggregateFunction == AggregateFunction.NONE) {
-        repeatedValueHandlerProvider = Samplers.bernoulli(threshold);
+        repeatedValueHandlerProvider = Samplers.hashBernoulli(threshold);
       } else {
         repeatedValueHandlerProvider = this.aggregateFunction.getProvider();
       }
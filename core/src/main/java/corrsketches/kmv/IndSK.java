@@ -39,7 +39,7 @@ public class IndSK extends AbstractMinValueSketch<IndSK> {
       } else if (hu < kthValue) {
         // This is a new unit hash we need to create a new node. Given that there will be
         // more than k minimum values, we need to evict an existing one from the heap later.
-        vh = new ValueHash(hash, hu, value, aggregatorProvider.create());
+        vh = newValueHash(hash, hu, value);
         valueHashMap.put(hash, vh);
         kMinValues.add(vh);
 
@@ -47,6 +47,7 @@ public class IndSK extends AbstractMinValueSketch<IndSK> {
         ValueHash toBeRemoved = kMinValues.last();
         kMinValues.remove(toBeRemoved);
         valueHashMap.remove(toBeRemoved.keyHash);
+        toBeRemoved.release();
         kthValue = kMinValues.last().unitHash;
 
         // Update item counter of this key
@@ -151,7 +152,7 @@ public class IndSK extends AbstractMinValueSketch<IndSK> {
     @Override
     public IndSK build() {
       if (this.aggregateFunction == AggregateFunction.NONE) {
-        repeatedValueHandlerProvider = Samplers.reservoir(maxSize);
+        repeatedValueHandlerProvider = Samplers.reservoir(maxSize, seed);
       } else {
         repeatedValueHandlerProvider = this.aggregateFunction.getProvider();
       }
@@ -42,7 +42,7 @@ public class KMV extends AbstractMinValueSketch<KMV> {
       } else if (hu < kthValue) {
         // This is a new unit hash we need to create a new node. Given that there will be
         // more than k minimum values, we need to evict an existing one from the heap later.
-        vh = new ValueHash(hash, hu, value, aggregatorProvider.create());
+        vh = newValueHash(hash, hu, value);
         valueHashMap.put(hash, vh);
         kMinValues.add(vh);
 
@@ -50,6 +50,7 @@ public class KMV extends AbstractMinValueSketch<KMV> {
         ValueHash toBeRemoved = kMinValues.last();
         kMinValues.remove(toBeRemoved);
         valueHashMap.remove(toBeRemoved.keyHash);
+        toBeRemoved.release();
         kthValue = kMinValues.last().unitHash;
 
         // Update item counter of this key
@@ -185,7 +186,7 @@ public class KMV extends AbstractMinValueSketch<KMV> {
     @Override
     public KMV build() {
       if (this.aggregateFunction == AggregateFunction.NONE) {
-        repeatedValueHandlerProvider = Samplers.reservoir(maxSize);
+        repeatedValueHandlerProvider = Samplers.reservoir(maxSize, seed);
       } else {
         repeatedValueHandlerProvider = this.aggregateFunction.getProvider();
       }
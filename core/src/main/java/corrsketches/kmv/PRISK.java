@@ -86,7 +86,7 @@ public class PRISK extends AbstractMinValueSketch<PRISK> {
       } else if (hu < kthValue) {
         // This is a new unit hash we need to create a new node. Given that there will be
         // more than k minimum values, we need to evict an existing one from the heap later.
-        vh = new ValueHash(hash, hu, value, aggregatorProvider.create());
+        vh = newValueHash(hash, hu, value);
         valueHashMap.put(hash, vh);
         kMinValues.add(vh);
 
@@ -94,6 +94,7 @@ public class PRISK extends AbstractMinValueSketch<PRISK> {
         ValueHash toBeRemoved = kMinValues.last();
         kMinValues.remove(toBeRemoved);
         valueHashMap.remove(toBeRemoved.keyHash);
+        toBeRemoved.release();
         kthValue = kMinValues.last().unitHash;
 
         // Update item counter of this key
@@ -194,7 +195,7 @@ public class PRISK extends AbstractMinValueSketch<PRISK> {
     @Override
     public PRISK build() {
       if (aggregateFunction == AggregateFunction.NONE) {
-        this.repeatedValueHandlerProvider = Samplers.reservoir(maxSize);
+        this.repeatedValueHandlerProvider = Samplers.reservoir(maxSize, seed);
       } else {
         this.repeatedValueHandlerProvider = aggregateFunction.getProvider();
       }
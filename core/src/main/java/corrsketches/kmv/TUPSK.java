@@ -1,10 +1,10 @@
 package corrsketches.kmv;
 
 import corrsketches.aggregations.AggregateFunction;
-import corrsketches.aggregations.RepeatedValueHandler;
+import corrsketches.aggregations.ColumnarAggregator;
 import corrsketches.util.Hashes;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import smile.sort.HeapSelect;
 
 /**
@@ -60,27 +60,25 @@ public class TUPSK extends AbstractMinValueSketch<TUPSK> {
         heap.add(new ValueHash(key, hu, value, AggregateFunction.NONE.get()));
       }
     } else {
-      // We need to pre-aggregate the table first
-      Int2ObjectOpenHashMap<RepeatedValueHandler> aggregatorMap = new Int2ObjectOpenHashMap<>();
-      RepeatedValueHandler agg;
+      // We need to pre-aggregate the table first. Keys are mapped to the slots of a columnar
+      // aggregator, which are allocated in order of first appearance of the keys.
+      ColumnarAggregator aggregator = new ColumnarAggregator(aggregateFunction);
+      Int2IntOpenHashMap keySlots = new Int2IntOpenHashMap();
+      keySlots.defaultReturnValue(-1);
+      IntArrayList slotKeys = new IntArrayList();
       for (int i = 0; i < hashedKeys.length; i++) {
-        agg = aggregatorMap.get(hashedKeys[i]);
-        if (agg == null) {
-          agg = super.aggregatorProvider.create();
-          agg.first(values[i]);
-          aggregatorMap.put(hashedKeys[i], agg);
+        final int slot = keySlots.get(hashedKeys[i]);
+        if (slot == -1) {
+          keySlots.put(hashedKeys[i], aggregator.add(values[i]));
+          slotKeys.add(hashedKeys[i]);
         } else {
-          agg.update(values[i]);
+          aggregator.update(slot, values[i]);
         }
       }
-      int[] aggKeys = new int[aggregatorMap.size()];
-      double[] aggValues = new double[aggregatorMap.size()];
-      int idx = 0;
-      for (Int2ObjectOpenHashMap.Entry<RepeatedValueHandler> entry :
-          aggregatorMap.int2ObjectEntrySet()) {
-        aggKeys[idx] = entry.getIntKey();
-        aggValues[idx] = entry.getValue().aggregatedValue();
-        idx++;
+      int[] aggKeys = slotKeys.toIntArray();
+      double[] aggValues = new double[aggKeys.length];
+      for (int slot = 0; slot < aggKeys.length; slot++) {
+        aggValues[slot] = aggregator.aggregatedValue(slot);
       }
 
       // Next, we find the k-minimum values to include in the sketch
@@ -1,5 +1,6 @@
 package corrsketches.kmv;
 
+import corrsketches.aggregations.ColumnarAggregator;
 import corrsketches.aggregations.RepeatedValueHandler;
 import java.util.Comparator;
 
@@ -7,9 +8,11 @@ public class ValueHash implements Comparable<ValueHash> {
 
   public static final Comparator<ValueHash> COMPARATOR_ASC = new UnitHashComparatorAscending();
 
-  public final RepeatedValueHandler aggregator;
+  public final RepeatedValueHandler aggregator; // null if values are in a ColumnarAggregator
   public final int keyHash;
   public final double unitHash;
+  private final ColumnarAggregator aggregates;
+  private final int slot;
 
   //  DoubleSampler sampler;
   int count; // the number of items associate with this join key
@@ -18,19 +21,44 @@ public class ValueHash implements Comparable<ValueHash> {
     this.keyHash = keyHash;
     this.unitHash = unitHash;
     this.aggregator = function;
+    this.aggregates = null;
+    this.slot = -1;
     //    if (aggregator != null) {
     this.aggregator.first(value);
     //    }
     this.count = 1;
   }
 
+  /**
+   * Creates a value hash whose values are aggregated in a new slot of the given columnar
+   * aggregator. The slot must be given back using {@link #release()} when the value hash is
+   * evicted from the sketch.
+   */
+  public ValueHash(int keyHash, double unitHash, double value, ColumnarAggregator aggregates) {
+    this.keyHash = keyHash;
+    this.unitHash = unitHash;
+    this.aggregator = null;
+    this.aggregates = aggregates;
+    this.slot = aggregates.add(value);
+    this.count = 1;
+  }
+
   public void update(double value) {
-    //    if (aggregator != null) {
-    this.aggregator.update(value);
-    //    }
+    if (aggregates != null) {
+      aggregates.update(slot, value);
+    } else {
+      this.aggregator.update(value);
+    }
     this.count++;
   }
 
+  /** Releases the aggregator slot used by this value hash, if any. */
+  public void release() {
+    if (aggregates != null) {
+      aggregates.release(slot);
+    }
+  }
+
   public int count() {
     return this.count;
   }
@@ -40,7 +68,7 @@ public class ValueHash implements Comparable<ValueHash> {
   //  }
 
   public double value() {
-    return aggregator.aggregatedValue();
+    return aggregates != null ? aggregates.aggregatedValue(slot) : aggregator.aggregatedValue();
   }
 
   @Override
@@ -60,7 +88,7 @@ public class ValueHash implements Comparable<ValueHash> {
         + ", unitHash="
         + unitHash
         + ", aggregator="
-        + aggregator
+        + (aggregates != null ? aggregates.function() : aggregator)
         + '}';
   }
 
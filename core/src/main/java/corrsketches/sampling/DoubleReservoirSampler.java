@@ -2,38 +2,78 @@ package corrsketches.sampling;
 
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.doubles.DoubleList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
+/**
+ * Keeps a uniform random sample of at most {@code numSamples} items using the reservoir sampling
+ * "Algorithm L" from Li, K.H., 1994. "Reservoir-sampling algorithms of time complexity
+ * O(n(1+log(N/n)))". ACM Transactions on Mathematical Software. Once the reservoir is full, the
+ * number of items to skip until the next item that enters the sample is drawn directly, so random
+ * numbers are only generated for the items that are sampled.
+ *
+ * <p>The reservoir storage is allocated lazily and grows as items are added, so that samplers of
+ * keys that occur only a few times use little memory. Multiple samplers (e.g., the samplers of all
+ * keys of a sketch) can share the same random number generator, so that their samples are
+ * reproducible given a seed and the order of the items.
+ */
 public class DoubleReservoirSampler implements DoubleSampler {
 
-  private final Random random;
+  private static final double[] EMPTY = new double[0];
+
+  private final SplittableRandom random;
   private final int numSamples;
-  private final DoubleList reservoir;
-  int numItemsSeen = 0;
+  private double[] reservoir = EMPTY;
+  private int size = 0;
+  long numItemsSeen = 0;
+  private long nextItem; // the position of the next item that enters the full reservoir
+  private double w; // the state of algorithm L
 
   public DoubleReservoirSampler(int numSamples) {
+    this(numSamples, new SplittableRandom());
+  }
+
+  public DoubleReservoirSampler(int numSamples, SplittableRandom random) {
+    if (numSamples < 1) {
+      throw new IllegalArgumentException("The number of samples must be at least 1");
+    }
     this.numSamples = numSamples;
-    this.reservoir = new DoubleArrayList(numSamples);
-    this.random = new Random();
+    this.random = random;
   }
 
   @Override
   public void update(double item) {
-    if (reservoir.size() < numSamples) {
+    if (size < numSamples) {
       // when the reservoir not full, just append
-      reservoir.add(item);
-    } else {
-      // when it is full, randomly select a sample to replace
-      int randomIndex = random.nextInt(numItemsSeen + 1);
-      if (randomIndex < numSamples) {
-        reservoir.set(randomIndex, item);
+      if (size == reservoir.length) {
+        reservoir = Arrays.copyOf(reservoir, Math.min(numSamples, Math.max(4, 2 * size)));
+      }
+      reservoir[size++] = item;
+      if (size == numSamples) {
+        w = Math.exp(Math.log(nextUniform()) / numSamples);
+        nextItem = numItemsSeen + 1 + skip();
       }
+    } else if (numItemsSeen == nextItem) {
+      // when it is full, the selected item replaces a random sample
+      reservoir[random.nextInt(numSamples)] = item;
+      w *= Math.exp(Math.log(nextUniform()) / numSamples);
+      nextItem = numItemsSeen + 1 + skip();
     }
     numItemsSeen++;
   }
 
+  /** Returns the number of items to skip before the next item that enters the reservoir. */
+  private long skip() {
+    return (long) Math.floor(Math.log(nextUniform()) / Math.log(1 - w));
+  }
+
+  /** Returns a uniform random number in the interval (0, 1]. */
+  private double nextUniform() {
+    return 1.0 - random.nextDouble();
+  }
+
   @Override
   public DoubleList values() {
-    return reservoir;
+    return DoubleArrayList.wrap(reservoir, size);
   }
 }
@@ -0,0 +1,60 @@
+package corrsketches.sampling;
+
+import corrsketches.util.Hashes;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+
+/**
+ * A Bernoulli sampler that includes each item with a given probability, but whose decisions are a
+ * deterministic function of the hash of the key that the items belong to and of the ordinal of the
+ * items (i.e., 1 for the first item seen, 2 for the second, and so on). Thus, sketches built from
+ * the same data always sample the same items, regardless of when or where they are built, and no
+ * random number generator state needs to be kept or shared.
+ *
+ * <p>Instead of hashing every item, the sampler hashes only the items that are included and uses
+ * the hash of the (key, ordinal) pair of the last included item to draw the number of items to
+ * skip until the next included item from a geometric distribution. For the first item, the ordinal
+ * zero is used.
+ */
+public class HashBernoulliSampler implements DoubleSampler {
+
+  private final int keyHash;
+  private final double prob; // the probability of including an item in the sample
+  private final DoubleList samples = new DoubleArrayList();
+  private long ordinal = 0; // the ordinal of the last item seen
+  private long nextOrdinal; // the ordinal of the next item included in the sample
+
+  public HashBernoulliSampler(double prob, int keyHash) {
+    this.prob = prob;
+    this.keyHash = keyHash;
+    this.nextOrdinal = nextOrdinal(0);
+  }
+
+  @Override
+  public void update(double item) {
+    ordinal++;
+    if (ordinal == nextOrdinal) {
+      samples.add(item);
+      nextOrdinal = nextOrdinal(ordinal);
+    }
+  }
+
+  /** Returns the ordinal of the next item included after the item with the given ordinal. */
+  private long nextOrdinal(long ordinal) {
+    if (prob <= 0) {
+      return Long.MAX_VALUE;
+    }
+    // a uniform number in (0, 1] derived from the (key, ordinal) pair
+    final double u = 1.0 - Hashes.grm(Hashes.hashIntTuple(keyHash, (int) ordinal));
+    final double skip = Math.floor(Math.log(u) / Math.log1p(-prob));
+    if (skip >= Long.MAX_VALUE - ordinal - 1) {
+      return Long.MAX_VALUE;
+    }
+    return ordinal + 1 + (long) skip;
+  }
+
+  @Override
+  public DoubleList values() {
+    return samples;
+  }
+}
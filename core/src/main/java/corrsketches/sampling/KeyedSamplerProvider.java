@@ -0,0 +1,11 @@
+package corrsketches.sampling;
+
+/**
+ * A {@link SamplerProvider} whose samplers depend on the key whose values they sample (e.g.,
+ * hash-based samplers). Sketches create the sampler of each key using {@link #get(int)}.
+ */
+public interface KeyedSamplerProvider extends SamplerProvider {
+
+  /** Creates a sampler for the values of the key with the given hash. */
+  DoubleSampler get(int keyHash);
+}
@@ -1,5 +1,6 @@
 package corrsketches.sampling;
 
+import corrsketches.ColumnType;
 import corrsketches.aggregations.RepeatedValueHandler;
 import corrsketches.aggregations.RepeatedValueHandlerProvider;
 
@@ -10,4 +11,14 @@ public interface SamplerProvider extends RepeatedValueHandlerProvider {
   }
 
   DoubleSampler get();
+
+  @Override
+  default boolean isAggregator() {
+    return false;
+  }
+
+  @Override
+  default ColumnType getOutputType(ColumnType columnValueType) {
+    return columnValueType;
+  }
 }
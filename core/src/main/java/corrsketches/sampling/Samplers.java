@@ -1,12 +1,50 @@
 package corrsketches.sampling;
 
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Samplers {
 
+  /** The default seed of the random number generators shared by the samplers of a sketch. */
+  public static final long DEFAULT_SEED = 1237;
+
   public static SamplerProvider reservoir(int maxSize) {
-    return () -> new DoubleReservoirSampler(maxSize);
+    return reservoir(maxSize, DEFAULT_SEED);
+  }
+
+  /**
+   * Creates reservoir samplers that share a single random number generator initialized with the
+   * given seed.
+   */
+  public static SamplerProvider reservoir(int maxSize, long seed) {
+    final SplittableRandom random = new SplittableRandom(seed);
+    return () -> new DoubleReservoirSampler(maxSize, random);
   }
 
   public static SamplerProvider bernoulli(double probability) {
     return () -> new BernoulliSampler(probability);
   }
+
+  /**
+   * Creates Bernoulli samplers whose decisions are computed from the hash of the key and the
+   * ordinal of each value (see {@link HashBernoulliSampler}). Sketches create the samplers using
+   * {@link KeyedSamplerProvider#get(int)}. Samplers created using {@link SamplerProvider#get()}
+   * have no key, so they use the number of samplers created before them by the same provider as
+   * the key hash. Thus, their samples are also reproducible when the samplers are created in the
+   * same order.
+   */
+  public static KeyedSamplerProvider hashBernoulli(double probability) {
+    final AtomicInteger samplersCreated = new AtomicInteger();
+    return new KeyedSamplerProvider() {
+      @Override
+      public DoubleSampler get() {
+        return get(samplersCreated.getAndIncrement());
+      }
+
+      @Override
+      public DoubleSampler get(int keyHash) {
+        return new HashBernoulliSampler(probability, keyHash);
+      }
+    };
+  }
 }
@@ -1,10 +1,11 @@
 package corrsketches.statistics;
 
-import static corrsketches.statistics.Stats.sum;
 import static smile.math.special.Gamma.digamma;
 
-import corrsketches.statistics.NearestNeighbors1D.NearestNeighbor;
+import corrsketches.util.ChunkedSum;
+import corrsketches.util.Workspace;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class implements the classic Kozachenko-Leonenko (1987) estimator for the differential
@@ -30,29 +31,62 @@ public class DifferentialEntropy {
    * @return the entropy estimate
    */
   public static double entropy(double[] x, final int k) {
+    return entropy(x, k, Workspace.local());
+  }
+
+  /** Same as {@link #entropy(double[], int)}, but uses the given workspace to sort the values. */
+  public static double entropy(double[] x, final int k, Workspace workspace) {
+    return entropy(x, k, workspace, null);
+  }
+
+  /**
+   * Same as {@link #entropy(double[], int)}, but the distances of large inputs are computed by the
+   * threads of the given pool.
+   */
+  public static double entropy(double[] x, final int k, ForkJoinPool pool) {
+    return entropy(x, k, Workspace.local(), pool);
+  }
+
+  private static double entropy(double[] x, final int k, Workspace workspace, ForkJoinPool pool) {
     if (x.length <= 1) {
       return Double.NEGATIVE_INFINITY;
     }
     final double N = x.length;
-    double[] distances = computeDistances(x, k);
-    for (int i = 0; i < distances.length; i++) {
-      distances[i] = Math.log(distances[i]);
-    }
+    final double sumLogDistances = sumLogDistances(x, k, workspace, pool);
     // This implementation x has fixed dimension d=1 and uses maximum norm.
     // Thus, log(c^d) = log(2).
     final double log_cd = Math.log(2); // log of volume of the d-dimensional unit-ball, where d=1
-    return digamma(N) - digamma(k) + log_cd + (1 / N) * sum(distances);
+    return digamma(N) - digamma(k) + log_cd + (1 / N) * sumLogDistances;
+  }
+
+  /** Computes the sum of the logs of the distances of each point to its k-th nearest neighbor. */
+  private static double sumLogDistances(
+      double[] x, int k, Workspace workspace, ForkJoinPool pool) {
+    final int n = x.length;
+    final long mark = workspace.mark();
+    try {
+      final double[] sorted = workspace.doubles(n);
+      System.arraycopy(x, 0, sorted, 0, n);
+      Arrays.sort(sorted, 0, n);
+      return ChunkedSum.sum(n, (start, end) -> sumLogDistances(sorted, n, k, start, end), pool);
+    } finally {
+      workspace.release(mark);
+    }
   }
 
-  private static double[] computeDistances(double[] x, int k) {
-    x = Arrays.copyOf(x, x.length);
-    Arrays.sort(x);
-    double[] distances = new double[x.length];
-    NearestNeighbor nn = new NearestNeighbor();
-    for (int i = 0; i < x.length; i++) {
-      NearestNeighbors1D.kthNearest(x, i, k, nn);
-      distances[i] = nn.distance;
+  private static double sumLogDistances(double[] sorted, int n, int k, int start, int end) {
+    final Workspace workspace = Workspace.local();
+    final long mark = workspace.mark();
+    try {
+      final double[] distances = workspace.doubles(end - start);
+      NearestNeighbors1D.kthNearestRange(sorted, n, k, start, end, distances, null);
+      double sum = 0d;
+      for (int i = 0; i < end - start; i++) {
+        sum += Math.log(distances[i]);
+      }
+      return sum;
+    } finally {
+      workspace.release(mark);
     }
-    return distances;
   }
 }
@@ -1,11 +1,11 @@
 package corrsketches.statistics;
 
-import static corrsketches.statistics.NearestNeighbors1D.kthNearestNonZero;
+import static corrsketches.statistics.NearestNeighbors1D.kthNearestAll;
 import static corrsketches.statistics.Stats.sum;
+import static java.lang.Math.abs;
 import static java.lang.Math.log;
 import static smile.math.special.Gamma.digamma;
 
-import corrsketches.statistics.NearestNeighbors1D.NearestNeighbor;
 import java.util.Arrays;
 
 /**
@@ -38,20 +38,54 @@ public class DifferentialEntropyMixed {
    * @return the entropy estimate
    */
   public static double entropy(double[] x, final int k) {
-    final double N = x.length;
-    x = Arrays.copyOf(x, x.length);
+    final int n = x.length;
+    if (n <= 1) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    final double N = n;
+    x = Arrays.copyOf(x, n);
     Arrays.sort(x);
-    NearestNeighbor nn = new NearestNeighbor();
-    double[] distances = new double[x.length];
-    for (int i = 0; i < x.length; i++) {
-      kthNearestNonZero(x, i, k, nn);
-      if (nn.distance == 0.0) {
-        // if the returned distance is zero, then all points are equal
-        // and the result will be -Infinity since log(0) = -Infinity.
-        return Double.NEGATIVE_INFINITY;
+    final double[] distances = new double[n];
+    kthNearestAll(x, n, k, distances);
+    final int localK = Math.min(k, n - 1);
+    // points that have more than k copies have zero distance to their k-th neighbor. For those, we
+    // increase k until the k-th neighbor is the nearest point with a different value.
+    for (int start = 0, end; start < n; start = end) {
+      end = start + 1;
+      while (end < n && x[end] - x[start] == 0) {
+        end++;
+      }
+      final int copies = end - start;
+      for (int i = start; i < end; i++) {
+        int pointK = localK;
+        if (distances[i] == 0.0) {
+          if (copies == n) {
+            // all points are equal and the result will be -Infinity since log(0) = -Infinity.
+            return Double.NEGATIVE_INFINITY;
+          }
+          pointK = copies;
+          distances[i] = nearestDifferentValue(x, start, end);
+        }
+        distances[i] = log(distances[i]) - digamma(pointK);
       }
-      distances[i] = log(nn.distance) - digamma(nn.k);
     }
     return digamma(N) + LOG_CD + (1 / N) * sum(distances);
   }
+
+  /**
+   * Returns the distance from the run of equal values sorted[start..end) to the nearest point
+   * outside of the run, breaking ties as in {@link NearestNeighbors1D#kthNearestNonZero}.
+   */
+  private static double nearestDifferentValue(double[] sorted, int start, int end) {
+    final double c = sorted[start];
+    if (start == 0) {
+      return abs(sorted[end] - c);
+    } else if (end == sorted.length) {
+      return abs(sorted[start - 1] - c);
+    } else {
+      final double left = abs(sorted[start - 1] - c);
+      final double right = abs(sorted[end] - c);
+      return left < right ? left : right;
+    }
+  }
 }
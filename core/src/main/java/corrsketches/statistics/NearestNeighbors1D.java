@@ -12,6 +12,39 @@ public class NearestNeighbors1D {
     return (int) Math.floor(findPoint(data, dataEnd, max) - findPoint(data, dataEnd, min));
   }
 
+  /**
+   * Returns the number of values in the sorted array {@code sorted} whose distance to {@code
+   * center} is at most {@code radius}, i.e., |sorted[i] - center| <= radius. The boundaries are
+   * found by binary search on the distances themselves, so the result is consistent with computing
+   * the distance of every value.
+   */
+  public static int countInRadius(double[] sorted, double center, double radius) {
+    final int n = sorted.length;
+    // first index whose value is at most radius to the left of the center
+    int lo = 0;
+    int hi = n;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (center - sorted[mid] <= radius) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    final int first = lo;
+    // first index whose value is more than radius to the right of the center
+    hi = n;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (sorted[mid] - center > radius) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return lo - first;
+  }
+
   public static double findPoint(double[] c, double target) {
     return findPoint(c, c.length, target);
   }
@@ -62,13 +95,22 @@ public class NearestNeighbors1D {
     // k must be at most the size of the input minus 1
     final int maxK = dataEnd - 1;
     int localK = Math.min(k, maxK);
+    final int theNeighbor = kthNearestIndex(data, dataEnd, target, localK);
+    nn.k = localK;
+    nn.distance = abs(data[theNeighbor] - data[target]);
+    nn.kthNearest = data[theNeighbor];
+    nn.left = theNeighbor < target;
+  }
+
+  /** Returns the index of the k-th nearest neighbor of the target, where k < dataEnd. */
+  private static int kthNearestIndex(double[] data, int dataEnd, int target, int k) {
     double c = data[target];
 
     int left = target;
     int right = target;
     int theNeighbor = -1; // initial value not used, but needed to make compiler happy
 
-    for (int i = 0; i < localK; i++) {
+    for (int i = 0; i < k; i++) {
       if (left == 0) {
         right++;
         theNeighbor = right;
@@ -83,11 +125,96 @@ public class NearestNeighbors1D {
         theNeighbor = right;
       }
     }
+    return theNeighbor;
+  }
 
-    nn.k = localK;
-    nn.distance = abs(data[theNeighbor] - c);
-    nn.kthNearest = data[theNeighbor];
-    nn.left = (theNeighbor == left);
+  /**
+   * Computes the distance of every point in the sorted array {@code sorted} to its k-th nearest
+   * neighbor (excluding the point itself), and stores it in {@code out}. This is equivalent to
+   * calling {@link #kthNearest(double[], int, int, int, NearestNeighbor)} for every point, but
+   * takes linear time.
+   */
+  public static void kthNearestAll(double[] sorted, int k, double[] out) {
+    kthNearestAll(sorted, sorted.length, k, out, null);
+  }
+
+  public static void kthNearestAll(double[] sorted, int n, int k, double[] out) {
+    kthNearestAll(sorted, n, k, out, null);
+  }
+
+  /**
+   * Same as {@link #kthNearestAll(double[], int, double[])}, but only considers the first n values
+   * of {@code sorted}, and also stores the index of the k-th nearest neighbor of every point in
+   * {@code neighbors} (if not null). Ties are broken in the same way as in {@link
+   * #kthNearest(double[], int, int, int, NearestNeighbor)}.
+   *
+   * <p>Since the data is sorted, the k nearest neighbors of a point (plus the point itself) are
+   * always a window of k + 1 consecutive points. The start of the window never decreases from one
+   * point to the next, so all windows can be found in a single sweep over the data.
+   */
+  public static void kthNearestAll(
+      double[] sorted, int n, int k, double[] distances, int[] neighbors) {
+    kthNearestRange(sorted, n, k, 0, n, distances, neighbors);
+  }
+
+  /**
+   * Same as {@link #kthNearestAll(double[], int, int, double[], int[])}, but only computes the
+   * neighbors of the points in the range [from, to). The results of point i are stored at position
+   * {@code i - from} of the output arrays. This allows splitting the points in chunks that can be
+   * computed independently.
+   */
+  public static void kthNearestRange(
+      double[] sorted, int n, int k, int from, int to, double[] distances, int[] neighbors) {
+    if (n < 2) {
+      throw new IllegalArgumentException("At least two points are required, but got: " + n);
+    }
+    if (!Double.isFinite(sorted[0]) || !Double.isFinite(sorted[n - 1])) {
+      // distances involving NaN or infinite values may be NaN, so they are not ordered by position
+      kthNearestEach(sorted, n, k, from, to, distances, neighbors);
+      return;
+    }
+    // k must be at most the size of the input minus 1
+    final int localK = Math.min(k, n - 1);
+    int left = 0;
+    for (int i = from; i < to; i++) {
+      final double c = sorted[i];
+      if (left < i - localK) {
+        left = i - localK;
+      }
+      // slide the window to the right while the point after its end is not farther than the point
+      // at its start (kthNearest() only prefers points on the left when they are strictly closer)
+      while (left < i
+          && left + localK + 1 < n
+          && !(abs(sorted[left] - c) < abs(sorted[left + localK + 1] - c))) {
+        left++;
+      }
+      final int right = left + localK;
+      // the k-th nearest neighbor is the last point added to the window by kthNearest()
+      final int theNeighbor;
+      if (left == i) {
+        theNeighbor = right;
+      } else if (right == i) {
+        theNeighbor = left;
+      } else {
+        theNeighbor = abs(sorted[left] - c) < abs(sorted[right] - c) ? right : left;
+      }
+      distances[i - from] = abs(sorted[theNeighbor] - c);
+      if (neighbors != null) {
+        neighbors[i - from] = theNeighbor;
+      }
+    }
+  }
+
+  private static void kthNearestEach(
+      double[] sorted, int n, int k, int from, int to, double[] distances, int[] neighbors) {
+    final int localK = Math.min(k, n - 1);
+    for (int i = from; i < to; i++) {
+      final int theNeighbor = kthNearestIndex(sorted, n, i, localK);
+      distances[i - from] = abs(sorted[theNeighbor] - sorted[i]);
+      if (neighbors != null) {
+        neighbors[i - from] = theNeighbor;
+      }
+    }
   }
 
   public static NearestNeighbor kthNearestNonZero(double[] data, final int target, int k) {
@@ -0,0 +1,222 @@
+package corrsketches.statistics;
+
+import java.util.Arrays;
+import smile.sort.QuickSort;
+
+/**
+ * Nearest neighbor search over a set of 2-dimensional points using the Chebyshev (maximum)
+ * distance, i.e., d(p, q) = max(|p.x - q.x|, |p.y - q.y|).
+ *
+ * <p>The points are sorted by x and split into vertical strips of consecutive points, and the
+ * points within each strip are sorted by y. Queries visit the strips in increasing order of their
+ * distance along x to the query point and, within each strip, scan outwards from the position of
+ * the query's y (found by binary search). Both scans stop as soon as the remaining points can not
+ * be closer than the current search radius. All data is stored in flat primitive arrays, and
+ * queries do not allocate any objects.
+ */
+public class NearestNeighbors2D {
+
+  private static final int MIN_STRIP_SIZE = 16;
+
+  private final int n;
+  private final int stripSize;
+  private final int numStrips;
+  /** The x coordinates of the points, in strip order (sorted by y within each strip). */
+  private final double[] xs;
+  /** The y coordinates of the points, in strip order (sorted by y within each strip). */
+  private final double[] ys;
+  /** The smallest x coordinate of each strip. */
+  private final double[] stripMinX;
+  /** The largest x coordinate of each strip. */
+  private final double[] stripMaxX;
+  /** The position in {@link #xs} and {@link #ys} of each input point. */
+  private final int[] position;
+
+  /**
+   * Creates the search structure for the points (x[i], y[i]). The input arrays are not modified.
+   */
+  public NearestNeighbors2D(double[] x, double[] y) {
+    if (x.length != y.length) {
+      throw new IllegalArgumentException("Arrays x and y must have the same length.");
+    }
+    this.n = x.length;
+    this.stripSize = Math.max(MIN_STRIP_SIZE, (int) Math.ceil(Math.sqrt(n)));
+    this.numStrips = (n + stripSize - 1) / stripSize;
+    this.xs = new double[n];
+    this.ys = new double[n];
+    this.stripMinX = new double[numStrips];
+    this.stripMaxX = new double[numStrips];
+    this.position = new int[n];
+
+    // sort the points by x
+    final double[] sortedX = x.clone();
+    final int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    QuickSort.sort(sortedX, order);
+
+    // sort the points of each strip by y
+    final double[] stripY = new double[stripSize];
+    final int[] stripOrder = new int[stripSize];
+    for (int s = 0; s < numStrips; s++) {
+      final int start = s * stripSize;
+      final int length = Math.min(stripSize, n - start);
+      stripMinX[s] = sortedX[start];
+      stripMaxX[s] = sortedX[start + length - 1];
+      for (int j = 0; j < length; j++) {
+        stripOrder[j] = order[start + j];
+        stripY[j] = y[stripOrder[j]];
+      }
+      QuickSort.sort(stripY, stripOrder, length);
+      for (int j = 0; j < length; j++) {
+        final int point = stripOrder[j];
+        xs[start + j] = x[point];
+        ys[start + j] = stripY[j];
+        position[point] = start + j;
+      }
+    }
+  }
+
+  /** Returns the number of points. */
+  public int size() {
+    return n;
+  }
+
+  /**
+   * Returns the distance from the given point to its k-th nearest point. The point itself is
+   * included in the search (at distance zero), so k = 1 always returns zero.
+   *
+   * @param point the index of the query point in the input arrays
+   * @param k the number of neighbors, must be between 1 and {@link #size()}
+   * @param heap a buffer with at least k elements used to store the k smallest distances found
+   */
+  public double kthNearestDistance(int point, int k, double[] heap) {
+    if (k < 1 || k > n) {
+      throw new IllegalArgumentException("k must be in range [1, " + n + "], but got: " + k);
+    }
+    final int p = position[point];
+    final double qx = xs[p];
+    final double qy = ys[p];
+    Arrays.fill(heap, 0, k, Double.POSITIVE_INFINITY);
+
+    int left = p / stripSize;
+    int right = left + 1;
+    while (left >= 0 || right < numStrips) {
+      final double leftGap = left >= 0 ? qx - stripMaxX[left] : Double.POSITIVE_INFINITY;
+      final double rightGap = right < numStrips ? stripMinX[right] - qx : Double.POSITIVE_INFINITY;
+      if (leftGap <= rightGap) {
+        if (leftGap >= heap[0]) {
+          break;
+        }
+        searchStrip(left--, qx, qy, heap, k);
+      } else {
+        if (rightGap >= heap[0]) {
+          break;
+        }
+        searchStrip(right++, qx, qy, heap, k);
+      }
+    }
+    return heap[0];
+  }
+
+  /** Updates the max-heap of the k smallest distances with the points of the given strip. */
+  private void searchStrip(int strip, double qx, double qy, double[] heap, int k) {
+    final int start = strip * stripSize;
+    final int end = Math.min(start + stripSize, n);
+    final int middle = lowerBound(ys, start, end, qy);
+    for (int j = middle - 1; j >= start; j--) {
+      final double dy = qy - ys[j];
+      if (dy >= heap[0]) {
+        break;
+      }
+      final double d = Math.max(Math.abs(qx - xs[j]), dy);
+      if (d < heap[0]) {
+        replaceMax(heap, k, d);
+      }
+    }
+    for (int j = middle; j < end; j++) {
+      final double dy = ys[j] - qy;
+      if (dy >= heap[0]) {
+        break;
+      }
+      final double d = Math.max(Math.abs(qx - xs[j]), dy);
+      if (d < heap[0]) {
+        replaceMax(heap, k, d);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of points within the given distance (inclusive) from the given point,
+   * including the point itself.
+   *
+   * @param point the index of the query point in the input arrays
+   * @param radius the maximum distance from the query point
+   */
+  public int countInRange(int point, double radius) {
+    final int p = position[point];
+    final double qx = xs[p];
+    final double qy = ys[p];
+    int count = 0;
+    final int strip = p / stripSize;
+    for (int s = strip; s >= 0 && qx - stripMaxX[s] <= radius; s--) {
+      count += countInStrip(s, qx, qy, radius);
+    }
+    for (int s = strip + 1; s < numStrips && stripMinX[s] - qx <= radius; s++) {
+      count += countInStrip(s, qx, qy, radius);
+    }
+    return count;
+  }
+
+  private int countInStrip(int strip, double qx, double qy, double radius) {
+    final int start = strip * stripSize;
+    final int end = Math.min(start + stripSize, n);
+    final int middle = lowerBound(ys, start, end, qy);
+    int count = 0;
+    for (int j = middle - 1; j >= start && qy - ys[j] <= radius; j--) {
+      if (Math.abs(qx - xs[j]) <= radius) {
+        count++;
+      }
+    }
+    for (int j = middle; j < end && ys[j] - qy <= radius; j++) {
+      if (Math.abs(qx - xs[j]) <= radius) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Returns the first index in [start, end) such that sorted[index] >= value. */
+  private static int lowerBound(double[] sorted, int start, int end, double value) {
+    int lo = start;
+    int hi = end;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (sorted[mid] < value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** Replaces the largest value of the max-heap stored in heap[0..size) by the given value. */
+  private static void replaceMax(double[] heap, int size, double value) {
+    int parent = 0;
+    int child = 1;
+    while (child < size) {
+      if (child + 1 < size && heap[child + 1] > heap[child]) {
+        child++;
+      }
+      if (value >= heap[child]) {
+        break;
+      }
+      heap[parent] = heap[child];
+      parent = child;
+      child = 2 * parent + 1;
+    }
+    heap[parent] = value;
+  }
+}
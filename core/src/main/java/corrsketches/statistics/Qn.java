@@ -2,8 +2,7 @@ package corrsketches.statistics;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import it.unimi.dsi.fastutil.doubles.DoubleComparators;
-import it.unimi.dsi.fastutil.doubles.DoubleHeapPriorityQueue;
+import corrsketches.util.Workspace;
 import java.util.Arrays;
 
 /**
@@ -30,17 +29,63 @@ public class Qn {
    * @return the Qn estimate
    */
   public static double estimateScale(final double[] x) {
-    checkArgument(x.length > 1, "array length must be at least 2, found %s", x.length);
+    return estimateScale(x, x.length, Workspace.local());
+  }
+
+  /**
+   * Same as {@link #estimateScale(double[])}, but only considers the first n observations of x and
+   * uses the given workspace for all temporary arrays.
+   */
+  public static double estimateScale(final double[] x, final int n, final Workspace workspace) {
+    checkArgument(n > 1, "array length must be at least 2, found %s", n);
+    final long mark = workspace.mark();
+    try {
+      final double[] y = workspace.doubles(n);
+      System.arraycopy(x, 0, y, 0, n);
+      Arrays.sort(y, 0, n);
+      return estimateScaleOfSorted(y, n, workspace);
+    } finally {
+      workspace.release(mark);
+    }
+  }
 
+  /**
+   * Same as {@link #estimateScale(double[])}, but requires the observations to be already sorted in
+   * ascending order. This avoids copying and sorting the input when the sorted observations are
+   * already available.
+   *
+   * @param y an array containing the observations sorted in ascending order
+   * @return the Qn estimate
+   */
+  public static double estimateScaleOfSorted(final double[] y) {
+    return estimateScaleOfSorted(y, y.length, Workspace.local());
+  }
+
+  /**
+   * Same as {@link #estimateScaleOfSorted(double[])}, but only considers the first n observations
+   * of y and uses the given workspace for all temporary arrays.
+   */
+  public static double estimateScaleOfSorted(
+      final double[] y, final int n, final Workspace workspace) {
+    checkArgument(n > 1, "array length must be at least 2, found %s", n);
+    final long mark = workspace.mark();
+    try {
+      return estimateScaleOfSortedInternal(y, n, workspace);
+    } finally {
+      workspace.release(mark);
+    }
+  }
+
+  private static double estimateScaleOfSortedInternal(
+      final double[] y, final int n, final Workspace workspace) {
     double Qn = Double.NaN;
-    int n = x.length;
 
-    int[] left = new int[n];
-    int[] right = new int[n];
-    int[] P = new int[n];
-    int[] Q = new int[n];
-    int[] weight = new int[n];
-    double[] work = new double[n];
+    int[] left = workspace.ints(n);
+    int[] right = workspace.ints(n);
+    int[] P = workspace.ints(n);
+    int[] Q = workspace.ints(n);
+    int[] weight = workspace.ints(n);
+    double[] work = workspace.doubles(n);
 
     // the following need to be a long to avoid overflow
     long k, knew, nL, nR, sumP, sumQ;
@@ -48,9 +93,6 @@ public class Qn {
     int h = n / 2 + 1;
     k = ((long) h) * (h - 1) / 2;
 
-    double[] y = Arrays.copyOf(x, x.length);
-    Arrays.sort(y);
-
     for (int i = 0; i < n; i++) {
       left[i] = n - i + 1; // use + 1 instead of +2 because of 0-indexing
       right[i] = (i <= h) ? n : n - (i - h);
@@ -74,7 +116,7 @@ public class Qn {
           j++;
         }
       }
-      trial = weightedHighMedian(work, weight, j);
+      trial = weightedHighMedian(work, weight, j, workspace);
 
       j = 0;
       for (int i = n - 1; i >= 0; --i) {
@@ -121,7 +163,7 @@ public class Qn {
           }
         }
       }
-      Qn = findKthOrderStatistic(work, j, (int) (knew - nL));
+      Qn = findKthOrderStatistic(work, j, (int) (knew - nL), workspace);
     }
 
     /* Corrections are consistent with the implementation of the 'robustbase' R package */
@@ -181,9 +223,21 @@ public class Qn {
    * @param n number of observations
    */
   static double weightedHighMedian(double[] a, int[] iw, int n) {
+    return weightedHighMedian(a, iw, n, Workspace.local());
+  }
+
+  static double weightedHighMedian(double[] a, int[] iw, int n, Workspace workspace) {
+    final long mark = workspace.mark();
+    try {
+      return weightedHighMedian(a, iw, n, workspace.doubles(n), workspace.ints(n), workspace);
+    } finally {
+      workspace.release(mark);
+    }
+  }
+
+  private static double weightedHighMedian(
+      double[] a, int[] iw, int n, double[] acand, int[] iwcand, Workspace workspace) {
     int kcand;
-    double[] acand = new double[n];
-    int[] iwcand = new int[n];
 
     // these need to be a long to avoid overflow
     long wleft, wmid, wright, wtotal, wrest;
@@ -197,7 +251,7 @@ public class Qn {
 
     wrest = 0;
     while (true) {
-      trial = findKthOrderStatistic(a, nn, nn / 2);
+      trial = findKthOrderStatistic(a, nn, nn / 2, workspace);
 
       wleft = 0;
       wmid = 0;
@@ -245,6 +299,10 @@ public class Qn {
 
   /** Finds the k-th order statistic of an array array a of length n. */
   static double findKthOrderStatistic(double[] x, int n, int k) {
+    return findKthOrderStatistic(x, n, k, Workspace.local());
+  }
+
+  static double findKthOrderStatistic(double[] x, int n, int k, Workspace workspace) {
     // Check if arguments are valid
     final int N = x.length;
     checkArgument(n <= N, "n=[%s] can't be greater than the length of array x=[%s]", n, N);
@@ -253,21 +311,57 @@ public class Qn {
     if (n == 1) {
       return x[0];
     }
-    return heapSelect(x, n, k);
+    final long mark = workspace.mark();
+    try {
+      return heapSelect(x, n, k, workspace.doubles(k));
+    } finally {
+      workspace.release(mark);
+    }
   }
 
-  static double heapSelect(double[] x, int n, int k) {
-    DoubleHeapPriorityQueue q =
-        new DoubleHeapPriorityQueue(k, DoubleComparators.OPPOSITE_COMPARATOR);
-    for (int i = 0; i < n; i++) {
-      if (q.size() < k) {
-        q.enqueue(x[i]);
-      } else {
-        q.enqueue(x[i]);
-        q.dequeueDouble();
+  /**
+   * Selects the k-th smallest of the first n values of x by keeping the k smallest values seen so
+   * far in a max-heap stored in the first k positions of the given {@code heap} array.
+   */
+  static double heapSelect(double[] x, int n, int k, double[] heap) {
+    for (int i = 0; i < k; i++) {
+      // sift up
+      int child = i;
+      final double value = x[i];
+      while (child > 0) {
+        final int parent = (child - 1) >>> 1;
+        if (heap[parent] >= value) {
+          break;
+        }
+        heap[child] = heap[parent];
+        child = parent;
+      }
+      heap[child] = value;
+    }
+    for (int i = k; i < n; i++) {
+      if (x[i] < heap[0]) {
+        siftDown(heap, k, x[i]);
+      }
+    }
+    return heap[0];
+  }
+
+  /** Replaces the root of the max-heap by the given value and restores the heap property. */
+  private static void siftDown(double[] heap, int size, double value) {
+    int parent = 0;
+    int child = 1;
+    while (child < size) {
+      if (child + 1 < size && heap[child + 1] > heap[child]) {
+        child++;
+      }
+      if (value >= heap[child]) {
+        break;
       }
+      heap[parent] = heap[child];
+      parent = child;
+      child = 2 * parent + 1;
     }
-    return q.firstDouble();
+    heap[parent] = value;
   }
 
   static class QnEstimate {
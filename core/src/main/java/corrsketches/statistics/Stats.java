@@ -200,7 +200,14 @@ public class Stats {
    * @param tiesMethod the method to be used to compute the rank of tied values
    */
   public static void rank(double[] x, TiesMethod tiesMethod) {
-    int n = x.length;
+    rank(x, x.length, tiesMethod);
+  }
+
+  /**
+   * Same as {@link #rank(double[], TiesMethod)}, but only ranks the first n elements of the sorted
+   * array x.
+   */
+  public static void rank(double[] x, int n, TiesMethod tiesMethod) {
     int j = 1;
     while (j < n) {
       if (x[j] != x[j - 1]) {
@@ -0,0 +1,58 @@
+package corrsketches.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the sum of per-point terms of an estimator by splitting the points into chunks of fixed
+ * size. The partial sum of each chunk is computed independently (in parallel, for large inputs
+ * when a pool is given), and the partial sums are then added in chunk order. Since the chunks do not depend on the number
+ * of threads, the result is always the same. Inputs that fit in a single chunk are summed in the
+ * same order as a sequential loop.
+ */
+public final class ChunkedSum {
+
+  /** Number of points in each chunk. */
+  public static final int CHUNK_SIZE = 1 << 12;
+
+  /** Minimum number of points to compute the partial sums in parallel when a pool is given. */
+  public static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  /** Computes the sum of the terms of the points in a range. */
+  @FunctionalInterface
+  public interface RangeSum {
+
+    /** Returns the sum of the terms of the points in the range [start, end). */
+    double sum(int start, int end);
+  }
+
+  private ChunkedSum() {}
+
+  /**
+   * Returns the sum of the terms of the points in the range [0, n). Large inputs are computed in
+   * parallel using the given pool. If the pool is null, all chunks are computed sequentially by the
+   * calling thread.
+   */
+  public static double sum(int n, RangeSum rangeSum, ForkJoinPool pool) {
+    final int numChunks = (int) ((n + (long) CHUNK_SIZE - 1) / CHUNK_SIZE);
+    final double[] partialSums = new double[numChunks];
+    final IntConsumer computeChunk =
+        (int chunk) -> {
+          final int start = chunk * CHUNK_SIZE;
+          final int end = Math.min(start + CHUNK_SIZE, n);
+          partialSums[chunk] = rangeSum.sum(start, end);
+        };
+    final IntStream chunks = IntStream.range(0, numChunks);
+    if (pool == null || n < PARALLEL_THRESHOLD) {
+      chunks.forEach(computeChunk);
+    } else {
+      pool.submit(() -> chunks.parallel().forEach(computeChunk)).join();
+    }
+    double sum = 0;
+    for (double partialSum : partialSums) {
+      sum += partialSum;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,367 @@
+package corrsketches.util;
+
+import corrsketches.util.KDTree.Distance;
+import java.util.Arrays;
+
+/**
+ * A KD-tree variant that stores all data in flat primitive arrays. It supports the same queries
+ * as {@link KDTree}, but its queries do not allocate any objects:
+ *
+ * <ul>
+ *   <li>the points are stored in a single {@code double[]} in tree order, so that the points of a
+ *       leaf are contiguous in memory;
+ *   <li>the nodes are stored in parallel primitive arrays indexed by node id;
+ *   <li>k-NN queries write their results into caller-provided {@code int[]} and {@code double[]}
+ *       buffers, which are also used as a primitive max-heap during the search;
+ *   <li>range counts are computed without materializing the neighbors.
+ * </ul>
+ *
+ * <p>The distance metric given to the constructor is used by default, but all queries also accept
+ * a different metric, since the structure of the tree does not depend on it.
+ */
+public class FlatKDTree {
+
+  /** Nodes with at most this number of points are not split. */
+  private static final int LEAF_SIZE = 8;
+
+  private static final int NO_CHILD = -1;
+
+  private final int size;
+  private final int dimensions;
+  private final Distance distance;
+
+  /** The coordinates of the points in tree order: point p uses positions [p * d, (p + 1) * d). */
+  private final double[] points;
+  /** The index in the input data of the point stored at each tree position. */
+  private final int[] index;
+
+  // The nodes of the tree, stored as parallel arrays indexed by node id. The root has id 0.
+  private int[] nodeBegin;
+  private int[] nodeEnd;
+  private int[] nodeSplit;
+  private double[] nodeCutoff;
+  private int[] nodeLower;
+  private int[] nodeUpper;
+  private int numNodes = 0;
+
+  /**
+   * Creates a tree for the given points.
+   *
+   * @param points the coordinates of the points, stored row by row, i.e., the j-th coordinate of
+   *     the i-th point is at {@code points[i * dimensions + j]}. The array is not modified.
+   * @param dimensions the number of dimensions of the points
+   * @param distance the distance metric used to query the points
+   */
+  public FlatKDTree(double[] points, int dimensions, Distance distance) {
+    if (dimensions < 1 || points.length % dimensions != 0) {
+      throw new IllegalArgumentException(
+          "The number of coordinates must be a multiple of the number of dimensions");
+    }
+    this.size = points.length / dimensions;
+    if (size == 0) {
+      throw new IllegalArgumentException("The tree requires at least one point");
+    }
+    this.dimensions = dimensions;
+    this.distance = distance;
+    this.index = new int[size];
+    for (int i = 0; i < size; i++) {
+      index[i] = i;
+    }
+    final int maxNodes = 2 * size;
+    this.nodeBegin = new int[maxNodes];
+    this.nodeEnd = new int[maxNodes];
+    this.nodeSplit = new int[maxNodes];
+    this.nodeCutoff = new double[maxNodes];
+    this.nodeLower = new int[maxNodes];
+    this.nodeUpper = new int[maxNodes];
+    buildTree(points, 0, size, new double[dimensions], new double[dimensions]);
+    trimNodes();
+
+    // copy the points in tree order
+    this.points = new double[points.length];
+    for (int p = 0; p < size; p++) {
+      System.arraycopy(points, index[p] * dimensions, this.points, p * dimensions, dimensions);
+    }
+  }
+
+  /** Builds the subtree of the points at positions [begin, end) and returns its node id. */
+  private int buildTree(double[] data, int begin, int end, double[] lower, double[] upper) {
+    final int node = numNodes++;
+    nodeBegin[node] = begin;
+    nodeEnd[node] = end;
+    nodeLower[node] = NO_CHILD;
+    nodeUpper[node] = NO_CHILD;
+    if (end - begin <= LEAF_SIZE) {
+      return node;
+    }
+
+    // Calculate the upper and lower bounds for each dimension
+    for (int j = 0; j < dimensions; j++) {
+      lower[j] = upper[j] = data[index[begin] * dimensions + j];
+    }
+    for (int i = begin + 1; i < end; i++) {
+      final int offset = index[i] * dimensions;
+      for (int j = 0; j < dimensions; j++) {
+        final double c = data[offset + j];
+        if (lower[j] > c) {
+          lower[j] = c;
+        }
+        if (upper[j] < c) {
+          upper[j] = c;
+        }
+      }
+    }
+
+    // Split the dimension with the largest spread at its midpoint
+    double maxRadius = -1;
+    int split = 0;
+    double cutoff = 0;
+    for (int j = 0; j < dimensions; j++) {
+      final double radius = (upper[j] - lower[j]) / 2;
+      if (radius > maxRadius) {
+        maxRadius = radius;
+        split = j;
+        cutoff = (upper[j] + lower[j]) / 2;
+      }
+    }
+
+    // If the max spread is 0, make this a leaf node
+    if (Math.abs(maxRadius) < 1e-10) {
+      return node;
+    }
+
+    // Partition the points around the cutoff in the same way as in quicksort
+    int i1 = begin;
+    int i2 = end - 1;
+    while (i1 <= i2) {
+      if (data[index[i1] * dimensions + split] < cutoff) {
+        i1++;
+      } else if (data[index[i2] * dimensions + split] >= cutoff) {
+        i2--;
+      } else {
+        Sorting.swap(index, i1++, i2--);
+      }
+    }
+    if (i1 == begin || i1 == end) {
+      return node; // can not split (e.g., the midpoint is rounded to one of the bounds)
+    }
+
+    nodeSplit[node] = split;
+    nodeCutoff[node] = cutoff;
+    nodeLower[node] = buildTree(data, begin, i1, lower, upper);
+    nodeUpper[node] = buildTree(data, i1, end, lower, upper);
+    return node;
+  }
+
+  private void trimNodes() {
+    nodeBegin = Arrays.copyOf(nodeBegin, numNodes);
+    nodeEnd = Arrays.copyOf(nodeEnd, numNodes);
+    nodeSplit = Arrays.copyOf(nodeSplit, numNodes);
+    nodeCutoff = Arrays.copyOf(nodeCutoff, numNodes);
+    nodeLower = Arrays.copyOf(nodeLower, numNodes);
+    nodeUpper = Arrays.copyOf(nodeUpper, numNodes);
+  }
+
+  /** Returns the number of points in the tree. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the distance metric used by default to query the points. */
+  public Distance distance() {
+    return distance;
+  }
+
+  /** Returns the number of dimensions of the points. */
+  public int dimensions() {
+    return dimensions;
+  }
+
+  /**
+   * Finds the k nearest neighbors of the query point. The indexes (in the input data) of the
+   * neighbors and their distances are written to the first k positions of the given buffers,
+   * sorted by increasing distance. If the query is one of the indexed points, it is included in
+   * the results.
+   *
+   * @param q the array that contains the query point
+   * @param qOffset the position of the first coordinate of the query point in {@code q}
+   * @param k the number of neighbors, must be between 1 and {@link #size()}
+   * @param neighbors the output buffer for the indexes of the neighbors
+   * @param distances the output buffer for the distances of the neighbors
+   */
+  public void knn(double[] q, int qOffset, int k, int[] neighbors, double[] distances) {
+    knn(q, qOffset, k, distance, neighbors, distances);
+  }
+
+  /**
+   * Same as {@link #knn(double[], int, int, int[], double[])}, but uses the given distance metric.
+   */
+  public void knn(
+      double[] q, int qOffset, int k, Distance distance, int[] neighbors, double[] distances) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("Value of k must be at least 1, but got: " + k);
+    }
+    if (k > size) {
+      throw new IllegalArgumentException(
+          "Number of nearest neighbors (k="
+              + k
+              + ") cannot be greater than the dataset size (n="
+              + size
+              + ")");
+    }
+    for (int i = 0; i < k; i++) {
+      distances[i] = Double.POSITIVE_INFINITY;
+      neighbors[i] = -1;
+    }
+    search(0, q, qOffset, k, distance, neighbors, distances);
+
+    // heap sort: move the largest distance to the end of the heap until it is empty
+    for (int end = k - 1; end > 0; end--) {
+      final double maxDistance = distances[0];
+      final int maxNeighbor = neighbors[0];
+      siftDown(distances, neighbors, end, distances[end], neighbors[end]);
+      distances[end] = maxDistance;
+      neighbors[end] = maxNeighbor;
+    }
+  }
+
+  /**
+   * Returns the distance from the query point to its k-th nearest neighbor. This is the same as
+   * the last distance computed by {@link #knn(double[], int, int, int[], double[])}.
+   */
+  public double kthNearestDistance(
+      double[] q, int qOffset, int k, int[] neighbors, double[] distances) {
+    knn(q, qOffset, k, neighbors, distances);
+    return distances[k - 1];
+  }
+
+  /** Updates the max-heap of the k nearest neighbors with the points of the given subtree. */
+  private void search(
+      int node,
+      double[] q,
+      int qOffset,
+      int k,
+      Distance distance,
+      int[] neighbors,
+      double[] heap) {
+    final int lower = nodeLower[node];
+    if (lower == NO_CHILD) {
+      // look at all the points in this leaf
+      for (int p = nodeBegin[node], end = nodeEnd[node]; p < end; p++) {
+        final double d = distanceTo(q, qOffset, p, distance);
+        if (d < heap[0]) {
+          siftDown(heap, neighbors, k, d, index[p]);
+        }
+      }
+      return;
+    }
+    final double diff = q[qOffset + nodeSplit[node]] - nodeCutoff[node];
+    final int nearer = diff < 0 ? lower : nodeUpper[node];
+    final int further = diff < 0 ? nodeUpper[node] : lower;
+    search(nearer, q, qOffset, k, distance, neighbors, heap);
+    // now look in further half
+    if (heap[0] >= Math.abs(diff)) {
+      search(further, q, qOffset, k, distance, neighbors, heap);
+    }
+  }
+
+  /**
+   * Returns the number of indexed points whose distance to the query point is at most the given
+   * radius (inclusive).
+   */
+  public int countInRange(double[] q, int qOffset, double radius) {
+    return countInRange(q, qOffset, radius, distance);
+  }
+
+  /** Same as {@link #countInRange(double[], int, double)}, but uses the given distance metric. */
+  public int countInRange(double[] q, int qOffset, double radius, Distance distance) {
+    return range(0, q, qOffset, radius, distance, null, 0);
+  }
+
+  /**
+   * Finds the indexed points whose distance to the query point is at most the given radius
+   * (inclusive). Their indexes (in the input data) are written to the given buffer, which must have
+   * room for {@link #size()} indexes, in no particular order.
+   *
+   * @return the number of points found
+   */
+  public int range(double[] q, int qOffset, double radius, Distance distance, int[] neighbors) {
+    return range(0, q, qOffset, radius, distance, neighbors, 0);
+  }
+
+  /**
+   * Writes the points of the given subtree that are in the range to {@code neighbors} (if it is not
+   * null) starting at the position {@code found}, and returns the total number of points found.
+   */
+  private int range(
+      int node,
+      double[] q,
+      int qOffset,
+      double radius,
+      Distance distance,
+      int[] neighbors,
+      int found) {
+    final int lower = nodeLower[node];
+    if (lower == NO_CHILD) {
+      for (int p = nodeBegin[node], end = nodeEnd[node]; p < end; p++) {
+        if (distanceTo(q, qOffset, p, distance) <= radius) {
+          if (neighbors != null) {
+            neighbors[found] = index[p];
+          }
+          found++;
+        }
+      }
+      return found;
+    }
+    final double diff = q[qOffset + nodeSplit[node]] - nodeCutoff[node];
+    final int nearer = diff < 0 ? lower : nodeUpper[node];
+    final int further = diff < 0 ? nodeUpper[node] : lower;
+    found = range(nearer, q, qOffset, radius, distance, neighbors, found);
+    if (radius >= Math.abs(diff)) {
+      found = range(further, q, qOffset, radius, distance, neighbors, found);
+    }
+    return found;
+  }
+
+  /** Computes the distance between the query and the point stored at the given tree position. */
+  private double distanceTo(double[] q, int qOffset, int position, Distance distance) {
+    final int offset = position * dimensions;
+    if (distance == Distance.CHEBYSHEV) {
+      double d = 0;
+      for (int j = 0; j < dimensions; j++) {
+        d = Math.max(d, Math.abs(q[qOffset + j] - points[offset + j]));
+      }
+      return d;
+    } else {
+      double sum = 0;
+      for (int j = 0; j < dimensions; j++) {
+        final double diff = q[qOffset + j] - points[offset + j];
+        sum += diff * diff;
+      }
+      return Math.sqrt(sum);
+    }
+  }
+
+  /**
+   * Replaces the root of the max-heap stored in the first {@code size} positions of the parallel
+   * arrays {@code heap} and {@code values} by the given entry, and restores the heap property.
+   */
+  private static void siftDown(double[] heap, int[] values, int size, double key, int value) {
+    int parent = 0;
+    int child = 1;
+    while (child < size) {
+      if (child + 1 < size && heap[child + 1] > heap[child]) {
+        child++;
+      }
+      if (key >= heap[child]) {
+        break;
+      }
+      heap[parent] = heap[child];
+      values[parent] = values[child];
+      parent = child;
+      child = 2 * parent + 1;
+    }
+    heap[parent] = key;
+    values[parent] = value;
+  }
+}
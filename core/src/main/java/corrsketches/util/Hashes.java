@@ -3,6 +3,8 @@ package corrsketches.util;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -42,6 +44,89 @@ public class Hashes {
     return MURMUR3.hashString(value, StandardCharsets.UTF_8).asInt();
   }
 
+  /**
+   * Computes the same hash as {@link #murmur3_32(String)} for the string encoded by the given UTF-8
+   * bytes. Strings that contain only ASCII characters are hashed directly from the bytes, without
+   * creating a String object.
+   *
+   * @param utf8 the array that contains the UTF-8 encoded string
+   * @param offset the position of the first byte of the string
+   * @param length the number of bytes of the string
+   * @return hash of the given value
+   */
+  public static int murmur3_32(byte[] utf8, int offset, int length) {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      if (utf8[i] < 0) {
+        // non-ASCII strings are decoded so that invalid and supplementary characters are hashed
+        // in exactly the same way as by murmur3_32(String)
+        return murmur3_32(new String(utf8, offset, length, StandardCharsets.UTF_8));
+      }
+    }
+    return MURMUR3.hashBytes(utf8, offset, length).asInt();
+  }
+
+  /**
+   * Computes the same hash as {@link #murmur3_32(String)} for the string encoded by the given UTF-8
+   * bytes of a buffer, which is typically a memory-mapped file. The bytes are read using absolute
+   * positions, so the position and limit of the buffer are not modified. Strings that contain only
+   * ASCII characters are hashed directly from the buffer, without copying the bytes.
+   *
+   * @param utf8 the buffer that contains the UTF-8 encoded string
+   * @param offset the position of the first byte of the string
+   * @param length the number of bytes of the string
+   * @return hash of the given value
+   */
+  public static int murmur3_32(ByteBuffer utf8, int offset, int length) {
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      if (utf8.get(i) < 0) {
+        final byte[] bytes = new byte[length];
+        for (int j = 0; j < length; j++) {
+          bytes[j] = utf8.get(offset + j);
+        }
+        return murmur3_32(bytes, 0, length);
+      }
+    }
+    // this is the same algorithm implemented by Hashing.murmur3_32().hashBytes()
+    final boolean littleEndian = utf8.order() == ByteOrder.LITTLE_ENDIAN;
+    int h1 = 0;
+    int i = offset;
+    for (; i + 4 <= end; i += 4) {
+      final int k1 = littleEndian ? utf8.getInt(i) : Integer.reverseBytes(utf8.getInt(i));
+      h1 = murmur3MixH1(h1, murmur3MixK1(k1));
+    }
+    int k1 = 0;
+    for (int shift = 0; i < end; i++, shift += 8) {
+      k1 ^= (utf8.get(i) & 0xFF) << shift;
+    }
+    h1 ^= murmur3MixK1(k1);
+    return murmur3Fmix(h1, length);
+  }
+
+  private static int murmur3MixK1(int k1) {
+    k1 *= 0xcc9e2d51;
+    k1 = Integer.rotateLeft(k1, 15);
+    k1 *= 0x1b873593;
+    return k1;
+  }
+
+  private static int murmur3MixH1(int h1, int k1) {
+    h1 ^= k1;
+    h1 = Integer.rotateLeft(h1, 13);
+    h1 = h1 * 5 + 0xe6546b64;
+    return h1;
+  }
+
+  private static int murmur3Fmix(int h1, int length) {
+    h1 ^= length;
+    h1 ^= h1 >>> 16;
+    h1 *= 0x85ebca6b;
+    h1 ^= h1 >>> 13;
+    h1 *= 0xc2b2ae35;
+    h1 ^= h1 >>> 16;
+    return h1;
+  }
+
   /**
    * Computes the 32-bits murmur3 hash functions of the two int values given as parameters.
    *
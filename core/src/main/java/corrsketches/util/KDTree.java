@@ -16,11 +16,8 @@
 package corrsketches.util;
 
 import corrsketches.statistics.DistanceFunction;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import smile.math.Math;
-import smile.sort.HeapSelect;
 
 /**
  * This class implements the KD-tree data structure, which is can be used for search in
@@ -28,18 +25,17 @@ import smile.sort.HeapSelect;
  * search queries and range search queries in sets of vectors with low-to-moderate dimensionality.
  *
  * <p>This implementation is based on the KDTree class from the library smile v1.5.3 which was
- * licensed under the Apache License v2. The original code has been substantially modified.
+ * licensed under the Apache License v2. The original code has been substantially modified: the
+ * tree is now stored in a {@link FlatKDTree}, and this class only creates the {@link Neighbor}
+ * objects returned by its queries. Code that runs many queries should use {@link FlatKDTree}
+ * directly to avoid these allocations.
  */
 public class KDTree {
 
   /** The set of points being indexed in the KD-tree. */
   private final double[][] keys;
-  /** The root node of the KD-Tree. */
-  private final Node root;
-  /** The index of each node. */
-  private final int[] index;
-  /** The default distance metric used to query the points. */
-  private final Distance distance;
+  /** The tree that indexes the points. */
+  private final FlatKDTree tree;
 
   /**
    * Constructor.
@@ -49,227 +45,30 @@ public class KDTree {
    */
   public KDTree(double[][] key, Distance distance) {
     this.keys = key;
-    this.index = new int[key.length];
-    this.distance = distance;
+    final int d = key[0].length;
+    final double[] points = new double[key.length * d];
     for (int i = 0; i < key.length; i++) {
-      index[i] = i;
-    }
-    root = buildTree(0, key.length);
-  }
-
-  /** Build a kd-tree from the given set of points. */
-  private Node buildTree(int begin, int end) {
-
-    Node node = new Node();
-    node.count = end - begin;
-    node.index = begin;
-
-    // the number of dimensions
-    int d = keys[0].length;
-
-    // Calculate the upper and lower bounds for each dimension
-    double[] lowerBound = new double[d];
-    double[] upperBound = new double[d];
-    for (int i = 0; i < d; i++) {
-      lowerBound[i] = keys[index[begin]][i];
-      upperBound[i] = keys[index[begin]][i];
-    }
-    for (int i = begin + 1; i < end; i++) {
-      for (int j = 0; j < d; j++) {
-        final double c = keys[index[i]][j];
-        if (lowerBound[j] > c) {
-          lowerBound[j] = c;
-        }
-        if (upperBound[j] < c) {
-          upperBound[j] = c;
-        }
-      }
-    }
-
-    // Calculate bounding box stats
-    double maxRadius = -1;
-    for (int i = 0; i < d; i++) {
-      double radius = (upperBound[i] - lowerBound[i]) / 2;
-      if (radius > maxRadius) {
-        maxRadius = radius;
-        node.split = i;
-        node.cutoff = (upperBound[i] + lowerBound[i]) / 2;
-      }
-    }
-
-    // If the max spread is 0, make this a leaf node
-    if (Math.isZero(maxRadius, 1e-10)) {
-      node.lower = node.upper = null;
-      return node;
-    }
-
-    // Partition the dataset around the midpoint in this dimension. The
-    // partitioning is done in-place by iterating from left-to-right and
-    // right-to-left in the same way that partitioning is done in quicksort.
-    int i1 = begin, i2 = end - 1, size = 0;
-    while (i1 <= i2) {
-      boolean i1Good = (keys[index[i1]][node.split] < node.cutoff);
-      boolean i2Good = (keys[index[i2]][node.split] >= node.cutoff);
-
-      if (!i1Good && !i2Good) {
-        int temp = index[i1];
-        index[i1] = index[i2];
-        index[i2] = temp;
-        i1Good = i2Good = true;
-      }
-
-      if (i1Good) {
-        i1++;
-        size++;
-      }
-
-      if (i2Good) {
-        i2--;
-      }
-    }
-
-    // Create the child nodes
-    node.lower = buildTree(begin, begin + size);
-    node.upper = buildTree(begin + size, end);
-
-    return node;
-  }
-
-  /**
-   * Returns the nearest neighbors of the given target starting from the give tree node.
-   *
-   * @param q the query key.
-   * @param node the root of subtree.
-   * @param neighbor the current nearest neighbor.
-   */
-  private void search(double[] q, Node node, Distance distanceFn, Neighbor neighbor) {
-    if (node.isLeaf()) {
-      // look at all the instances in this leaf
-      for (int idx = node.index; idx < node.index + node.count; idx++) {
-        // double distance = Math.squaredDistance(q, keys[index[idx]]);
-        double distance = distanceFn.distance(q, keys[index[idx]]);
-        if (distance < neighbor.distance) {
-          neighbor.key = keys[index[idx]];
-          neighbor.index = index[idx];
-          neighbor.distance = distance;
-        }
-      }
-    } else {
-      Node nearer, further;
-      double diff = q[node.split] - node.cutoff;
-      if (diff < 0) {
-        nearer = node.lower;
-        further = node.upper;
-      } else {
-        nearer = node.upper;
-        further = node.lower;
-      }
-
-      search(q, nearer, distanceFn, neighbor);
-
-      // now look in further half
-      if (neighbor.distance >= Math.abs(diff)) {
-        search(q, further, distanceFn, neighbor);
-      }
-    }
-  }
-
-  /**
-   * Returns (in the supplied heap object) the k nearest neighbors of the given target starting from
-   * the given tree node.
-   *
-   * @param q the query key.
-   * @param node the root of subtree.
-   * @param heap the heap object to store/update the kNNs found during the search.
-   */
-  private void search(double[] q, Node node, Distance distanceFn, HeapSelect<Neighbor> heap) {
-    if (node.isLeaf()) {
-      // look at all the instances in this leaf
-      for (int idx = node.index; idx < node.index + node.count; idx++) {
-        // double distance = Math.squaredDistance(q, keys[index[idx]]);
-        double distance = distanceFn.distance(q, keys[index[idx]]);
-
-        Neighbor datum = heap.peek();
-        if (distance < datum.distance) {
-          datum.distance = distance;
-          datum.index = index[idx];
-          datum.key = keys[index[idx]];
-          heap.heapify();
-        }
-      }
-    } else {
-      Node nearer, further;
-      double diff = q[node.split] - node.cutoff;
-      if (diff < 0) {
-        nearer = node.lower;
-        further = node.upper;
-      } else {
-        nearer = node.upper;
-        further = node.lower;
-      }
-
-      search(q, nearer, distanceFn, heap);
-
-      // now look in further half
-      if (heap.peek().distance >= Math.abs(diff)) {
-        search(q, further, distanceFn, heap);
-      }
-    }
-  }
-
-  /**
-   * Returns the neighbors in the given range of search target from the given tree node.
-   *
-   * @param q the query key.
-   * @param node the root of subtree.
-   * @param radius the radius of search range from target.
-   * @param neighbors the list of found neighbors in the range.
-   */
-  private void search(
-      double[] q, Node node, double radius, Distance distanceFn, List<Neighbor> neighbors) {
-    if (node.isLeaf()) {
-      // look at all the instances in this leaf
-      for (int idx = node.index; idx < node.index + node.count; idx++) {
-        double distance = distanceFn.distance(q, keys[index[idx]]);
-        if (distance <= radius) {
-          neighbors.add(new Neighbor(keys[index[idx]], index[idx], distance));
-        }
-      }
-    } else {
-      Node nearer, further;
-      double diff = q[node.split] - node.cutoff;
-      if (diff < 0) {
-        nearer = node.lower;
-        further = node.upper;
-      } else {
-        nearer = node.upper;
-        further = node.lower;
-      }
-
-      search(q, nearer, radius, distanceFn, neighbors);
-
-      // now look in further half
-      if (radius >= Math.abs(diff)) {
-        search(q, further, radius, distanceFn, neighbors);
-      }
+      System.arraycopy(key[i], 0, points, i * d, d);
     }
+    this.tree = new FlatKDTree(points, d, distance);
   }
 
   public Neighbor nearest(double[] q) {
-    return nearest(q, this.distance);
+    return nearest(q, tree.distance());
   }
 
   public Neighbor nearest(double[] q, Distance distanceFn) {
-    Neighbor neighbor = new Neighbor(null, 0, Double.MAX_VALUE);
-    search(q, root, distanceFn, neighbor);
-    neighbor.distance = Math.sqrt(neighbor.distance);
-    return neighbor;
+    final int[] neighbors = new int[1];
+    final double[] distances = new double[1];
+    tree.knn(q, 0, 1, distanceFn, neighbors, distances);
+    return new Neighbor(keys[neighbors[0]], neighbors[0], Math.sqrt(distances[0]));
   }
 
   public Neighbor[] knn(double[] q, int k) {
-    return knn(q, k, this.distance);
+    return knn(q, k, tree.distance());
   }
 
+  /** Returns the k nearest neighbors of q, sorted by decreasing distance. */
   public Neighbor[] knn(double[] q, int k, Distance distanceFn) {
     if (k <= 0) {
       throw new IllegalArgumentException("Value of k must be at least 1, but got: " + k);
@@ -282,23 +81,19 @@ public class KDTree {
               + keys.length
               + ")");
     }
-
-    Neighbor neighbor = new Neighbor(null, 0, Double.MAX_VALUE);
-    Neighbor[] neighbors = new Neighbor[k];
-    HeapSelect<Neighbor> heap = new HeapSelect<>(neighbors);
+    final int[] indexes = new int[k];
+    final double[] distances = new double[k];
+    tree.knn(q, 0, k, distanceFn, indexes, distances);
+    final Neighbor[] neighbors = new Neighbor[k];
     for (int i = 0; i < k; i++) {
-      heap.add(neighbor);
-      neighbor = new Neighbor(null, 0, Double.MAX_VALUE);
+      final int j = k - 1 - i;
+      neighbors[i] = new Neighbor(keys[indexes[j]], indexes[j], distances[j]);
     }
-
-    search(q, root, distanceFn, heap);
-    heap.sort();
-
     return neighbors;
   }
 
   public void range(double[] q, double radius, List<Neighbor> neighbors) {
-    range(q, radius, this.distance, neighbors);
+    range(q, radius, tree.distance(), neighbors);
   }
 
   public void range(
@@ -306,17 +101,23 @@ public class KDTree {
     if (radius <= 0.0) {
       throw new IllegalArgumentException("Invalid radius: " + radius);
     }
-    search(q, root, radius, distanceFunction, neighbors);
+    final int[] indexes = new int[keys.length];
+    final int count = tree.range(q, 0, radius, distanceFunction, indexes);
+    for (int i = 0; i < count; i++) {
+      final double[] key = keys[indexes[i]];
+      neighbors.add(new Neighbor(key, indexes[i], distanceFunction.distance(q, key)));
+    }
   }
 
   public int countInRange(double[] q, double radius) {
-    return countInRange(q, radius, this.distance);
+    return countInRange(q, radius, tree.distance());
   }
 
   public int countInRange(double[] q, double radius, Distance distanceFunction) {
-    List<Neighbor> nn = new ArrayList<>();
-    range(q, radius, distanceFunction, nn);
-    return nn.size();
+    if (radius <= 0.0) {
+      throw new IllegalArgumentException("Invalid radius: " + radius);
+    }
+    return tree.countInRange(q, 0, radius, distanceFunction);
   }
 
   /** The distance metrics that can be used to query the kd-tree. */
@@ -336,30 +137,6 @@ public class KDTree {
     }
   }
 
-  /** The root in the KD-tree. */
-  static class Node {
-
-    /** Number of dataset stored in this node. */
-    int count;
-    /** The smallest point index stored in this node. */
-    int index;
-    /** The index of coordinate used to split this node. */
-    int split;
-    /** The cutoff used to split the specific coordinate. */
-    double cutoff;
-    /** The child node which values of split coordinate is less than the cutoff value. */
-    Node lower;
-    /**
-     * The child node which values of split coordinate is greater than or equal to the cutoff value.
-     */
-    Node upper;
-
-    /** If the node is a leaf node. */
-    boolean isLeaf() {
-      return lower == null && upper == null;
-    }
-  }
-
   public static class Neighbor implements Comparable<Neighbor> {
 
     /** The key of neighbor. */
@@ -0,0 +1,72 @@
+package corrsketches.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of reusable scratch buffers that estimators can use instead of allocating temporary arrays
+ * on every call. Buffers are handed out in a stack-like fashion: a caller takes a {@link #mark()},
+ * requests as many buffers as it needs, and gives them back with {@link #release(long)} before
+ * returning. Buffers grow as needed and are never shrunk, so their lengths may be larger than the
+ * requested size and their contents are undefined.
+ *
+ * <p>A workspace is not thread-safe. Use {@link #local()} to get the workspace of the current
+ * thread.
+ */
+public final class Workspace {
+
+  private static final ThreadLocal<Workspace> LOCAL = ThreadLocal.withInitial(Workspace::new);
+
+  private double[][] doubleBuffers = new double[8][];
+  private int[][] intBuffers = new int[4][];
+  private int nextDouble = 0;
+  private int nextInt = 0;
+
+  /** Returns the workspace owned by the current thread. */
+  public static Workspace local() {
+    return LOCAL.get();
+  }
+
+  /** Returns a position that can be later passed to {@link #release(long)}. */
+  public long mark() {
+    return ((long) nextDouble << 32) | nextInt;
+  }
+
+  /** Gives back all buffers handed out since the given {@link #mark()} was taken. */
+  public void release(long mark) {
+    this.nextDouble = (int) (mark >>> 32);
+    this.nextInt = (int) mark;
+  }
+
+  /** Returns a buffer with at least {@code minLength} elements. */
+  public double[] doubles(int minLength) {
+    if (nextDouble == doubleBuffers.length) {
+      doubleBuffers = Arrays.copyOf(doubleBuffers, 2 * doubleBuffers.length);
+    }
+    double[] buffer = doubleBuffers[nextDouble];
+    if (buffer == null || buffer.length < minLength) {
+      buffer = new double[grow(buffer == null ? 0 : buffer.length, minLength)];
+      doubleBuffers[nextDouble] = buffer;
+    }
+    nextDouble++;
+    return buffer;
+  }
+
+  /** Returns a buffer with at least {@code minLength} elements. */
+  public int[] ints(int minLength) {
+    if (nextInt == intBuffers.length) {
+      intBuffers = Arrays.copyOf(intBuffers, 2 * intBuffers.length);
+    }
+    int[] buffer = intBuffers[nextInt];
+    if (buffer == null || buffer.length < minLength) {
+      buffer = new int[grow(buffer == null ? 0 : buffer.length, minLength)];
+      intBuffers[nextInt] = buffer;
+    }
+    nextInt++;
+    return buffer;
+  }
+
+  private static int grow(int currentLength, int minLength) {
+    final long grown = currentLength + (long) (currentLength >> 1);
+    return Math.max(minLength, (int) Math.min(grown, Integer.MAX_VALUE - 8L));
+  }
+}
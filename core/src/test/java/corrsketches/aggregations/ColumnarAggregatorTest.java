@@ -0,0 +1,101 @@
+package corrsketches.aggregations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ColumnarAggregatorTest {
+
+  @Test
+  public void shouldComputeSameAggregatesAsAggregateFunctions() {
+    final List<AggregateFunction> functions =
+        Arrays.asList(
+            AggregateFunction.FIRST,
+            AggregateFunction.LAST,
+            AggregateFunction.MAX,
+            AggregateFunction.MIN,
+            AggregateFunction.SUM,
+            AggregateFunction.MEAN,
+            AggregateFunction.COUNT);
+    final Random random = new Random(123);
+    for (AggregateFunction function : functions) {
+      final ColumnarAggregator aggregator = new ColumnarAggregator(function, 2);
+      final double[][] data = new double[50][];
+      final int[] slots = new int[data.length];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = new double[1 + random.nextInt(20)];
+        for (int j = 0; j < data[i].length; j++) {
+          data[i][j] = random.nextGaussian();
+        }
+        slots[i] = aggregator.add(data[i][0]);
+      }
+      // interleave the updates of all slots
+      for (int j = 1; j < 20; j++) {
+        for (int i = 0; i < data.length; i++) {
+          if (j < data[i].length) {
+            aggregator.update(slots[i], data[i][j]);
+          }
+        }
+      }
+      for (int i = 0; i < data.length; i++) {
+        assertEquals(function.aggregate(data[i]), aggregator.aggregatedValue(slots[i]));
+      }
+    }
+  }
+
+  @Test
+  public void shouldComputeMostFrequentValue() {
+    final Random random = new Random(123);
+    final ColumnarAggregator aggregator = new ColumnarAggregator(AggregateFunction.MOST_FREQUENT);
+    for (int t = 0; t < 100; t++) {
+      final int slot = aggregator.add(0);
+      final Int2IntOpenHashMap counts = new Int2IntOpenHashMap();
+      counts.addTo(0, 1);
+      int maxCount = 1;
+      final int numValues = 1 + random.nextInt(200);
+      for (int i = 0; i < numValues; i++) {
+        final int value = random.nextInt(1 + t);
+        aggregator.update(slot, value);
+        maxCount = Math.max(maxCount, counts.addTo(value, 1) + 1);
+      }
+      assertEquals(maxCount, counts.get((int) aggregator.aggregatedValue(slot)));
+      aggregator.release(slot);
+    }
+
+    double[] x = {-1, -1, 0, 0, 0, 0, 1};
+    final int slot = aggregator.add(x[0]);
+    for (int i = 1; i < x.length; i++) {
+      aggregator.update(slot, x[i]);
+    }
+    assertEquals(0, aggregator.aggregatedValue(slot));
+  }
+
+  @Test
+  public void shouldReuseReleasedSlots() {
+    final ColumnarAggregator aggregator = new ColumnarAggregator(AggregateFunction.COUNT, 1);
+    final int a = aggregator.add(1);
+    final int b = aggregator.add(2);
+    aggregator.update(a, 1);
+    assertEquals(2, aggregator.size());
+
+    aggregator.release(a);
+    assertEquals(1, aggregator.size());
+    final int c = aggregator.add(3);
+    assertEquals(a, c);
+    assertEquals(1, aggregator.aggregatedValue(c));
+    assertEquals(1, aggregator.aggregatedValue(b));
+  }
+
+  @Test
+  public void shouldNotUpdateNoneAggregates() {
+    final ColumnarAggregator aggregator = new ColumnarAggregator(AggregateFunction.NONE);
+    final int slot = aggregator.add(42);
+    assertEquals(42, aggregator.aggregatedValue(slot));
+    assertThrows(IllegalStateException.class, () -> aggregator.update(slot, 1));
+  }
+}
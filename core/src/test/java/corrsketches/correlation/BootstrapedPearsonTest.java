@@ -1,9 +1,13 @@
 package corrsketches.correlation;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import corrsketches.correlation.BootstrapedPearson.BootstrapEstimate;
 import corrsketches.statistics.Stats;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.Test;
 
 public class BootstrapedPearsonTest {
@@ -49,4 +53,35 @@ public class BootstrapedPearsonTest {
 
     System.out.println(Arrays.toString(estimates));
   }
+
+  @Test
+  public void shouldComputeSameEstimatesRegardlessOfTheNumberOfThreads() {
+    final Random r = new Random(7);
+    final int n = 1000;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int j = 0; j < n; j++) {
+      x[j] = r.nextGaussian();
+      y[j] = 0.5 * x[j] + r.nextGaussian();
+    }
+
+    BootstrapEstimate expected = BootstrapedPearson.estimate(x, y);
+    for (int threads : new int[] {1, 3, 8}) {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        BootstrapEstimate actual = BootstrapedPearson.estimate(x, y, pool);
+        assertEquals(expected.corrBsMean, actual.corrBsMean);
+        assertEquals(expected.corrBsMedian, actual.corrBsMedian);
+        assertEquals(expected.lowerBound, actual.lowerBound);
+        assertEquals(expected.upperBound, actual.upperBound);
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    BootstrapEstimate simple = BootstrapedPearson.simpleEstimate(x, y);
+    assertTrue(simple.lowerBound <= simple.corrBsMedian);
+    assertTrue(simple.corrBsMedian <= simple.upperBound);
+    assertEquals(simple.corrEst, simple.corrBsMean, 0.01);
+  }
 }
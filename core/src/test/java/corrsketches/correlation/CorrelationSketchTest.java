@@ -391,6 +391,14 @@ public class CorrelationSketchTest {
     assertThat(join.right.values).containsOnlyOnce(1);
     assertThat(join.right.values).containsOnlyOnce(2);
     assertThat(join.right.values).containsOnlyOnce(3);
+
+    // categorical values should keep their dictionary codes after the join
+    assertThat(join.left.isDictionaryEncoded()).isTrue();
+    assertThat(join.right.isDictionaryEncoded()).isTrue();
+    assertThat(join.left.codes).containsOnly(join.left.codes[0]);
+    assertThat(join.right.codes).containsExactlyInAnyOrder(0, 1, 2);
+    assertThat(MutualInformation.ofCategorical(join.left, join.right).value)
+        .isEqualTo(MutualInformation.ofCategorical(join.left.values, join.right.values).value);
   }
 
   @Test
@@ -0,0 +1,71 @@
+package corrsketches.correlation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import corrsketches.correlation.BootstrapedPearson.BootstrapEstimate;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class EstimatorSuiteTest {
+
+  @Test
+  public void shouldComputeSameEstimatesAsIndividualEstimators() {
+    Random rng = new Random(123);
+    int n = 500;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      // round values to create many ties
+      x[i] = Math.round(rng.nextGaussian() * 5);
+      y[i] = Math.round(x[i] + rng.nextGaussian() * 5);
+    }
+    double[] xCopy = x.clone();
+    double[] yCopy = y.clone();
+
+    EstimatorSuite suite =
+        EstimatorSuite.of(
+            CorrelationType.PEARSONS,
+            CorrelationType.SPEARMANS,
+            CorrelationType.RIN,
+            CorrelationType.ROBUST_QN,
+            CorrelationType.PM1_BOOTSTRAP,
+            CorrelationType.QCR,
+            CorrelationType.KENDALL);
+    EstimatorSuite.Results results = suite.compute(x, y);
+
+    final double delta = 1e-10;
+    assertThat(results.value(CorrelationType.PEARSONS))
+        .isCloseTo(PearsonCorrelation.coefficient(x, y), within(delta));
+    assertThat(results.value(CorrelationType.SPEARMANS))
+        .isCloseTo(SpearmanCorrelation.coefficient(x, y), within(delta));
+    assertThat(results.value(CorrelationType.RIN))
+        .isCloseTo(RinCorrelation.coefficient(x, y), within(delta));
+    assertThat(results.value(CorrelationType.ROBUST_QN))
+        .isCloseTo(QnCorrelation.correlation(x, y), within(delta));
+    assertThat(results.value(CorrelationType.QCR))
+        .isCloseTo(QCRCorrelation.coefficient(x, y), within(delta));
+    assertThat(results.value(CorrelationType.KENDALL))
+        .isCloseTo(KendallTauCorrelation.correlation(x, y), within(delta));
+
+    BootstrapEstimate expectedPm1 = BootstrapedPearson.estimate(x, y);
+    BootstrapEstimate pm1 = results.pm1();
+    assertThat(pm1.corrBsMean).isCloseTo(expectedPm1.corrBsMean, within(delta));
+    assertThat(pm1.lowerBound).isCloseTo(expectedPm1.lowerBound, within(delta));
+    assertThat(pm1.upperBound).isCloseTo(expectedPm1.upperBound, within(delta));
+
+    // inputs must not be modified
+    assertThat(x).containsExactly(xCopy);
+    assertThat(y).containsExactly(yCopy);
+  }
+
+  @Test
+  public void shouldOnlyReturnEstimatesIncludedInTheSuite() {
+    EstimatorSuite suite = EstimatorSuite.of(CorrelationType.PEARSONS);
+    EstimatorSuite.Results results =
+        suite.compute(new double[] {1, 2, 3, 4}, new double[] {2, 4, 6, 8});
+    assertThat(results.value(CorrelationType.PEARSONS)).isCloseTo(1.0, within(1e-10));
+    assertThrows(IllegalArgumentException.class, () -> results.get(CorrelationType.SPEARMANS));
+  }
+}
@@ -3,6 +3,7 @@ package corrsketches.correlation;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.byLessThan;
 
+import corrsketches.util.Workspace;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -54,6 +55,71 @@ public class KendallTauCorrelationTest {
     assertThat(1.0 >= coefficient && -1.0 <= coefficient).isTrue();
   }
 
+  @Test
+  public void shouldMatchQuadraticTauBWhenReusingWorkspace() {
+    Random rng = new Random(42);
+    Workspace workspace = new Workspace();
+    for (int n : new int[] {1000, 10, 257}) {
+      double[] x = new double[n];
+      double[] y = new double[n];
+      for (int i = 0; i < n; i++) {
+        // round values to create ties in x, y and (x, y)
+        x[i] = Math.round(rng.nextGaussian() * 3);
+        y[i] = Math.round(x[i] - rng.nextGaussian() * 3);
+      }
+      double[] xCopy = x.clone();
+      double[] yCopy = y.clone();
+
+      assertThat(KendallTauCorrelation.correlation(x, y, workspace))
+          .isEqualTo(quadraticTauB(x, y), byLessThan(1e-12));
+      assertThat(x).containsExactly(xCopy);
+      assertThat(y).containsExactly(yCopy);
+    }
+  }
+
+  @Test
+  public void shouldOrderSignedZerosAndNaNAsDoubleCompare() {
+    Random rng = new Random(7);
+    double[] values = {-0.0, 0.0, Double.NaN, -1.0, 1.0};
+    for (int n : new int[] {10, 257, 1000}) {
+      double[] x = new double[n];
+      double[] y = new double[n];
+      for (int i = 0; i < n; i++) {
+        // -0.0 and 0.0 are mixed within runs tied under ==, and NaN is never equal to itself
+        x[i] = values[rng.nextInt(values.length)];
+        y[i] = values[rng.nextInt(values.length)];
+      }
+      double expected = quadraticTauB(x, y);
+      assertThat(KendallTauCorrelation.correlation(x, y)).isEqualTo(expected, byLessThan(1e-12));
+      EstimatorSuite suite = EstimatorSuite.of(CorrelationType.KENDALL);
+      assertThat(suite.compute(x, y).value(CorrelationType.KENDALL))
+          .isEqualTo(expected, byLessThan(1e-12));
+    }
+
+    // as Double.compare, -0.0 is smaller than 0.0 and NaN is greater than any other value
+    double[] y = {1.0, 2.0, 3.0, 4.0};
+    assertThat(KendallTauCorrelation.correlation(new double[] {-0.0, 0.0, 1.0, 2.0}, y))
+        .isEqualTo(1.0);
+    assertThat(KendallTauCorrelation.correlation(new double[] {1.0, 2.0, 3.0, Double.NaN}, y))
+        .isEqualTo(1.0);
+  }
+
+  private static double quadraticTauB(double[] x, double[] y) {
+    long concordantMinusDiscordant = 0;
+    long nonTiedX = 0;
+    long nonTiedY = 0;
+    for (int i = 0; i < x.length; i++) {
+      for (int j = i + 1; j < x.length; j++) {
+        int sx = Double.compare(x[i], x[j]);
+        int sy = Double.compare(y[i], y[j]);
+        concordantMinusDiscordant += Integer.signum(sx) * Integer.signum(sy);
+        nonTiedX += sx != 0 ? 1 : 0;
+        nonTiedY += sy != 0 ? 1 : 0;
+      }
+    }
+    return concordantMinusDiscordant / Math.sqrt(nonTiedX * (double) nonTiedY);
+  }
+
   @Test
   public void testMI() throws Exception {
 
@@ -0,0 +1,109 @@
+package corrsketches.correlation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import corrsketches.Column;
+import corrsketches.ColumnType;
+import corrsketches.CorrelationSketch;
+import corrsketches.CorrelationSketch.ImmutableCorrelationSketch;
+import corrsketches.MultiColumnCorrelationSketch;
+import corrsketches.SketchType;
+import corrsketches.aggregations.AggregateFunction;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class MultiColumnCorrelationSketchTest {
+
+  @Test
+  public void shouldCreateSameSketchesAsSingleColumnSketches() {
+    final Random random = new Random(42);
+    final int n = 5000;
+    final int[] keys = new int[n];
+    final double[] x = new double[n];
+    final double[] y = new double[n];
+    final double[] z = new double[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = random.nextInt(2000);
+      x[i] = random.nextGaussian();
+      y[i] = x[i] + random.nextGaussian();
+      z[i] = random.nextInt(5);
+    }
+    final List<Column> columns =
+        Arrays.asList(Column.numerical(x), Column.numerical(y), Column.categorical(z));
+
+    for (SketchType type : Arrays.asList(SketchType.KMV, SketchType.GKMV)) {
+      final double budget = type == SketchType.KMV ? 128 : 0.1;
+      for (AggregateFunction function : AggregateFunction.all()) {
+        final MultiColumnCorrelationSketch sketch =
+            MultiColumnCorrelationSketch.builder()
+                .sketchType(type, budget)
+                .aggregateFunction(function)
+                .build(keys, columns);
+        assertEquals(3, sketch.numColumns());
+
+        for (int c = 0; c < columns.size(); c++) {
+          final ImmutableCorrelationSketch expected =
+              CorrelationSketch.builder()
+                  .sketchType(type, budget)
+                  .aggregateFunction(function)
+                  .build(keys, columns.get(c))
+                  .toImmutable();
+          final ImmutableCorrelationSketch actual = sketch.toImmutable(c);
+          assertArrayEquals(expected.getKeys(), actual.getKeys());
+          assertArrayEquals(expected.getValues(), actual.getValues());
+          assertEquals(expected.valuesType(), actual.valuesType());
+        }
+        final Estimate expected =
+            CorrelationSketch.builder()
+                .sketchType(type, budget)
+                .aggregateFunction(function)
+                .build(keys, columns.get(0))
+                .toImmutable()
+                .correlationTo(
+                    CorrelationSketch.builder()
+                        .sketchType(type, budget)
+                        .aggregateFunction(function)
+                        .build(keys, columns.get(1))
+                        .toImmutable());
+        final Estimate actual = sketch.toImmutable(0).correlationTo(sketch.toImmutable(1));
+        assertEquals(expected.value, actual.value);
+      }
+    }
+  }
+
+  @Test
+  public void shouldLeaveOutKeysWithoutValues() {
+    final int[] keys = {1, 2, 3, 4, 1, 2};
+    final double[] x = {1, 2, 3, 4, 5, 6};
+    final double[] y = {1, Double.NaN, 3, Double.NaN, Double.NaN, Double.NaN};
+    final MultiColumnCorrelationSketch sketch =
+        MultiColumnCorrelationSketch.builder()
+            .aggregateFunction(AggregateFunction.SUM)
+            .build(keys, Arrays.asList(Column.numerical(x), Column.numerical(y)));
+
+    assertArrayEquals(new int[] {1, 2, 3, 4}, sketch.getKeys());
+    assertArrayEquals(new double[] {6, 8, 3, 4}, sketch.getValues(0));
+    assertEquals(4, sketch.toImmutable(0).getKeys().length);
+
+    final ImmutableCorrelationSketch ySketch = sketch.toImmutable(1);
+    assertArrayEquals(new int[] {1, 3}, ySketch.getKeys());
+    assertArrayEquals(new double[] {1, 3}, ySketch.getValues());
+    assertEquals(ColumnType.NUMERICAL, ySketch.valuesType());
+    assertTrue(Double.isNaN(sketch.getValues(1)[1]));
+  }
+
+  @Test
+  public void shouldRejectUnsupportedSketches() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> MultiColumnCorrelationSketch.builder().sketchType(SketchType.TUPSK, 256));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> MultiColumnCorrelationSketch.builder().aggregateFunction(AggregateFunction.NONE));
+  }
+}
@@ -98,6 +98,24 @@ public class MutualInformationDCTest {
     assertThat(MutualInformationDC.mi(d3, c14, k)).isEqualTo(0, byLessThan(DELTA_NOISE));
   }
 
+  @Test
+  public void shouldNotDependOnTheValuesOfHighCardinalitySymbols() {
+    // large enough to compute the groups in parallel
+    final int n = 50000;
+    Random rng = new Random(42);
+    int[] ids = new int[n];
+    int[] hashes = new int[n];
+    double[] c = new double[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = rng.nextInt(5000);
+      hashes[i] = ids[i] * 0x9E3779B9; // distinct symbols that are not dense ids
+      c[i] = rng.nextDouble() + 0.001 * ids[i];
+    }
+    double expected = MutualInformationDC.miRaw(ids, c, 3);
+    assertThat(MutualInformationDC.miRaw(hashes, c, 3)).isEqualTo(expected);
+    assertThat(MutualInformationDC.miRaw(ids, c, 3)).isEqualTo(expected);
+  }
+
   /**
    * This tests compares the current output with previous saved outputs stored in a snapshot file.
    * This is intended to capture any unintended changes to the output. If the changes are intended,
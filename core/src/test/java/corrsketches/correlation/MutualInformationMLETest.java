@@ -3,6 +3,7 @@ package corrsketches.correlation;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.byLessThan;
 
+import corrsketches.Column;
 import org.junit.jupiter.api.Test;
 
 public class MutualInformationMLETest {
@@ -42,6 +43,46 @@ public class MutualInformationMLETest {
     assertThat(mi.nx()).isEqualTo(3);
   }
 
+  @Test
+  public void shouldComputeMutualInformationOfHighCardinalityVariables() {
+    // most cells of the co-occurrence matrix are empty, so only non-zero cells are counted
+    final int n = 10000;
+    int[] ids = new int[n];
+    int[] pairs = new int[n];
+    int[] constant = new int[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = i * 31;
+      pairs[i] = i / 2;
+    }
+
+    assertThat(MutualInformationMLE.mi(ids, ids).value).isCloseTo(Math.log(n), byLessThan(DELTA));
+    assertThat(MutualInformationMLE.mi(ids, pairs).value)
+        .isCloseTo(Math.log(n / 2), byLessThan(DELTA));
+    assertThat(MutualInformationMLE.mi(ids, constant).value).isCloseTo(0, byLessThan(DELTA));
+  }
+
+  @Test
+  public void shouldComputeSameMutualInformationFromDictionaryCodes() {
+    double[] x = new double[] {7, 7, 7, 2, 2, 2, 2, 2, 9, 9};
+    double[] y = new double[] {1, 5, 5, 3, 5, 3, 5, 3, 1, 5};
+    Column xc = Column.dictionaryEncoded(x);
+    Column yc = Column.dictionaryEncoded(y);
+    assertThat(xc.dictionarySize).isEqualTo(3);
+    assertThat(yc.dictionarySize).isEqualTo(3);
+
+    final MIEstimate expected =
+        MutualInformationMLE.mi(xc.valuesAsIntArray(), yc.valuesAsIntArray());
+    final MIEstimate mi = MutualInformationMLE.mi(xc.codes, 3, yc.codes, 3);
+    assertThat(mi.value).isEqualTo(expected.value);
+    assertThat(mi.nx()).isEqualTo(expected.nx());
+    assertThat(mi.ny()).isEqualTo(expected.ny());
+
+    // codes that do not appear in the data are ignored
+    final MIEstimate withUnusedCodes = MutualInformationMLE.mi(xc.codes, 100, yc.codes, 50);
+    assertThat(withUnusedCodes.value).isEqualTo(expected.value);
+    assertThat(withUnusedCodes.nx()).isEqualTo(expected.nx());
+  }
+
   @Test
   public void shouldComputeCoOccurrenceMatrix() {
     int[] x = new int[] {1, 2, 3};
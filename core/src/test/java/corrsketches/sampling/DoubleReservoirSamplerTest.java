@@ -0,0 +1,64 @@
+package corrsketches.sampling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+public class DoubleReservoirSamplerTest {
+
+  @Test
+  public void shouldKeepAllItemsUntilReservoirIsFull() {
+    DoubleReservoirSampler sampler = new DoubleReservoirSampler(1000);
+    for (int i = 0; i < 10; i++) {
+      sampler.update(i);
+    }
+    DoubleList values = sampler.values();
+    assertEquals(10, values.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, values.getDouble(i));
+    }
+  }
+
+  @Test
+  public void shouldSampleItemsUniformly() {
+    final int n = 100;
+    final int k = 10;
+    final int trials = 20000;
+    final int[] counts = new int[n];
+    final SplittableRandom random = new SplittableRandom(123);
+    for (int t = 0; t < trials; t++) {
+      DoubleReservoirSampler sampler = new DoubleReservoirSampler(k, random);
+      for (int i = 0; i < n; i++) {
+        sampler.update(i);
+      }
+      DoubleList values = sampler.values();
+      assertEquals(k, values.size());
+      for (int i = 0; i < k; i++) {
+        counts[(int) values.getDouble(i)]++;
+      }
+    }
+    // each item should be included with probability k/n
+    final double expected = trials * k / (double) n;
+    for (int i = 0; i < n; i++) {
+      assertTrue(Math.abs(counts[i] - expected) < 0.1 * expected, "count of item " + i);
+    }
+  }
+
+  @Test
+  public void shouldProduceSameSamplesForSameSeed() {
+    SamplerProvider provider1 = Samplers.reservoir(8, 42);
+    SamplerProvider provider2 = Samplers.reservoir(8, 42);
+    DoubleSampler[] samplers1 = {provider1.get(), provider1.get()};
+    DoubleSampler[] samplers2 = {provider2.get(), provider2.get()};
+    for (int i = 0; i < 1000; i++) {
+      samplers1[i % 2].update(i);
+      samplers2[i % 2].update(i);
+    }
+    for (int s = 0; s < 2; s++) {
+      assertEquals(samplers1[s].values(), samplers2[s].values());
+    }
+  }
+}
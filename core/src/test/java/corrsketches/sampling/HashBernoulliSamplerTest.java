@@ -0,0 +1,75 @@
+package corrsketches.sampling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import org.junit.jupiter.api.Test;
+
+public class HashBernoulliSamplerTest {
+
+  @Test
+  public void shouldSampleSameItemsForSameKey() {
+    HashBernoulliSampler a = new HashBernoulliSampler(0.3, 42);
+    HashBernoulliSampler b = new HashBernoulliSampler(0.3, 42);
+    for (int i = 0; i < 1000; i++) {
+      a.update(i);
+      b.update(i);
+    }
+    assertEquals(a.values(), b.values());
+  }
+
+  @Test
+  public void shouldIncludeItemsWithGivenProbability() {
+    final double prob = 0.1;
+    final int numKeys = 1000;
+    final int itemsPerKey = 100;
+    long sampled = 0;
+    final int[] countsByOrdinal = new int[itemsPerKey];
+    for (int key = 0; key < numKeys; key++) {
+      HashBernoulliSampler sampler = new HashBernoulliSampler(prob, key);
+      for (int i = 0; i < itemsPerKey; i++) {
+        sampler.update(i);
+      }
+      final DoubleList values = sampler.values();
+      sampled += values.size();
+      for (int i = 0; i < values.size(); i++) {
+        countsByOrdinal[(int) values.getDouble(i)]++;
+      }
+    }
+    final double expected = prob * numKeys * itemsPerKey;
+    assertEquals(expected, sampled, 0.05 * expected);
+    // the first item should be sampled with the same probability as the other items
+    assertEquals(prob * numKeys, countsByOrdinal[0], 0.3 * prob * numKeys);
+  }
+
+  @Test
+  public void shouldHandleExtremeProbabilities() {
+    HashBernoulliSampler all = new HashBernoulliSampler(1.0, 7);
+    HashBernoulliSampler none = new HashBernoulliSampler(0.0, 7);
+    for (int i = 0; i < 100; i++) {
+      all.update(i);
+      none.update(i);
+    }
+    assertEquals(100, all.values().size());
+    assertEquals(0, none.values().size());
+  }
+
+  @Test
+  public void shouldCreateSamplersWithoutKeyHash() {
+    KeyedSamplerProvider provider1 = Samplers.hashBernoulli(0.5);
+    KeyedSamplerProvider provider2 = Samplers.hashBernoulli(0.5);
+    for (int s = 0; s < 3; s++) {
+      // samplers created without a key use the creation order as the key hash
+      DoubleSampler a = provider1.get();
+      DoubleSampler b = (DoubleSampler) provider2.create();
+      DoubleSampler expected = provider1.get(s);
+      for (int i = 0; i < 100; i++) {
+        a.update(i);
+        b.update(i);
+        expected.update(i);
+      }
+      assertEquals(expected.values(), a.values());
+      assertEquals(expected.values(), b.values());
+    }
+  }
+}
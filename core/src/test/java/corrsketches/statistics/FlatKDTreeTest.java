@@ -0,0 +1,65 @@
+package corrsketches.statistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import corrsketches.util.FlatKDTree;
+import corrsketches.util.KDTree;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class FlatKDTreeTest {
+
+  @Test
+  public void shouldFindSameNeighborsAsLinearSearch() {
+    Random random = new Random(0);
+    final int n = 500;
+    for (int d = 1; d <= 3; d++) {
+      double[][] rows = new double[n][d];
+      double[] flat = new double[n * d];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < d; j++) {
+          // mix of discrete and continuous values to create duplicate points
+          rows[i][j] = random.nextBoolean() ? random.nextInt(3) : random.nextGaussian();
+          flat[i * d + j] = rows[i][j];
+        }
+      }
+      for (KDTree.Distance distance : KDTree.Distance.values()) {
+        FlatKDTree tree = new FlatKDTree(flat, d, distance);
+        assertThat(tree.size()).isEqualTo(n);
+
+        final int k = 5;
+        int[] neighbors = new int[k];
+        double[] distances = new double[k];
+        int[] inRange = new int[n];
+        for (int i = 0; i < n; i++) {
+          double[] expected = new double[n];
+          for (int j = 0; j < n; j++) {
+            expected[j] = distance.distance(rows[i], rows[j]);
+          }
+          double[] sortedExpected = expected.clone();
+          Arrays.sort(sortedExpected);
+
+          tree.knn(flat, i * d, k, neighbors, distances);
+          for (int j = 0; j < k; j++) {
+            assertThat(distances[j]).isEqualTo(sortedExpected[j]);
+            assertThat(expected[neighbors[j]]).isEqualTo(distances[j]);
+          }
+
+          for (double radius : new double[] {Math.nextUp(0), 0.1, 1}) {
+            int count = 0;
+            for (int j = 0; j < n; j++) {
+              count += expected[j] <= radius ? 1 : 0;
+            }
+            assertThat(tree.countInRange(flat, i * d, radius)).isEqualTo(count);
+            assertThat(tree.range(flat, i * d, radius, distance, inRange)).isEqualTo(count);
+            for (int j = 0; j < count; j++) {
+              assertThat(expected[inRange[j]]).isLessThanOrEqualTo(radius);
+            }
+            assertThat(Arrays.stream(inRange, 0, count).distinct().count()).isEqualTo(count);
+          }
+        }
+      }
+    }
+  }
+}
@@ -5,6 +5,9 @@ import static corrsketches.statistics.NearestNeighbors1D.kthNearest;
 import static corrsketches.statistics.NearestNeighbors1D.kthNearestNonZero;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import corrsketches.statistics.NearestNeighbors1D.NearestNeighbor;
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 public class NearestNeighbors1DTest {
@@ -139,4 +142,33 @@ public class NearestNeighbors1DTest {
     assertThat(kthNearest(x, targetIdx, 5).distance).isEqualTo(12);
     assertThat(kthNearest(x, targetIdx, 6).distance).isEqualTo(12);
   }
+
+  @Test
+  public void shouldComputeKthNearestOfAllPointsInOneSweep() {
+    Random rng = new Random(7);
+    NearestNeighbor nn = new NearestNeighbor();
+    for (int run = 0; run < 1000; run++) {
+      int n = 2 + rng.nextInt(50);
+      double[] x = new double[n];
+      for (int i = 0; i < n; i++) {
+        // use few distinct values in some runs to create many ties
+        x[i] = run % 2 == 0 ? rng.nextGaussian() : rng.nextInt(5);
+      }
+      if (run % 10 == 0) {
+        x[rng.nextInt(n)] = Double.POSITIVE_INFINITY;
+      }
+      Arrays.sort(x);
+      int k = 1 + rng.nextInt(n + 1);
+
+      double[] distances = new double[n];
+      int[] neighbors = new int[n];
+      NearestNeighbors1D.kthNearestAll(x, n, k, distances, neighbors);
+      for (int i = 0; i < n; i++) {
+        kthNearest(x, i, k, nn);
+        assertThat(distances[i]).isEqualTo(nn.distance);
+        assertThat(x[neighbors[i]]).isEqualTo(nn.kthNearest);
+        assertThat(neighbors[i] < i).isEqualTo(nn.left);
+      }
+    }
+  }
 }
@@ -0,0 +1,57 @@
+package corrsketches.statistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class NearestNeighbors2DTest {
+
+  @Test
+  public void shouldMatchBruteForceChebyshevSearch() {
+    Random random = new Random(0);
+    for (int n : new int[] {1, 5, 100, 1000}) {
+      double[] x = new double[n];
+      double[] y = new double[n];
+      for (int i = 0; i < n; i++) {
+        // mix of discrete and continuous values to create ties
+        x[i] = random.nextBoolean() ? random.nextInt(4) : random.nextGaussian();
+        y[i] = random.nextBoolean() ? random.nextInt(3) : random.nextGaussian();
+      }
+      NearestNeighbors2D neighbors = new NearestNeighbors2D(x, y);
+      double[] heap = new double[n];
+      for (int i = 0; i < n; i++) {
+        double[] distances = new double[n];
+        for (int j = 0; j < n; j++) {
+          distances[j] = Math.max(Math.abs(x[i] - x[j]), Math.abs(y[i] - y[j]));
+        }
+        Arrays.sort(distances);
+        for (int k : new int[] {1, 2, 4}) {
+          if (k <= n) {
+            assertThat(neighbors.kthNearestDistance(i, k, heap)).isEqualTo(distances[k - 1]);
+          }
+        }
+        for (double radius : new double[] {0, Math.nextUp(0), 0.5, 1.0}) {
+          int expected = 0;
+          for (double d : distances) {
+            if (d <= radius) {
+              expected++;
+            }
+          }
+          assertThat(neighbors.countInRange(i, radius)).isEqualTo(expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldCountPointsInRadiusUsingBinarySearch() {
+    double[] sorted = new double[] {1, 2, 2, 3, 5, 8};
+    assertThat(NearestNeighbors1D.countInRadius(sorted, 2, 0)).isEqualTo(2);
+    assertThat(NearestNeighbors1D.countInRadius(sorted, 2, 1)).isEqualTo(4);
+    assertThat(NearestNeighbors1D.countInRadius(sorted, 4, 1)).isEqualTo(2);
+    assertThat(NearestNeighbors1D.countInRadius(sorted, 0, 0.5)).isEqualTo(0);
+    assertThat(NearestNeighbors1D.countInRadius(sorted, 8, 10)).isEqualTo(6);
+  }
+}
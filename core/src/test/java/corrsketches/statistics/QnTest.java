@@ -2,6 +2,7 @@ package corrsketches.statistics;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import corrsketches.util.Workspace;
 import java.util.Random;
 import org.junit.jupiter.api.Test;
 
@@ -160,4 +161,19 @@ public class QnTest {
     iw = new int[] {2, 2, 2, 2};
     assertEquals(3, Qn.weightedHighMedian(x, iw, x.length));
   }
+
+  @Test
+  public void shouldComputeSameEstimateWhenReusingWorkspace() {
+    Random random = new Random(0);
+    Workspace workspace = new Workspace();
+    for (int n : new int[] {1000, 15, 200}) {
+      double[] x = new double[n];
+      for (int i = 0; i < n; i++) {
+        x[i] = Math.round(random.nextGaussian() * 10);
+      }
+      // the workspace buffers are larger than needed after the first iteration
+      assertEquals(Qn.estimateScale(x.clone()), Qn.estimateScale(x, n, workspace), 0.0);
+      assertEquals(workspace.mark(), new Workspace().mark());
+    }
+  }
 }
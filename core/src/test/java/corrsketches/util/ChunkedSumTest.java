@@ -0,0 +1,73 @@
+package corrsketches.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+public class ChunkedSumTest {
+
+  @Test
+  public void shouldSumInTheSameOrderAsSequentialLoopForSmallInputs() {
+    double[] terms = createTerms(ChunkedSum.CHUNK_SIZE);
+    double expected = 0;
+    for (double term : terms) {
+      expected += term;
+    }
+    assertThat(ChunkedSum.sum(terms.length, (start, end) -> sum(terms, start, end), null))
+        .isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldComputeSameSumRegardlessOfTheNumberOfThreads() {
+    // large enough to compute the partial sums in parallel, and not a multiple of the chunk size
+    double[] terms = createTerms(10 * ChunkedSum.CHUNK_SIZE + 17);
+    ChunkedSum.RangeSum rangeSum = (start, end) -> sum(terms, start, end);
+    ForkJoinPool singleThread = new ForkJoinPool(1);
+    ForkJoinPool multipleThreads = new ForkJoinPool(4);
+    try {
+      double expected = ChunkedSum.sum(terms.length, rangeSum, singleThread);
+      assertThat(ChunkedSum.sum(terms.length, rangeSum, multipleThreads)).isEqualTo(expected);
+      assertThat(ChunkedSum.sum(terms.length, rangeSum, null)).isEqualTo(expected);
+    } finally {
+      singleThread.shutdown();
+      multipleThreads.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldComputeLargeInputsInTheCallingThreadWithoutPool() {
+    double[] terms = createTerms(10 * ChunkedSum.CHUNK_SIZE);
+    Thread caller = Thread.currentThread();
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    ChunkedSum.sum(
+        terms.length,
+        (start, end) -> {
+          threads.add(Thread.currentThread());
+          return sum(terms, start, end);
+        },
+        null);
+    assertThat(threads).containsExactly(caller);
+  }
+
+  /** Terms of very different magnitudes, so that the sum depends on the order of the additions. */
+  private static double[] createTerms(int n) {
+    Random rng = new Random(3);
+    double[] terms = new double[n];
+    for (int i = 0; i < n; i++) {
+      terms[i] = rng.nextGaussian() * Math.pow(10, rng.nextInt(16));
+    }
+    return terms;
+  }
+
+  private static double sum(double[] terms, int start, int end) {
+    double sum = 0;
+    for (int i = start; i < end; i++) {
+      sum += terms[i];
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,55 @@
+package corrsketches.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class HashesTest {
+
+  static final List<String> VALUES =
+      Arrays.asList(
+          "",
+          "a",
+          "New York, NY",
+          "Tallahassee",
+          "S\u00e3o Paulo",
+          "\u65e5\u672c\u8a9e",
+          "emoji \ud83d\ude00",
+          "unpaired \ud83d surrogate");
+
+  @Test
+  public void shouldHashUtf8BytesAsStrings() {
+    for (String value : VALUES) {
+      byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      assertEquals(Hashes.murmur3_32(value), Hashes.murmur3_32(utf8, 0, utf8.length));
+
+      // the string may also be a slice of a larger array
+      byte[] padded = new byte[utf8.length + 4];
+      System.arraycopy(utf8, 0, padded, 2, utf8.length);
+      assertEquals(Hashes.murmur3_32(value), Hashes.murmur3_32(padded, 2, utf8.length));
+    }
+  }
+
+  @Test
+  public void shouldHashUtf8BufferSlicesAsStrings() {
+    for (String value : VALUES) {
+      byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+        // pads with a few bytes so that the blocks of the hash are not aligned with the buffer
+        for (int padding = 0; padding < 4; padding++) {
+          ByteBuffer buffer = ByteBuffer.allocate(utf8.length + padding + 4).order(order);
+          buffer.position(padding);
+          buffer.put(utf8);
+          buffer.position(1);
+          assertEquals(Hashes.murmur3_32(value), Hashes.murmur3_32(buffer, padding, utf8.length));
+          assertEquals(1, buffer.position());
+        }
+      }
+    }
+  }
+}